@@ -0,0 +1,51 @@
+import java.awt.Rectangle;
+
+/**
+ * A bot that goes after the enemy closest to the turret. It leads the
+ * enemy by the distance it moves while a missile flies up to it, moves the
+ * turret under that point, and fires once the missile would hit, with at
+ * most one missile in flight so no shot is wasted on the same enemy.
+ */
+public class AimingBot implements BotPolicy {
+
+    /** The distance the turret moves per tick. */
+    private static final int TURRET_STEP = 10;
+
+    /**
+     * Decides the inputs of the next tick.
+     * @param world The world being played, after the last tick.
+     * @return The inputs moving toward or firing at the nearest enemy.
+     */
+    @Override
+    public int nextInputs(GameWorld world) {
+        EntityStore enemies = world.getEnemies();
+        int target = -1;
+        for (int slot = 0; slot < enemies.size(); slot++) {
+            if (target < 0 || enemies.y[slot] + enemies.height[slot]
+                    > enemies.y[target] + enemies.height[target]) {
+                target = slot;
+            }
+        }
+        if (target < 0) {
+            return 0;
+        }
+        Rectangle gun = world.getTurret().turret;
+        int gunCenter = gun.x + gun.width / 2;
+        int enemyCenterY = enemies.y[target] + enemies.height[target] / 2;
+        // The ticks a missile fired now needs to reach the enemy.
+        int flightTicks = Math.max(0, (gun.y - enemyCenterY) / Missile.SPEED);
+        double aim = enemies.x[target] + enemies.width[target] / 2.0
+                + enemies.speed[target] * flightTicks;
+        // Never narrower than one turret step, or the turret could only
+        // jump back and forth across the aim.
+        double tolerance = Math.max(TURRET_STEP / 2.0,
+                (enemies.width[target] - Missile.SIZE) / 2.0);
+        if (aim < gunCenter - tolerance) {
+            return GameWorld.INPUT_LEFT;
+        }
+        if (aim > gunCenter + tolerance) {
+            return GameWorld.INPUT_RIGHT;
+        }
+        return world.getMissiles().size() == 0 ? GameWorld.INPUT_FIRE : 0;
+    }
+}
@@ -0,0 +1,198 @@
+import java.util.Arrays;
+
+/**
+ * Runs the short enemy animations (descending after a wall bounce and
+ * shrinking after a hit) as part of the game tick instead of on separate
+ * threads. Active tweens are kept in parallel arrays that are reused as
+ * tweens finish, so starting a tween does not allocate once the arrays have
+ * grown to the peak number of animations.
+ */
+public class AnimationScheduler {
+
+    /** Tween moving an entity down by one pixel per step. */
+    public static final byte DESCEND = 0;
+
+    /** Tween shrinking an entity by one pixel per step, keeping it centered. */
+    public static final byte SHRINK = 1;
+
+    /**
+     * The number of animation steps applied per tick. One step used to take
+     * 10ms on the animation threads, and a tick lasts 30ms.
+     */
+    public static final int STEPS_PER_TICK = 3;
+
+    /**
+     * Called when a tween has run all of its steps.
+     */
+    public interface Callback {
+
+        /**
+         * Handles the completion of a tween.
+         * @param store The store holding the animated entity.
+         * @param handle The handle of the animated entity. It may no longer
+         *        be valid if the entity was removed while animating.
+         * @param audio The mixer to play sounds on.
+         */
+        void tweenCompleted(EntityStore store, int handle, AudioMixer audio);
+    }
+
+    /** The store holding the animated entities. */
+    private final EntityStore store;
+
+    /** The type of each active tween, DESCEND or SHRINK. */
+    private byte[] type = new byte[16];
+
+    /** The handle of the entity animated by each active tween. */
+    private int[] handle = new int[16];
+
+    /** The number of steps each active tween has already run. */
+    private int[] step = new int[16];
+
+    /** The total number of steps of each active tween. */
+    private int[] steps = new int[16];
+
+    /** The completion callback of each active tween, or null. */
+    private Callback[] callback = new Callback[16];
+
+    /** The number of active tweens. */
+    private int count;
+
+    /** The mixer callbacks play their sounds on, or null for the default. */
+    private AudioMixer audio;
+
+    /**
+     * Constructor for AnimationScheduler objects, animating entities of
+     * the given store.
+     * @param store The store holding the animated entities.
+     */
+    public AnimationScheduler(EntityStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Starts a tween on the given entity.
+     * @param type The type of the tween, DESCEND or SHRINK.
+     * @param handle The handle of the entity to animate.
+     * @param steps The number of one-pixel steps to run.
+     * @param callback Called once all steps have run, or null.
+     */
+    public void start(byte type, int handle, int steps, Callback callback) {
+        if (count == this.type.length) {
+            ensureCapacity(count * 2);
+        }
+        this.type[count] = type;
+        this.handle[count] = handle;
+        step[count] = 0;
+        this.steps[count] = steps;
+        this.callback[count] = callback;
+        count++;
+    }
+
+    /**
+     * Makes room for the given number of active tweens, so starting up to
+     * that many tweens does not allocate.
+     * @param capacity The number of tweens to make room for.
+     */
+    public void ensureCapacity(int capacity) {
+        if (type.length >= capacity) {
+            return;
+        }
+        type = Arrays.copyOf(type, capacity);
+        handle = Arrays.copyOf(handle, capacity);
+        step = Arrays.copyOf(step, capacity);
+        steps = Arrays.copyOf(steps, capacity);
+        callback = Arrays.copyOf(callback, capacity);
+    }
+
+    /**
+     * Advances every active tween by STEPS_PER_TICK steps and runs the
+     * callbacks of the tweens that finish. Tweens on removed entities keep
+     * their timing, so their callbacks still run when they would have.
+     */
+    public void advance() {
+        for (int t = count - 1; t >= 0; t--) {
+            int slot = store.slotOf(handle[t]);
+            for (int s = 0; s < STEPS_PER_TICK && step[t] < steps[t]; s++) {
+                if (slot >= 0) {
+                    applyStep(type[t], slot, step[t]);
+                }
+                step[t]++;
+            }
+            if (step[t] >= steps[t]) {
+                Callback done = callback[t];
+                int doneHandle = handle[t];
+                finish(t);
+                if (done != null) {
+                    done.tweenCompleted(store, doneHandle, audio != null
+                            ? audio : AudioMixer.getDefault());
+                }
+            }
+        }
+    }
+
+    /**
+     * Sets the mixer the callbacks of finished tweens play their sounds on.
+     * @param audio The mixer, or null for AudioMixer.getDefault().
+     */
+    public void setAudio(AudioMixer audio) {
+        this.audio = audio;
+    }
+
+    /**
+     * A getter method for the number of active tweens.
+     * @return The number of active tweens.
+     */
+    public int getActiveCount() {
+        return count;
+    }
+
+    /**
+     * A getter method for the entity an active tween animates.
+     * @param index The index of the tween, below getActiveCount.
+     * @return The handle of the animated entity.
+     */
+    public int getHandle(int index) {
+        return handle[index];
+    }
+
+    /**
+     * Removes all active tweens without running their callbacks.
+     */
+    public void clear() {
+        Arrays.fill(callback, 0, count, null);
+        count = 0;
+    }
+
+    /**
+     * Applies a single step of a tween to an entity.
+     * @param type The type of the tween.
+     * @param slot The slot of the animated entity.
+     * @param i The index of the step being applied.
+     */
+    private void applyStep(byte type, int slot, int i) {
+        if (type == DESCEND) {
+            store.y[slot]++;
+        } else {
+            // Center entity as it shrinks (add half pixel every step).
+            store.x[slot] += i % 2 == 0 ? 1 : 0;
+            store.y[slot] += i % 2 == 0 ? 1 : 0;
+            store.width[slot]--;
+            store.height[slot]--;
+        }
+    }
+
+    /**
+     * Removes the tween at the given index by moving the last tween into
+     * its place.
+     * @param t The index of the tween to remove.
+     */
+    private void finish(int t) {
+        int last = --count;
+        type[t] = type[last];
+        handle[t] = handle[last];
+        step[t] = step[last];
+        steps[t] = steps[last];
+        callback[t] = callback[last];
+        callback[last] = null;
+    }
+}
@@ -0,0 +1,187 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A read-only pack of asset files, such as the sounds of the game, in a
+ * single file with an index in front. The file is memory-mapped when
+ * opened, so opening costs one system call however many assets there are,
+ * and the bytes of an asset are only read from disk when it is decoded.
+ *
+ * The file starts with the magic number, the format version, and the
+ * number of assets. Each index entry then holds the length of the name in
+ * bytes, the name in UTF-8, the offset of the asset from the start of the
+ * file, and its length. The assets follow the index. All numbers are big
+ * endian.
+ *
+ * Bundles are built with the main method:
+ * <pre>
+ * java -cp out AssetBundle out/assets.sdab *.wav
+ * </pre>
+ */
+public class AssetBundle {
+
+    /** The first four bytes of every bundle, "SDAB". */
+    private static final int MAGIC = 0x53444142;
+
+    /** The version of the format. */
+    private static final int VERSION = 1;
+
+    /** The assets, by name, as slices of the mapped file, in file order. */
+    private final Map<String, ByteBuffer> assets = new LinkedHashMap<>();
+
+    /**
+     * Constructor for AssetBundle objects, reading the index of a mapped
+     * file.
+     * @param data The whole file.
+     * @throws IOException If the file is not a bundle or is damaged.
+     */
+    private AssetBundle(ByteBuffer data) throws IOException {
+        try {
+            if (data.getInt() != MAGIC || data.getInt() != VERSION) {
+                throw new IOException("Not an asset bundle of version "
+                        + VERSION);
+            }
+            int count = data.getInt();
+            for (int i = 0; i < count; i++) {
+                byte[] name = new byte[data.getShort() & 0xFFFF];
+                data.get(name);
+                long offset = data.getLong();
+                int length = data.getInt();
+                if (offset < 0 || length < 0
+                        || offset + length > data.capacity()) {
+                    throw new IOException("Asset out of bounds");
+                }
+                assets.put(new String(name, StandardCharsets.UTF_8),
+                        data.slice((int)offset, length));
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated asset bundle", e);
+        }
+    }
+
+    /**
+     * Opens a bundle by mapping its file into memory.
+     * @param file The bundle file.
+     * @return The bundle.
+     * @throws IOException If the file cannot be mapped, is not a bundle,
+     *         or is larger than 2 GB.
+     */
+    public static AssetBundle open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Asset bundle too large");
+            }
+            // The mapping stays valid after the channel is closed.
+            return new AssetBundle(channel.map(FileChannel.MapMode.READ_ONLY,
+                    0, channel.size()));
+        }
+    }
+
+    /**
+     * Packs asset files into a new bundle. Each asset is named after its
+     * file, without the directory.
+     * @param file The bundle file to write, replaced if it exists.
+     * @param files The asset files.
+     * @throws IOException If a file cannot be read, its name is longer
+     *         than 65535 bytes in UTF-8, the bundle would be 2 GB or
+     *         larger, or the bundle cannot be written.
+     */
+    public static void write(Path file, Path... files) throws IOException {
+        byte[][] names = new byte[files.length][];
+        long[] lengths = new long[files.length];
+        long offset = 3 * Integer.BYTES;
+        for (int i = 0; i < files.length; i++) {
+            names[i] = files[i].getFileName().toString()
+                    .getBytes(StandardCharsets.UTF_8);
+            if (names[i].length > 0xFFFF) {
+                throw new IOException("Asset name too long: " + files[i]);
+            }
+            lengths[i] = Files.size(files[i]);
+            offset += Short.BYTES + names[i].length + Long.BYTES
+                    + Integer.BYTES;
+        }
+        // open maps the whole bundle into one buffer.
+        long total = offset;
+        for (int i = 0; i < files.length; i++) {
+            total += lengths[i];
+            if (total > Integer.MAX_VALUE) {
+                throw new IOException("Asset bundle too large at "
+                        + files[i]);
+            }
+        }
+        try (OutputStream stream = Files.newOutputStream(file);
+                DataOutputStream out = new DataOutputStream(
+                        new BufferedOutputStream(stream))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(files.length);
+            for (int i = 0; i < files.length; i++) {
+                out.writeShort(names[i].length);
+                out.write(names[i]);
+                out.writeLong(offset);
+                out.writeInt((int)lengths[i]);
+                offset += lengths[i];
+            }
+            for (int i = 0; i < files.length; i++) {
+                if (Files.copy(files[i], out) != lengths[i]) {
+                    throw new IOException("Asset changed while written: "
+                            + files[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * A getter method for the bytes of an asset.
+     * @param name The name of the asset.
+     * @return The bytes of the asset, from position 0 to the limit, or
+     *         null if the bundle has no such asset. Each call returns a new
+     *         buffer over the same memory.
+     */
+    public ByteBuffer get(String name) {
+        ByteBuffer asset = assets.get(name);
+        return asset == null ? null : asset.duplicate();
+    }
+
+    /**
+     * A getter method for the names of the assets.
+     * @return The names, in the order of the bundle.
+     */
+    public Set<String> getNames() {
+        return Collections.unmodifiableSet(assets.keySet());
+    }
+
+    /**
+     * Packs the given files into a bundle.
+     * @param args The bundle file, followed by the asset files.
+     * @throws IOException If a file cannot be read or the bundle cannot be
+     *         written.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: java AssetBundle <bundle-file> "
+                    + "<asset-file>...");
+            System.exit(2);
+        }
+        Path[] files = new Path[args.length - 1];
+        for (int i = 0; i < files.length; i++) {
+            files[i] = Paths.get(args[i + 1]);
+        }
+        write(Paths.get(args[0]), files);
+    }
+}
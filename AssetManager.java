@@ -0,0 +1,285 @@
+import java.io.BufferedInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Loads and decodes the assets of the game in the background. Every asset
+ * is decoded once, on a pool of daemon threads, and handed out as a
+ * CompletableFuture as soon as it is asked for, so nothing waits for the
+ * disk or a decoder on the way to the first frame. Users that cannot wait
+ * use a placeholder until the future is done; Sound plays silence.
+ *
+ * Assets come from the AssetBundle named by the spacedefenders.assets
+ * property, by default assets.sdab in the working directory or next to the
+ * classes. Without a bundle, each asset is read from its own resource file
+ * next to the classes instead.
+ */
+public class AssetManager {
+
+    /** The name of the bundle looked for when none is given. */
+    public static final String DEFAULT_BUNDLE = "assets.sdab";
+
+    /** The manager used by Sound, created on first use. */
+    private static AssetManager defaultManager;
+
+    /** The bundle the assets come from, or null for resource files. */
+    private final AssetBundle bundle;
+
+    /** The threads decoding the assets. */
+    private final ForkJoinPool pool;
+
+    /** The decoded samples of every sound asked for, by name. */
+    private final ConcurrentHashMap<String, CompletableFuture<short[]>>
+            sounds = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor for AssetManager objects.
+     * @param bundle The bundle the assets come from, or null to read each
+     *        asset from its resource file.
+     * @param threads The number of threads decoding assets.
+     */
+    public AssetManager(AssetBundle bundle, int threads) {
+        this.bundle = bundle;
+        pool = new ForkJoinPool(threads);
+    }
+
+    /**
+     * A getter method for the manager used by Sound. The first call creates
+     * it, mapping the bundle if there is one. A bundle that cannot be
+     * opened is reported and the resource files are used instead.
+     * @return The default manager.
+     */
+    public static synchronized AssetManager getDefault() {
+        if (defaultManager == null) {
+            AssetBundle bundle = null;
+            Path file = findBundle();
+            if (file != null) {
+                try {
+                    bundle = AssetBundle.open(file);
+                } catch (IOException e) {
+                    e.printStackTrace(); // Read the resource files instead.
+                }
+            }
+            defaultManager = new AssetManager(bundle,
+                    Runtime.getRuntime().availableProcessors());
+        }
+        return defaultManager;
+    }
+
+    /**
+     * A getter method for the bundle the assets come from.
+     * @return The bundle, or null if each asset is read from its resource
+     *         file.
+     */
+    public AssetBundle getBundle() {
+        return bundle;
+    }
+
+    /**
+     * Starts decoding every sound of the bundle, so they are ready by the
+     * time the game first plays them.
+     * @return A future completed once every sound of the bundle is decoded,
+     *         at once if there is no bundle.
+     */
+    public CompletableFuture<Void> preload() {
+        List<CompletableFuture<short[]>> loading = new ArrayList<>();
+        if (bundle != null) {
+            for (String name : bundle.getNames()) {
+                if (name.endsWith(".wav")) {
+                    loading.add(sound(name));
+                }
+            }
+        }
+        return CompletableFuture.allOf(
+                loading.toArray(new CompletableFuture<?>[0]));
+    }
+
+    /**
+     * Looks up the samples of a sound, starting to decode it unless that
+     * has already started.
+     * @param name The name of the audio file.
+     * @return A future of the samples in AudioMixer.FORMAT. It never fails:
+     *         a sound that cannot be loaded is reported and has no samples.
+     */
+    public CompletableFuture<short[]> sound(String name) {
+        return sounds.computeIfAbsent(name,
+                key -> CompletableFuture.supplyAsync(() -> decodeSound(key),
+                        pool));
+    }
+
+    /**
+     * Reads and decodes a sound.
+     * @param name The name of the audio file.
+     * @return The decoded samples, or no samples if loading failed.
+     */
+    private short[] decodeSound(String name) {
+        try (InputStream in = open(name)) {
+            return Sound.decode(in);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return new short[0];
+        }
+    }
+
+    /**
+     * Opens an asset for reading, from the bundle or its resource file.
+     * @param name The name of the asset.
+     * @return A stream of the asset that supports mark and reset.
+     * @throws IOException If there is no such asset.
+     */
+    private InputStream open(String name) throws IOException {
+        if (bundle != null) {
+            ByteBuffer asset = bundle.get(name);
+            if (asset == null) {
+                throw new FileNotFoundException(name + " not in bundle");
+            }
+            return new BufferInputStream(asset);
+        }
+        InputStream in = AssetManager.class.getResourceAsStream(name);
+        if (in == null) {
+            throw new FileNotFoundException(name);
+        }
+        return new BufferedInputStream(in);
+    }
+
+    /**
+     * Finds the bundle file: the one named by the spacedefenders.assets
+     * property, or DEFAULT_BUNDLE in the working directory or next to the
+     * classes.
+     * @return The bundle file, or null if there is none.
+     */
+    private static Path findBundle() {
+        String name = System.getProperty("spacedefenders.assets");
+        if (name != null) {
+            return Paths.get(name);
+        }
+        Path file = Paths.get(DEFAULT_BUNDLE);
+        if (Files.isRegularFile(file)) {
+            return file;
+        }
+        URL resource = AssetManager.class.getResource(DEFAULT_BUNDLE);
+        if (resource != null && "file".equals(resource.getProtocol())) {
+            try {
+                return Paths.get(resource.toURI());
+            } catch (URISyntaxException e) {
+                return null; // Not a plain file, read resource files.
+            }
+        }
+        return null;
+    }
+
+    /**
+     * An InputStream over the bytes of a buffer, such as an asset of a
+     * mapped bundle, that supports mark and reset as the audio decoders
+     * require.
+     */
+    private static final class BufferInputStream extends InputStream {
+
+        /** The bytes not read yet, between position and limit. */
+        private final ByteBuffer buffer;
+
+        /** The position marked last, or -1. */
+        private int marked = -1;
+
+        /**
+         * Constructor for BufferInputStream objects.
+         * @param buffer The bytes to read, from position to limit.
+         */
+        BufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        /**
+         * Reads one byte.
+         * @return The byte, or -1 at the end.
+         */
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        /**
+         * Reads up to the given number of bytes.
+         * @param b The array receiving the bytes.
+         * @param off The index of the first byte in b.
+         * @param len The most bytes to read.
+         * @return The number of bytes read, or -1 at the end.
+         */
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(len, buffer.remaining());
+            buffer.get(b, off, count);
+            return count;
+        }
+
+        /**
+         * Skips up to the given number of bytes.
+         * @param n The most bytes to skip.
+         * @return The number of bytes skipped.
+         */
+        @Override
+        public long skip(long n) {
+            int count = (int)Math.max(0, Math.min(n, buffer.remaining()));
+            buffer.position(buffer.position() + count);
+            return count;
+        }
+
+        /**
+         * A getter method for the number of bytes left.
+         * @return The number of bytes not read yet.
+         */
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+
+        /**
+         * Marks the current position for reset. Every position can be
+         * returned to, so the limit is ignored.
+         * @param readLimit Ignored.
+         */
+        @Override
+        public void mark(int readLimit) {
+            marked = buffer.position();
+        }
+
+        /**
+         * Returns to the position marked last.
+         * @throws IOException If no position was marked.
+         */
+        @Override
+        public void reset() throws IOException {
+            if (marked < 0) {
+                throw new IOException("Stream not marked");
+            }
+            buffer.position(marked);
+        }
+
+        /**
+         * Determines whether mark and reset are supported.
+         * @return True.
+         */
+        @Override
+        public boolean markSupported() {
+            return true;
+        }
+    }
+}
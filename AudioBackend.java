@@ -0,0 +1,36 @@
+import javax.sound.sampled.AudioFormat;
+
+/**
+ * An output for the mixed audio of the game. The AudioMixer writes blocks of
+ * PCM frames in AudioMixer.FORMAT to its backend.
+ */
+public interface AudioBackend {
+
+    /**
+     * Prepares the backend to receive audio in the given format.
+     * @param format The format of the audio that will be written.
+     * @param bufferFrames The number of frames the backend should buffer.
+     * @return True if the backend is ready, false if it is unavailable.
+     */
+    boolean open(AudioFormat format, int bufferFrames);
+
+    /**
+     * Writes a block of mixed audio. May block until the backend has
+     * room, which paces the mixer thread.
+     * @param buffer The PCM bytes to write.
+     * @param length The number of bytes to write from the start of buffer.
+     */
+    void write(byte[] buffer, int length);
+
+    /**
+     * Determines whether writes are paced by real playback. The mixer only
+     * runs its own thread for realtime backends.
+     * @return True if write blocks at the playback rate.
+     */
+    boolean isRealtime();
+
+    /**
+     * Releases the resources of the backend.
+     */
+    void close();
+}
@@ -0,0 +1,288 @@
+import java.awt.GraphicsEnvironment;
+import java.util.Arrays;
+import javax.sound.sampled.AudioFormat;
+
+/**
+ * Mixes every sound of the game into a single output. A fixed number of
+ * voices play decoded samples from the Sound cache; when all voices are busy
+ * a new sound steals the voice that has played the longest.
+ *
+ * Play requests made during a game tick are batched: play only records the
+ * request, and flush hands the whole batch to the mixer at the end of the
+ * tick. The same sound requested several times in one batch is played once.
+ *
+ * The voices belong to the one thread that mixes: the mixing thread of a
+ * realtime backend, or otherwise the thread calling pump. Other threads
+ * only reach them through the requests handed over by flush, under the
+ * lock of the mixer.
+ */
+public class AudioMixer {
+
+    /** The format of all decoded samples and of the mixed output. */
+    public static final AudioFormat FORMAT =
+            new AudioFormat(44100f, 16, 2, true, false);
+
+    /** The default number of voices, see the spacedefenders.voices property. */
+    public static final int DEFAULT_VOICES = 8;
+
+    /** The number of frames mixed per block. */
+    private static final int BLOCK_FRAMES = 512;
+
+    /** The mixer used by Sound.play, created on first use. */
+    private static AudioMixer defaultMixer;
+
+    /** The output receiving the mixed audio. */
+    private final AudioBackend backend;
+
+    /**
+     * The sample played by each voice, or null for an idle voice. Only
+     * used by the mixing thread.
+     */
+    private final short[][] voiceSample;
+
+    /** The next sample index of each voice. Only used by the mixing thread. */
+    private final int[] voicePosition;
+
+    /** The number of voices playing after the last mixed block. */
+    private volatile int activeVoices;
+
+    /** Play requests recorded since the last flush. */
+    private short[][] pending = new short[16][];
+
+    /** The number of entries in pending. */
+    private int pendingCount;
+
+    /**
+     * Play requests flushed but not yet assigned to a voice. Holds at most
+     * one request per voice, since older requests would be stolen anyway.
+     */
+    private final short[][] queued;
+
+    /** The number of entries in queued. */
+    private int queuedCount;
+
+    /** The accumulator for one block of mixed samples. */
+    private final int[] mixBuffer = new int[BLOCK_FRAMES * 2];
+
+    /** The bytes of one block of mixed output. */
+    private final byte[] outBuffer = new byte[BLOCK_FRAMES * 4];
+
+    /** The thread feeding a realtime backend, or null. */
+    private Thread mixThread;
+
+    /**
+     * Constructor for AudioMixer objects, mixing the given number of voices
+     * into the given backend.
+     * @param backend The output for the mixed audio. It must already be
+     *        open with FORMAT.
+     * @param voices The number of sounds that can play at once.
+     */
+    public AudioMixer(AudioBackend backend, int voices) {
+        this.backend = backend;
+        voiceSample = new short[Math.max(1, voices)][];
+        voicePosition = new int[voiceSample.length];
+        queued = new short[voiceSample.length][];
+    }
+
+    /**
+     * A getter method for the mixer used by Sound.play. The first call
+     * creates it: headless runs, runs with spacedefenders.audio=null, and
+     * machines without a usable sound line get a NullAudioBackend.
+     * @return The default mixer.
+     */
+    public static synchronized AudioMixer getDefault() {
+        if (defaultMixer == null) {
+            int voices = Integer.getInteger("spacedefenders.voices",
+                    DEFAULT_VOICES);
+            AudioBackend backend = null;
+            if (!GraphicsEnvironment.isHeadless() && !"null".equals(
+                    System.getProperty("spacedefenders.audio"))) {
+                backend = new LineAudioBackend();
+                if (!backend.open(FORMAT, BLOCK_FRAMES * 4)) {
+                    backend = null;
+                }
+            }
+            if (backend == null) {
+                backend = new NullAudioBackend();
+                backend.open(FORMAT, BLOCK_FRAMES);
+            }
+            defaultMixer = new AudioMixer(backend, voices);
+            defaultMixer.start();
+        }
+        return defaultMixer;
+    }
+
+    /**
+     * Replaces the mixer used by Sound.play, stopping the previous one.
+     * @param mixer The new default mixer.
+     */
+    public static synchronized void setDefault(AudioMixer mixer) {
+        if (defaultMixer != null && defaultMixer != mixer) {
+            defaultMixer.stop();
+        }
+        defaultMixer = mixer;
+    }
+
+    /**
+     * Starts the mixing thread if the backend plays in realtime. Other
+     * backends are driven by calling mix directly.
+     */
+    public synchronized void start() {
+        if (mixThread != null || !backend.isRealtime()) {
+            return;
+        }
+        mixThread = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                backend.write(outBuffer, mix());
+            }
+        }, "audio-mixer");
+        mixThread.setDaemon(true);
+        mixThread.start();
+    }
+
+    /**
+     * Stops the mixing thread and closes the backend.
+     */
+    public synchronized void stop() {
+        if (mixThread != null) {
+            mixThread.interrupt();
+            mixThread = null;
+        }
+        backend.close();
+    }
+
+    /**
+     * Records a request to play the given sample with the next flush.
+     * Requests for a sample already in the current batch are dropped.
+     * @param samples The decoded samples to play.
+     */
+    public synchronized void play(short[] samples) {
+        if (samples.length == 0) {
+            return;
+        }
+        for (int i = 0; i < pendingCount; i++) {
+            if (pending[i] == samples) {
+                return;
+            }
+        }
+        if (pendingCount == pending.length) {
+            pending = Arrays.copyOf(pending, pendingCount * 2);
+        }
+        pending[pendingCount++] = samples;
+    }
+
+    /**
+     * Hands all requests recorded since the last flush to the mixer.
+     * Called once at the end of every game tick.
+     */
+    public synchronized void flush() {
+        for (int i = 0; i < pendingCount; i++) {
+            if (queuedCount == queued.length) {
+                // Drop the oldest request to make room.
+                System.arraycopy(queued, 1, queued, 0, queuedCount - 1);
+                queuedCount--;
+            }
+            queued[queuedCount++] = pending[i];
+            pending[i] = null;
+        }
+        pendingCount = 0;
+    }
+
+    /**
+     * Mixes the next block of audio from all active voices, first starting
+     * the flushed requests on free or stolen voices. Must only be called
+     * from one thread, the mixing thread of a realtime backend, or the
+     * thread calling pump otherwise.
+     * @return The number of bytes of the block, stored in the buffer
+     *         returned by getOutput.
+     */
+    public int mix() {
+        synchronized (this) {
+            for (int i = 0; i < queuedCount; i++) {
+                int voice = freeVoice();
+                voiceSample[voice] = queued[i];
+                voicePosition[voice] = 0;
+                queued[i] = null;
+            }
+            queuedCount = 0;
+        }
+        Arrays.fill(mixBuffer, 0);
+        int active = 0;
+        for (int v = 0; v < voiceSample.length; v++) {
+            short[] samples = voiceSample[v];
+            if (samples == null) {
+                continue;
+            }
+            int position = voicePosition[v];
+            int count = Math.min(mixBuffer.length, samples.length - position);
+            for (int i = 0; i < count; i++) {
+                mixBuffer[i] += samples[position + i];
+            }
+            voicePosition[v] = position + count;
+            if (voicePosition[v] >= samples.length) {
+                voiceSample[v] = null;
+            } else {
+                active++;
+            }
+        }
+        activeVoices = active;
+        for (int i = 0; i < mixBuffer.length; i++) {
+            int sample = Math.max(Short.MIN_VALUE,
+                    Math.min(Short.MAX_VALUE, mixBuffer[i]));
+            outBuffer[2 * i] = (byte)sample;
+            outBuffer[2 * i + 1] = (byte)(sample >> 8);
+        }
+        return outBuffer.length;
+    }
+
+    /**
+     * Mixes the next block and writes it to the backend. Used to drive
+     * backends that are not realtime, such as the NullAudioBackend, and
+     * like mix must only be called from one thread.
+     */
+    public void pump() {
+        backend.write(outBuffer, mix());
+    }
+
+    /**
+     * A getter method for the buffer holding the last mixed block.
+     * @return The bytes of the last mixed block.
+     */
+    public byte[] getOutput() {
+        return outBuffer;
+    }
+
+    /**
+     * A getter method for the number of voices playing, as published by
+     * the mixing thread after every block. Safe to call from any thread.
+     * @return The number of voices still playing after the last block.
+     */
+    public int getActiveVoices() {
+        return activeVoices;
+    }
+
+    /**
+     * A getter method for the backend of this mixer.
+     * @return The backend receiving the mixed audio.
+     */
+    public AudioBackend getBackend() {
+        return backend;
+    }
+
+    /**
+     * Finds an idle voice, or steals the voice that has played the longest.
+     * @return The index of the voice to use.
+     */
+    private int freeVoice() {
+        int oldest = 0;
+        for (int v = 0; v < voiceSample.length; v++) {
+            if (voiceSample[v] == null) {
+                return v;
+            }
+            if (voicePosition[v] > voicePosition[oldest]) {
+                oldest = v;
+            }
+        }
+        return oldest;
+    }
+}
@@ -0,0 +1,96 @@
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Reads the values packed by a BitWriter from a message, most significant
+ * bit first. Reading past the end of the message, or a code no BitWriter
+ * writes, fails with an IOException, so a corrupt frame is rejected rather
+ * than decoded into nonsense.
+ */
+public class BitReader {
+
+    /** The most leading zeros of an Exp-Golomb code of a 32-bit value. */
+    private static final int MAX_CODE_ZEROS = 32;
+
+    /** The message being read. */
+    private ByteBuffer in;
+
+    /** The bits read from in but not yet returned, in the low bits. */
+    private long pending;
+
+    /** The number of bits in pending. */
+    private int pendingCount;
+
+    /**
+     * Starts reading a message from its position up to its limit.
+     * @param in The message. Its position is advanced while reading.
+     */
+    public void reset(ByteBuffer in) {
+        this.in = in;
+        pending = 0;
+        pendingCount = 0;
+    }
+
+    /**
+     * Reads a field of fixed width.
+     * @param count The number of bits, 0 up to 56.
+     * @return The bits, in the low bits of the result.
+     * @throws EOFException If the message ends before the field.
+     */
+    public long readBits(int count) throws EOFException {
+        while (pendingCount < count) {
+            if (!in.hasRemaining()) {
+                throw new EOFException("Message ends within a field");
+            }
+            pending = pending << 8 | (in.get() & 0xFF);
+            pendingCount += 8;
+        }
+        pendingCount -= count;
+        return pending >>> pendingCount & ((1L << count) - 1);
+    }
+
+    /**
+     * A getter method for the number of bits left in the message.
+     * @return The number of bits not read yet.
+     */
+    public long remainingBits() {
+        return in.remaining() * 8L + pendingCount;
+    }
+
+    /**
+     * Reads a single bit.
+     * @return True if the bit is set.
+     * @throws EOFException If the message ends before the bit.
+     */
+    public boolean readBoolean() throws EOFException {
+        return readBits(1) != 0;
+    }
+
+    /**
+     * Reads a value written by BitWriter.writeUnsigned.
+     * @return The value, to be read as unsigned.
+     * @throws IOException If the message ends early or the code is too
+     *         long.
+     */
+    public int readUnsigned() throws IOException {
+        int zeros = 0;
+        while (readBits(1) == 0) {
+            if (++zeros > MAX_CODE_ZEROS) {
+                throw new IOException("Malformed Exp-Golomb code");
+            }
+        }
+        return (int)((1L << zeros | readBits(zeros)) - 1);
+    }
+
+    /**
+     * Reads a value written by BitWriter.writeSigned.
+     * @return The value.
+     * @throws IOException If the message ends early or the code is too
+     *         long.
+     */
+    public int readSigned() throws IOException {
+        int zigzag = readUnsigned();
+        return zigzag >>> 1 ^ -(zigzag & 1);
+    }
+}
@@ -0,0 +1,104 @@
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Packs values into a growing array of bytes bit by bit, most significant
+ * bit first, for the state frames of networked games. Besides fixed-width
+ * fields it writes order-0 Exp-Golomb codes, which take 2 log2(v + 1) + 1
+ * bits for a value v, so the small deltas that make up most of a frame
+ * cost a few bits each. BitReader reads what this writes.
+ *
+ * A writer is reset and reused for every message, so writing does not
+ * allocate once the array has grown to the largest message.
+ */
+public class BitWriter {
+
+    /** The bytes written so far. */
+    private byte[] bytes = new byte[256];
+
+    /** The number of complete bytes in bytes. */
+    private int length;
+
+    /** The bits not yet written to bytes, in the low pendingCount bits. */
+    private long pending;
+
+    /** The number of bits in pending, below 8 between calls. */
+    private int pendingCount;
+
+    /**
+     * Empties the writer for the next message.
+     */
+    public void reset() {
+        length = 0;
+        pending = 0;
+        pendingCount = 0;
+    }
+
+    /**
+     * Writes the low bits of a value.
+     * @param value The value to write.
+     * @param count The number of low bits of value to write, 0 up to 56.
+     */
+    public void writeBits(long value, int count) {
+        pending = pending << count | (value & ((1L << count) - 1));
+        pendingCount += count;
+        while (pendingCount >= 8) {
+            pendingCount -= 8;
+            if (length == bytes.length) {
+                bytes = Arrays.copyOf(bytes, length * 2);
+            }
+            bytes[length++] = (byte)(pending >>> pendingCount);
+        }
+    }
+
+    /**
+     * Writes a single bit.
+     * @param value The bit to write.
+     */
+    public void writeBoolean(boolean value) {
+        writeBits(value ? 1 : 0, 1);
+    }
+
+    /**
+     * Writes an unsigned value as an order-0 Exp-Golomb code: the number
+     * of bits of value + 1, less one, as that many zero bits, followed by
+     * value + 1 itself.
+     * @param value The value, read as unsigned.
+     */
+    public void writeUnsigned(int value) {
+        long code = (value & 0xFFFFFFFFL) + 1;
+        int bits = Long.SIZE - Long.numberOfLeadingZeros(code);
+        writeBits(0, bits - 1);
+        writeBits(code, bits);
+    }
+
+    /**
+     * Writes a signed value as the Exp-Golomb code of its zigzag encoding,
+     * which maps 0, -1, 1, -2, 2, ... to 0, 1, 2, 3, 4, ..., so values
+     * close to zero have short codes either way.
+     * @param value The value.
+     */
+    public void writeSigned(int value) {
+        writeUnsigned(value << 1 ^ value >> 31);
+    }
+
+    /**
+     * Pads the last byte with zero bits, ending the message.
+     * @return The length of the message in bytes.
+     */
+    public int finish() {
+        if (pendingCount > 0) {
+            writeBits(0, 8 - pendingCount);
+        }
+        return length;
+    }
+
+    /**
+     * Ends the message and wraps it for sending. The buffer shares the
+     * array of this writer, so it is only valid until the next reset.
+     * @return A buffer holding the message.
+     */
+    public ByteBuffer toByteBuffer() {
+        return ByteBuffer.wrap(bytes, 0, finish());
+    }
+}
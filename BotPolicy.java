@@ -0,0 +1,33 @@
+/**
+ * Decides the inputs of a game in place of a player, for BotRunner. A
+ * policy looks at the world it plays before every tick and returns the
+ * input bits to tick it with.
+ *
+ * Every game gets its own policy from a Factory, so a policy may keep
+ * state and draw from its own Random without being shared between the
+ * threads that play games side by side.
+ */
+public interface BotPolicy {
+
+    /**
+     * Creates the policy of one game.
+     */
+    interface Factory {
+
+        /**
+         * Creates a policy for a new game.
+         * @param seed The seed for any randomness of the policy, different
+         *        for every game.
+         * @return The new policy.
+         */
+        BotPolicy create(long seed);
+    }
+
+    /**
+     * Decides the inputs of the next tick.
+     * @param world The world being played, after the last tick.
+     * @return A bit set of GameWorld.INPUT_LEFT, INPUT_RIGHT, and
+     *         INPUT_FIRE.
+     */
+    int nextInputs(GameWorld world);
+}
@@ -0,0 +1,230 @@
+import java.util.Arrays;
+
+/**
+ * The aggregated outcome of a batch of bot games: how the games ended, the
+ * distribution of their final scores, and how many ticks they lasted.
+ * Partial results are combined with merge, so every task of BotRunner
+ * fills its own BotResults and nothing is shared while games run.
+ */
+public class BotResults {
+
+    /**
+     * The step in which scores are counted. Every enemy scores a multiple
+     * of it, so the score distribution is exact.
+     */
+    public static final int SCORE_STEP = 50;
+
+    /** The width in ticks of each bucket of the ticks-to-end counts. */
+    public static final int TICK_BUCKET = 30;
+
+    /** The number of games played. */
+    private long games;
+
+    /** The number of games won. */
+    private long won;
+
+    /** The number of games lost. */
+    private long lost;
+
+    /** The sum of all final scores. */
+    private long scoreTotal;
+
+    /** The sum of the ticks of all games. */
+    private long tickTotal;
+
+    /** The highest final score. */
+    private int maxScore;
+
+    /** The most ticks a game lasted. */
+    private int maxTicks;
+
+    /** The number of games per final score, by score / SCORE_STEP. */
+    private long[] scoreCounts = new long[0];
+
+    /** The number of games per length, by ticks / TICK_BUCKET. */
+    private long[] tickCounts = new long[0];
+
+    /**
+     * Adds the outcome of one game.
+     * @param status The status the game ended with, RUNNING if it was
+     *        stopped before it was decided.
+     * @param score The final score of the game.
+     * @param ticks The number of ticks the game lasted.
+     */
+    public void add(GameStatus status, int score, int ticks) {
+        games++;
+        if (status == GameStatus.WON) {
+            won++;
+        } else if (status == GameStatus.LOST) {
+            lost++;
+        }
+        scoreTotal += score;
+        tickTotal += ticks;
+        maxScore = Math.max(maxScore, score);
+        maxTicks = Math.max(maxTicks, ticks);
+        scoreCounts = count(scoreCounts, score / SCORE_STEP, 1);
+        tickCounts = count(tickCounts, ticks / TICK_BUCKET, 1);
+    }
+
+    /**
+     * Adds all games of another batch to this one.
+     * @param other The results to add.
+     * @return This object.
+     */
+    public BotResults merge(BotResults other) {
+        games += other.games;
+        won += other.won;
+        lost += other.lost;
+        scoreTotal += other.scoreTotal;
+        tickTotal += other.tickTotal;
+        maxScore = Math.max(maxScore, other.maxScore);
+        maxTicks = Math.max(maxTicks, other.maxTicks);
+        // From the top, so the counts grow at most once.
+        for (int i = other.scoreCounts.length - 1; i >= 0; i--) {
+            scoreCounts = count(scoreCounts, i, other.scoreCounts[i]);
+        }
+        for (int i = other.tickCounts.length - 1; i >= 0; i--) {
+            tickCounts = count(tickCounts, i, other.tickCounts[i]);
+        }
+        return this;
+    }
+
+    /**
+     * A getter method for the number of games played.
+     * @return The number of games.
+     */
+    public long getGames() {
+        return games;
+    }
+
+    /**
+     * A getter method for the number of games won.
+     * @return The number of games won.
+     */
+    public long getWon() {
+        return won;
+    }
+
+    /**
+     * A getter method for the number of games lost.
+     * @return The number of games lost.
+     */
+    public long getLost() {
+        return lost;
+    }
+
+    /**
+     * A getter method for the number of games stopped before they were
+     * decided.
+     * @return The number of unfinished games.
+     */
+    public long getUnfinished() {
+        return games - won - lost;
+    }
+
+    /**
+     * Computes the share of games won.
+     * @return The win rate from 0 to 1, 0 if no game was played.
+     */
+    public double getWinRate() {
+        return games == 0 ? 0 : won / (double)games;
+    }
+
+    /**
+     * Computes the average final score.
+     * @return The mean score, 0 if no game was played.
+     */
+    public double getMeanScore() {
+        return games == 0 ? 0 : scoreTotal / (double)games;
+    }
+
+    /**
+     * Computes the average length of a game.
+     * @return The mean number of ticks, 0 if no game was played.
+     */
+    public double getMeanTicks() {
+        return games == 0 ? 0 : tickTotal / (double)games;
+    }
+
+    /**
+     * A getter method for the highest final score.
+     * @return The highest score.
+     */
+    public int getMaxScore() {
+        return maxScore;
+    }
+
+    /**
+     * A getter method for the length of the longest game.
+     * @return The most ticks a game lasted.
+     */
+    public int getMaxTicks() {
+        return maxTicks;
+    }
+
+    /**
+     * Counts the games that ended with a given score.
+     * @param score The final score, a multiple of SCORE_STEP.
+     * @return The number of games ending with that score.
+     */
+    public long getScoreCount(int score) {
+        int bucket = score / SCORE_STEP;
+        return bucket >= 0 && bucket < scoreCounts.length
+                ? scoreCounts[bucket] : 0;
+    }
+
+    /**
+     * Finds the final score below or at which the given share of games
+     * ended.
+     * @param percentile The share of games, from 0 to 100.
+     * @return The score at the percentile, 0 if no game was played.
+     */
+    public int getScorePercentile(double percentile) {
+        int bucket = percentileBucket(scoreCounts, percentile);
+        return Math.min(bucket * SCORE_STEP, maxScore);
+    }
+
+    /**
+     * Finds the number of ticks within which the given share of games
+     * ended, rounded up to the end of its TICK_BUCKET.
+     * @param percentile The share of games, from 0 to 100.
+     * @return The ticks at the percentile, 0 if no game was played.
+     */
+    public int getTicksPercentile(double percentile) {
+        int bucket = percentileBucket(tickCounts, percentile);
+        return Math.min(bucket * TICK_BUCKET + TICK_BUCKET - 1, maxTicks);
+    }
+
+    /**
+     * Finds the bucket holding the given percentile of games.
+     * @param counts The number of games per bucket.
+     * @param percentile The share of games, from 0 to 100.
+     * @return The index of the bucket, 0 if no game was played.
+     */
+    private int percentileBucket(long[] counts, double percentile) {
+        long rank = Math.max(1, (long)Math.ceil(games * percentile / 100.0));
+        long seen = 0;
+        for (int bucket = 0; bucket < counts.length; bucket++) {
+            seen += counts[bucket];
+            if (seen >= rank) {
+                return bucket;
+            }
+        }
+        return Math.max(0, counts.length - 1);
+    }
+
+    /**
+     * Adds to the count of one bucket, growing the counts to reach it.
+     * @param counts The counts per bucket.
+     * @param bucket The index of the bucket.
+     * @param amount The number to add.
+     * @return The counts, a new array if they had to grow.
+     */
+    private static long[] count(long[] counts, int bucket, long amount) {
+        if (bucket >= counts.length) {
+            counts = Arrays.copyOf(counts, bucket + 1);
+        }
+        counts[bucket] += amount;
+        return counts;
+    }
+}
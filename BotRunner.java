@@ -0,0 +1,252 @@
+import java.io.IOException;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Plays batches of headless games with a bot at the controls, for tuning
+ * the spawn rate, enemy speeds, and the winning rule from many games
+ * instead of by hand. Games run in parallel on a ForkJoinPool, one game
+ * per task. Every game has its own GameWorld, bot, and silent AudioMixer,
+ * so games share no mutable state; the results of the tasks are merged up
+ * the task tree into one BotResults.
+ *
+ * Game i of a batch is created from seed firstSeed + i, so any single game
+ * can be played again from its seed. Enemies spawn at random, or from the
+ * waves of a WaveTimeline shared read-only by all games.
+ *
+ * The main method prints the win rate, score distribution, and
+ * ticks-to-end of a batch:
+ * <pre>
+ * java -Djava.awt.headless=true BotRunner [games] [aim|random] [threads]
+ * </pre>
+ * The spacedefenders.seed property sets the seed of the first game,
+ * spacedefenders.waves a wave file to play, and
+ * spacedefenders.collisions=events the event-driven collision mode.
+ */
+public class BotRunner {
+
+    /**
+     * The most ticks a game is played before it is stopped undecided,
+     * ten minutes of play. Enemies that miss the turret keep descending
+     * below the field, so a game is not always decided.
+     */
+    public static final int DEFAULT_MAX_TICKS = 20_000;
+
+    /**
+     * Whether games predict their collisions instead of scanning for them,
+     * set by spacedefenders.collisions=events. Both give the same results.
+     */
+    private static final boolean EVENT_DRIVEN = "events".equals(
+            System.getProperty("spacedefenders.collisions"));
+
+    /** The number of games played by the main method by default. */
+    private static final int DEFAULT_GAMES = 10_000;
+
+    /** The width of the field, matching the game window. */
+    private static final int FIELD_WIDTH = 700;
+
+    /** The height of the field, matching the game window. */
+    private static final int FIELD_HEIGHT = 500;
+
+    /** The pool the games are played on. */
+    private final ForkJoinPool pool;
+
+    /** The most ticks a game is played. */
+    private final int maxTicks;
+
+    /** The waves every game spawns, or null for random spawns. */
+    private final WaveTimeline waves;
+
+    /**
+     * The games of one range of a batch. A range of one game plays it,
+     * larger ranges are split in halves.
+     */
+    @SuppressWarnings("serial")
+    private final class GameTask extends RecursiveTask<BotResults> {
+
+        private final BotPolicy.Factory policies; // Creates the bots.
+        private final long firstSeed; // The seed of the first game.
+        private final int from; // The first game of the range.
+        private final int to; // The game after the range.
+
+        /**
+         * Constructor for GameTask objects.
+         * @param policies Creates the bot of every game.
+         * @param firstSeed The seed of the first game of the batch.
+         * @param from The first game of the range.
+         * @param to The game after the range.
+         */
+        GameTask(BotPolicy.Factory policies, long firstSeed, int from,
+                int to) {
+            this.policies = policies;
+            this.firstSeed = firstSeed;
+            this.from = from;
+            this.to = to;
+        }
+
+        /**
+         * Plays the game of a range of one, otherwise plays both halves in
+         * parallel and merges their results.
+         * @return The results of the games of the range.
+         */
+        @Override
+        protected BotResults compute() {
+            if (to - from == 1) {
+                long seed = firstSeed + from;
+                BotResults results = new BotResults();
+                play(seed, policies.create(policySeed(seed)), waves,
+                        maxTicks, results);
+                return results;
+            }
+            int middle = (from + to) >>> 1;
+            GameTask second = new GameTask(policies, firstSeed, middle, to);
+            second.fork();
+            BotResults first = new GameTask(policies, firstSeed, from,
+                    middle).compute();
+            return first.merge(second.join());
+        }
+    }
+
+    /**
+     * Constructor for BotRunner objects.
+     * @param pool The pool to play the games on.
+     * @param maxTicks The most ticks a game is played before it is stopped
+     *        undecided.
+     * @param waves The waves every game spawns, or null for random spawns.
+     */
+    public BotRunner(ForkJoinPool pool, int maxTicks, WaveTimeline waves) {
+        this.pool = pool;
+        this.maxTicks = maxTicks;
+        this.waves = waves;
+    }
+
+    /**
+     * Plays a batch of games and waits for all of them to finish.
+     * @param games The number of games to play.
+     * @param firstSeed The seed of the first game, later games use the
+     *        following seeds.
+     * @param policies Creates the bot of every game.
+     * @return The aggregated results of the batch.
+     */
+    public BotResults run(int games, long firstSeed,
+            BotPolicy.Factory policies) {
+        if (games <= 0) {
+            return new BotResults();
+        }
+        return pool.invoke(new GameTask(policies, firstSeed, 0, games));
+    }
+
+    /**
+     * Plays one game with a bot on the calling thread.
+     * @param seed The seed of the game.
+     * @param policy The bot deciding the inputs.
+     * @param waves The waves to spawn, or null for random spawns.
+     * @param maxTicks The most ticks to play before stopping undecided.
+     * @param results Receives the outcome of the game.
+     */
+    public static void play(long seed, BotPolicy policy, WaveTimeline waves,
+            int maxTicks, BotResults results) {
+        GameWorld world = GameWorld.create(FIELD_WIDTH, FIELD_HEIGHT, seed);
+        world.setAudio(new AudioMixer(new NullAudioBackend(), 1));
+        world.setWaves(waves);
+        world.setEventDriven(EVENT_DRIVEN);
+        GameStatus status = GameStatus.RUNNING;
+        int ticks = 0;
+        while (status == GameStatus.RUNNING && ticks < maxTicks) {
+            status = world.tick(policy.nextInputs(world));
+            ticks++;
+        }
+        results.add(status, world.getTotalScore(), ticks);
+    }
+
+    /**
+     * Derives the seed of a game's bot from the seed of the game, so the
+     * bot does not draw the same numbers as the world.
+     * @param seed The seed of the game.
+     * @return The seed of the bot.
+     */
+    private static long policySeed(long seed) {
+        return new SplittableRandom(seed).nextLong();
+    }
+
+    /**
+     * Plays a batch of games and prints the aggregated results.
+     * @param args The number of games, the bot ("aim" or "random"), and
+     *        the number of threads, all optional.
+     * @throws IOException If the wave file cannot be loaded.
+     */
+    public static void main(String[] args) throws IOException {
+        System.setProperty("java.awt.headless", "true");
+        int games = args.length > 0 ? Integer.parseInt(args[0])
+                : DEFAULT_GAMES;
+        String bot = args.length > 1 ? args[1] : "aim";
+        int threads = args.length > 2 ? Integer.parseInt(args[2])
+                : Runtime.getRuntime().availableProcessors();
+        BotPolicy.Factory policies;
+        if (bot.equals("aim")) {
+            policies = seed -> new AimingBot();
+        } else if (bot.equals("random")) {
+            policies = RandomBot::new;
+        } else {
+            System.err.println("Usage: java BotRunner [games] [aim|random] "
+                    + "[threads]");
+            System.exit(2);
+            return;
+        }
+        String wavesFile = System.getProperty("spacedefenders.waves");
+        WaveTimeline waves = wavesFile != null
+                ? WaveTimeline.load(wavesFile) : null;
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        long start = System.nanoTime();
+        BotResults results = new BotRunner(pool, DEFAULT_MAX_TICKS,
+                waves).run(
+                games, Long.getLong("spacedefenders.seed", 1), policies);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        pool.shutdown();
+        print(results, bot, threads, seconds);
+    }
+
+    /**
+     * Prints the results of a batch.
+     * @param results The results to print.
+     * @param bot The name of the bot.
+     * @param threads The number of threads the games were played on.
+     * @param seconds The time the batch took.
+     */
+    private static void print(BotResults results, String bot, int threads,
+            double seconds) {
+        long games = results.getGames();
+        System.out.println(String.format(Locale.ROOT,
+                "%d games by %s on %d threads in %.1f s, %.0f games/s",
+                games, bot, threads, seconds, games / Math.max(seconds,
+                        1e-9)));
+        System.out.println(String.format(Locale.ROOT,
+                "won %.2f%%, lost %.2f%%, unfinished %.2f%%",
+                100.0 * results.getWinRate(),
+                100.0 * results.getLost() / Math.max(games, 1),
+                100.0 * results.getUnfinished() / Math.max(games, 1)));
+        System.out.println(String.format(Locale.ROOT,
+                "score: mean %.1f, p10 %d, p50 %d, p90 %d, max %d",
+                results.getMeanScore(), results.getScorePercentile(10),
+                results.getScorePercentile(50),
+                results.getScorePercentile(90), results.getMaxScore()));
+        System.out.println(String.format(Locale.ROOT,
+                "ticks to end: mean %.1f, p50 %d, p90 %d, p99 %d, max %d",
+                results.getMeanTicks(), results.getTicksPercentile(50),
+                results.getTicksPercentile(90),
+                results.getTicksPercentile(99), results.getMaxTicks()));
+        System.out.println(String.format(Locale.ROOT, "%8s %10s %8s",
+                "score", "games", "share"));
+        for (int score = 0; score <= results.getMaxScore();
+                score += BotResults.SCORE_STEP) {
+            long count = results.getScoreCount(score);
+            if (count > 0) {
+                System.out.println(String.format(Locale.ROOT,
+                        "%8d %10d %7.2f%%", score, count,
+                        100.0 * count / games));
+            }
+        }
+    }
+}
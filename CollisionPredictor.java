@@ -0,0 +1,706 @@
+import java.awt.Rectangle;
+import java.util.Arrays;
+
+/**
+ * Predicts the collisions of a world ahead of time, so a tick only tests
+ * the missiles and enemies that can actually meet in it. Between two wall
+ * bounces an enemy moves the same distance along x every tick, and a
+ * missile moves the same distance up until it leaves the field, so the
+ * first tick in which a missile can hit an enemy, an enemy bounces, or an
+ * enemy can reach the gun follows from their current positions. These
+ * events are kept in a binary min-heap keyed by tick.
+ *
+ * Enemies whose motion is not linear, because they just spawned, bounced,
+ * or were hit, or are still descending or shrinking, are volatile: they
+ * are tested against every missile and the gun each tick, like the scan of
+ * GameWorld, and predicted once their motion is linear again. New missiles
+ * are tested against every enemy once. Events are invalidated lazily: the
+ * version of an enemy is bumped whenever its trajectory changes, and an
+ * event of an older version, or of an entity that is gone, is dropped when
+ * it comes up. A tick with no event due and no volatile enemy costs next
+ * to nothing.
+ *
+ * The predictions only choose the candidates. GameWorld still tests every
+ * candidate with the same swept test and ordering as its scan, so both
+ * modes give the same results.
+ */
+public class CollisionPredictor {
+
+    /** The event of a missile and an enemy meeting. */
+    private static final byte HIT = 0;
+
+    /** The event of an enemy bouncing off a wall. */
+    private static final byte BOUNCE = 1;
+
+    /** The event of an enemy coming close enough to reach the gun. */
+    private static final byte TURRET_CONTACT = 2;
+
+    /** The number of moves returned for events that never happen. */
+    private static final int NEVER = Integer.MAX_VALUE;
+
+    /** The enemies of the world. */
+    private final EntityStore enemies;
+
+    /** The missiles of the world. */
+    private final EntityStore missiles;
+
+    /** The animations of the enemies, telling which ones are volatile. */
+    private final AnimationScheduler animations;
+
+    /** The guns of the turrets, moved in place by the turrets. */
+    private final Rectangle[] guns;
+
+    /** The width bounds enemies bounce off. */
+    private final int width;
+
+    /** The height bounds missiles leave the field at. */
+    private final int height;
+
+    /** The number of collision passes so far, the clock of the events. */
+    private int tick;
+
+    /** The tick of each event, in heap order. */
+    private int[] heapTick = new int[64];
+
+    /** The kind of each event, in heap order. */
+    private byte[] heapKind = new byte[64];
+
+    /** The enemy handle of each event, in heap order. */
+    private int[] heapEnemy = new int[64];
+
+    /** The missile handle of each hit event, in heap order. */
+    private int[] heapMissile = new int[64];
+
+    /** The enemy version each event was predicted for, in heap order. */
+    private int[] heapVersion = new int[64];
+
+    /** The number of events in the heap. */
+    private int heapCount;
+
+    /** The trajectory version of the enemy with each handle index. */
+    private int[] enemyVersion = new int[16];
+
+    /** The volatile enemy listed at each handle index, or -1. */
+    private int[] listedEnemy = new int[16];
+
+    /** The new missile listed at each handle index, or -1. */
+    private int[] listedMissile = new int[16];
+
+    /** The last tick the enemy at each handle index was animating. */
+    private int[] animatingTick = new int[16];
+
+    /** The handles of the volatile enemies. */
+    private int[] volatileEnemies = new int[16];
+
+    /** The number of volatile enemies. */
+    private int volatileEnemyCount;
+
+    /** The handles of the missiles added since the last pass. */
+    private int[] newMissiles = new int[16];
+
+    /** The number of new missiles. */
+    private int newMissileCount;
+
+    /** The missile slot of each candidate pair of the current pass. */
+    private int[] candidateMissile = new int[64];
+
+    /** The enemy slot of each candidate pair of the current pass. */
+    private int[] candidateEnemy = new int[64];
+
+    /** The number of candidate pairs of the current pass. */
+    private int candidateCount;
+
+    /** The enemy slots that may reach the gun in the current pass. */
+    private int[] turretCandidates = new int[16];
+
+    /** The number of turret candidates of the current pass. */
+    private int turretCount;
+
+    /**
+     * Constructor for CollisionPredictor objects. Every entity already in
+     * the stores starts out volatile.
+     * @param enemies The enemies of the world.
+     * @param missiles The missiles of the world.
+     * @param animations The animations of the enemies.
+     * @param guns The guns of the turrets.
+     * @param width The width bounds of the playing field.
+     * @param height The height bounds of the playing field.
+     */
+    public CollisionPredictor(EntityStore enemies, EntityStore missiles,
+            AnimationScheduler animations, Rectangle[] guns, int width,
+            int height) {
+        this.enemies = enemies;
+        this.missiles = missiles;
+        this.animations = animations;
+        this.guns = guns.clone();
+        this.width = width;
+        this.height = height;
+        Arrays.fill(listedEnemy, -1);
+        Arrays.fill(listedMissile, -1);
+        for (int slot = 0; slot < enemies.size(); slot++) {
+            if (enemies.alive[slot]) {
+                enemyChanged(enemies.handleAt(slot));
+            }
+        }
+        for (int slot = 0; slot < missiles.size(); slot++) {
+            if (missiles.alive[slot]) {
+                missileAdded(missiles.handleAt(slot));
+            }
+        }
+    }
+
+    /**
+     * Marks an enemy as volatile, because it was just added or its
+     * trajectory changed. Its pending events are invalidated.
+     * @param handle The handle of the enemy.
+     */
+    public void enemyChanged(int handle) {
+        int index = EntityStore.indexOf(handle);
+        ensureIndex(index);
+        enemyVersion[index]++;
+        if (listedEnemy[index] == handle) {
+            return;
+        }
+        listedEnemy[index] = handle;
+        if (volatileEnemyCount == volatileEnemies.length) {
+            volatileEnemies = Arrays.copyOf(volatileEnemies,
+                    volatileEnemyCount * 2);
+        }
+        volatileEnemies[volatileEnemyCount++] = handle;
+    }
+
+    /**
+     * Registers a missile added to the world, to be tested against every
+     * enemy in the next pass.
+     * @param handle The handle of the missile.
+     */
+    public void missileAdded(int handle) {
+        int index = EntityStore.indexOf(handle);
+        ensureIndex(index);
+        if (listedMissile[index] == handle) {
+            return;
+        }
+        listedMissile[index] = handle;
+        if (newMissileCount == newMissiles.length) {
+            newMissiles = Arrays.copyOf(newMissiles, newMissileCount * 2);
+        }
+        newMissiles[newMissileCount++] = handle;
+    }
+
+    /**
+     * Starts the next collision pass: takes the events due by now off the
+     * heap and collects the candidates of this pass, that is the pairs of
+     * missiles and enemies whose swept boxes may overlap, and the enemies
+     * that may reach the gun. A bounce that is due makes its enemy
+     * volatile.
+     * @return The number of candidate pairs.
+     */
+    public int findCandidates() {
+        tick++;
+        candidateCount = 0;
+        turretCount = 0;
+        while (heapCount > 0 && heapTick[0] <= tick) {
+            byte kind = heapKind[0];
+            int enemy = heapEnemy[0];
+            int missile = heapMissile[0];
+            int version = heapVersion[0];
+            removeTop();
+            int slot = enemies.slotOf(enemy);
+            if (slot < 0 || version(enemy) != version) {
+                continue; // The enemy is gone or changed its trajectory.
+            }
+            if (kind == BOUNCE) {
+                enemyChanged(enemy);
+            } else if (kind == TURRET_CONTACT) {
+                addTurretCandidate(slot);
+                predictTurret(enemy, slot, version);
+            } else {
+                int missileSlot = missiles.slotOf(missile);
+                if (missileSlot >= 0) {
+                    addCandidate(missileSlot, slot);
+                    predictHit(enemy, slot, version, missileSlot);
+                }
+            }
+        }
+        for (int k = 0; k < volatileEnemyCount; k++) {
+            int slot = enemies.slotOf(volatileEnemies[k]);
+            if (slot < 0) {
+                continue;
+            }
+            addTurretCandidate(slot);
+            for (int missileSlot = 0; missileSlot < missiles.size();
+                    missileSlot++) {
+                if (missiles.alive[missileSlot]) {
+                    addCandidate(missileSlot, slot);
+                }
+            }
+        }
+        for (int k = 0; k < newMissileCount; k++) {
+            int missileSlot = missiles.slotOf(newMissiles[k]);
+            if (missileSlot < 0) {
+                continue;
+            }
+            for (int slot = 0; slot < enemies.size(); slot++) {
+                if (enemies.alive[slot]) {
+                    addCandidate(missileSlot, slot);
+                }
+            }
+        }
+        return candidateCount;
+    }
+
+    /**
+     * Ends a collision pass, after its hits were applied: volatile enemies
+     * that no longer animate and the new missiles get their events
+     * predicted from their current positions.
+     */
+    public void predict() {
+        for (int t = 0; t < animations.getActiveCount(); t++) {
+            int handle = animations.getHandle(t);
+            if (enemies.isValid(handle)) {
+                ensureIndex(EntityStore.indexOf(handle));
+                animatingTick[EntityStore.indexOf(handle)] = tick;
+            }
+        }
+        int kept = 0;
+        for (int k = 0; k < volatileEnemyCount; k++) {
+            int handle = volatileEnemies[k];
+            int index = EntityStore.indexOf(handle);
+            int slot = enemies.slotOf(handle);
+            if (slot >= 0 && animatingTick[index] == tick) {
+                volatileEnemies[kept++] = handle; // Still not linear.
+                continue;
+            }
+            if (listedEnemy[index] == handle) {
+                listedEnemy[index] = -1;
+            }
+            if (slot >= 0) {
+                predictEnemy(handle, slot);
+            }
+        }
+        volatileEnemyCount = kept;
+        for (int k = 0; k < newMissileCount; k++) {
+            int handle = newMissiles[k];
+            int index = EntityStore.indexOf(handle);
+            listedMissile[index] = -1;
+            int missileSlot = missiles.slotOf(handle);
+            if (missileSlot < 0) {
+                continue;
+            }
+            // Enemies listed as volatile test this missile every pass.
+            for (int slot = 0; slot < enemies.size(); slot++) {
+                int enemy = enemies.handleAt(slot);
+                if (enemies.alive[slot] && !isVolatile(enemy)) {
+                    predictHit(enemy, slot, version(enemy), missileSlot);
+                }
+            }
+        }
+        newMissileCount = 0;
+    }
+
+    /**
+     * A getter method for the missile of a candidate pair.
+     * @param k The index of the pair, below the count of findCandidates.
+     * @return The slot of the missile.
+     */
+    public int getCandidateMissile(int k) {
+        return candidateMissile[k];
+    }
+
+    /**
+     * A getter method for the enemy of a candidate pair.
+     * @param k The index of the pair, below the count of findCandidates.
+     * @return The slot of the enemy.
+     */
+    public int getCandidateEnemy(int k) {
+        return candidateEnemy[k];
+    }
+
+    /**
+     * A getter method for the number of enemies that may reach the gun in
+     * the current pass.
+     * @return The number of turret candidates.
+     */
+    public int getTurretCandidateCount() {
+        return turretCount;
+    }
+
+    /**
+     * A getter method for an enemy that may reach the gun.
+     * @param k The index of the candidate.
+     * @return The slot of the enemy.
+     */
+    public int getTurretCandidate(int k) {
+        return turretCandidates[k];
+    }
+
+    /**
+     * A getter method for the number of events waiting in the heap,
+     * including ones that will be dropped as stale.
+     * @return The number of pending events.
+     */
+    public int getPending() {
+        return heapCount;
+    }
+
+    /**
+     * A getter method for the number of enemies tested every pass.
+     * @return The number of volatile enemies.
+     */
+    public int getVolatileCount() {
+        return volatileEnemyCount;
+    }
+
+    /**
+     * Predicts the bounce and gun contact of an enemy that moves linearly
+     * from now on, and its hits with every missile that is not new.
+     * @param enemy The handle of the enemy.
+     * @param slot The slot of the enemy.
+     */
+    private void predictEnemy(int enemy, int slot) {
+        int version = version(enemy);
+        schedule(bounceMove(slot), BOUNCE, enemy, -1, version);
+        predictTurret(enemy, slot, version);
+        for (int missileSlot = 0; missileSlot < missiles.size();
+                missileSlot++) {
+            if (missiles.alive[missileSlot]
+                    && !isNew(missiles.handleAt(missileSlot))) {
+                predictHit(enemy, slot, version, missileSlot);
+            }
+        }
+    }
+
+    /**
+     * Predicts the first move in which a missile and a linearly moving
+     * enemy meet, before the enemy bounces and while the missile is still
+     * in the field.
+     * @param enemy The handle of the enemy.
+     * @param slot The slot of the enemy.
+     * @param version The trajectory version of the enemy.
+     * @param missileSlot The slot of the missile.
+     */
+    private void predictHit(int enemy, int slot, int version,
+            int missileSlot) {
+        int horizon = Math.min(bounceMove(slot) - 1,
+                missileMoves(missileSlot));
+        // Both boxes move in a straight line: the missile along y, the
+        // enemy along x.
+        int move = firstMove(missiles.x[missileSlot] - enemies.x[slot],
+                -(int)enemies.speed[slot], missiles.width[missileSlot],
+                enemies.width[slot],
+                missiles.y[missileSlot] - enemies.y[slot],
+                -(int)missiles.speed[missileSlot],
+                missiles.height[missileSlot], enemies.height[slot], horizon);
+        schedule(move, HIT, enemy, missiles.handleAt(missileSlot), version);
+    }
+
+    /**
+     * Predicts the first move in which a linearly moving enemy could reach
+     * any gun, however the turrets move. An enemy that is not level with
+     * a gun never reaches it until its trajectory changes.
+     * @param enemy The handle of the enemy.
+     * @param slot The slot of the enemy.
+     * @param version The trajectory version of the enemy.
+     */
+    private void predictTurret(int enemy, int slot, int version) {
+        int first = NEVER;
+        for (Rectangle gun : guns) {
+            int gapY = enemies.y[slot] - gun.y;
+            if (gapY <= -enemies.height[slot] || gapY >= gun.height) {
+                continue;
+            }
+            int gapX = Math.max(gun.x - enemies.x[slot]
+                    - enemies.width[slot], enemies.x[slot] - gun.x
+                    - gun.width);
+            int closing = Math.abs((int)enemies.speed[slot]) + Turret.STEP;
+            first = Math.min(first, gapX < 0 ? 1 : gapX / closing + 1);
+        }
+        if (first < bounceMove(slot)) {
+            schedule(first, TURRET_CONTACT, enemy, -1, version);
+        }
+    }
+
+    /**
+     * Finds the next move in which an enemy bounces off a wall, by the
+     * rules of Enemy.step.
+     * @param slot The slot of the enemy.
+     * @return The number of moves from now, or NEVER.
+     */
+    private int bounceMove(int slot) {
+        int x = enemies.x[slot];
+        int speed = (int)enemies.speed[slot];
+        int next = x + speed;
+        if (next < 0 || next + enemies.width[slot] > width) {
+            return 1;
+        }
+        if (speed > 0) {
+            return Math.floorDiv(width - enemies.width[slot] - x, speed) + 1;
+        }
+        if (speed < 0) {
+            return Math.floorDiv(x, -speed) + 1;
+        }
+        return NEVER;
+    }
+
+    /**
+     * Counts the moves a missile makes before Missile.step removes it.
+     * @param slot The slot of the missile.
+     * @return The number of moves, or NEVER.
+     */
+    private int missileMoves(int slot) {
+        int y = missiles.y[slot];
+        int speed = (int)missiles.speed[slot];
+        if (y <= 0 || y >= height) {
+            return 0;
+        }
+        if (speed > 0) {
+            return (y + speed - 1) / speed;
+        }
+        if (speed < 0) {
+            return (height - y - speed - 1) / -speed;
+        }
+        return NEVER;
+    }
+
+    /**
+     * Finds the first move in which two boxes moving at constant speeds
+     * overlap, by the rules of Sweep.timeOfImpact. The overlap along each
+     * axis is an open interval of time, measured in moves from now; both
+     * intervals are intersected exactly as fractions.
+     * @param gapX The x-component of the first box minus the second's.
+     * @param moveX How much further the first box moves along x per move.
+     * @param firstWidth The width of the first box.
+     * @param secondWidth The width of the second box.
+     * @param gapY The y-component of the first box minus the second's.
+     * @param moveY How much further the first box moves along y per move.
+     * @param firstHeight The height of the first box.
+     * @param secondHeight The height of the second box.
+     * @param horizon The last move the motion stays linear for.
+     * @return The first move with an overlap, or -1 if there is none up to
+     *         the horizon.
+     */
+    private static int firstMove(int gapX, int moveX, int firstWidth,
+            int secondWidth, int gapY, int moveY, int firstHeight,
+            int secondHeight, int horizon) {
+        // The interval starts no earlier than now and ends at the horizon.
+        long enterNum = 0;
+        long enterDen = 1;
+        long exitNum = horizon;
+        long exitDen = 1;
+        for (int axis = 0; axis < 2; axis++) {
+            int gap = axis == 0 ? gapX : gapY;
+            int move = axis == 0 ? moveX : moveY;
+            int first = axis == 0 ? firstWidth : firstHeight;
+            int second = axis == 0 ? secondWidth : secondHeight;
+            if (move == 0) {
+                if (gap <= -first || gap >= second) {
+                    return -1;
+                }
+                continue;
+            }
+            long from = move > 0 ? -first - gap : gap - second;
+            long to = move > 0 ? second - gap : gap + first;
+            long den = Math.abs(move);
+            if (from * enterDen > enterNum * den) {
+                enterNum = from;
+                enterDen = den;
+            }
+            if (to * exitDen < exitNum * den) {
+                exitNum = to;
+                exitDen = den;
+            }
+        }
+        if (enterNum * exitDen >= exitNum * enterDen) {
+            return -1;
+        }
+        // Move n sweeps the time from n - 1 to n.
+        return (int)(enterNum / enterDen) + 1;
+    }
+
+    /**
+     * Adds an event to the heap, unless it never happens.
+     * @param moves The number of moves from now the event happens in, or
+     *        a value below 1 or NEVER if it does not happen.
+     * @param kind The kind of the event.
+     * @param enemy The handle of the enemy.
+     * @param missile The handle of the missile, or -1.
+     * @param version The trajectory version of the enemy.
+     */
+    private void schedule(int moves, byte kind, int enemy, int missile,
+            int version) {
+        if (moves < 1 || moves > Integer.MAX_VALUE - tick) {
+            return;
+        }
+        if (heapCount == heapTick.length) {
+            growHeap(heapCount * 2);
+        }
+        // The pass after move n from now finds the overlap of move n.
+        int due = tick + moves;
+        int i = heapCount++;
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (heapTick[parent] <= due) {
+                break;
+            }
+            set(i, parent);
+            i = parent;
+        }
+        heapTick[i] = due;
+        heapKind[i] = kind;
+        heapEnemy[i] = enemy;
+        heapMissile[i] = missile;
+        heapVersion[i] = version;
+    }
+
+    /**
+     * Removes the earliest event by moving the last event to the top and
+     * sifting it down.
+     */
+    private void removeTop() {
+        int last = --heapCount;
+        int due = heapTick[last];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= heapCount) {
+                break;
+            }
+            if (child + 1 < heapCount
+                    && heapTick[child + 1] < heapTick[child]) {
+                child++;
+            }
+            if (heapTick[child] >= due) {
+                break;
+            }
+            set(i, child);
+            i = child;
+        }
+        set(i, last);
+    }
+
+    /**
+     * Copies an event to another position of the heap.
+     * @param to The position to copy to.
+     * @param from The position to copy from.
+     */
+    private void set(int to, int from) {
+        heapTick[to] = heapTick[from];
+        heapKind[to] = heapKind[from];
+        heapEnemy[to] = heapEnemy[from];
+        heapMissile[to] = heapMissile[from];
+        heapVersion[to] = heapVersion[from];
+    }
+
+    /**
+     * Adds a missile and an enemy to the candidates of this pass.
+     * @param missileSlot The slot of the missile.
+     * @param slot The slot of the enemy.
+     */
+    private void addCandidate(int missileSlot, int slot) {
+        if (candidateCount == candidateMissile.length) {
+            candidateMissile = Arrays.copyOf(candidateMissile,
+                    candidateCount * 2);
+            candidateEnemy = Arrays.copyOf(candidateEnemy,
+                    candidateCount * 2);
+        }
+        candidateMissile[candidateCount] = missileSlot;
+        candidateEnemy[candidateCount++] = slot;
+    }
+
+    /**
+     * Adds an enemy to the turret candidates of this pass.
+     * @param slot The slot of the enemy.
+     */
+    private void addTurretCandidate(int slot) {
+        if (turretCount == turretCandidates.length) {
+            turretCandidates = Arrays.copyOf(turretCandidates,
+                    turretCount * 2);
+        }
+        turretCandidates[turretCount++] = slot;
+    }
+
+    /**
+     * A getter method for the trajectory version of an enemy.
+     * @param enemy The handle of the enemy.
+     * @return The version its events are predicted for.
+     */
+    private int version(int enemy) {
+        int index = EntityStore.indexOf(enemy);
+        ensureIndex(index);
+        return enemyVersion[index];
+    }
+
+    /**
+     * Determines whether an enemy is tested against every missile each
+     * pass.
+     * @param enemy The handle of the enemy.
+     * @return True if the enemy is volatile.
+     */
+    private boolean isVolatile(int enemy) {
+        int index = EntityStore.indexOf(enemy);
+        return index < listedEnemy.length && listedEnemy[index] == enemy;
+    }
+
+    /**
+     * Determines whether a missile was added since the last pass.
+     * @param missile The handle of the missile.
+     * @return True if the missile is new.
+     */
+    private boolean isNew(int missile) {
+        int index = EntityStore.indexOf(missile);
+        return index < listedMissile.length && listedMissile[index] == missile;
+    }
+
+    /**
+     * Makes room for the given number of enemies, so predicting them does
+     * not grow the per-handle arrays, the candidate lists, or, with a few
+     * events pending per enemy, the heap.
+     * @param count The number of enemies to make room for.
+     */
+    public void ensureCapacity(int count) {
+        ensureIndex(Math.max(count, missiles.x.length) - 1);
+        if (volatileEnemies.length < count) {
+            volatileEnemies = Arrays.copyOf(volatileEnemies, count);
+        }
+        if (turretCandidates.length < count) {
+            turretCandidates = Arrays.copyOf(turretCandidates, count);
+        }
+        if (candidateMissile.length < count) {
+            candidateMissile = Arrays.copyOf(candidateMissile, count);
+            candidateEnemy = Arrays.copyOf(candidateEnemy, count);
+        }
+        if (heapTick.length < 4 * count) {
+            growHeap(4 * count);
+        }
+    }
+
+    /**
+     * Grows the heap arrays to the given capacity.
+     * @param capacity The new number of entries the heap has room for.
+     */
+    private void growHeap(int capacity) {
+        heapTick = Arrays.copyOf(heapTick, capacity);
+        heapKind = Arrays.copyOf(heapKind, capacity);
+        heapEnemy = Arrays.copyOf(heapEnemy, capacity);
+        heapMissile = Arrays.copyOf(heapMissile, capacity);
+        heapVersion = Arrays.copyOf(heapVersion, capacity);
+    }
+
+    /**
+     * Makes room in the per-handle arrays for the given handle index.
+     * @param index The index of a handle.
+     */
+    private void ensureIndex(int index) {
+        if (index < enemyVersion.length) {
+            return;
+        }
+        int old = enemyVersion.length;
+        int capacity = Math.max(index + 1, old * 2);
+        enemyVersion = Arrays.copyOf(enemyVersion, capacity);
+        listedEnemy = Arrays.copyOf(listedEnemy, capacity);
+        listedMissile = Arrays.copyOf(listedMissile, capacity);
+        animatingTick = Arrays.copyOf(animatingTick, capacity);
+        Arrays.fill(listedEnemy, old, capacity, -1);
+        Arrays.fill(listedMissile, old, capacity, -1);
+    }
+}
@@ -0,0 +1,189 @@
+import java.awt.Rectangle;
+
+/**
+ * The parts of a drawing surface that changed since the last frame, as a
+ * small set of rectangles. Each added rectangle is merged into an existing
+ * one when their union wastes little area, so the old and new bounds of a
+ * moving entity become one rectangle, and nearby entities share one. At
+ * most MAX_RECTS rectangles are kept; past that, a new rectangle is merged
+ * into the one it grows least.
+ */
+public class DamageRegion {
+
+    /** The most rectangles kept before merging is forced. */
+    public static final int MAX_RECTS = 16;
+
+    /**
+     * The area in pixels two rectangles may waste when merged. Redrawing a
+     * few extra pixels is cheaper than redrawing the scene for one more
+     * rectangle.
+     */
+    private static final int MERGE_SLACK = 32 * 32;
+
+    /** The width of the surface, rectangles are clipped to it. */
+    private int width;
+
+    /** The height of the surface, rectangles are clipped to it. */
+    private int height;
+
+    /** The x-component of each rectangle. */
+    private final int[] x = new int[MAX_RECTS];
+
+    /** The y-component of each rectangle. */
+    private final int[] y = new int[MAX_RECTS];
+
+    /** The width of each rectangle. */
+    private final int[] w = new int[MAX_RECTS];
+
+    /** The height of each rectangle. */
+    private final int[] h = new int[MAX_RECTS];
+
+    /** The number of rectangles. */
+    private int count;
+
+    /**
+     * Removes all rectangles and sets the size of the surface.
+     * @param width The width of the surface.
+     * @param height The height of the surface.
+     */
+    public void reset(int width, int height) {
+        this.width = width;
+        this.height = height;
+        count = 0;
+    }
+
+    /**
+     * Adds a changed area, clipped to the surface.
+     * @param rx The x-component of the area.
+     * @param ry The y-component of the area.
+     * @param rw The width of the area.
+     * @param rh The height of the area.
+     */
+    public void add(int rx, int ry, int rw, int rh) {
+        int left = Math.max(0, rx);
+        int top = Math.max(0, ry);
+        int right = Math.min(width, rx + rw);
+        int bottom = Math.min(height, ry + rh);
+        if (right <= left || bottom <= top) {
+            return;
+        }
+        boolean merged = true;
+        while (merged) {
+            merged = false;
+            for (int i = 0; i < count; i++) {
+                if (waste(i, left, top, right, bottom) <= MERGE_SLACK) {
+                    left = Math.min(left, x[i]);
+                    top = Math.min(top, y[i]);
+                    right = Math.max(right, x[i] + w[i]);
+                    bottom = Math.max(bottom, y[i] + h[i]);
+                    removeAt(i);
+                    // The union may now overlap rectangles already checked.
+                    merged = true;
+                    break;
+                }
+            }
+        }
+        if (count == MAX_RECTS) {
+            int best = 0;
+            for (int i = 1; i < count; i++) {
+                if (waste(i, left, top, right, bottom)
+                        < waste(best, left, top, right, bottom)) {
+                    best = i;
+                }
+            }
+            left = Math.min(left, x[best]);
+            top = Math.min(top, y[best]);
+            right = Math.max(right, x[best] + w[best]);
+            bottom = Math.max(bottom, y[best] + h[best]);
+            removeAt(best);
+        }
+        x[count] = left;
+        y[count] = top;
+        w[count] = right - left;
+        h[count] = bottom - top;
+        count++;
+    }
+
+    /**
+     * A getter method for the number of rectangles.
+     * @return The number of rectangles.
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Stores one rectangle of the region.
+     * @param i The index of the rectangle, below size().
+     * @param bounds The rectangle receiving the bounds.
+     */
+    public void get(int i, Rectangle bounds) {
+        bounds.setBounds(x[i], y[i], w[i], h[i]);
+    }
+
+    /**
+     * Adds up the area of all rectangles. Overlapping parts count once per
+     * rectangle, since they are redrawn once per rectangle.
+     * @return The area of the region in pixels.
+     */
+    public long area() {
+        long area = 0;
+        for (int i = 0; i < count; i++) {
+            area += (long)w[i] * h[i];
+        }
+        return area;
+    }
+
+    /**
+     * Stores the smallest rectangle containing the whole region.
+     * @param bounds The rectangle receiving the bounds, left empty if the
+     *        region is empty.
+     */
+    public void getBounds(Rectangle bounds) {
+        if (count == 0) {
+            bounds.setBounds(0, 0, 0, 0);
+            return;
+        }
+        int left = Integer.MAX_VALUE;
+        int top = Integer.MAX_VALUE;
+        int right = Integer.MIN_VALUE;
+        int bottom = Integer.MIN_VALUE;
+        for (int i = 0; i < count; i++) {
+            left = Math.min(left, x[i]);
+            top = Math.min(top, y[i]);
+            right = Math.max(right, x[i] + w[i]);
+            bottom = Math.max(bottom, y[i] + h[i]);
+        }
+        bounds.setBounds(left, top, right - left, bottom - top);
+    }
+
+    /**
+     * Computes how much area merging a rectangle with a given one would
+     * add beyond the two rectangles.
+     * @param i The index of the existing rectangle.
+     * @param left The left edge of the other rectangle.
+     * @param top The top edge of the other rectangle.
+     * @param right The right edge of the other rectangle.
+     * @param bottom The bottom edge of the other rectangle.
+     * @return The area of the union less both areas, in pixels.
+     */
+    private long waste(int i, int left, int top, int right, int bottom) {
+        long unionWidth = Math.max(right, x[i] + w[i]) - Math.min(left, x[i]);
+        long unionHeight = Math.max(bottom, y[i] + h[i])
+                - Math.min(top, y[i]);
+        return unionWidth * unionHeight - (long)w[i] * h[i]
+                - (long)(right - left) * (bottom - top);
+    }
+
+    /**
+     * Removes a rectangle by moving the last one into its place.
+     * @param i The index of the rectangle to remove.
+     */
+    private void removeAt(int i) {
+        count--;
+        x[i] = x[count];
+        y[i] = y[count];
+        w[i] = w[count];
+        h[i] = h[count];
+    }
+}
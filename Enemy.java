@@ -1,12 +1,18 @@
-import java.awt.Color;
-import java.awt.Graphics;
-import java.util.ArrayList;
-import javax.swing.JComponent;
+import java.awt.Graphics2D;
+import java.util.Random;
 
-public abstract class Enemy extends JComponent {
+public abstract class Enemy {
     
-    private double enemySpeed; // The enemys speed.
-    private Color enemyColor; // The enemys color.
+    /**
+     * The size step of the sprites drawn while an enemy shrinks.
+     */
+    private static final int SIZE_BUCKET = 4;
+    
+    private final byte kind; // The EntityStore kind of this enemy type.
+    private final int size; // The starting width and height of the enemy.
+    private final double startSpeed; // The starting speed of the enemy.
+    private final int shrinkAmount; // The amount to shrink on every hit.
+    private final int scoreValue; // The score gained for every hit.
     
     /**
      * Sound played when an enemy is defeated.
@@ -19,164 +25,232 @@ public abstract class Enemy extends JComponent {
     private Sound enemyHit = new Sound("enemyHit.wav");
     
     /**
-     * Constructor for Enemy objects, initializing position,
-     * bounds, and speed.
-     * @param x The x-component of the Enemys position.
-     * @param y The y-component of the Enemys position.
-     * @param height The height of the Enemy object.
-     * @param width The width of the Enemy object.
-     * @param enemySpeed The speed of the Enemy object.
+     * Speeds up an enemy once it has finished descending.
      */
-    public Enemy(int x, int y, int height, int width, double enemySpeed) {
-        setBounds(x, y, width, height);
-        this.enemySpeed = enemySpeed;
+    private final AnimationScheduler.Callback speedUp =
+            (store, handle, audio) -> {
+        int slot = store.slotOf(handle);
+        if (slot < 0) {
+            return; // Enemy was defeated mid-transition.
+        }
+        // Increase enemy speed with each bounce.
+        if (store.speed[slot] > 0) {
+            store.speed[slot] += 0.3;
+        } else {
+            store.speed[slot] -= 0.3;
+        }
+    };
+    
+    /**
+     * Plays enemyHit once a surviving enemy has finished shrinking.
+     */
+    private final AnimationScheduler.Callback playHit =
+            (store, handle, audio) -> enemyHit.play(audio);
+    
+    /**
+     * Plays enemyKilled once a defeated enemy has finished shrinking.
+     */
+    private final AnimationScheduler.Callback playKilled =
+            (store, handle, audio) -> enemyKilled.play(audio);
+    
+    /**
+     * Constructor for Enemy types. An Enemy object holds the behavior
+     * shared by every enemy of one kind, while the state of each enemy
+     * lives in an EntityStore.
+     * @param kind The EntityStore kind of this enemy type.
+     * @param size The starting width and height of the enemy.
+     * @param startSpeed The starting speed of the enemy.
+     * @param shrinkAmount The amount to shrink on every hit.
+     * @param scoreValue The score gained for every hit.
+     */
+    protected Enemy(byte kind, int size, double startSpeed,
+            int shrinkAmount, int scoreValue) {
+        this.kind = kind;
+        this.size = size;
+        this.startSpeed = startSpeed;
+        this.shrinkAmount = shrinkAmount;
+        this.scoreValue = scoreValue;
     }
     
     /**
-     * Determines what occurs when a Missile hits an Enemy.
-     * This method is overridden in derived classes.
-     * @param list An ArrayList of all current active Enemy objects.
-     * @param enemy The index of the given Enemy object within list.
+     * Finds the Enemy type for the given EntityStore kind.
+     * @param kind The kind of the enemy.
+     * @return The Enemy type handling that kind.
+     */
+    public static Enemy forKind(byte kind) {
+        if (kind == EntityStore.KIND_BIG_ENEMY) {
+            return BigEnemy.INSTANCE;
+        }
+        return SmallEnemy.INSTANCE;
+    }
+    
+    /**
+     * Adds a new enemy of this type to the store at a random position
+     * within the given bounds, with a random color.
+     * @param store The store holding all active enemies.
+     * @param rand The source of randomness for position and color.
+     * @param frameWidth The width bounds.
+     * @param frameHeight The height bounds.
+     * @return The handle of the new enemy.
      */
-    public abstract void processCollision(ArrayList<Enemy> list, int enemy);
+    public int spawn(EntityStore store, Random rand, int frameWidth,
+            int frameHeight) {
+        return store.add(kind, rand.nextInt(frameWidth - size),
+                rand.nextInt(frameHeight - size), size, size, startSpeed,
+                Palette.randomIndex(rand));
+    }
     
     /**
-     * A setter method for the color of an Enemy object (set randomly).
+     * Determines what occurs when a Missile hits an Enemy.
+     * This method is overridden in derived classes.
+     * @param store The store holding all active enemies.
+     * @param animations The scheduler running the enemy animations.
+     * @param slot The slot of the given enemy within store.
      */
-    public abstract void setColor();
+    public abstract void processCollision(EntityStore store,
+            AnimationScheduler animations, int slot);
     
     /**
      * Computes and updates the next position of the Enemy. The bounds
      * of the enemy must always remain be within the specified frameWidth
      * and frameHeight.
+     * @param store The store holding all active enemies.
+     * @param animations The scheduler running the enemy animations.
+     * @param slot The slot of the given enemy within store.
      * @param frameWidth The width bounds for movement.
      * @param frameHeight The height bounds for movement.
      */
-    public abstract void move(int frameWidth, int frameHeight);
+    public abstract void move(EntityStore store,
+            AnimationScheduler animations, int slot,
+            int frameWidth, int frameHeight);
     
     /**
-     * Draws a filled circle using the Enemys color and its bounds.
-     * @param g A Graphics object for drawing.
+     * Moves the given enemy horizontally by its speed, turning it around
+     * when it leaves the given width. Only the given slot is read and
+     * written, so different slots may be stepped from different threads.
+     * @param store The store holding all active enemies.
+     * @param slot The slot of the given enemy within store.
+     * @param frameWidth The width bounds for movement.
+     * @return True if the enemy hit a wall and should move down.
      */
-    public void paintComponent(Graphics g) {
-        g.setColor(enemyColor);
-        g.fillOval(getX(), getY(), getWidth(), getHeight());
+    public boolean step(EntityStore store, int slot, int frameWidth) {
+        int updated = store.x[slot] + (int)store.speed[slot];
+        boolean bounced = updated + store.width[slot] > frameWidth
+                || updated < 0;
+        if (bounced) {
+            store.speed[slot] *= -1; // Turn around enemy.
+        }
+        store.x[slot] = updated;
+        return bounced;
     }
     
     /**
-     * A getter method for the speed of an Enemy object.
-     * @return The speed of the Enemy object.
+     * Adds a new enemy of this type to the store at the given position,
+     * with a random color.
+     * @param store The store holding all active enemies.
+     * @param rand The source of randomness for the color.
+     * @param x The x-component of the enemy's position.
+     * @param y The y-component of the enemy's position.
+     * @return The handle of the new enemy.
      */
-    public double getEnemySpeed() {
-        return enemySpeed;
+    public int spawnAt(EntityStore store, Random rand, int x, int y) {
+        return store.add(kind, x, y, size, size, startSpeed,
+                Palette.randomIndex(rand));
     }
     
     /**
-     * A setter method for the speed of an Enemy object.
-     * @param enemySpeed The speed to assign to the Enemy object.
+     * Draws a filled circle for every enemy in the store using the
+     * enemy's color and its bounds, placed between its previous and
+     * current position. Enemies are drawn grouped by color, as sprite
+     * blits from the given cache.
+     * @param g A Graphics2D object for drawing.
+     * @param sprites The sprite cache, validated for g.
+     * @param store The store holding all active enemies.
+     * @param alpha 0 for the previous position up to 1 for the current one.
      */
-    public void setEnemySpeed(double enemySpeed) {
-        this.enemySpeed = enemySpeed;
+    public static void paintAll(Graphics2D g, SpriteCache sprites,
+            EntityStore store, double alpha) {
+        int[] order = sprites.groupByColor(store);
+        for (int i = 0; i < store.size(); i++) {
+            int slot = order[i];
+            int width = store.width[slot];
+            int size = forKind(store.kind[slot]).spriteSize(width);
+            int offset = (width - size) / 2;
+            sprites.drawOval(g, store.interpolateX(slot, alpha) + offset,
+                    store.interpolateY(slot, alpha) + offset, size,
+                    store.colorIndex[slot]);
+        }
     }
     
     /**
-     * A getter method for the color of an Enemy object.
-     * @return The color of the Enemy object.
+     * Chooses the size to draw an enemy of the given width at. Enemies at
+     * rest, before or after a whole shrink, are drawn at their exact size.
+     * In the middle of a shrink the size is rounded down to a multiple of
+     * SIZE_BUCKET, so shrinking reuses a few sprites instead of needing
+     * one for every pixel. The sprite never exceeds the enemy's bounds.
+     * @param width The current width and height of the enemy.
+     * @return The size of the sprite to draw, centered on the enemy.
      */
-    public Color getEnemyColor() {
-        return enemyColor;
+    private int spriteSize(int width) {
+        // A whole shrink takes shrinkAmount + 1 steps of one pixel.
+        if ((size - width) % (shrinkAmount + 1) == 0) {
+            return width;
+        }
+        if (width < SIZE_BUCKET) {
+            return width;
+        }
+        return width / SIZE_BUCKET * SIZE_BUCKET;
     }
     
     /**
-     * A setter method for the color of an Enemy object.
-     * @param enemyColor The color to assign to the Enemy object.
+     * A getter method for the starting width and height of this type.
+     * @return The size of a new enemy.
      */
-    public void setEnemyColor(Color enemyColor) {
-        this.enemyColor = enemyColor;
+    public int getSize() {
+        return size;
     }
     
     /**
-     * Smoothly transitions the referencing enemy to a lower Y-position.
-     * Enemies increase speed after each movement downwards.
+     * A getter method for the score gained for every hit.
+     * @return The score value of this enemy type.
      */
-    public void transitionY() {
-        // Create new thread to handle vertical transition.
-        Thread t = new Thread() {
-            public void run() {
-                for (int y = 0; y <= getHeight(); y++) {
-                    setBounds(getX(), getY() + 1, getWidth(), getHeight());
-                    repaint(); // Apply bound changes.
-                    try {
-                        // 10ms delay to visualize changes.
-                        Thread.sleep(10);
-                    } catch (InterruptedException e) {
-                        e.printStackTrace();
-                    }
-                }
-                // Increase enemy speed with each bounce.
-                if (getEnemySpeed() > 0) {
-                    setEnemySpeed(getEnemySpeed() + 0.3);
-                } else {
-                    setEnemySpeed(getEnemySpeed() - 0.3);
-                }
-            }
-        };
-        // Starts thread for vertical transition.
-        t.start();
+    public int getScoreValue() {
+        return scoreValue;
     }
     
     /**
-     * Smoothly and radially shrinks the given enemy (by 20 for a BigEnemy
-     * or by 10 for a SmallEnemy) after collision processing. Plays the
-     * appropriate sound after collision detection.
-     * @param list An ArrayList of all current active Enemy objects.
-     * @param amount The amount by which to shrink the given enemy.
-     * @param index The index of the given Enemy object within list.
+     * Smoothly transitions the given enemy to a lower Y-position.
+     * Enemies increase speed after each movement downwards.
+     * @param store The store holding all active enemies.
+     * @param animations The scheduler running the enemy animations.
+     * @param slot The slot of the given enemy within store.
      */
-    public void radialShrink(ArrayList<Enemy> list, int amount, int index) {
-        int updatedWidth = getWidth() - amount;
-        int updatedHeight = getHeight() - amount;
-        startThread(list, amount, index, updatedWidth, updatedHeight);
-        if (updatedWidth <= 0 || updatedHeight <= 0) {
-            list.remove(index);
-        }
+    public void transitionY(EntityStore store, AnimationScheduler animations,
+            int slot) {
+        animations.start(AnimationScheduler.DESCEND, store.handleAt(slot),
+                store.height[slot] + 1, speedUp);
     }
     
     /**
-     * Starts the thread used in the radialShrink method.
-     * @param list An ArrayList of all current active Enemy objects.
-     * @param amount The amount by which to shrink the given enemy.
-     * @param index The index of the given Enemy object within list.
-     * @param updatedWidth The new proposed width for the enemy.
-     * @param updatedHeight The new proposed height for the enemy. 
-     */
-    public void startThread(ArrayList<Enemy> list, int amount, int index,
-            int updatedWidth, int updatedHeight) {
-        Enemy enemy = list.get(index);
-        Thread t = new Thread() {
-            public void run() {
-                for (int i = 0; i <= amount; i++) {
-                    // Center enemy as it shrinks (add half pixel every frame).
-                    enemy.setBounds(enemy.getX() + (i % 2 == 0 ? 1 : 0),
-                            enemy.getY() + (i % 2 == 0 ? 1 : 0),
-                            enemy.getWidth() - 1,
-                            enemy.getHeight() - 1);
-                    try {
-                        // 10ms delay to visualize change.
-                        Thread.sleep(10);
-                    } catch (InterruptedException e) {
-                        e.printStackTrace();
-                    }
-                }
-                // Play enemyHit, unless enemy is already defeated.
-                if (updatedWidth <= 0 || updatedHeight <= 0) {
-                    enemyKilled.play();
-                } else {
-                    enemyHit.play();
-                }
-            }
-        };
-        // Starts thread for enemy shrinking.
-        t.start();
+     * Smoothly and radially shrinks the given enemy (by 28 for a BigEnemy
+     * or by 30 for a SmallEnemy) after collision processing. Plays the
+     * appropriate sound once the shrinking has finished. A defeated enemy
+     * is killed, keeping its slot until the next compaction.
+     * @param store The store holding all active enemies.
+     * @param animations The scheduler running the enemy animations.
+     * @param slot The slot of the given enemy within store.
+     */
+    public void radialShrink(EntityStore store, AnimationScheduler animations,
+            int slot) {
+        int updatedWidth = store.width[slot] - shrinkAmount;
+        int updatedHeight = store.height[slot] - shrinkAmount;
+        int handle = store.handleAt(slot);
+        // Play enemyHit, unless enemy is already defeated.
+        boolean defeated = updatedWidth <= 0 || updatedHeight <= 0;
+        animations.start(AnimationScheduler.SHRINK, handle, shrinkAmount + 1,
+                defeated ? playKilled : playHit);
+        if (defeated) {
+            store.kill(handle);
+        }
     }
 }
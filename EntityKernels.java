@@ -0,0 +1,97 @@
+/**
+ * The arithmetic the game applies to every entity of a store each tick,
+ * over ranges of slots of the primitive arrays of an EntityStore: moving
+ * enemies and missiles, and testing the boxes they swept through against
+ * one box. Slots that are not alive are left unchanged and never reported.
+ *
+ * Every implementation gives exactly the results of ScalarEntityKernels.
+ * The kernels of the game are chosen once at startup by select.
+ */
+public interface EntityKernels {
+
+    /**
+     * The name of the class using the incubating Vector API. It is
+     * compiled separately from simd/, so the game builds and runs without
+     * the incubator module.
+     */
+    String VECTOR_CLASS = "VectorEntityKernels";
+
+    /**
+     * The kernels of the game, chosen by select when the game starts.
+     */
+    EntityKernels DEFAULT = select();
+
+    /**
+     * Moves the enemies in a range of slots horizontally by their speed,
+     * turning each one around when it leaves the given width, as
+     * Enemy.step does.
+     * @param store The store holding all active enemies.
+     * @param from The first slot of the range.
+     * @param to The slot after the range.
+     * @param frameWidth The width bounds for movement.
+     * @param bounced Receives, per slot of the range, true if the enemy
+     *        hit a wall and should move down.
+     */
+    void stepEnemies(EntityStore store, int from, int to, int frameWidth,
+            boolean[] bounced);
+
+    /**
+     * Moves the missiles in a range of slots up by their speed, unless
+     * they have gone off panel, as Missile.step does.
+     * @param store The store holding all active missiles.
+     * @param from The first slot of the range.
+     * @param to The slot after the range.
+     * @param panelHeight The height bounds for movement.
+     * @param despawned Receives, per slot of the range, true if the
+     *        missile is off panel and should be killed.
+     */
+    void stepMissiles(EntityStore store, int from, int to, int panelHeight,
+            boolean[] despawned);
+
+    /**
+     * Finds the entities whose box, swept from its previous to its current
+     * position, overlaps the given box, using the same rules as
+     * Rectangle.intersects. Every entity whose swept box overlaps another
+     * moving box during the tick is among them, so only these need the
+     * exact test of Sweep.
+     * @param store The store holding the entities.
+     * @param x The x-component of the box.
+     * @param y The y-component of the box.
+     * @param width The width of the box.
+     * @param height The height of the box.
+     * @param result Receives the slots found, in ascending order. Must hold
+     *        at least store.size() entries.
+     * @return The number of slots found.
+     */
+    int sweptOverlaps(EntityStore store, int x, int y, int width,
+            int height, int[] result);
+
+    /**
+     * Runs the kernels on scenes of their own until the JIT has compiled
+     * every path through them, so the first ticks of a game do not run
+     * them interpreted. Takes a while, so the game calls it once, on a
+     * thread of its own, when it starts. The scalar kernels compile
+     * quickly enough during play and do nothing here.
+     */
+    default void warmUp() {
+    }
+
+    /**
+     * Chooses the kernels of the game: the Vector API kernels if they
+     * were compiled and the incubator module is present, otherwise the
+     * scalar ones. The system property spacedefenders.simd=off always
+     * chooses the scalar kernels.
+     * @return The chosen kernels.
+     */
+    static EntityKernels select() {
+        if (!"off".equals(System.getProperty("spacedefenders.simd"))) {
+            try {
+                return (EntityKernels)Class.forName(VECTOR_CLASS)
+                        .getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                // Not compiled, or run without the incubator module.
+            }
+        }
+        return new ScalarEntityKernels();
+    }
+}
@@ -0,0 +1,449 @@
+import java.util.Arrays;
+
+/**
+ * A compact store for game entities. Instead of one Swing component per
+ * entity, the state of every entity is kept in parallel primitive arrays
+ * indexed by slot, so the game loop can walk positions and sizes linearly.
+ * Entities occupy slots 0 to size() - 1; removing an entity moves the last
+ * entity into its slot.
+ *
+ * During a tick, entities are killed rather than removed: kill marks the
+ * slot dead and invalidates the handle, but leaves every slot where it is,
+ * so loops over the slots never skip or revisit an entity. Killed slots
+ * stay counted by size() and must be skipped by checking alive, until
+ * compact removes them all in one pass.
+ *
+ * Because slots change on removal, entities are referred to from outside a
+ * single pass by handle. A handle stays valid until its entity is killed
+ * or removed, and a handle of a removed entity is never mistaken for a
+ * newer entity that reuses the same handle index: every reuse of an index
+ * moves it to the next generation, and an index that has been through
+ * every generation a handle can hold is retired instead of reused.
+ */
+public class EntityStore {
+
+    /** Kind of a Missile entity. */
+    public static final byte KIND_MISSILE = 0;
+
+    /** Kind of a SmallEnemy entity. */
+    public static final byte KIND_SMALL_ENEMY = 1;
+
+    /** Kind of a BigEnemy entity. */
+    public static final byte KIND_BIG_ENEMY = 2;
+
+    /** The number of low handle bits holding the handle index. */
+    private static final int INDEX_BITS = 20;
+
+    /** The highest handle index a store hands out, plus one. */
+    public static final int MAX_INDEX = 1 << INDEX_BITS;
+
+    /** Mask extracting the handle index from a handle. */
+    private static final int INDEX_MASK = MAX_INDEX - 1;
+
+    /**
+     * The number of generations a handle can hold while staying positive.
+     * An index whose generation reaches this is retired.
+     */
+    private static final int GENERATIONS = 1 << (31 - INDEX_BITS);
+
+    /** The x-component of each entity's position. */
+    int[] x;
+
+    /** The y-component of each entity's position. */
+    int[] y;
+
+    /** The x-component of each entity's position before the last tick. */
+    int[] previousX;
+
+    /** The y-component of each entity's position before the last tick. */
+    int[] previousY;
+
+    /** The width of each entity. */
+    int[] width;
+
+    /** The height of each entity. */
+    int[] height;
+
+    /** The speed of each entity, in pixels per tick. */
+    double[] speed;
+
+    /** The Palette index of each entity's color. */
+    byte[] colorIndex;
+
+    /** The kind of each entity, one of the KIND constants. */
+    byte[] kind;
+
+    /** Whether each slot holds a live entity, false once it is killed. */
+    boolean[] alive;
+
+    /** The slots killed since the last compact, in the order killed. */
+    private int[] deadSlots;
+
+    /** The number of entries in deadSlots. */
+    private int deadCount;
+
+    /** The handle of the entity in each slot. */
+    private int[] slotHandle;
+
+    /** The slot of each handle index, or -1 if the index is unused. */
+    private int[] handleSlot;
+
+    /** The current generation of each handle index. */
+    private int[] handleGeneration;
+
+    /**
+     * Handle indices released by kill, available for reuse. Retired
+     * indices are left out.
+     */
+    private int[] freeHandles;
+
+    /** The number of entries in freeHandles. */
+    private int freeCount;
+
+    /** The number of handle indices handed out so far. */
+    private int handleCount;
+
+    /** The number of live entities. */
+    private int size;
+
+    /**
+     * Constructor for EntityStore objects, allocating room for the given
+     * number of entities. The store grows as needed.
+     * @param capacity The initial number of entities to make room for.
+     */
+    public EntityStore(int capacity) {
+        capacity = Math.max(1, capacity);
+        x = new int[capacity];
+        y = new int[capacity];
+        previousX = new int[capacity];
+        previousY = new int[capacity];
+        width = new int[capacity];
+        height = new int[capacity];
+        speed = new double[capacity];
+        colorIndex = new byte[capacity];
+        kind = new byte[capacity];
+        alive = new boolean[capacity];
+        deadSlots = new int[capacity];
+        slotHandle = new int[capacity];
+        handleSlot = new int[capacity];
+        handleGeneration = new int[capacity];
+        freeHandles = new int[capacity];
+    }
+
+    /**
+     * Adds a new entity to the end of the store.
+     * @param kind The kind of the entity, one of the KIND constants.
+     * @param x The x-component of the entity's position.
+     * @param y The y-component of the entity's position.
+     * @param width The width of the entity.
+     * @param height The height of the entity.
+     * @param speed The speed of the entity.
+     * @param colorIndex The Palette index of the entity's color.
+     * @return The handle of the new entity.
+     * @throws IllegalStateException If every handle index is in use or
+     *         retired.
+     */
+    public int add(byte kind, int x, int y, int width, int height,
+            double speed, int colorIndex) {
+        if (size == this.x.length) {
+            grow(size * 2);
+        }
+        int index;
+        if (freeCount > 0) {
+            index = freeHandles[--freeCount];
+        } else {
+            if (handleCount == MAX_INDEX) {
+                throw new IllegalStateException("Out of entity handles");
+            }
+            if (handleCount == handleSlot.length) {
+                growHandles(handleCount * 2);
+            }
+            index = handleCount++;
+        }
+        int slot = size++;
+        int handle = (handleGeneration[index] << INDEX_BITS) | index;
+        handleSlot[index] = slot;
+        slotHandle[slot] = handle;
+        this.x[slot] = x;
+        this.y[slot] = y;
+        previousX[slot] = x;
+        previousY[slot] = y;
+        this.width[slot] = width;
+        this.height[slot] = height;
+        this.speed[slot] = speed;
+        this.colorIndex[slot] = (byte)colorIndex;
+        this.kind[slot] = kind;
+        alive[slot] = true;
+        return handle;
+    }
+
+    /**
+     * Removes the entity with the given handle right away, compacting the
+     * store. Any entities killed before are removed with it. Removing an
+     * invalid handle does nothing.
+     * @param handle The handle of the entity to remove.
+     */
+    public void remove(int handle) {
+        kill(handle);
+        compact();
+    }
+
+    /**
+     * Marks the entity with the given handle dead. Its handle is invalid
+     * from now on, but its slot keeps its place, with alive set to false,
+     * until the next compact. Killing an invalid handle does nothing.
+     * @param handle The handle of the entity to kill.
+     */
+    public void kill(int handle) {
+        int slot = slotOf(handle);
+        if (slot < 0) {
+            return;
+        }
+        int index = handle & INDEX_MASK;
+        alive[slot] = false;
+        deadSlots[deadCount++] = slot;
+        handleSlot[index] = -1;
+        // A retired index keeps a generation no handle can hold.
+        if (++handleGeneration[index] < GENERATIONS) {
+            freeHandles[freeCount++] = index;
+        }
+    }
+
+    /**
+     * Removes every killed entity in one pass. Dead slots at the end of the
+     * store are dropped, and every other dead slot is filled by moving the
+     * last live entity into it, so the pass costs one move per killed
+     * entity.
+     */
+    public void compact() {
+        for (int d = 0; d < deadCount; d++) {
+            while (size > 0 && !alive[size - 1]) {
+                size--;
+            }
+            int slot = deadSlots[d];
+            if (slot >= size) {
+                continue; // Dropped with the end of the store.
+            }
+            int last = --size;
+            x[slot] = x[last];
+            y[slot] = y[last];
+            previousX[slot] = previousX[last];
+            previousY[slot] = previousY[last];
+            width[slot] = width[last];
+            height[slot] = height[last];
+            speed[slot] = speed[last];
+            colorIndex[slot] = colorIndex[last];
+            kind[slot] = kind[last];
+            alive[slot] = true;
+            alive[last] = false;
+            slotHandle[slot] = slotHandle[last];
+            handleSlot[slotHandle[slot] & INDEX_MASK] = slot;
+        }
+        deadCount = 0;
+    }
+
+    /**
+     * A getter method for the number of entities killed since the last
+     * compact.
+     * @return The number of dead slots.
+     */
+    public int getDeadCount() {
+        return deadCount;
+    }
+
+    /**
+     * Removes all entities from the store, invalidating every handle.
+     */
+    public void clear() {
+        for (int slot = 0; slot < size; slot++) {
+            if (alive[slot]) {
+                kill(slotHandle[slot]);
+            }
+        }
+        compact();
+    }
+
+    /**
+     * Remembers the current position of every entity as its previous
+     * position. Called at the start of every tick, so rendering can
+     * interpolate between the last two ticks.
+     */
+    public void savePositions() {
+        System.arraycopy(x, 0, previousX, 0, size);
+        System.arraycopy(y, 0, previousY, 0, size);
+    }
+
+    /**
+     * Interpolates the x-component of an entity's position.
+     * @param slot The slot of the entity.
+     * @param alpha 0 for the previous position up to 1 for the current one.
+     * @return The interpolated x-component.
+     */
+    public int interpolateX(int slot, double alpha) {
+        return previousX[slot]
+                + (int)Math.round((x[slot] - previousX[slot]) * alpha);
+    }
+
+    /**
+     * Interpolates the y-component of an entity's position.
+     * @param slot The slot of the entity.
+     * @param alpha 0 for the previous position up to 1 for the current one.
+     * @return The interpolated y-component.
+     */
+    public int interpolateY(int slot, double alpha) {
+        return previousY[slot]
+                + (int)Math.round((y[slot] - previousY[slot]) * alpha);
+    }
+
+    /**
+     * Determines whether the given handle still refers to a live entity.
+     * @param handle The handle to check.
+     * @return True if the entity has not been killed or removed.
+     */
+    public boolean isValid(int handle) {
+        return slotOf(handle) >= 0;
+    }
+
+    /**
+     * Finds the current slot of the entity with the given handle.
+     * @param handle The handle of the entity.
+     * @return The slot of the entity, or -1 if it has been killed or
+     *         removed.
+     */
+    public int slotOf(int handle) {
+        int index = handle & INDEX_MASK;
+        if (handle < 0 || index >= handleCount
+                || handleGeneration[index] != handle >>> INDEX_BITS) {
+            return -1;
+        }
+        return handleSlot[index];
+    }
+
+    /**
+     * Extracts the index part of a handle. No two live entities of a store
+     * share an index, so data kept per entity outside the store can be
+     * indexed by it.
+     * @param handle The handle of an entity.
+     * @return The index of the handle.
+     */
+    public static int indexOf(int handle) {
+        return handle & INDEX_MASK;
+    }
+
+    /**
+     * A getter method for the handle of the entity in the given slot.
+     * @param slot The slot of the entity, below size().
+     * @return The handle of the entity.
+     */
+    public int handleAt(int slot) {
+        return slotHandle[slot];
+    }
+
+    /**
+     * Makes this store an exact copy of another, including its handles.
+     * The arrays of this store are reused when they are large enough.
+     * @param source The store to copy.
+     */
+    public void copyFrom(EntityStore source) {
+        int capacity = source.x.length;
+        int oldSize = size;
+        if (x.length < capacity) {
+            oldSize = 0;
+            x = new int[capacity];
+            y = new int[capacity];
+            previousX = new int[capacity];
+            previousY = new int[capacity];
+            width = new int[capacity];
+            height = new int[capacity];
+            speed = new double[capacity];
+            colorIndex = new byte[capacity];
+            kind = new byte[capacity];
+            alive = new boolean[capacity];
+            deadSlots = new int[capacity];
+            slotHandle = new int[capacity];
+        }
+        if (handleSlot.length < source.handleSlot.length) {
+            int handles = source.handleSlot.length;
+            handleSlot = new int[handles];
+            handleGeneration = new int[handles];
+            freeHandles = new int[handles];
+        }
+        size = source.size;
+        System.arraycopy(source.x, 0, x, 0, size);
+        System.arraycopy(source.y, 0, y, 0, size);
+        System.arraycopy(source.previousX, 0, previousX, 0, size);
+        System.arraycopy(source.previousY, 0, previousY, 0, size);
+        System.arraycopy(source.width, 0, width, 0, size);
+        System.arraycopy(source.height, 0, height, 0, size);
+        System.arraycopy(source.speed, 0, speed, 0, size);
+        System.arraycopy(source.colorIndex, 0, colorIndex, 0, size);
+        System.arraycopy(source.kind, 0, kind, 0, size);
+        System.arraycopy(source.slotHandle, 0, slotHandle, 0, size);
+        System.arraycopy(source.alive, 0, alive, 0, size);
+        if (oldSize > size) {
+            Arrays.fill(alive, size, oldSize, false);
+        }
+        deadCount = source.deadCount;
+        System.arraycopy(source.deadSlots, 0, deadSlots, 0, deadCount);
+        handleCount = source.handleCount;
+        System.arraycopy(source.handleSlot, 0, handleSlot, 0, handleCount);
+        System.arraycopy(source.handleGeneration, 0, handleGeneration, 0,
+                handleCount);
+        freeCount = source.freeCount;
+        System.arraycopy(source.freeHandles, 0, freeHandles, 0, freeCount);
+    }
+
+    /**
+     * Makes room for the given number of entities in total, so adding up
+     * to that many entities does not grow the store.
+     * @param capacity The number of entities to make room for.
+     */
+    public void ensureCapacity(int capacity) {
+        if (x.length < capacity) {
+            grow(capacity);
+        }
+    }
+
+    /**
+     * A getter method for the number of occupied slots, which includes
+     * the entities killed since the last compact.
+     * @return The number of occupied slots.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Grows every array in the store to the given capacity.
+     * @param capacity The new number of entities to make room for.
+     */
+    private void grow(int capacity) {
+        x = Arrays.copyOf(x, capacity);
+        y = Arrays.copyOf(y, capacity);
+        previousX = Arrays.copyOf(previousX, capacity);
+        previousY = Arrays.copyOf(previousY, capacity);
+        width = Arrays.copyOf(width, capacity);
+        height = Arrays.copyOf(height, capacity);
+        speed = Arrays.copyOf(speed, capacity);
+        colorIndex = Arrays.copyOf(colorIndex, capacity);
+        kind = Arrays.copyOf(kind, capacity);
+        alive = Arrays.copyOf(alive, capacity);
+        deadSlots = Arrays.copyOf(deadSlots, capacity);
+        slotHandle = Arrays.copyOf(slotHandle, capacity);
+        if (handleSlot.length < capacity) {
+            growHandles(capacity);
+        }
+    }
+
+    /**
+     * Grows the arrays kept per handle index to the given capacity. They
+     * grow with the entities, and beyond them as indices are retired.
+     * @param capacity The new number of handle indices to make room for.
+     */
+    private void growHandles(int capacity) {
+        capacity = Math.min(capacity, MAX_INDEX);
+        handleSlot = Arrays.copyOf(handleSlot, capacity);
+        handleGeneration = Arrays.copyOf(handleGeneration, capacity);
+        freeHandles = Arrays.copyOf(freeHandles, capacity);
+    }
+}
@@ -0,0 +1,78 @@
+/**
+ * An accumulator that turns elapsed real time into a whole number of fixed
+ * simulation steps. Running the game rules in fixed steps keeps gameplay
+ * identical at any frame rate, and the left-over fraction of a step is used
+ * to interpolate positions when rendering.
+ */
+public class FixedTimestep {
+
+    /** The length of one simulation step, in nanoseconds. */
+    private final long stepNanos;
+
+    /**
+     * The most steps returned by one call to advance. Time beyond that is
+     * dropped, so a long stall slows the game down briefly instead of
+     * freezing it while it catches up.
+     */
+    private final int maxSteps;
+
+    /** Real time not yet consumed by simulation steps, in nanoseconds. */
+    private long accumulator;
+
+    /** The System.nanoTime value of the previous advance call. */
+    private long lastTime;
+
+    /**
+     * Constructor for FixedTimestep objects.
+     * @param stepNanos The length of one simulation step, in nanoseconds.
+     * @param maxSteps The most steps to run for a single frame.
+     */
+    public FixedTimestep(long stepNanos, int maxSteps) {
+        this.stepNanos = stepNanos;
+        this.maxSteps = maxSteps;
+    }
+
+    /**
+     * Restarts the accumulator from the given time with no pending steps.
+     * @param now The current System.nanoTime value.
+     */
+    public void reset(long now) {
+        lastTime = now;
+        accumulator = 0;
+    }
+
+    /**
+     * Adds the time since the previous call and takes as many whole steps
+     * out of the accumulator as fit, up to maxSteps.
+     * @param now The current System.nanoTime value.
+     * @return The number of simulation steps to run now.
+     */
+    public int advance(long now) {
+        accumulator += now - lastTime;
+        lastTime = now;
+        int steps = (int)Math.min(maxSteps, accumulator / stepNanos);
+        accumulator -= steps * stepNanos;
+        if (steps == maxSteps && accumulator >= stepNanos) {
+            // Too far behind, drop the time that cannot be caught up.
+            accumulator %= stepNanos;
+        }
+        return steps;
+    }
+
+    /**
+     * A getter method for the fraction of a step accumulated so far, used
+     * to interpolate between the previous and current simulation state.
+     * @return A value from 0 (previous state) up to 1 (current state).
+     */
+    public double getAlpha() {
+        return Math.min(1.0, accumulator / (double)stepNanos);
+    }
+
+    /**
+     * A getter method for the time at which the next step is due.
+     * @return The System.nanoTime value when the next step is due.
+     */
+    public long getNextStepTime() {
+        return lastTime + stepNanos - accumulator;
+    }
+}
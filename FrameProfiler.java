@@ -0,0 +1,222 @@
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Locale;
+
+/**
+ * Records how long each phase of a frame takes into one LatencyHistogram per
+ * phase. Recording is off by default; while off, start returns 0 without
+ * reading the clock and record returns immediately, so the instrumented
+ * code pays only for a field read and a branch.
+ *
+ * The profiler can draw its percentiles as an overlay and periodically
+ * append them to a CSV file, or a JSON-lines file if the file name ends in
+ * .json.
+ */
+public class FrameProfiler {
+
+    /**
+     * The instrumented phases of a frame.
+     */
+    public enum Phase {
+
+        /** A whole GameWorld tick. */
+        TICK,
+
+        /** Collision detection and hit processing. */
+        COLLISION,
+
+        /** Moving the turret, enemies, and missiles. */
+        MOVE,
+
+        /** Adding a new enemy. */
+        SPAWN,
+
+        /** Drawing the world. */
+        PAINT,
+
+        /**
+         * From a key or button event to the first frame drawn after the
+         * tick that applied it. Recorded by GameInput.
+         */
+        INPUT
+    }
+
+    /** The font of the overlay, monospaced so the columns line up. */
+    private static final Font OVERLAY_FONT =
+            new Font(Font.MONOSPACED, Font.PLAIN, 12);
+
+    /** The background of the overlay. */
+    private static final Color OVERLAY_BACKGROUND = new Color(0, 0, 0, 160);
+
+    /** Whether timings are being recorded. */
+    private volatile boolean enabled;
+
+    /** The histogram of each phase, indexed by Phase ordinal. */
+    private final LatencyHistogram[] histograms =
+            new LatencyHistogram[Phase.values().length];
+
+    /** The thread appending snapshots to a file, or null. */
+    private Thread dumpThread;
+
+    /**
+     * Constructor for FrameProfiler objects, with recording disabled.
+     */
+    public FrameProfiler() {
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * Starts timing a phase.
+     * @return The current System.nanoTime value, or 0 if disabled.
+     */
+    public long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Records the time since the matching start call for a phase.
+     * @param phase The phase that has finished.
+     * @param start The value returned by start, 0 if disabled.
+     */
+    public void record(Phase phase, long start) {
+        if (start != 0) {
+            histograms[phase.ordinal()].record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Determines whether timings are being recorded.
+     * @return True if recording is enabled.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Turns recording on or off. Turning it on discards earlier timings.
+     * @param enabled True to record timings.
+     */
+    public void setEnabled(boolean enabled) {
+        if (enabled && !this.enabled) {
+            reset();
+        }
+        this.enabled = enabled;
+    }
+
+    /**
+     * A getter method for the histogram of a phase.
+     * @param phase The phase to look up.
+     * @return The histogram of the phase.
+     */
+    public LatencyHistogram getHistogram(Phase phase) {
+        return histograms[phase.ordinal()];
+    }
+
+    /**
+     * Discards all recorded timings.
+     */
+    public void reset() {
+        for (LatencyHistogram histogram : histograms) {
+            histogram.reset();
+        }
+    }
+
+    /**
+     * Draws a table of the count, p50, p99, and max of every phase in the
+     * top left corner.
+     * @param g A Graphics object for drawing.
+     */
+    public void paintOverlay(Graphics g) {
+        Font font = g.getFont();
+        g.setFont(OVERLAY_FONT);
+        int lineHeight = g.getFontMetrics().getHeight();
+        int lines = histograms.length + 1;
+        g.setColor(OVERLAY_BACKGROUND);
+        g.fillRect(4, 4, 340, lines * lineHeight + 8);
+        g.setColor(Color.WHITE);
+        int y = 8 + g.getFontMetrics().getAscent();
+        g.drawString("phase        count    p50    p99    max (us)", 10, y);
+        for (Phase phase : Phase.values()) {
+            LatencyHistogram histogram = getHistogram(phase);
+            y += lineHeight;
+            g.drawString(String.format(Locale.ROOT,
+                    "%-10s %7d %6.0f %6.0f %6.0f",
+                    phase.name().toLowerCase(Locale.ROOT),
+                    histogram.getCount(),
+                    histogram.getPercentile(50) / 1000.0,
+                    histogram.getPercentile(99) / 1000.0,
+                    histogram.getMax() / 1000.0), 10, y);
+        }
+        g.setFont(font);
+    }
+
+    /**
+     * Starts a daemon thread that appends a snapshot of every phase to the
+     * given file at a fixed period, until the program exits.
+     * @param fileName The file to append to. Snapshots are JSON lines if
+     *        the name ends in .json and CSV rows otherwise.
+     * @param periodMillis The time between two snapshots.
+     */
+    public synchronized void startDump(String fileName, long periodMillis) {
+        if (dumpThread != null) {
+            return;
+        }
+        boolean json = fileName.endsWith(".json");
+        dumpThread = new Thread(() -> {
+            try (PrintWriter out = new PrintWriter(
+                    new FileWriter(fileName, true))) {
+                if (!json) {
+                    out.println("time_ms,phase,count,p50_ns,p99_ns,max_ns");
+                }
+                while (true) {
+                    Thread.sleep(periodMillis);
+                    dump(out, json);
+                    out.flush();
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            } catch (InterruptedException e) {
+                // Stopped, nothing left to write.
+            }
+        }, "profile-dump");
+        dumpThread.setDaemon(true);
+        dumpThread.start();
+    }
+
+    /**
+     * Writes one snapshot of every phase.
+     * @param out The writer to append to.
+     * @param json True for a JSON line, false for CSV rows.
+     */
+    public void dump(PrintWriter out, boolean json) {
+        long time = System.currentTimeMillis();
+        if (json) {
+            out.print("{\"time_ms\":" + time);
+        }
+        for (Phase phase : Phase.values()) {
+            LatencyHistogram histogram = getHistogram(phase);
+            String name = phase.name().toLowerCase(Locale.ROOT);
+            if (json) {
+                out.print(String.format(Locale.ROOT,
+                        ",\"%s\":{\"count\":%d,\"p50_ns\":%d,\"p99_ns\":%d,"
+                        + "\"max_ns\":%d}", name, histogram.getCount(),
+                        histogram.getPercentile(50),
+                        histogram.getPercentile(99), histogram.getMax()));
+            } else {
+                out.println(String.format(Locale.ROOT, "%d,%s,%d,%d,%d,%d",
+                        time, name, histogram.getCount(),
+                        histogram.getPercentile(50),
+                        histogram.getPercentile(99), histogram.getMax()));
+            }
+        }
+        if (json) {
+            out.println("}");
+        }
+    }
+}
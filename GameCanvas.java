@@ -0,0 +1,64 @@
+import java.awt.Canvas;
+import java.awt.Graphics2D;
+import java.awt.Toolkit;
+import java.awt.image.BufferStrategy;
+import javax.swing.UIManager;
+
+/**
+ * A heavyweight drawing surface for active rendering. Instead of waiting for
+ * Swing to repaint it, the render loop in GameFrame draws every frame itself
+ * into the back buffer of a BufferStrategy and flips it onto the screen.
+ */
+@SuppressWarnings("serial")
+public class GameCanvas extends Canvas {
+
+    /**
+     * The pre-rendered enemy and missile sprites for this canvas.
+     */
+    private SpriteCache sprites = new SpriteCache();
+
+    /**
+     * Constructor for GameCanvas objects. The canvas ignores system
+     * repaints and never takes the keyboard focus from the frame.
+     */
+    public GameCanvas() {
+        setIgnoreRepaint(true);
+        setFocusable(false);
+        setBackground(UIManager.getColor("Panel.background"));
+    }
+
+    /**
+     * Renders one frame into the back buffer and shows it. The buffer
+     * strategy is created on the first call after the canvas is displayed;
+     * frames whose volatile buffers were lost are drawn again.
+     * @param world The world or snapshot to paint.
+     * @param alpha 0 for the state before the last tick up to 1 for the
+     *        current state.
+     */
+    public void renderFrame(WorldView world, double alpha) {
+        BufferStrategy strategy = getBufferStrategy();
+        if (strategy == null) {
+            if (!isDisplayable()) {
+                return;
+            }
+            createBufferStrategy(2);
+            strategy = getBufferStrategy();
+        }
+        do {
+            do {
+                Graphics2D g = (Graphics2D)strategy.getDrawGraphics();
+                try {
+                    g.setBackground(getBackground());
+                    GameRenderer.render(g, world, sprites, getWidth(),
+                            getHeight(), alpha);
+                } finally {
+                    g.dispose();
+                }
+            } while (strategy.contentsRestored());
+            strategy.show();
+        } while (strategy.contentsLost());
+        // Flush the pipeline so the frame is shown now, not when the
+        // window system gets to it.
+        Toolkit.getDefaultToolkit().sync();
+    }
+}
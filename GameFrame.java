@@ -1,19 +1,24 @@
 import java.awt.BorderLayout;
 import java.awt.Color;
+import java.awt.Component;
 import java.awt.Dimension;
+import java.awt.DisplayMode;
 import java.awt.GraphicsEnvironment;
 import java.awt.Point;
-import java.awt.Rectangle;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
-import java.util.Random;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.swing.JButton;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
 import javax.swing.JOptionPane;
+import javax.swing.SwingUtilities;
 import javax.swing.Timer;
 
 /**
@@ -28,6 +33,20 @@ public class GameFrame extends JFrame {
     private static final int WINDOW_WIDTH = 700;
     /** Fixed height for the game. */
     private static final int WINDOW_HEIGHT = 500;
+    /** The time between two game steps, in milliseconds. */
+    private static final int TICK_MILLIS = 30;
+    /** The time between two game steps, in nanoseconds. */
+    private static final long TICK_NANOS = TICK_MILLIS * 1_000_000L;
+    /** The most game steps run for a single frame when catching up. */
+    private static final int MAX_STEPS_PER_FRAME = 5;
+    /** The frame rate used when the display does not report one. */
+    private static final int DEFAULT_REFRESH_RATE = 60;
+    /** The time between two profiler snapshots, in milliseconds. */
+    private static final int PROFILE_DUMP_MILLIS = 5000;
+    /** The longest time to wait for the host when joining a game. */
+    private static final long JOIN_TIMEOUT_NANOS = 10_000_000_000L;
+    /** The ticks the host keeps sending the final state to its clients. */
+    private static final int FINAL_FRAMES = 1000 / TICK_MILLIS;
 
     /**
      * Just a label added to the north of the game panel to display score.
@@ -37,15 +56,79 @@ public class GameFrame extends JFrame {
     private JLabel scoreLabel;
 
     /**
-     * The remaining number of calls to the gameStep method before a new enemy
-     * is automatically added to the game.
+     * The arrow keys and shots of the player, posted by the listeners and
+     * applied by the simulation thread. One missile is fired per game step
+     * while shots are pending.
      */
-    private int enemyGenerationCounter;
+    private final GameInput input = new GameInput();
 
     /**
-     * The number of missile objects that have been created.
+     * The number of ticks before the snapshot painted last, read by
+     * recordInputLatency. Only used on the event dispatch thread.
      */
-    private int shotsFired = 0;
+    private int paintedTick;
+
+    /**
+     * Records the input latency of the frame painted last, once the
+     * repaint it queued is done. Created once, so painting does not create
+     * a new task on every frame.
+     */
+    private final Runnable recordInputLatency = this::recordInputLatency;
+
+    /**
+     * The most milliseconds from the launch of the JVM to the first frame
+     * before the startup report warns that the budget was exceeded. Set
+     * with -Dspacedefenders.startupBudget.
+     */
+    private static final int STARTUP_BUDGET =
+            Integer.getInteger("spacedefenders.startupBudget", 1000);
+
+    /**
+     * True once the first frame has been drawn and reported. Only used by
+     * the thread that draws.
+     */
+    private boolean firstFrameShown;
+
+    /**
+     * True when the game is drawn by an active render loop on a GameCanvas
+     * instead of by the Swing timer and GamePanel.
+     */
+    private boolean activeRendering;
+
+    /**
+     * The score last handed to scoreLabel by the simulation thread.
+     */
+    private volatile int shownScore;
+
+    /**
+     * True while an update of scoreLabel is queued on the event dispatch
+     * thread, so the simulation thread queues at most one at a time.
+     */
+    private final AtomicBoolean scoreUpdateQueued = new AtomicBoolean();
+
+    /**
+     * Shows shownScore in scoreLabel. Created once, so updating the score
+     * does not create a new task on every hit.
+     */
+    private final Runnable showScore = this::showScore;
+
+    /**
+     * The timer that calls the paintStep method.
+     */
+    private Timer paintTimer;
+
+    /**
+     * Turns elapsed time into game steps of TICK_MILLIS each, independent
+     * of how often frames are drawn. Only used by the simulation thread.
+     */
+    private FixedTimestep timestep = new FixedTimestep(TICK_NANOS,
+            MAX_STEPS_PER_FRAME);
+
+    /**
+     * Hands a snapshot of the world after every tick from the simulation
+     * thread to the thread that paints.
+     */
+    private SnapshotBuffer snapshots;
 
     /**
      * A button that allows the user to fire a missile.
@@ -58,15 +141,56 @@ public class GameFrame extends JFrame {
     private static GameFrame gameFrame;
     
     /**
-     * The game panel that logically encapsulates all the enemies, missiles, and
-     * the turret.
+     * The headless simulation that encapsulates all the enemies, missiles,
+     * and the turret.
+     */
+    private GameWorld world;
+
+    /**
+     * The game panel that paints the current state of the world, or null
+     * when rendering actively.
      */
     private GamePanel panel;
 
     /**
-     * Default constructor to control the game.
+     * The canvas that the render loop draws onto, or null when rendering
+     * through Swing.
+     */
+    private GameCanvas canvas;
+
+    /**
+     * The replay supplying the inputs while a recorded game is played
+     * back, or null once the keyboard is in control.
      */
-    public GameFrame() {
+    private ReplayPlayer replay;
+
+    /**
+     * The recorder writing the inputs of every tick, or null.
+     */
+    private ReplayRecorder recorder;
+
+    /**
+     * The host sending the world to the other players of a networked game,
+     * or null.
+     */
+    private NetHost netHost;
+
+    /**
+     * The client drawing the world of the host of a networked game, or
+     * null. A client runs no world of its own; world only stands in for
+     * one, for its size and profiler.
+     */
+    private NetClient netClient;
+
+    /**
+     * Constructor to control the game.
+     * 
+     * @param activeRendering True to draw from a dedicated render loop
+     *                        onto a GameCanvas, false to repaint a GamePanel
+     *                        from a Swing timer.
+     */
+    public GameFrame(boolean activeRendering) {
+        this.activeRendering = activeRendering;
         
         // Setup the scoreLabel.
         scoreLabel = new JLabel("0");
@@ -77,27 +201,112 @@ public class GameFrame extends JFrame {
         // Listen for mouse clicks and fire a missile.
         fireButton.addActionListener(new ActionListener() {
             public void actionPerformed(ActionEvent e) {
-                panel.addMissile();
-                shotsFired++;
+                input.fire();
                 GameFrame.gameFrame.requestFocus();
             }
         });
         
-        // Setup the Turret.
-        Random rand = new Random();
-        Color turretColor = new Color(rand.nextFloat(),
-                rand.nextFloat(), rand.nextFloat());
-        
-        Rectangle base = new Rectangle(WINDOW_WIDTH / 2 - 35,
-                WINDOW_HEIGHT - 45, 70, 30);
-        
-        Rectangle gun = new Rectangle(WINDOW_WIDTH / 2 - 11,
-                WINDOW_HEIGHT - 100, 22, 80);
-        
-        Turret turret = new Turret(base, gun, turretColor);
+        // Play back a recorded game, or start a new one from a seed.
+        long seed = Long.getLong("spacedefenders.seed", System.nanoTime());
+        int players = 1;
+        String hostPort = System.getProperty("spacedefenders.host");
+        String joinAddress = System.getProperty("spacedefenders.join");
+        if (joinAddress != null) {
+            // Join the networked game of a host, which picks the seed.
+            try {
+                netClient = joinGame(joinAddress);
+                seed = netClient.getSeed();
+                players = netClient.getPlayerCount();
+            } catch (IOException e) {
+                e.printStackTrace(); // Play alone instead.
+            }
+        } else if (hostPort != null) {
+            players = Integer.getInteger("spacedefenders.players", 2);
+        }
+        // A game that will be hosted cannot be a replay either.
+        boolean hosting = joinAddress == null && hostPort != null;
+        String replayFile = System.getProperty("spacedefenders.replay");
+        if (replayFile != null && netClient == null && !hosting) {
+            try {
+                replay = ReplayPlayer.open(replayFile);
+                seed = replay.getSeed();
+            } catch (IOException e) {
+                e.printStackTrace(); // Play a new game instead.
+            }
+        }
         
-        // Setup the GamePanel.
-        panel = new GamePanel(0, rand.nextInt(2) == 1 ? true : false, turret);
+        // Setup the GameWorld and the GamePanel that paints it.
+        world = GameWorld.create(WINDOW_WIDTH, WINDOW_HEIGHT, seed,
+                players);
+        // Host a networked game, with a turret for every player.
+        if (hosting) {
+            try {
+                netHost = new NetHost(world, seed);
+                netHost.listen(Integer.parseInt(hostPort));
+            } catch (IOException | NumberFormatException e) {
+                e.printStackTrace(); // Play alone instead.
+                netHost = null;
+                world = GameWorld.create(WINDOW_WIDTH, WINDOW_HEIGHT, seed);
+            }
+        }
+        // Spawn the waves of a wave file instead of random enemies.
+        String wavesFile = System.getProperty("spacedefenders.waves");
+        if (wavesFile != null) {
+            try {
+                world.setWaves(WaveTimeline.load(wavesFile));
+            } catch (IOException | IllegalArgumentException e) {
+                e.printStackTrace(); // Spawn random enemies instead.
+            }
+        }
+        WaveTimeline waves = world.getWaves() != null
+                ? world.getWaves().getTimeline() : null;
+        // A replay only plays back with the waves it was recorded with.
+        if (replay != null) {
+            try {
+                replay.checkWaves(waves);
+            } catch (IOException e) {
+                e.printStackTrace(); // Play a new game instead.
+                closeReplay();
+            }
+        }
+        // Predict collisions instead of scanning for them every tick.
+        world.setEventDriven("events".equals(
+                System.getProperty("spacedefenders.collisions")));
+        // Record the inputs of this game when a replay file is given.
+        // Replays have a single player, so networked games are not recorded,
+        // unless joining or hosting failed and the game is played alone.
+        boolean networked = netClient != null || netHost != null;
+        String recordFile = System.getProperty("spacedefenders.record");
+        if (recordFile != null && !networked) {
+            try {
+                recorder = ReplayRecorder.create(recordFile, WINDOW_WIDTH,
+                        WINDOW_HEIGHT, seed, waves);
+                Runtime.getRuntime().addShutdownHook(
+                        new Thread(this::closeRecorder));
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        // Record frame timings from the start when a dump file is given.
+        String profileFile = System.getProperty("spacedefenders.profile");
+        if (profileFile != null) {
+            world.getProfiler().setEnabled(true);
+            world.getProfiler().startDump(profileFile, PROFILE_DUMP_MILLIS);
+        }
+        // Move swarms on several threads when a thread count is given.
+        int threads = Integer.getInteger("spacedefenders.threads", 1);
+        if (threads > 1) {
+            world.setMovePool(new ForkJoinPool(threads));
+        }
+        Component view;
+        snapshots = new SnapshotBuffer(world, System.nanoTime());
+        if (activeRendering) {
+            canvas = new GameCanvas();
+            view = canvas;
+        } else {
+            panel = new GamePanel(snapshots.latest());
+            view = panel;
+        }
         // Setup the initial JFrame elements
         setTitle("Ball Destruction!");
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
@@ -111,15 +320,19 @@ public class GameFrame extends JFrame {
             @Override
             public void keyPressed(KeyEvent e) {
                 if (e.getKeyCode() == KeyEvent.VK_LEFT) {
-                    turret.setMoveDirection(true, true);
+                    input.setHeld(GameWorld.INPUT_LEFT, true);
                 }
                 if (e.getKeyCode() == KeyEvent.VK_RIGHT) {
-                    turret.setMoveDirection(false, true);
+                    input.setHeld(GameWorld.INPUT_RIGHT, true);
                 }
                 // Add functionality for firing with space.
                 if (e.getKeyCode() == KeyEvent.VK_SPACE) {
-                    panel.addMissile();
-                    shotsFired++;
+                    input.fire();
+                }
+                // Toggle the frame-time profiler and its overlay with F3.
+                if (e.getKeyCode() == KeyEvent.VK_F3) {
+                    FrameProfiler profiler = world.getProfiler();
+                    profiler.setEnabled(!profiler.isEnabled());
                 }
             }
 
@@ -132,10 +345,10 @@ public class GameFrame extends JFrame {
             public void keyReleased(KeyEvent e) {
                 // Adjust movement flags on key release.
                 if (e.getKeyCode() == KeyEvent.VK_LEFT) {
-                    turret.setMoveDirection(true, false);
+                    input.setHeld(GameWorld.INPUT_LEFT, false);
                 }
                 if (e.getKeyCode() == KeyEvent.VK_RIGHT) {
-                    turret.setMoveDirection(false, false);
+                    input.setHeld(GameWorld.INPUT_RIGHT, false);
                 }
             }
         });
@@ -144,10 +357,10 @@ public class GameFrame extends JFrame {
         // Setup rest of the GUI
 
         // Ensure you uncomment the following line when ready
-        panel.setPreferredSize(new Dimension(WINDOW_WIDTH, WINDOW_HEIGHT)); 
+        view.setPreferredSize(new Dimension(WINDOW_WIDTH, WINDOW_HEIGHT)); 
         this.add(scoreLabel, BorderLayout.PAGE_START);
         this.add(fireButton, BorderLayout.PAGE_END);
-        this.add(panel);
+        this.add(view);
         this.pack();
     }
 
@@ -157,56 +370,404 @@ public class GameFrame extends JFrame {
 
     /**
      * This method must be called to start operations of the game. This method
-     * essentially just creates a simple timer that calls the gameStep method
-     * every 30 milliseconds.
+     * starts the simulation thread, which steps the game every 30
+     * milliseconds, and then either creates a simple timer that calls the
+     * paintStep method once per display refresh, or starts the render loop
+     * thread when rendering actively.
      */
     public void start() {
         // Center the frame on the screen and show it.
         centerFrame(this);
         setVisible(true);
-        // Create a game-step timer to step through the game.
-        Timer gameStep = new Timer(30, e -> gameStep());
-        gameStep.start();
+        // Compile the entity kernels while the first frames are drawn.
+        Thread warmup = new Thread(EntityKernels.DEFAULT::warmUp,
+                "kernel-warmup");
+        warmup.setDaemon(true);
+        warmup.setPriority(Thread.MIN_PRIORITY);
+        warmup.start();
+        Thread simulation = new Thread(this::simulationLoop, "simulation");
+        simulation.setDaemon(true);
+        simulation.start();
+        if (activeRendering) {
+            Thread loop = new Thread(this::renderLoop, "render-loop");
+            loop.setDaemon(true);
+            loop.start();
+            return;
+        }
+        // Create a timer to paint the game.
+        paintTimer = new Timer(1000 / refreshRate(), e -> paintStep());
+        paintTimer.start();
     }
 
     /**
-     * Method to perform one step in the animation of the game. This method
-     * essentially performs the following tasks:
+     * The simulation loop. Runs on its own thread and performs the
+     * following tasks:
      * 
      * <ol>
-     * <li>Performs operations associated with detecting collisions between
-     * enemy(s) and missile(s) by calling GamePanel.detectCollision()</li>
-     * <li>Updates score in the display label</li>
-     * <li>Moves all the enemies and missiles and repaints the panel to update
-     * the display.</li>
-     * <li>If the number of shots fired is greater-than 10, it displays a
+     * <li>Advances the GameWorld by as many ticks as are due, with the
+     * currently held keys and any pending shot, and updates score in the
+     * display label</li>
+     * <li>Publishes a snapshot of the world for the thread that paints.</li>
+     * <li>In a joined game, sends the inputs to the host instead, and
+     * publishes the states the host sends back.</li>
+     * <li>If the world reports the game as won or lost, it displays a
      * suitable message and stops the game by calling System.exit(0)</li>
      * </ol>
      */
-    private void gameStep() {
-        panel.detectCollision();
-        int score = panel.getTotalScore();
-        scoreLabel.setText(Integer.toString(score));
-        panel.move();
-        panel.repaint();
-        if (shotsFired > 10) {
-            if (score >= 800) {
-                JOptionPane.showMessageDialog(null, "You Win!",
-                        "Game Finished Message",
-                        JOptionPane.INFORMATION_MESSAGE);
-                System.exit(0);
+    private void simulationLoop() {
+        if (netHost != null) {
+            waitForPlayers();
+        }
+        timestep.reset(System.nanoTime());
+        GameStatus status = GameStatus.RUNNING;
+        while (status == GameStatus.RUNNING) {
+            sleepUntil(timestep.getNextStepTime());
+            if (netClient != null) {
+                status = followHost();
+                continue;
+            }
+            status = advanceDueSteps();
+            WorldSnapshot snapshot = snapshots.getBack();
+            snapshot.copyFrom(world, status,
+                    timestep.getNextStepTime() - TICK_NANOS);
+            snapshots.publish();
+        }
+        GameStatus finalStatus = status;
+        SwingUtilities.invokeLater(() -> finishGame(finalStatus));
+        if (netHost != null) {
+            // Repeat the final state, so clients that lost it still end.
+            for (int i = 0; i < FINAL_FRAMES; i++) {
+                sleepUntil(System.nanoTime() + TICK_NANOS);
+                pollHost();
+                netHost.publish(finalStatus);
+            }
+        }
+    }
+
+    /**
+     * Accepts clients until every player of a hosted game has joined.
+     */
+    private void waitForPlayers() {
+        while (!netHost.isFull()) {
+            pollHost();
+            sleepUntil(System.nanoTime() + TICK_NANOS);
+        }
+    }
+
+    /**
+     * Handles the messages of the clients of a hosted game. Failing to
+     * accept a client is reported and otherwise ignored.
+     */
+    private void pollHost() {
+        try {
+            netHost.poll();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Sends the inputs of every due step to the host of a joined game, and
+     * publishes the newest state the host sent, if any.
+     * 
+     * @return The status of the game in the newest state, or LOST once the
+     *         connection to the host is broken.
+     */
+    private GameStatus followHost() {
+        int steps = timestep.advance(System.nanoTime());
+        try {
+            for (int i = 0; i < steps; i++) {
+                netClient.sendInputs(nextInputs(-1));
+            }
+            if (!netClient.poll()) {
+                return GameStatus.RUNNING;
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return GameStatus.LOST;
+        }
+        NetState state = netClient.getState();
+        WorldSnapshot snapshot = snapshots.getBack();
+        snapshot.copyFrom(state, netClient.getTurrets(), world.getProfiler(),
+                System.nanoTime());
+        snapshots.publish();
+        updateScore(state.getTotalScore());
+        return state.getStatus();
+    }
+
+    /**
+     * Method to paint one frame of the game. Redraws the parts of the
+     * panel that changed in the latest snapshot, interpolated between its
+     * last two ticks, and stops painting once the game is over.
+     */
+    private void paintStep() {
+        WorldSnapshot snapshot = snapshots.latest();
+        panel.renderFrame(snapshot,
+                snapshot.alphaAt(System.nanoTime(), TICK_NANOS));
+        // The repaint is queued, so measure once it has run.
+        paintedTick = snapshot.getTick();
+        SwingUtilities.invokeLater(recordInputLatency);
+        if (snapshot.getStatus() != GameStatus.RUNNING) {
+            paintTimer.stop();
+        }
+    }
+
+    /**
+     * Records the input latency of the events shown by the frame painted
+     * last. Must be called on the event dispatch thread.
+     */
+    private void recordInputLatency() {
+        input.frameShown(paintedTick, world.getProfiler());
+        if (!firstFrameShown) {
+            reportFirstFrame();
+        }
+    }
+
+    /**
+     * Prints the time from the launch of the JVM to the first frame drawn,
+     * and warns if it exceeded the startup budget. Must be called by the
+     * thread that draws, once the first frame has been drawn.
+     */
+    private void reportFirstFrame() {
+        firstFrameShown = true;
+        long uptime = ManagementFactory.getRuntimeMXBean().getUptime();
+        System.out.println("startup: first frame after " + uptime
+                + " ms (budget " + STARTUP_BUDGET + " ms)");
+        if (uptime > STARTUP_BUDGET) {
+            System.out.println("startup: over budget by "
+                    + (uptime - STARTUP_BUDGET) + " ms");
+        }
+    }
+
+    /**
+     * The active render loop. Runs on its own thread and draws the latest
+     * snapshot onto the canvas at the refresh rate of the display,
+     * sleeping between frames until the next one is due.
+     */
+    private void renderLoop() {
+        long frameNanos = 1_000_000_000L / refreshRate();
+        long nextFrame = System.nanoTime();
+        while (true) {
+            WorldSnapshot snapshot = snapshots.latest();
+            canvas.renderFrame(snapshot,
+                    snapshot.alphaAt(System.nanoTime(), TICK_NANOS));
+            input.frameShown(snapshot.getTick(), snapshot.getProfiler());
+            if (!firstFrameShown) {
+                reportFirstFrame();
+            }
+            if (snapshot.getStatus() != GameStatus.RUNNING) {
+                return;
+            }
+            nextFrame += frameNanos;
+            long now = System.nanoTime();
+            if (now - nextFrame > frameNanos) {
+                // Too far behind to catch up, pace from now instead.
+                nextFrame = now;
+            }
+            sleepUntil(nextFrame);
+        }
+    }
+
+    /**
+     * Runs every game step that is due according to the fixed timestep,
+     * stopping early if the game ends.
+     * 
+     * @return The status of the game after the last step.
+     */
+    private GameStatus advanceDueSteps() {
+        int steps = timestep.advance(System.nanoTime());
+        for (int i = 0; i < steps; i++) {
+            GameStatus status = advanceWorld();
+            if (status != GameStatus.RUNNING) {
+                return status;
+            }
+        }
+        return GameStatus.RUNNING;
+    }
+
+    /**
+     * Sleeps until the given System.nanoTime deadline. Sleeps coarsely until
+     * shortly before the deadline and yields for the rest, since sleep alone
+     * often oversleeps by a millisecond or more.
+     * 
+     * @param deadline The System.nanoTime value to wait for.
+     */
+    private static void sleepUntil(long deadline) {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            if (remaining > 2_000_000L) {
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
             } else {
-                JOptionPane.showMessageDialog(null, "You Lose!",
-                        "Game Finished Message",
-                        JOptionPane.INFORMATION_MESSAGE);
-                System.exit(0);
+                Thread.yield();
             }
         }
-        if (enemyGenerationCounter == 0) {
-            panel.addEnemy();
-            setEnemyGenerationCounter();
+    }
+
+    /**
+     * Looks up the refresh rate of the display showing the frame.
+     * 
+     * @return The refresh rate in Hz, or DEFAULT_REFRESH_RATE if unknown.
+     */
+    private int refreshRate() {
+        DisplayMode mode = getGraphicsConfiguration().getDevice()
+                .getDisplayMode();
+        int rate = mode.getRefreshRate();
+        return rate == DisplayMode.REFRESH_RATE_UNKNOWN
+                ? DEFAULT_REFRESH_RATE : rate;
+    }
+
+    /**
+     * Advances the GameWorld by one tick with the currently held keys and any
+     * pending shot, and updates the score label when the score changed. In a
+     * hosted game, the inputs of the clients join those of the keyboard, and
+     * the clients are sent the state after the tick.
+     * 
+     * @return The status of the game after the tick.
+     */
+    private GameStatus advanceWorld() {
+        int inputs = nextInputs(world.getTickCount());
+        if (netHost != null) {
+            pollHost();
+            inputs |= netHost.remoteInputs();
+        }
+        GameStatus status = world.tick(inputs);
+        if (netHost != null) {
+            netHost.publish(status);
+        }
+        if (recorder != null) {
+            try {
+                recorder.record(inputs);
+            } catch (IOException e) {
+                e.printStackTrace();
+                recorder = null;
+            }
+        }
+        updateScore(world.getTotalScore());
+        return status;
+    }
+
+    /**
+     * Queues an update of the score label when the score changed.
+     * 
+     * @param score The score after the latest tick.
+     */
+    private void updateScore(int score) {
+        if (score != shownScore) {
+            shownScore = score;
+            if (scoreUpdateQueued.compareAndSet(false, true)) {
+                SwingUtilities.invokeLater(showScore);
+            }
+        }
+    }
+
+    /**
+     * Updates the score label with the latest score. Must be called on the
+     * event dispatch thread.
+     */
+    private void showScore() {
+        scoreUpdateQueued.set(false);
+        scoreLabel.setText(Integer.toString(shownScore));
+    }
+
+    /**
+     * Displays the win or lose message and stops the game by calling
+     * System.exit(0). Must be called on the event dispatch thread.
+     * 
+     * @param status The final status of the game.
+     */
+    private void finishGame(GameStatus status) {
+        closeRecorder();
+        JOptionPane.showMessageDialog(null,
+                status == GameStatus.WON ? "You Win!" : "You Lose!",
+                "Game Finished Message",
+                JOptionPane.INFORMATION_MESSAGE);
+        System.exit(0);
+    }
+
+    /**
+     * Finishes the replay file being recorded, if any.
+     */
+    private void closeRecorder() {
+        ReplayRecorder current = recorder;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Stops playing back the replay, if any, and closes its file.
+     */
+    private void closeReplay() {
+        ReplayPlayer current = replay;
+        replay = null;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Builds the input bit set for the next GameWorld tick from the held
+     * arrow keys, consuming at most one pending shot. While a replay is
+     * played back, its recorded inputs are used instead, and the keyboard
+     * takes over once the replay is over.
+     * 
+     * @param tick The tick count of the world before the tick, or -1 if
+     *             the inputs go to the host of a joined game, whose frames
+     *             do not tell which tick applied them.
+     * @return A bit set of GameWorld input flags.
+     */
+    private int nextInputs(int tick) {
+        if (replay != null) {
+            input.discard(); // Drop keys pressed while watching.
+            try {
+                if (replay.hasNext()) {
+                    return replay.nextInputs();
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            replay = null;
+        }
+        return input.nextInputs(tick);
+    }
+
+    /**
+     * Joins the networked game of a host over TCP.
+     * 
+     * @param address The host and port, as host:port.
+     * @return The client, which knows the game.
+     * @throws IOException If the address is malformed, or the host cannot
+     *                     be reached or does not answer in time.
+     */
+    private static NetClient joinGame(String address) throws IOException {
+        int colon = address.lastIndexOf(':');
+        int port;
+        try {
+            port = Integer.parseInt(address.substring(colon + 1));
+        } catch (NumberFormatException e) {
+            throw new IOException("Bad address " + address, e);
+        }
+        String host = colon > 0 ? address.substring(0, colon) : "localhost";
+        Transport transport = SocketTransport.connect(host, port);
+        try {
+            return NetClient.join(transport, JOIN_TIMEOUT_NANOS);
+        } catch (IOException e) {
+            transport.close();
+            throw e;
         }
-        enemyGenerationCounter--;
     }
 
     /**
@@ -231,23 +792,34 @@ public class GameFrame extends JFrame {
     }
 
     /**
-     * Randomly assign a value to determine how soon a new Enemy should be
-     * created.
-     */
-    private void setEnemyGenerationCounter() {
-        // Set the number of times the gameStep method should be called
-        // before the next enemy is added to the game.
-        enemyGenerationCounter = (int) (Math.random() * 300);
-    }
-
-    /**
-     * The main method to execute the game.
+     * The main method to execute the game. Run with
+     * -Dspacedefenders.render=active to draw from a dedicated render loop
+     * instead of the Swing timer. -Dspacedefenders.seed fixes the seed of
+     * the game, -Dspacedefenders.record writes a replay of it to a file,
+     * and -Dspacedefenders.replay plays such a file back.
+     * -Dspacedefenders.host=PORT hosts a networked game for
+     * -Dspacedefenders.players players, 2 by default, and
+     * -Dspacedefenders.join=HOST:PORT joins one.
+     * 
+     * The sounds start decoding in the background before anything else, and
+     * the window is shown without waiting for them. The time to the first
+     * frame, and to the last sound of a bundle decoded, is printed once
+     * known; -Dspacedefenders.startupBudget sets the milliseconds the first
+     * frame may take, 1000 by default.
      * 
      * @param args Command-line arguments if any. This program does not use this
      *             argument.
      */
     public static void main(String[] args) {
-        gameFrame = new GameFrame();
+        AssetManager assets = AssetManager.getDefault();
+        if (assets.getBundle() != null) {
+            assets.preload().thenRun(() -> System.out.println(
+                    "startup: sounds decoded after "
+                    + ManagementFactory.getRuntimeMXBean().getUptime()
+                    + " ms"));
+        }
+        gameFrame = new GameFrame("active".equals(
+                System.getProperty("spacedefenders.render")));
         gameFrame.start();
         
     }
@@ -0,0 +1,137 @@
+/**
+ * The keyboard and button input of the local player. The event dispatch
+ * thread stamps every change of the arrow keys and every shot with
+ * System.nanoTime and posts it to an InputRing; the simulation thread
+ * drains the ring once per tick to build the inputs of the tick. No input
+ * state is shared between the threads but the ring, and posting an event
+ * never waits for or allocates in the middle of a tick.
+ *
+ * Every event a tick applies is passed on, with its time and the tick, to
+ * a second ring read by the thread that draws. Once a frame showing the
+ * tick has been drawn, frameShown records the time from each event to that
+ * frame, the input latency the player feels, under the INPUT phase of the
+ * FrameProfiler.
+ *
+ * Events carry the arrow keys held after them, so a key repeat of the
+ * window system adds no events, and a lost event is made up by the next
+ * one. The rings only fill up if no tick or no frame runs for hundreds of
+ * events; until then events are dropped.
+ */
+public class GameInput {
+
+    /** The number of events each ring holds. */
+    private static final int CAPACITY = 256;
+
+    /** The input bits of the arrow keys. */
+    private static final int HELD_MASK =
+            GameWorld.INPUT_LEFT | GameWorld.INPUT_RIGHT;
+
+    /**
+     * The events not applied yet: the arrow keys held after each one, and
+     * INPUT_FIRE for a shot. Posted by the event dispatch thread and
+     * drained by the simulation thread.
+     */
+    private final InputRing events = new InputRing(CAPACITY);
+
+    /**
+     * The events applied by a tick, each with the number of the tick.
+     * Posted by the simulation thread and drained by the drawing thread.
+     */
+    private final InputRing applied = new InputRing(CAPACITY);
+
+    /** The arrow keys held, as seen by the event dispatch thread. */
+    private int posted;
+
+    /** The arrow keys held, as seen by the simulation thread. */
+    private int held;
+
+    /**
+     * Posts a press or release of an arrow key. Only the event dispatch
+     * thread may call this.
+     * @param key GameWorld.INPUT_LEFT or INPUT_RIGHT.
+     * @param down True if the key was pressed, false if released.
+     */
+    public void setHeld(int key, boolean down) {
+        int keys = down ? posted | key : posted & ~key;
+        if (keys != posted) {
+            posted = keys;
+            events.offer(keys, System.nanoTime());
+        }
+    }
+
+    /**
+     * Posts a shot. Only the event dispatch thread may call this.
+     */
+    public void fire() {
+        events.offer(posted | GameWorld.INPUT_FIRE, System.nanoTime());
+    }
+
+    /**
+     * Drains the events posted since the last tick and builds the inputs
+     * of the next tick from them. At most one shot is taken per tick; the
+     * events from a second shot on stay posted for the next ticks. Only
+     * the simulation thread may call this.
+     * @param tick The number of the tick the inputs are for, which the
+     *        first frame showing their effects follows, or -1 to not
+     *        measure their latency.
+     * @return A bit set of GameWorld input flags.
+     */
+    public int nextInputs(int tick) {
+        boolean fired = false;
+        while (!events.isEmpty()) {
+            int event = events.peekValue();
+            if ((event & GameWorld.INPUT_FIRE) != 0) {
+                if (fired) {
+                    break;
+                }
+                fired = true;
+            }
+            held = event & HELD_MASK;
+            if (tick >= 0) {
+                applied.offer(tick, events.peekTime());
+            }
+            events.remove();
+        }
+        return fired ? held | GameWorld.INPUT_FIRE : held;
+    }
+
+    /**
+     * Drains the events posted since the last tick without applying their
+     * shots, such as while a replay is watched, so keys pressed meanwhile
+     * do not fire once the player takes over. Only the simulation thread
+     * may call this.
+     */
+    public void discard() {
+        while (!events.isEmpty()) {
+            held = events.peekValue() & HELD_MASK;
+            events.remove();
+        }
+    }
+
+    /**
+     * Records the input latency of every event applied by the ticks a
+     * frame shows. Only the thread that draws may call this, right after
+     * a frame was drawn.
+     * @param tick The number of ticks played before the frame's snapshot.
+     * @param profiler The profiler recording the latencies.
+     */
+    public void frameShown(int tick, FrameProfiler profiler) {
+        boolean enabled = profiler.isEnabled();
+        while (!applied.isEmpty() && applied.peekValue() < tick) {
+            if (enabled) {
+                profiler.record(FrameProfiler.Phase.INPUT,
+                        applied.peekTime());
+            }
+            applied.remove();
+        }
+    }
+
+    /**
+     * A getter method for the number of events dropped because a ring was
+     * full.
+     * @return The number of events lost, or not measured.
+     */
+    public long getDropped() {
+        return events.getDropped() + applied.getDropped();
+    }
+}
@@ -0,0 +1,66 @@
+import java.awt.Graphics2D;
+
+/**
+ * The render pass shared by every display mode. GameCanvas calls it on the
+ * back buffer of its BufferStrategy, and the IncrementalRenderer behind
+ * GamePanel draws single damaged areas of its frame with it.
+ */
+public final class GameRenderer {
+
+    /**
+     * Private constructor, the renderer is only used statically.
+     */
+    private GameRenderer() {
+    }
+
+    /**
+     * Clears the given area and paints the turret, enemies, and missiles
+     * of the world onto it, interpolated between the last two ticks. While
+     * the world's profiler is enabled, the paint time is recorded and the
+     * profiler overlay is drawn on top.
+     * @param g A Graphics2D object for drawing.
+     * @param world The world or snapshot to paint.
+     * @param sprites The sprites of the enemies and missiles, owned by the
+     *        caller and reused across frames.
+     * @param width The width of the area to clear.
+     * @param height The height of the area to clear.
+     * @param alpha 0 for the state before the last tick up to 1 for the
+     *        current state.
+     */
+    public static void render(Graphics2D g, WorldView world,
+            SpriteCache sprites, int width, int height, double alpha) {
+        FrameProfiler profiler = world.getProfiler();
+        long start = profiler.start();
+        draw(g, world, sprites, 0, 0, width, height, alpha);
+        profiler.record(FrameProfiler.Phase.PAINT, start);
+        if (profiler.isEnabled()) {
+            profiler.paintOverlay(g);
+        }
+    }
+
+    /**
+     * Clears the given area and paints the turret, enemies, and missiles
+     * of the world onto it. Entities outside the clip of g are skipped, so
+     * drawing a small clipped area costs little.
+     * @param g A Graphics2D object for drawing, clipped to the area.
+     * @param world The world or snapshot to paint.
+     * @param sprites The sprites of the enemies and missiles.
+     * @param x The x-component of the area to clear.
+     * @param y The y-component of the area to clear.
+     * @param width The width of the area to clear.
+     * @param height The height of the area to clear.
+     * @param alpha 0 for the state before the last tick up to 1 for the
+     *        current state.
+     */
+    public static void draw(Graphics2D g, WorldView world,
+            SpriteCache sprites, int x, int y, int width, int height,
+            double alpha) {
+        g.clearRect(x, y, width, height);
+        for (Turret turret : world.getTurrets()) {
+            turret.paint(g, alpha);
+        }
+        sprites.validate(g);
+        Enemy.paintAll(g, sprites, world.getEnemies(), alpha);
+        Missile.paintAll(g, sprites, world.getMissiles(), alpha);
+    }
+}
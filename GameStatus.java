@@ -0,0 +1,14 @@
+/**
+ * The outcome of a single step of the game, as returned by GameWorld.tick.
+ */
+public enum GameStatus {
+
+    /** The game is still in progress. */
+    RUNNING,
+
+    /** The player has spent all shots with a winning score. */
+    WON,
+
+    /** An enemy reached the turret, or the shots ran out too early. */
+    LOST
+}
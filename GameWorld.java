@@ -0,0 +1,1081 @@
+import java.awt.Color;
+import java.awt.Rectangle;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * The headless simulation core of the game. This class owns the enemies,
+ * missiles, turrets, and score, and advances all of them one step at a time
+ * through the tick method. It has no dependency on a display, so it can be
+ * driven by the Swing timer in GameFrame or stepped as fast as possible
+ * with java.awt.headless=true.
+ */
+public class GameWorld implements WorldView {
+
+    /** Input bit set while the turret should move left. */
+    public static final int INPUT_LEFT = 1;
+
+    /** Input bit set while the turret should move right. */
+    public static final int INPUT_RIGHT = 1 << 1;
+
+    /** Input bit set when a missile should be fired this tick. */
+    public static final int INPUT_FIRE = 1 << 2;
+
+    /**
+     * The number of input bits of each player. The inputs of player p are
+     * the bits INPUT_LEFT, INPUT_RIGHT, and INPUT_FIRE shifted left by p
+     * times this, so player 0 uses the bits of a single-player game.
+     */
+    public static final int PLAYER_INPUT_BITS = 3;
+
+    /** The most players, each with a turret of their own, in one world. */
+    public static final int MAX_PLAYERS = 4;
+
+    /** The number of shots after which the game is decided. */
+    public static final int MAX_SHOTS = 10;
+
+    /** The score needed to win once all shots are spent. */
+    public static final int WINNING_SCORE = 800;
+
+    /**
+     * The most missiles that can be in flight at once. The missile store is
+     * allocated at this size up front, so firing never grows it.
+     */
+    public static final int MAX_MISSILES = 256;
+
+    /** The side length of a broadphase cell in pixels. */
+    private static final int GRID_CELL_SIZE = 64;
+
+    /**
+     * The number of enemies and missiles from which the move method runs
+     * on the parallel mover, if one is set. Smaller scenes are moved
+     * faster on one thread than split into tasks.
+     */
+    private static final int PARALLEL_THRESHOLD = 8192;
+
+    /**
+     * The bit marking a collision event as a missile hit; turret contacts
+     * leave it clear, so they come first at the same time of impact.
+     */
+    private static final long MISSILE_HIT = 1L << 31;
+
+    /** The width bounds of the playing field. */
+    private final int width;
+
+    /** The height bounds of the playing field. */
+    private final int height;
+
+    /**
+     * The enemies in the game. Entities are added in the addEnemy
+     * method, killed in the detectCollison method, and removed by the
+     * compaction at the end of each tick.
+     */
+    private EntityStore enemies = new EntityStore(16);
+
+    /**
+     * The missiles in the game, acting as a bounded pool. Entities are added
+     * in the addMissile method and killed in the detectCollison and move
+     * methods; the compaction at the end of each tick frees their slots
+     * for the next shots.
+     */
+    private EntityStore missiles = new EntityStore(MAX_MISSILES);
+
+    /**
+     * The scheduler running the descend and shrink animations of the
+     * enemies. Advanced once per tick in the move method.
+     */
+    private AnimationScheduler animations = new AnimationScheduler(enemies);
+
+    /**
+     * The current score in the game. This value is updated in the
+     * detectCollision method.
+     */
+    private int totalScore;
+
+    /**
+     * The number of missile objects that have been created.
+     */
+    private int shotsFired;
+
+    /**
+     * Boolean used to determine the next type of enemy to create.
+     * Negated after every enemy creation.
+     */
+    private boolean isNextEnemyBig;
+
+    /**
+     * The remaining number of ticks before a new Enemy is automatically
+     * added to the game.
+     */
+    private int enemyGenerationCounter;
+
+    /**
+     * The turrets of the players, in player order. Player 0 is the local
+     * player of a single-player game, or the host of a networked one.
+     */
+    private Turret[] turrets;
+
+    /** The score of each player, summing up to totalScore. */
+    private int[] playerScores;
+
+    /** The player who fired the missile with each handle index. */
+    private byte[] missileOwner = new byte[MAX_MISSILES];
+
+    /**
+     * The broadphase that buckets enemies by position so each missile only
+     * tests the enemies near it. Rebuilt in every detectCollision call.
+     */
+    private SpatialGrid enemyGrid;
+
+    /**
+     * The slot of the enemy hit by each missile during the current
+     * collision pass, or -1 if the missile hit nothing.
+     */
+    private int[] missileHits = new int[MAX_MISSILES];
+
+    /**
+     * The time of impact of each missile with the enemy in missileHits,
+     * from 0 at the start of the last tick's motion up to 1 at its end.
+     */
+    private float[] missileHitTimes = new float[MAX_MISSILES];
+
+    /** The enemy slots found by one broadphase query. */
+    private int[] candidates = new int[16];
+
+    /**
+     * The number of enemies the per-enemy arrays of collision detection
+     * and animation have room for.
+     */
+    private int reservedEnemies;
+
+    /**
+     * The missile hits and turret contacts of the current collision pass,
+     * each packed into a long that sorts by time of impact.
+     */
+    private long[] events = new long[32];
+
+    /**
+     * The single source of randomness of the game: enemy positions and
+     * colors, missile colors, and spawn times. A world created from a seed
+     * therefore plays out the same for the same inputs.
+     */
+    private Random rand;
+
+    /**
+     * The per-phase timings of this world, recorded only while enabled.
+     */
+    private FrameProfiler profiler = new FrameProfiler();
+
+    /**
+     * Moves large scenes on a ForkJoinPool, or null to always move on the
+     * calling thread.
+     */
+    private ParallelMover mover;
+
+    /**
+     * Predicts the collisions of the coming ticks in the event-driven
+     * mode, or null to scan every missile and enemy each tick.
+     */
+    private CollisionPredictor predictor;
+
+    /** The kernels moving the entities and testing them against the gun. */
+    private EntityKernels kernels = EntityKernels.DEFAULT;
+
+    /** Staged by the move, true where the enemy in that slot hit a wall. */
+    private boolean[] bounced = new boolean[16];
+
+    /** Staged by the move, true where the missile in that slot went off. */
+    private boolean[] despawned = new boolean[MAX_MISSILES];
+
+    /**
+     * Spawns the waves of a wave file, or null to spawn single enemies at
+     * random intervals.
+     */
+    private WaveScheduler waves;
+
+    /**
+     * The number of steps performed so far. Waves are scheduled by it.
+     */
+    private int tickCount;
+
+    /**
+     * Sound played when a missile is fired.
+     */
+    private Sound sound = new Sound("missileSound.wav");
+
+    /**
+     * The mixer the sounds of this world are played on, or null for
+     * AudioMixer.getDefault().
+     */
+    private AudioMixer audio;
+
+    /**
+     * Constructor for GameWorld objects, initializing the field bounds,
+     * total score, next enemy type, and the Turret object. Also creates
+     * a SmallEnemy and a BigEnemy to start the game.
+     * @param width The width bounds of the playing field.
+     * @param height The height bounds of the playing field.
+     * @param totalScore The total score to start the game.
+     * @param isNextEnemyBig Boolean to determine the next enemy type.
+     * @param turret A reference to the current Turret object.
+     */
+    public GameWorld(int width, int height, int totalScore,
+            boolean isNextEnemyBig, Turret turret) {
+        this(width, height, totalScore, isNextEnemyBig, turret, new Random());
+    }
+
+    /**
+     * Constructor for single-player GameWorld objects drawing all
+     * randomness from the given source.
+     * @param width The width bounds of the playing field.
+     * @param height The height bounds of the playing field.
+     * @param totalScore The total score to start the game.
+     * @param isNextEnemyBig Boolean to determine the next enemy type.
+     * @param turret A reference to the current Turret object.
+     * @param rand The source of randomness for the whole game.
+     */
+    public GameWorld(int width, int height, int totalScore,
+            boolean isNextEnemyBig, Turret turret, Random rand) {
+        this(width, height, totalScore, isNextEnemyBig,
+                new Turret[] {turret}, rand);
+    }
+
+    /**
+     * Constructor for GameWorld objects with a turret per player, drawing
+     * all randomness from the given source. Also creates a SmallEnemy and
+     * a BigEnemy to start the game. The starting score counts as player
+     * 0's.
+     * @param width The width bounds of the playing field.
+     * @param height The height bounds of the playing field.
+     * @param totalScore The total score to start the game.
+     * @param isNextEnemyBig Boolean to determine the next enemy type.
+     * @param turrets The turrets of the players, 1 up to MAX_PLAYERS.
+     * @param rand The source of randomness for the whole game.
+     */
+    public GameWorld(int width, int height, int totalScore,
+            boolean isNextEnemyBig, Turret[] turrets, Random rand) {
+        if (turrets.length < 1 || turrets.length > MAX_PLAYERS) {
+            throw new IllegalArgumentException("between 1 and "
+                    + MAX_PLAYERS + " turrets expected: " + turrets.length);
+        }
+        this.rand = rand;
+        this.width = width;
+        this.height = height;
+        this.totalScore = totalScore;
+        this.isNextEnemyBig = isNextEnemyBig;
+        this.turrets = turrets.clone();
+        playerScores = new int[turrets.length];
+        playerScores[0] = totalScore;
+        enemyGrid = new SpatialGrid(width, height, GRID_CELL_SIZE);
+        BigEnemy.INSTANCE.spawn(enemies, rand, 100, 100);
+        SmallEnemy.INSTANCE.spawn(enemies, rand, 50, 50);
+        reserveEnemies(enemies.x.length);
+    }
+
+    /**
+     * Creates a new game whose turret color, first enemy type, and every
+     * later random choice all follow from the given seed. Two worlds
+     * created from the same seed and given the same inputs every tick
+     * play out identically.
+     * @param width The width bounds of the playing field.
+     * @param height The height bounds of the playing field.
+     * @param seed The seed of the game.
+     * @return The new world.
+     */
+    public static GameWorld create(int width, int height, long seed) {
+        return create(width, height, seed, 1);
+    }
+
+    /**
+     * Creates a new game for the given number of players, defending the
+     * field side by side. As with one player, the game follows from the
+     * seed and the inputs of every tick alone, and a game of one player
+     * is the same as the one create(width, height, seed) creates.
+     * @param width The width bounds of the playing field.
+     * @param height The height bounds of the playing field.
+     * @param seed The seed of the game.
+     * @param players The number of players, 1 up to MAX_PLAYERS.
+     * @return The new world.
+     */
+    public static GameWorld create(int width, int height, long seed,
+            int players) {
+        Random rand = new Random(seed);
+        Turret[] turrets = createTurrets(width, height, players, rand);
+        return new GameWorld(width, height, 0, rand.nextInt(2) == 1,
+                turrets, rand);
+    }
+
+    /**
+     * Creates the turrets of a new game, spread evenly along the bottom of
+     * the field, each in a random color. Draws from the source of
+     * randomness exactly as create does before the world is built, so a
+     * client can recreate the turrets of a game from its seed.
+     * @param width The width bounds of the playing field.
+     * @param height The height bounds of the playing field.
+     * @param players The number of players.
+     * @param rand The source of randomness of the game, fresh from the
+     *        seed.
+     * @return The turrets, in player order.
+     */
+    public static Turret[] createTurrets(int width, int height, int players,
+            Random rand) {
+        Turret[] turrets = new Turret[players];
+        for (int p = 0; p < players; p++) {
+            Color turretColor = new Color(rand.nextFloat(),
+                    rand.nextFloat(), rand.nextFloat());
+            turrets[p] = Turret.createAt(width * (2 * p + 1)
+                    / (2 * players), height, turretColor);
+        }
+        return turrets;
+    }
+
+    /**
+     * Moves the inputs of one player into their bits of the inputs of a
+     * tick.
+     * @param player The player, below MAX_PLAYERS.
+     * @param inputs A bit set of INPUT_LEFT, INPUT_RIGHT, and INPUT_FIRE.
+     * @return The inputs in the bits of the player, to be combined with
+     *         those of the other players by or.
+     */
+    public static int playerInputs(int player, int inputs) {
+        return inputs << (player * PLAYER_INPUT_BITS);
+    }
+
+    /**
+     * Performs one step of the game. This method performs the following
+     * tasks:
+     *
+     * <ol>
+     * <li>Applies the given inputs to the turrets and fires a missile
+     * from each turret whose player requested one.</li>
+     * <li>Detects collisions between enemies, missiles, and the turret
+     * along the paths they moved in the last tick, in time-of-impact
+     * order.</li>
+     * <li>Moves the turrets and all the enemies and missiles.</li>
+     * <li>Decides the game once more than MAX_SHOTS shots were fired.</li>
+     * <li>Adds a new enemy when the generation counter runs out, or the
+     * waves due this tick when a wave timeline is set.</li>
+     * <li>Removes the enemies and missiles killed during the step in one
+     * compaction pass.</li>
+     * <li>Hands the sounds requested during the step to the AudioMixer
+     * as one batch.</li>
+     * </ol>
+     *
+     * @param inputs A bit set of INPUT_LEFT, INPUT_RIGHT, and INPUT_FIRE,
+     *        for player 0 in the lowest bits and for every other player in
+     *        the bits given by playerInputs.
+     * @return The status of the game after this step.
+     */
+    public GameStatus tick(int inputs) {
+        long start = profiler.start();
+        GameStatus status = step(inputs);
+        compact();
+        getAudio().flush();
+        profiler.record(FrameProfiler.Phase.TICK, start);
+        return status;
+    }
+
+    /**
+     * Performs the game rules of one tick, see tick.
+     * @param inputs The input bits of every player.
+     * @return The status of the game after this step.
+     */
+    private GameStatus step(int inputs) {
+        for (int p = 0; p < turrets.length; p++) {
+            int own = inputs >>> (p * PLAYER_INPUT_BITS);
+            turrets[p].setMoveDirection(true, (own & INPUT_LEFT) != 0);
+            turrets[p].setMoveDirection(false, (own & INPUT_RIGHT) != 0);
+            if ((own & INPUT_FIRE) != 0) {
+                addMissile(p);
+            }
+        }
+        long start = profiler.start();
+        boolean reached = detectCollision();
+        profiler.record(FrameProfiler.Phase.COLLISION, start);
+        if (reached) {
+            return GameStatus.LOST;
+        }
+        start = profiler.start();
+        // The next collision pass sweeps from these positions to the ones
+        // after the move.
+        enemies.savePositions();
+        missiles.savePositions();
+        for (Turret turret : turrets) {
+            turret.savePosition();
+        }
+        move();
+        profiler.record(FrameProfiler.Phase.MOVE, start);
+        if (shotsFired > MAX_SHOTS) {
+            return totalScore >= WINNING_SCORE ? GameStatus.WON
+                    : GameStatus.LOST;
+        }
+        if (waves != null) {
+            if (waves.isDue(tickCount)) {
+                start = profiler.start();
+                int first = enemies.size();
+                waves.spawnDue(tickCount, enemies, rand);
+                enemiesAdded(first);
+                profiler.record(FrameProfiler.Phase.SPAWN, start);
+            }
+        } else {
+            if (enemyGenerationCounter == 0) {
+                start = profiler.start();
+                addEnemy();
+                setEnemyGenerationCounter();
+                profiler.record(FrameProfiler.Phase.SPAWN, start);
+            }
+            enemyGenerationCounter--;
+        }
+        tickCount++;
+        return GameStatus.RUNNING;
+    }
+
+    /**
+     * Removes the enemies and missiles killed since the last compaction.
+     * Killed entities keep their slots until then, so the loops of a step
+     * never skip an entity; tick calls this once at its end.
+     */
+    public void compact() {
+        enemies.compact();
+        missiles.compact();
+    }
+
+    /**
+     * Moves all current enemies and missiles with the kernels of this
+     * world, as well as the turrets, and advances the enemy animations.
+     */
+    public void move() {
+        for (Turret turret : turrets) {
+            turret.move(width);
+        }
+        if (mover != null
+                && enemies.size() + missiles.size() >= PARALLEL_THRESHOLD) {
+            mover.move(enemies, missiles, animations, kernels, width,
+                    height);
+            return;
+        }
+        if (bounced.length < enemies.size()) {
+            bounced = new boolean[Math.max(enemies.size(),
+                    bounced.length * 2)];
+        }
+        if (despawned.length < missiles.size()) {
+            despawned = new boolean[Math.max(missiles.size(),
+                    despawned.length * 2)];
+        }
+        // The kernels step every slot, then the walls and the panel edge
+        // are handled in slot order, as each move method would.
+        kernels.stepEnemies(enemies, 0, enemies.size(), width, bounced);
+        for (int slot = 0; slot < enemies.size(); slot++) {
+            if (bounced[slot]) {
+                // Transition enemy down after hitting a wall.
+                Enemy.forKind(enemies.kind[slot]).transitionY(enemies,
+                        animations, slot);
+            }
+        }
+        animations.advance();
+        kernels.stepMissiles(missiles, 0, missiles.size(), height,
+                despawned);
+        for (int slot = 0; slot < missiles.size(); slot++) {
+            if (despawned[slot]) {
+                missiles.kill(missiles.handleAt(slot));
+            }
+        }
+    }
+
+    /**
+     * Replaces the kernels moving the entities of this world, for example
+     * to compare the Vector API kernels with the scalar ones. All kernels
+     * give the same results.
+     * @param kernels The kernels to use.
+     */
+    public void setKernels(EntityKernels kernels) {
+        this.kernels = kernels;
+    }
+
+    /**
+     * A getter method for the kernels moving the entities of this world.
+     * @return The kernels, EntityKernels.DEFAULT unless replaced.
+     */
+    public EntityKernels getKernels() {
+        return kernels;
+    }
+
+    /**
+     * Sets the mixer the sounds of this world are played on. Worlds run
+     * side by side, such as in BotRunner, each get their own mixer so they
+     * share no state.
+     * @param audio The mixer, or null for AudioMixer.getDefault().
+     */
+    public void setAudio(AudioMixer audio) {
+        this.audio = audio;
+        animations.setAudio(audio);
+    }
+
+    /**
+     * A getter method for the mixer the sounds of this world are played on.
+     * @return The mixer of this world.
+     */
+    public AudioMixer getAudio() {
+        return audio != null ? audio : AudioMixer.getDefault();
+    }
+
+    /**
+     * Adds a new missile to the game at the Turret's position
+     * and plays the missileSound. When MAX_MISSILES are already in flight,
+     * the missile closest to leaving the field is recycled for the new shot.
+     */
+    public void addMissile() {
+        addMissile(0);
+    }
+
+    /**
+     * Adds a new missile to the game at the position of a player's turret
+     * and plays the missileSound, as addMissile does. The player scores
+     * the enemy the missile destroys.
+     * @param player The player firing the missile.
+     */
+    public void addMissile(int player) {
+        sound.play(getAudio());
+        if (missiles.size() == MAX_MISSILES) {
+            missiles.remove(missiles.handleAt(highestMissileSlot()));
+        }
+        Rectangle rect = turrets[player].turret;
+        int handle = Missile.spawn(missiles, rand, (int)rect.getX()
+                + (int)(rect.getWidth() / 2) - 7, (int)rect.getY() - 7);
+        int index = EntityStore.indexOf(handle);
+        if (index >= missileOwner.length) {
+            missileOwner = Arrays.copyOf(missileOwner,
+                    Math.max(index + 1, missileOwner.length * 2));
+        }
+        missileOwner[index] = (byte)player;
+        if (predictor != null) {
+            predictor.missileAdded(handle);
+        }
+        shotsFired++;
+    }
+
+    /**
+     * Finds the missile that has travelled the furthest up the field.
+     * @return The slot of the missile with the lowest y-component.
+     */
+    private int highestMissileSlot() {
+        int highest = 0;
+        for (int slot = 1; slot < missiles.size(); slot++) {
+            if (missiles.y[slot] < missiles.y[highest]) {
+                highest = slot;
+            }
+        }
+        return highest;
+    }
+
+    /**
+     * Adds either a SmallEnemy or a BigEnemy to the game, depending
+     * on the value of isNextEnemyBig.
+     */
+    public void addEnemy() {
+        int first = enemies.size();
+        if (isNextEnemyBig) {
+            BigEnemy.INSTANCE.spawn(enemies, rand, 100, 100);
+        } else {
+            SmallEnemy.INSTANCE.spawn(enemies, rand, 50, 50);
+        }
+        isNextEnemyBig = !isNextEnemyBig;
+        enemiesAdded(first);
+    }
+
+    /**
+     * Tells the collision predictor, if any, about the enemies spawned
+     * since the store held the given number of slots. When the spawn grew
+     * the store, the per-enemy arrays grow with it right away, instead of
+     * one by one over the following ticks.
+     * @param first The first slot of the new enemies.
+     */
+    private void enemiesAdded(int first) {
+        if (enemies.x.length > reservedEnemies) {
+            reserveEnemies(enemies.x.length);
+        }
+        if (predictor == null) {
+            return;
+        }
+        for (int slot = first; slot < enemies.size(); slot++) {
+            predictor.enemyChanged(enemies.handleAt(slot));
+        }
+    }
+
+    /**
+     * Method detects the collision of the missile and all the enemies. This is
+     * done by sweeping invisible rectangles around the enemies, missiles, and
+     * the turret's gun from their previous to their current positions, so
+     * they collide even when they pass through each other within one tick.
+     * Each missile hits at most one enemy, the one it reaches first, or the
+     * one in the lowest slot at the same time. The hits and the enemies
+     * reaching the gun are then handled in time-of-impact order, so an
+     * enemy destroyed before it reaches the gun does not end the game, and
+     * a missile arriving after its enemy was destroyed flies on. In the
+     * event-driven mode only the candidates of the collision predictor are
+     * swept, with the same result.
+     * @return True when an enemy has reached the turret object.
+     */
+    public boolean detectCollision() {
+        if (missileHits.length < missiles.size()) {
+            missileHits = new int[Math.max(missiles.size(),
+                    missileHits.length * 2)];
+        }
+        ensureHitTimes();
+        int eventCount = predictor != null ? queuePredictedEvents()
+                : queueScannedEvents();
+        boolean reached = applyEvents(eventCount);
+        if (predictor != null) {
+            predictor.predict();
+        }
+        return reached;
+    }
+
+    /**
+     * Queues the hits of every missile and the gun contacts of every enemy,
+     * found by the spatial grid and a test of each enemy against the gun.
+     * @return The number of queued events.
+     */
+    private int queueScannedEvents() {
+        findHits(missileHits);
+        ensureEvents(enemies.size() + missiles.size());
+        if (candidates.length < enemies.size()) {
+            candidates = new int[Math.max(enemies.size(),
+                    candidates.length * 2)];
+        }
+        int eventCount = 0;
+        for (Turret turret : turrets) {
+            // Only the enemies whose swept box overlaps the gun's can
+            // reach it.
+            Rectangle gun = turret.turret;
+            int gunDistance = turret.getMoveDistance();
+            int contacts = kernels.sweptOverlaps(enemies,
+                    gun.x - Math.max(gunDistance, 0), gun.y,
+                    gun.width + Math.abs(gunDistance), gun.height,
+                    candidates);
+            for (int k = 0; k < contacts; k++) {
+                int i = candidates[k];
+                float time = gunContact(turret, i);
+                if (time >= 0) {
+                    events[eventCount++] = event(time, i);
+                }
+            }
+        }
+        for (int j = 0; j < missiles.size(); j++) {
+            if (missileHits[j] >= 0) {
+                events[eventCount++] = event(missileHitTimes[j], j)
+                        | MISSILE_HIT;
+            }
+        }
+        return eventCount;
+    }
+
+    /**
+     * Queues the hits and gun contacts among the candidates of the
+     * collision predictor. A missile of several candidate pairs is queued
+     * once per pair; applyEvents skips the copies.
+     * @return The number of queued events.
+     */
+    private int queuePredictedEvents() {
+        int pairs = predictor.findCandidates();
+        int contacts = predictor.getTurretCandidateCount();
+        ensureEvents(pairs + contacts * turrets.length);
+        for (int k = 0; k < pairs; k++) {
+            missileHits[predictor.getCandidateMissile(k)] = -1;
+        }
+        for (int k = 0; k < pairs; k++) {
+            sweepHit(missileHits, predictor.getCandidateMissile(k),
+                    predictor.getCandidateEnemy(k));
+        }
+        int eventCount = 0;
+        for (int k = 0; k < contacts; k++) {
+            int i = predictor.getTurretCandidate(k);
+            for (Turret turret : turrets) {
+                float time = gunContact(turret, i);
+                if (time >= 0) {
+                    events[eventCount++] = event(time, i);
+                }
+            }
+        }
+        for (int k = 0; k < pairs; k++) {
+            int j = predictor.getCandidateMissile(k);
+            if (missileHits[j] >= 0) {
+                events[eventCount++] = event(missileHitTimes[j], j)
+                        | MISSILE_HIT;
+            }
+        }
+        return eventCount;
+    }
+
+    /**
+     * Handles the queued hits and gun contacts in time-of-impact order.
+     * @param eventCount The number of queued events.
+     * @return True when an enemy has reached the turret object.
+     */
+    private boolean applyEvents(int eventCount) {
+        Arrays.sort(events, 0, eventCount);
+        for (int k = 0; k < eventCount; k++) {
+            if (k > 0 && events[k] == events[k - 1]) {
+                continue; // Queued twice.
+            }
+            int index = (int)(events[k] & (MISSILE_HIT - 1));
+            if ((events[k] & MISSILE_HIT) == 0) {
+                if (enemies.alive[index]) {
+                    return true;
+                }
+                continue; // Destroyed before it reached the gun.
+            }
+            int i = missileHits[index];
+            if (!enemies.alive[i]) {
+                continue; // Destroyed before the missile got there.
+            }
+            // Missile has hit an enemy!
+            int missile = missiles.handleAt(index);
+            missiles.kill(missile);
+            Enemy enemy = Enemy.forKind(enemies.kind[i]);
+            totalScore += enemy.getScoreValue();
+            playerScores[missileOwner[EntityStore.indexOf(missile)]] +=
+                    enemy.getScoreValue();
+            enemy.processCollision(enemies, animations, i);
+            if (predictor != null && enemies.alive[i]) {
+                predictor.enemyChanged(enemies.handleAt(i)); // Shrinking.
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Sweeps an enemy against the gun of a turret over the last tick.
+     * @param turret The turret.
+     * @param i The slot of the enemy.
+     * @return The time of impact, or a negative value if the enemy did
+     *         not reach the gun.
+     */
+    private float gunContact(Turret turret, int i) {
+        Rectangle gun = turret.turret;
+        int gunDistance = turret.getMoveDistance();
+        return Sweep.timeOfImpact(enemies.previousX[i], enemies.previousY[i],
+                enemies.width[i], enemies.height[i],
+                enemies.x[i] - enemies.previousX[i],
+                enemies.y[i] - enemies.previousY[i], gun.x - gunDistance,
+                gun.y, gun.width, gun.height, gunDistance, 0);
+    }
+
+    /**
+     * Makes room for the given number of queued events.
+     * @param needed The number of events to make room for.
+     */
+    private void ensureEvents(int needed) {
+        if (events.length < needed) {
+            events = new long[Math.max(needed, events.length * 2)];
+        }
+    }
+
+    /**
+     * Finds the enemy hit by each missile using the spatial grid broadphase.
+     * The grid holds the area each enemy swept through in the last tick,
+     * and each missile queries the area it swept through itself.
+     * @param hits Receives, per missile slot, the slot of the enemy the
+     *        missile reaches first, or -1. Must hold at least one entry per
+     *        missile.
+     */
+    public void findHits(int[] hits) {
+        ensureHitTimes();
+        enemyGrid.reset(enemies.size());
+        for (int i = 0; i < enemies.size(); i++) {
+            int x = Math.min(enemies.previousX[i], enemies.x[i]);
+            int y = Math.min(enemies.previousY[i], enemies.y[i]);
+            enemyGrid.setItem(i, x, y,
+                    Math.max(enemies.previousX[i], enemies.x[i]) - x
+                    + enemies.width[i],
+                    Math.max(enemies.previousY[i], enemies.y[i]) - y
+                    + enemies.height[i]);
+        }
+        enemyGrid.build();
+        for (int j = 0; j < missiles.size(); j++) {
+            int x = Math.min(missiles.previousX[j], missiles.x[j]);
+            int y = Math.min(missiles.previousY[j], missiles.y[j]);
+            int width = Math.max(missiles.previousX[j], missiles.x[j]) - x
+                    + missiles.width[j];
+            int height = Math.max(missiles.previousY[j], missiles.y[j]) - y
+                    + missiles.height[j];
+            int count = enemyGrid.overlaps(x, y, width, height, candidates);
+            if (count > candidates.length) {
+                candidates = new int[Math.max(count, candidates.length * 2)];
+                enemyGrid.overlaps(x, y, width, height, candidates);
+            }
+            hits[j] = -1;
+            for (int k = 0; k < count; k++) {
+                sweepHit(hits, j, candidates[k]);
+            }
+        }
+    }
+
+    /**
+     * Finds the enemy hit by each missile by sweeping every missile against
+     * every enemy. This is the reference implementation for findHits and
+     * must always produce the same result.
+     * @param hits Receives, per missile slot, the slot of the enemy the
+     *        missile reaches first, or -1. Must hold at least one entry per
+     *        missile.
+     */
+    public void findHitsReference(int[] hits) {
+        ensureHitTimes();
+        Arrays.fill(hits, 0, missiles.size(), -1);
+        for (int i = 0; i < enemies.size(); i++) {
+            for (int j = 0; j < missiles.size(); j++) {
+                sweepHit(hits, j, i);
+            }
+        }
+    }
+
+    /**
+     * Sweeps a missile against an enemy and keeps the enemy as the
+     * missile's hit if the missile reaches it before its current hit, or
+     * at the same time with a lower slot.
+     * @param hits The enemy slot hit by each missile so far, or -1.
+     * @param j The slot of the missile.
+     * @param i The slot of the enemy.
+     */
+    private void sweepHit(int[] hits, int j, int i) {
+        float time = Sweep.timeOfImpact(missiles.previousX[j],
+                missiles.previousY[j], missiles.width[j], missiles.height[j],
+                missiles.x[j] - missiles.previousX[j],
+                missiles.y[j] - missiles.previousY[j], enemies.previousX[i],
+                enemies.previousY[i], enemies.width[i], enemies.height[i],
+                enemies.x[i] - enemies.previousX[i],
+                enemies.y[i] - enemies.previousY[i]);
+        if (time < 0) {
+            return;
+        }
+        if (hits[j] < 0 || time < missileHitTimes[j]
+                || time == missileHitTimes[j] && i < hits[j]) {
+            hits[j] = i;
+            missileHitTimes[j] = time;
+        }
+    }
+
+    /**
+     * Makes room for the time of impact of every missile.
+     */
+    private void ensureHitTimes() {
+        if (missileHitTimes.length < missiles.size()) {
+            missileHitTimes = new float[Math.max(missiles.size(),
+                    missileHitTimes.length * 2)];
+        }
+    }
+
+    /**
+     * Packs a collision event into a long. Times of impact are never
+     * negative, so their float bits sort in the same order as the times.
+     * @param time The time of impact, from 0 up to 1.
+     * @param index The slot of the missile or enemy of the event.
+     * @return The packed event, without the MISSILE_HIT bit.
+     */
+    private static long event(float time, int index) {
+        return (long)Float.floatToIntBits(time) << 32 | index;
+    }
+
+    /**
+     * Randomly assign a value to determine how soon a new Enemy should be
+     * created.
+     */
+    private void setEnemyGenerationCounter() {
+        // Set the number of ticks before the next enemy is added.
+        enemyGenerationCounter = rand.nextInt(300);
+    }
+
+    /**
+     * A getter method for the current total score of the game.
+     * @return The current total score.
+     */
+    public int getTotalScore() {
+        return totalScore;
+    }
+
+    /**
+     * A getter method for the score of one player, the value of the
+     * enemies destroyed by their missiles. The players of a game share
+     * its shots and win or lose together by the total score.
+     * @param player The player.
+     * @return The score of the player.
+     */
+    public int getScore(int player) {
+        return playerScores[player];
+    }
+
+    /**
+     * A getter method for the number of missiles fired so far.
+     * @return The number of shots fired.
+     */
+    public int getShotsFired() {
+        return shotsFired;
+    }
+
+    /**
+     * Replaces the random enemy spawns with the waves of a timeline, from
+     * the next tick on. Tick 0 of the timeline is the first tick of the
+     * game; waves already due spawn with the next tick. Room for every
+     * enemy of the timeline is reserved right away, so spawning even large
+     * waves does not grow any array during a tick.
+     * @param timeline The waves to spawn, or null for random spawns.
+     * @throws IllegalArgumentException If the waves spawn enemies outside
+     *         the field of this world.
+     */
+    public void setWaves(WaveTimeline timeline) {
+        if (timeline == null) {
+            waves = null;
+            return;
+        }
+        timeline.checkBounds(width, height);
+        waves = new WaveScheduler(timeline);
+        reserveEnemies(enemies.size() + timeline.getTotalEnemies());
+    }
+
+    /**
+     * A getter method for the scheduler spawning the waves of this world.
+     * @return The wave scheduler, or null if enemies spawn at random.
+     */
+    public WaveScheduler getWaves() {
+        return waves;
+    }
+
+    /**
+     * A getter method for the number of ticks played so far.
+     * @return The number of steps performed.
+     */
+    public int getTickCount() {
+        return tickCount;
+    }
+
+    /**
+     * Makes room for the given number of enemies in the store and in the
+     * per-enemy arrays of collision detection and animation.
+     * @param count The number of enemies to make room for.
+     */
+    private void reserveEnemies(int count) {
+        enemies.ensureCapacity(count);
+        enemyGrid.ensureCapacity(count);
+        if (candidates.length < count) {
+            candidates = new int[count];
+        }
+        if (bounced.length < count) {
+            bounced = new boolean[count];
+        }
+        if (events.length < count + MAX_MISSILES) {
+            events = new long[count + MAX_MISSILES];
+        }
+        // A descend and a shrink may run on every enemy at once.
+        animations.ensureCapacity(2 * count);
+        if (predictor != null) {
+            predictor.ensureCapacity(count);
+        }
+        reservedEnemies = Math.max(reservedEnemies, count);
+    }
+
+    /**
+     * Switches between the event-driven collision mode, which predicts
+     * the collisions of the coming ticks and only tests the candidates,
+     * and scanning every missile and enemy each tick. Both modes give the
+     * same results; once on, enemies and missiles must be added through
+     * this world so the predictor learns about them.
+     * @param eventDriven True to predict collisions, false to scan.
+     */
+    public void setEventDriven(boolean eventDriven) {
+        if (!eventDriven) {
+            predictor = null;
+        } else if (predictor == null) {
+            Rectangle[] guns = new Rectangle[turrets.length];
+            for (int p = 0; p < turrets.length; p++) {
+                guns[p] = turrets[p].turret;
+            }
+            predictor = new CollisionPredictor(enemies, missiles, animations,
+                    guns, width, height);
+            predictor.ensureCapacity(reservedEnemies);
+        }
+    }
+
+    /**
+     * A getter method for the collision predictor of the event-driven
+     * mode.
+     * @return The predictor, or null if collisions are scanned.
+     */
+    public CollisionPredictor getPredictor() {
+        return predictor;
+    }
+
+    /**
+     * Sets the pool that moves swarms of enemies and missiles in parallel.
+     * The parallel move gives the same results as the sequential one.
+     * @param pool The pool to move large scenes on, or null to always
+     *        move on the calling thread.
+     */
+    public void setMovePool(ForkJoinPool pool) {
+        mover = pool == null ? null : new ParallelMover(pool);
+    }
+
+    /**
+     * A getter method for the profiler timing the phases of this world.
+     * @return The FrameProfiler of this world.
+     */
+    public FrameProfiler getProfiler() {
+        return profiler;
+    }
+
+    /**
+     * A getter method for the turret of player 0.
+     * @return The Turret object of player 0.
+     */
+    public Turret getTurret() {
+        return turrets[0];
+    }
+
+    /**
+     * A getter method for the turrets of all players.
+     * @return The turrets, in player order. Must not be modified.
+     */
+    public Turret[] getTurrets() {
+        return turrets;
+    }
+
+    /**
+     * A getter method for the number of players.
+     * @return The number of turrets in the world.
+     */
+    public int getPlayerCount() {
+        return turrets.length;
+    }
+
+    /**
+     * A getter method for the enemies currently in the game.
+     * @return The store holding all active enemies.
+     */
+    public EntityStore getEnemies() {
+        return enemies;
+    }
+
+    /**
+     * A getter method for the missiles currently in the game.
+     * @return The store holding all active missiles.
+     */
+    public EntityStore getMissiles() {
+        return missiles;
+    }
+
+    /**
+     * A getter method for the width bounds of the playing field.
+     * @return The width of the playing field.
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * A getter method for the height bounds of the playing field.
+     * @return The height of the playing field.
+     */
+    public int getHeight() {
+        return height;
+    }
+}
@@ -0,0 +1,257 @@
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+/**
+ * Renders a WorldView into a retained frame image, redrawing only what
+ * changed since the previous frame. The bounds every entity and turret
+ * were drawn at are remembered; when an entity moves, shrinks, appears, or
+ * disappears, its old and new bounds are added to a DamageRegion, and only
+ * the rectangles of that region are cleared and redrawn. When the damage
+ * covers more than FULL_REDRAW_SHARE of the frame, the whole frame is
+ * redrawn instead, which is cheaper than many overlapping rectangles.
+ */
+public class IncrementalRenderer {
+
+    /** The share of the frame above which it is redrawn in full. */
+    public static final double FULL_REDRAW_SHARE = 0.5;
+
+    /**
+     * The bounds the entities of one store were last drawn at, by slot.
+     */
+    private static final class DrawnBounds {
+
+        int[] handle = new int[16]; // The handle of the entity in a slot.
+        int[] x = new int[16]; // The drawn x-component of each slot.
+        int[] y = new int[16]; // The drawn y-component of each slot.
+        int[] w = new int[16]; // The drawn width of each slot.
+        int[] h = new int[16]; // The drawn height of each slot.
+        int count; // The number of slots drawn last frame.
+
+        /**
+         * Adds the old and new bounds of every entity whose drawn bounds
+         * changed to the damage, and remembers the new bounds. Once the
+         * added area passes the budget, nothing more is added, since the
+         * frame will be redrawn in full anyway.
+         * @param store The store holding the entities.
+         * @param alpha 0 for the previous position up to 1 for the
+         *        current one.
+         * @param damage The region receiving the changed bounds.
+         * @param budget The area that may still be added.
+         * @return The area added, counting overlaps.
+         */
+        long update(EntityStore store, double alpha, DamageRegion damage,
+                long budget) {
+            int size = store.size();
+            if (handle.length < size) {
+                int capacity = Math.max(size, handle.length * 2);
+                handle = Arrays.copyOf(handle, capacity);
+                x = Arrays.copyOf(x, capacity);
+                y = Arrays.copyOf(y, capacity);
+                w = Arrays.copyOf(w, capacity);
+                h = Arrays.copyOf(h, capacity);
+            }
+            long area = 0;
+            for (int slot = 0; slot < size; slot++) {
+                int entity = store.handleAt(slot);
+                int nx = store.interpolateX(slot, alpha);
+                int ny = store.interpolateY(slot, alpha);
+                int nw = store.width[slot];
+                int nh = store.height[slot];
+                boolean known = slot < count;
+                if (!known || handle[slot] != entity || x[slot] != nx
+                        || y[slot] != ny || w[slot] != nw
+                        || h[slot] != nh) {
+                    if (known) {
+                        area += add(damage, x[slot], y[slot], w[slot],
+                                h[slot], budget - area);
+                    }
+                    area += add(damage, nx, ny, nw, nh, budget - area);
+                }
+                handle[slot] = entity;
+                x[slot] = nx;
+                y[slot] = ny;
+                w[slot] = nw;
+                h[slot] = nh;
+            }
+            for (int slot = size; slot < count; slot++) {
+                area += add(damage, x[slot], y[slot], w[slot], h[slot],
+                        budget - area);
+            }
+            count = size;
+            return area;
+        }
+    }
+
+    /** The sprites of the enemies and missiles. */
+    private final SpriteCache sprites = new SpriteCache();
+
+    /** The areas to redraw in the current frame. */
+    private final DamageRegion damage = new DamageRegion();
+
+    /** The bounds the enemies were last drawn at. */
+    private final DrawnBounds enemyBounds = new DrawnBounds();
+
+    /** The bounds the missiles were last drawn at. */
+    private final DrawnBounds missileBounds = new DrawnBounds();
+
+    /** The bounds each turret was last drawn at. */
+    private Rectangle[] lastTurretBounds = new Rectangle[0];
+
+    /** The bounds a turret is drawn at in the current frame. */
+    private final Rectangle turretBounds = new Rectangle();
+
+    /** The rectangle of the damage being redrawn. */
+    private final Rectangle area = new Rectangle();
+
+    /** The bounds of everything redrawn by the last update. */
+    private final Rectangle dirty = new Rectangle();
+
+    /** The retained frame, or null before the first update. */
+    private BufferedImage frame;
+
+    /** The pixels cleared or covered by sprites in the last update. */
+    private long filledPixels;
+
+    /** True if the last update redrew the whole frame. */
+    private boolean fullRedraw;
+
+    /**
+     * Redraws the parts of the frame that changed since the last update.
+     * @param world The world or snapshot to render.
+     * @param config The configuration of the screen the frame is shown
+     *        on, or null if unknown.
+     * @param background The color the frame is cleared to.
+     * @param width The width of the frame.
+     * @param height The height of the frame.
+     * @param alpha 0 for the state before the last tick up to 1 for the
+     *        current state.
+     * @return The bounds of the redrawn area, empty if nothing changed.
+     *         Valid until the next update.
+     */
+    public Rectangle update(WorldView world, GraphicsConfiguration config,
+            Color background, int width, int height, double alpha) {
+        dirty.setBounds(0, 0, 0, 0);
+        if (width <= 0 || height <= 0) {
+            return dirty;
+        }
+        FrameProfiler profiler = world.getProfiler();
+        long start = profiler.start();
+        boolean full = false;
+        if (frame == null || frame.getWidth() != width
+                || frame.getHeight() != height) {
+            frame = config != null
+                    ? config.createCompatibleImage(width, height)
+                    : new BufferedImage(width, height,
+                            BufferedImage.TYPE_INT_RGB);
+            full = true;
+        }
+        long budget = (long)(FULL_REDRAW_SHARE * width * height);
+        damage.reset(width, height);
+        long added = 0;
+        Turret[] turrets = world.getTurrets();
+        if (lastTurretBounds.length != turrets.length) {
+            lastTurretBounds = new Rectangle[turrets.length];
+            for (int p = 0; p < turrets.length; p++) {
+                lastTurretBounds[p] = new Rectangle();
+            }
+        }
+        for (int p = 0; p < turrets.length; p++) {
+            Rectangle last = lastTurretBounds[p];
+            turrets[p].getPaintBounds(alpha, turretBounds);
+            if (!turretBounds.equals(last)) {
+                added += add(damage, last.x, last.y, last.width,
+                        last.height, budget - added);
+                added += add(damage, turretBounds.x, turretBounds.y,
+                        turretBounds.width, turretBounds.height,
+                        budget - added);
+                last.setBounds(turretBounds);
+            }
+        }
+        added += enemyBounds.update(world.getEnemies(), alpha, damage,
+                budget - added);
+        added += missileBounds.update(world.getMissiles(), alpha, damage,
+                budget - added);
+        full |= added > budget || damage.area() > budget;
+
+        long drawnBefore = sprites.getDrawnPixels();
+        long cleared = 0;
+        Graphics2D g = frame.createGraphics();
+        try {
+            g.setBackground(background);
+            if (full) {
+                GameRenderer.draw(g, world, sprites, 0, 0, width, height,
+                        alpha);
+                cleared = (long)width * height;
+                dirty.setBounds(0, 0, width, height);
+            } else {
+                for (int i = 0; i < damage.size(); i++) {
+                    damage.get(i, area);
+                    g.setClip(area);
+                    GameRenderer.draw(g, world, sprites, area.x, area.y,
+                            area.width, area.height, alpha);
+                    cleared += (long)area.width * area.height;
+                }
+                damage.getBounds(dirty);
+            }
+        } finally {
+            g.dispose();
+        }
+        fullRedraw = full;
+        filledPixels = cleared + sprites.getDrawnPixels() - drawnBefore;
+        profiler.record(FrameProfiler.Phase.PAINT, start);
+        return dirty;
+    }
+
+    /**
+     * Draws the retained frame.
+     * @param g A Graphics object for drawing.
+     * @return False if there is no frame yet.
+     */
+    public boolean paint(Graphics g) {
+        if (frame == null) {
+            return false;
+        }
+        g.drawImage(frame, 0, 0, null);
+        return true;
+    }
+
+    /**
+     * A getter method for the pixels cleared or covered by sprite blits
+     * in the last update, a measure of its fill work.
+     * @return The number of pixels filled by the last update.
+     */
+    public long getFilledPixels() {
+        return filledPixels;
+    }
+
+    /**
+     * Determines whether the last update redrew the whole frame.
+     * @return True if the last update was a full redraw.
+     */
+    public boolean wasFullRedraw() {
+        return fullRedraw;
+    }
+
+    /**
+     * Adds an area to the damage while the budget is not spent.
+     * @param damage The region receiving the area.
+     * @param x The x-component of the area.
+     * @param y The y-component of the area.
+     * @param w The width of the area.
+     * @param h The height of the area.
+     * @param budget The area that may still be added.
+     * @return The area of the rectangle, whether added or not.
+     */
+    private static long add(DamageRegion damage, int x, int y, int w, int h,
+            long budget) {
+        if (budget > 0) {
+            damage.add(x, y, w, h);
+        }
+        return (long)w * h;
+    }
+}
@@ -0,0 +1,122 @@
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A lock-free ring buffer of timestamped values between one producer
+ * thread and one consumer thread. Each side only ever writes its own
+ * position, with an ordered store that publishes the slots it filled or
+ * freed, and keeps a cached copy of the other side's position so it only
+ * reads the shared one when the cache says the ring is full or empty.
+ * Neither side ever waits or allocates: offer fails when the ring is full.
+ */
+public class InputRing {
+
+    /** The values of the slots. */
+    private final int[] values;
+
+    /** The System.nanoTime values of the slots. */
+    private final long[] times;
+
+    /** The mask turning a position into a slot index. */
+    private final int mask;
+
+    /** The position of the next value to take. Written by the consumer. */
+    private final AtomicLong head = new AtomicLong();
+
+    /** The position of the next slot to fill. Written by the producer. */
+    private final AtomicLong tail = new AtomicLong();
+
+    /** The head last read by the producer. */
+    private long headCache;
+
+    /** The tail last read by the consumer. */
+    private long tailCache;
+
+    /** The number of values offered while the ring was full. */
+    private volatile long dropped;
+
+    /**
+     * Constructor for InputRing objects.
+     * @param capacity The number of slots, a power of two.
+     */
+    public InputRing(int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException(
+                    "capacity must be a power of two");
+        }
+        values = new int[capacity];
+        times = new long[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * Adds a value at the tail, unless the ring is full. Only the producer
+     * thread may call this.
+     * @param value The value.
+     * @param time The System.nanoTime value of the value.
+     * @return True if the value was added, false if it was dropped.
+     */
+    public boolean offer(int value, long time) {
+        long position = tail.get();
+        if (position - headCache == values.length) {
+            headCache = head.get();
+            if (position - headCache == values.length) {
+                dropped++;
+                return false;
+            }
+        }
+        int slot = (int)position & mask;
+        values[slot] = value;
+        times[slot] = time;
+        tail.lazySet(position + 1);
+        return true;
+    }
+
+    /**
+     * Determines whether the ring holds no value to take. Only the
+     * consumer thread may call this.
+     * @return True if there is nothing to take.
+     */
+    public boolean isEmpty() {
+        long position = head.get();
+        if (position == tailCache) {
+            tailCache = tail.get();
+        }
+        return position == tailCache;
+    }
+
+    /**
+     * A getter method for the value at the head. Only the consumer thread
+     * may call this, and only while the ring is not empty.
+     * @return The oldest value not taken.
+     */
+    public int peekValue() {
+        return values[(int)head.get() & mask];
+    }
+
+    /**
+     * A getter method for the time of the value at the head. Only the
+     * consumer thread may call this, and only while the ring is not empty.
+     * @return The System.nanoTime value of the oldest value not taken.
+     */
+    public long peekTime() {
+        return times[(int)head.get() & mask];
+    }
+
+    /**
+     * Takes the value at the head, freeing its slot for the producer. Only
+     * the consumer thread may call this, and only while the ring is not
+     * empty.
+     */
+    public void remove() {
+        head.lazySet(head.get() + 1);
+    }
+
+    /**
+     * A getter method for the number of values dropped because the ring
+     * was full.
+     * @return The number of dropped values.
+     */
+    public long getDropped() {
+        return dropped;
+    }
+}
@@ -0,0 +1,123 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of nanosecond durations. Values are counted in
+ * log-linear buckets (eight buckets per power of two), which keeps every
+ * reported percentile within 12.5% of the recorded value while using a
+ * fixed, small amount of memory. Any thread may record at any time.
+ */
+public class LatencyHistogram {
+
+    /** Values below this are counted exactly, one bucket per value. */
+    private static final int LINEAR_LIMIT = 16;
+
+    /** The number of sub-buckets per power of two above LINEAR_LIMIT. */
+    private static final int SUB_BUCKETS = 8;
+
+    /** The total number of buckets, covering every non-negative long. */
+    private static final int BUCKETS = LINEAR_LIMIT + (63 - 4) * SUB_BUCKETS;
+
+    /** The number of recorded values in each bucket. */
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    /** The number of recorded values. */
+    private final AtomicLong total = new AtomicLong();
+
+    /** The largest recorded value. */
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records one duration.
+     * @param nanos The duration in nanoseconds. Negative values count as 0.
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(bucketOf(value));
+        total.incrementAndGet();
+        long current;
+        while (value > (current = max.get())
+                && !max.compareAndSet(current, value)) {
+            // Another thread raised max concurrently, try again.
+        }
+    }
+
+    /**
+     * A getter method for the number of recorded values.
+     * @return The number of recorded values.
+     */
+    public long getCount() {
+        return total.get();
+    }
+
+    /**
+     * A getter method for the largest recorded value.
+     * @return The largest recorded value in nanoseconds, or 0 if empty.
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Estimates the value below which the given share of recorded values
+     * fall.
+     * @param percentile The percentile to estimate, from 0 to 100.
+     * @return The estimated value in nanoseconds, or 0 if empty.
+     */
+    public long getPercentile(double percentile) {
+        long count = total.get();
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long)Math.ceil(count * percentile / 100.0));
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += counts.get(bucket);
+            if (seen >= rank) {
+                return Math.min(upperBound(bucket), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * Discards all recorded values. Values recorded concurrently with a
+     * reset may be partly kept.
+     */
+    public void reset() {
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            counts.set(bucket, 0);
+        }
+        total.set(0);
+        max.set(0);
+    }
+
+    /**
+     * Maps a value to its bucket.
+     * @param value A non-negative value.
+     * @return The index of the bucket counting value.
+     */
+    private static int bucketOf(long value) {
+        if (value < LINEAR_LIMIT) {
+            return (int)value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int)(value >>> (exponent - 3)) & (SUB_BUCKETS - 1);
+        return LINEAR_LIMIT + (exponent - 4) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * Finds the largest value counted by a bucket.
+     * @param bucket The index of the bucket.
+     * @return The largest value mapping to bucket.
+     */
+    private static long upperBound(int bucket) {
+        if (bucket < LINEAR_LIMIT) {
+            return bucket;
+        }
+        int exponent = (bucket - LINEAR_LIMIT) / SUB_BUCKETS + 4;
+        int sub = (bucket - LINEAR_LIMIT) % SUB_BUCKETS;
+        long lower = (long)(SUB_BUCKETS | sub) << (exponent - 3);
+        return lower + (1L << (exponent - 3)) - 1;
+    }
+}
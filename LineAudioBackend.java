@@ -0,0 +1,45 @@
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.SourceDataLine;
+
+/**
+ * An AudioBackend that plays the mixed audio through a single
+ * SourceDataLine of the default mixer.
+ */
+public class LineAudioBackend implements AudioBackend {
+
+    /**
+     * The line receiving the mixed audio.
+     */
+    private SourceDataLine line;
+
+    @Override
+    public boolean open(AudioFormat format, int bufferFrames) {
+        try {
+            line = AudioSystem.getSourceDataLine(format);
+            line.open(format, bufferFrames * format.getFrameSize());
+            line.start();
+            return true;
+        } catch (Exception e) {
+            line = null;
+            return false;
+        }
+    }
+
+    @Override
+    public void write(byte[] buffer, int length) {
+        line.write(buffer, 0, length);
+    }
+
+    @Override
+    public boolean isRealtime() {
+        return true;
+    }
+
+    @Override
+    public void close() {
+        if (line != null) {
+            line.close();
+        }
+    }
+}
@@ -0,0 +1,193 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.LongSupplier;
+
+/**
+ * An in-process Transport for running a host and its clients in one JVM,
+ * such as in automated checks of the network code. Messages are delivered
+ * after a fixed latency, and each one is dropped with a fixed chance, both
+ * injected when the pair is created. The clock deciding when a message is
+ * due can be injected too, so a check can step time itself instead of
+ * waiting.
+ *
+ * The two ends of a pair may be used from different threads, one thread
+ * per end.
+ */
+public class LoopbackTransport implements Transport {
+
+    /** A message on its way, and when it arrives. */
+    private static final class Packet {
+
+        /** The clock value at which the message arrives. */
+        private final long due;
+
+        /** The contents of the message. */
+        private final byte[] data;
+
+        /**
+         * Constructor for Packet objects.
+         * @param due The clock value at which the message arrives.
+         * @param data The contents of the message.
+         */
+        Packet(long due, byte[] data) {
+            this.due = due;
+            this.data = data;
+        }
+    }
+
+    /** The messages sent to this end, in the order sent. */
+    private final ConcurrentLinkedQueue<Packet> inbox =
+            new ConcurrentLinkedQueue<>();
+
+    /** The other end of the pair. */
+    private LoopbackTransport peer;
+
+    /** The time every message takes, in clock units. */
+    private final long latency;
+
+    /** The chance of any one message being dropped, 0 up to 1. */
+    private final double lossRate;
+
+    /** The source of the drops of the messages sent from this end. */
+    private final Random rand;
+
+    /** The clock deciding when messages arrive. */
+    private final LongSupplier clock;
+
+    /** The number of messages sent from this end, dropped or not. */
+    private long sent;
+
+    /** The number of messages from this end that were dropped. */
+    private long dropped;
+
+    /** True once this end was closed. */
+    private volatile boolean closed;
+
+    /**
+     * Constructor for one end of a LoopbackTransport pair.
+     * @param latency The time every message takes, in clock units.
+     * @param lossRate The chance of any one message being dropped.
+     * @param seed The seed of the drops of the messages of this end.
+     * @param clock The clock deciding when messages arrive.
+     */
+    private LoopbackTransport(long latency, double lossRate, long seed,
+            LongSupplier clock) {
+        this.latency = latency;
+        this.lossRate = lossRate;
+        this.rand = new Random(seed);
+        this.clock = clock;
+    }
+
+    /**
+     * Creates the two ends of a loopback connection timed by
+     * System.nanoTime.
+     * @param latencyNanos The time every message takes, in nanoseconds.
+     * @param lossRate The chance of any one message being dropped, in
+     *        either direction.
+     * @param seed The seed of the drops.
+     * @return The two ends, host side first.
+     */
+    public static LoopbackTransport[] pair(long latencyNanos,
+            double lossRate, long seed) {
+        return pair(latencyNanos, lossRate, seed, System::nanoTime);
+    }
+
+    /**
+     * Creates the two ends of a loopback connection timed by the given
+     * clock.
+     * @param latency The time every message takes, in clock units.
+     * @param lossRate The chance of any one message being dropped, in
+     *        either direction.
+     * @param seed The seed of the drops.
+     * @param clock The clock deciding when messages arrive, for example a
+     *        tick counter of a check.
+     * @return The two ends, host side first.
+     */
+    public static LoopbackTransport[] pair(long latency, double lossRate,
+            long seed, LongSupplier clock) {
+        if (latency < 0 || lossRate < 0 || lossRate > 1) {
+            throw new IllegalArgumentException("bad latency or loss rate");
+        }
+        LoopbackTransport host = new LoopbackTransport(latency, lossRate,
+                seed, clock);
+        LoopbackTransport client = new LoopbackTransport(latency, lossRate,
+                ~seed, clock);
+        host.peer = client;
+        client.peer = host;
+        return new LoopbackTransport[] {host, client};
+    }
+
+    /**
+     * Queues a copy of a message at the other end, unless it is dropped.
+     * @param message The message, from its position up to its limit.
+     * @throws IOException If either end was closed.
+     */
+    @Override
+    public void send(ByteBuffer message) throws IOException {
+        if (closed || peer.closed) {
+            throw new IOException("Loopback connection closed");
+        }
+        sent++;
+        if (rand.nextDouble() < lossRate) {
+            dropped++;
+            message.position(message.limit());
+            return;
+        }
+        byte[] data = new byte[message.remaining()];
+        message.get(data);
+        peer.inbox.add(new Packet(clock.getAsLong() + latency, data));
+    }
+
+    /**
+     * Takes the next message whose latency has passed. Messages sent
+     * before the other end was closed still arrive.
+     * @return The message, or null if none is due.
+     * @throws IOException If this end was closed, or the other end was
+     *         closed and every message it sent has arrived.
+     */
+    @Override
+    public ByteBuffer receive() throws IOException {
+        if (closed) {
+            throw new IOException("Loopback connection closed");
+        }
+        // Read before the inbox, so a message sent just before the close
+        // is never missed.
+        boolean peerClosed = peer.closed;
+        Packet next = inbox.peek();
+        if (next == null && peerClosed) {
+            throw new IOException("Loopback connection closed by peer");
+        }
+        if (next == null || clock.getAsLong() - next.due < 0) {
+            return null;
+        }
+        inbox.poll();
+        return ByteBuffer.wrap(next.data);
+    }
+
+    /**
+     * A getter method for the number of messages sent from this end.
+     * @return The number of messages sent, including dropped ones.
+     */
+    public long getSent() {
+        return sent;
+    }
+
+    /**
+     * A getter method for the number of messages dropped on their way
+     * from this end.
+     * @return The number of dropped messages.
+     */
+    public long getDropped() {
+        return dropped;
+    }
+
+    /**
+     * Closes this end of the connection.
+     */
+    @Override
+    public void close() {
+        closed = true;
+    }
+}
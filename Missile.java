@@ -1,68 +1,89 @@
-import java.awt.Color;
-import java.awt.Graphics;
-import java.util.ArrayList;
+import java.awt.Graphics2D;
 import java.util.Random;
-import javax.swing.JComponent;
 
-public class Missile extends JComponent {
+public final class Missile {
 
-    private int missileSpeed; // The missiles speed.
-    private Color missileColor; // The missiles color.
+    /** The width and height of every missile. */
+    public static final int SIZE = 15;
+
+    /** The speed of every missile, in pixels per tick. */
+    public static final int SPEED = 5;
     
     /**
-     * Constructor for Missile objects, initializing
-     * position, bounds, and speed.
-     * @param x The x-component of the Missiles position.
-     * @param y The y-component of the Missiles position.
+     * Private constructor, missiles live in an EntityStore and are
+     * handled by the static methods of this class.
      */
-    public Missile(int x, int y) {
-        setBounds(x, y, 15, 15);
-        missileSpeed = 5;
-        setMissileColor();
+    private Missile() {
     }
     
     /**
-     * Draws a filled circle using the Missiles color and its bounds.
-     * @param g A Graphics object for drawing.
+     * Adds a new missile to the store at the given position, with a
+     * random color from the Palette. Does not allocate as long as the
+     * store has a free slot.
+     * @param store The store holding all active missiles.
+     * @param rand The source of randomness for the color.
+     * @param x The x-component of the Missiles position.
+     * @param y The y-component of the Missiles position.
+     * @return The handle of the new missile.
      */
-    public void paintComponent(Graphics g) {
-        g.setColor(missileColor);
-        g.fillOval(getX(), getY(), getWidth(), getHeight());
+    public static int spawn(EntityStore store, Random rand, int x, int y) {
+        return store.add(EntityStore.KIND_MISSILE, x, y, SIZE, SIZE,
+                SPEED, Palette.randomIndex(rand));
     }
     
     /**
-     * Sets the given Missile to a random Color.
+     * Draws a filled circle for every missile in the store using the
+     * missile's color and its bounds, placed between its previous and
+     * current position. Missiles are drawn grouped by color, as sprite
+     * blits from the given cache.
+     * @param g A Graphics2D object for drawing.
+     * @param sprites The sprite cache, validated for g.
+     * @param store The store holding all active missiles.
+     * @param alpha 0 for the previous position up to 1 for the current one.
      */
-    public void setMissileColor() {
-        Random rand = new Random();
-        // Generate random rgb values.
-        missileColor = new Color(rand.nextFloat(),
-                rand.nextFloat(), rand.nextFloat());
+    public static void paintAll(Graphics2D g, SpriteCache sprites,
+            EntityStore store, double alpha) {
+        int[] order = sprites.groupByColor(store);
+        for (int i = 0; i < store.size(); i++) {
+            int slot = order[i];
+            sprites.drawOval(g, store.interpolateX(slot, alpha),
+                    store.interpolateY(slot, alpha), store.width[slot],
+                    store.colorIndex[slot]);
+        }
     }
     
     /**
-     * A getter method for the speed of a Missile object.
-     * @return The speed of the Missile object.
+     * Computes and updates the next position of the Missile.
+     * If the missile goes off panel, it will be killed and removed
+     * from the game at the next compaction, so the slots of the other
+     * missiles stay unchanged while callers iterate the store.
+     * @param store The store holding all active missiles.
+     * @param slot The slot of the given missile within store.
+     * @param panelWidth The width bounds for movement.
+     * @param panelHeight The height bounds for movement.
      */
-    public int getMissileSpeed() {
-        return missileSpeed;
+    public static void move(EntityStore store, int slot,
+            int panelWidth, int panelHeight) {
+        if (step(store, slot, panelHeight)) {
+            store.kill(store.handleAt(slot));
+        }
     }
     
     /**
-     * Computes and updates the next position of the Missile.
-     * If the missile goes off panel, it will be removed from
-     * the game.
-     * @param panelWidth The width bounds for movement.
+     * Moves the given missile up by its speed, unless it has gone off
+     * panel. Only the given slot is read and written, so different slots
+     * may be stepped from different threads.
+     * @param store The store holding all active missiles.
+     * @param slot The slot of the given missile within store.
      * @param panelHeight The height bounds for movement.
-     * @param list An ArrayList of all current active Missile objects.
-     * @param missile The index of the given Missile object within list.
+     * @return True if the missile is off panel and should be killed.
      */
-    public void move(int panelWidth, int panelHeight,
-            ArrayList<Missile> list, int missile) {
-        if (getY() >= panelHeight || getY() <= 0) {
-            list.remove(missile);
+    public static boolean step(EntityStore store, int slot,
+            int panelHeight) {
+        if (store.y[slot] >= panelHeight || store.y[slot] <= 0) {
+            return true;
         }
-        int updated = getY() - missileSpeed;
-        setBounds(getX(), updated, getWidth(), getHeight());
+        store.y[slot] -= (int)store.speed[slot];
+        return false;
     }
 }
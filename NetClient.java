@@ -0,0 +1,317 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+/**
+ * A client of a networked game run by a NetHost. The client has no world
+ * of its own: it sends the inputs of its player every tick and decodes the
+ * states the host sends back, which the game draws like the snapshots of
+ * a local world. See NetHost for the messages.
+ *
+ * The decoded states of the last NetHost.HISTORY ticks are kept, since
+ * the host writes each frame against whichever of them the client
+ * confirmed last. Frames older than the latest decoded one, or whose
+ * baseline is gone, are skipped; the next frame makes up for them.
+ */
+public class NetClient implements AutoCloseable {
+
+    /** The time between two HELLO messages while joining, in nanoseconds. */
+    private static final long HELLO_INTERVAL_NANOS = 100_000_000L;
+
+    /** The connection to the host. */
+    private final Transport transport;
+
+    /** The decoded states, by tick modulo NetHost.HISTORY. */
+    private final NetState[] history = new NetState[NetHost.HISTORY];
+
+    /** The latest decoded state, or null before the first frame. */
+    private NetState latest;
+
+    /** The player of this client. */
+    private int player = -1;
+
+    /** The number of players. */
+    private int players;
+
+    /** The width bounds of the playing field. */
+    private int width;
+
+    /** The height bounds of the playing field. */
+    private int height;
+
+    /** The seed of the game. */
+    private long seed;
+
+    /** The turrets of the game as created, for their size and color. */
+    private Turret[] turrets;
+
+    /** The shots asked for since joining. */
+    private int shotsRequested;
+
+    /** The writer of every message sent. */
+    private final BitWriter out = new BitWriter();
+
+    /** The reader of every message received. */
+    private final BitReader in = new BitReader();
+
+    /** The number of frames decoded. */
+    private long framesDecoded;
+
+    /** The number of frames skipped as too old or without baseline. */
+    private long framesSkipped;
+
+    /** The bytes of all frames received. */
+    private long frameBytes;
+
+    /**
+     * Constructor for NetClient objects. The client has not joined yet; it
+     * joins once hello was sent and the answer was polled.
+     * @param transport The connection to the host.
+     */
+    public NetClient(Transport transport) {
+        this.transport = transport;
+        for (int i = 0; i < history.length; i++) {
+            history[i] = new NetState();
+        }
+    }
+
+    /**
+     * Joins the game of a host, saying hello until the host answers.
+     * @param transport The connection to the host.
+     * @param timeoutNanos The longest time to wait for the answer.
+     * @return The client, which knows its player and the game.
+     * @throws IOException If the host does not answer in time or the
+     *         connection breaks.
+     */
+    public static NetClient join(Transport transport, long timeoutNanos)
+            throws IOException {
+        NetClient client = new NetClient(transport);
+        long start = System.nanoTime();
+        long nextHello = start;
+        while (!client.hasJoined()) {
+            long now = System.nanoTime();
+            if (now - start > timeoutNanos) {
+                throw new IOException("No answer from the host");
+            }
+            if (now - nextHello >= 0) {
+                client.hello();
+                nextHello = now + HELLO_INTERVAL_NANOS;
+            }
+            if (!client.poll()) {
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while joining", e);
+                }
+            }
+        }
+        return client;
+    }
+
+    /**
+     * Sends a HELLO message, asking the host to let this client join. Since
+     * the message or its answer may be lost, it is repeated until the
+     * client has joined.
+     * @throws IOException If the connection is broken.
+     */
+    public void hello() throws IOException {
+        out.reset();
+        out.writeBits(NetHost.HELLO, NetHost.TYPE_BITS);
+        out.writeBits(NetHost.VERSION, NetHost.TYPE_BITS);
+        transport.send(out.toByteBuffer());
+    }
+
+    /**
+     * Determines whether the host has let this client join.
+     * @return True once the WELCOME message arrived.
+     */
+    public boolean hasJoined() {
+        return player >= 0;
+    }
+
+    /**
+     * Sends the inputs of the player for the next tick, along with the
+     * latest tick decoded.
+     * @param inputs A bit set of GameWorld.INPUT_LEFT, INPUT_RIGHT, and
+     *        INPUT_FIRE, as for a single-player tick.
+     * @throws IOException If the connection is broken.
+     */
+    public void sendInputs(int inputs) throws IOException {
+        if ((inputs & GameWorld.INPUT_FIRE) != 0) {
+            shotsRequested++;
+        }
+        out.reset();
+        out.writeBits(NetHost.INPUT, NetHost.TYPE_BITS);
+        out.writeUnsigned(latest == null ? 0 : latest.getTick() + 1);
+        out.writeBits(inputs, NetHost.HELD_BITS);
+        out.writeUnsigned(shotsRequested);
+        transport.send(out.toByteBuffer());
+    }
+
+    /**
+     * Handles every message that arrived since the last call.
+     * @return True if a newer state was decoded.
+     * @throws IOException If the connection is broken or the host sent a
+     *         malformed frame.
+     */
+    public boolean poll() throws IOException {
+        boolean decoded = false;
+        ByteBuffer message;
+        while ((message = transport.receive()) != null) {
+            int bytes = message.remaining();
+            in.reset(message);
+            int type = (int)in.readBits(NetHost.TYPE_BITS);
+            if (type == NetHost.WELCOME && player < 0) {
+                welcome();
+            } else if (type == NetHost.FRAME && player >= 0) {
+                frameBytes += bytes;
+                if (frame()) {
+                    framesDecoded++;
+                    decoded = true;
+                } else {
+                    framesSkipped++;
+                }
+            }
+        }
+        return decoded;
+    }
+
+    /**
+     * Reads the game from a WELCOME message and recreates its turrets.
+     * @throws IOException If the message is malformed.
+     */
+    private void welcome() throws IOException {
+        int player = in.readUnsigned();
+        players = in.readUnsigned();
+        width = in.readUnsigned();
+        height = in.readUnsigned();
+        seed = in.readBits(Integer.SIZE) << Integer.SIZE
+                | in.readBits(Integer.SIZE);
+        if (players < 2 || players > GameWorld.MAX_PLAYERS
+                || player < 1 || player >= players) {
+            throw new IOException("Bad welcome for player " + player
+                    + " of " + players);
+        }
+        turrets = GameWorld.createTurrets(width, height, players,
+                new Random(seed));
+        this.player = player;
+    }
+
+    /**
+     * Decodes a FRAME message, unless it is older than the latest state or
+     * its baseline is gone.
+     * @return True if the frame was decoded.
+     * @throws IOException If the frame is malformed.
+     */
+    private boolean frame() throws IOException {
+        int tick = in.readUnsigned();
+        NetState base = null;
+        if (in.readBoolean()) {
+            int baseTick = tick - in.readUnsigned();
+            base = history[Math.floorMod(baseTick, NetHost.HISTORY)];
+            if (base.getTick() != baseTick) {
+                return false;
+            }
+        }
+        if (latest != null && tick <= latest.getTick()) {
+            return false;
+        }
+        NetState state = history[tick % NetHost.HISTORY];
+        state.decode(tick, base, in);
+        latest = state;
+        return true;
+    }
+
+    /**
+     * A getter method for the latest decoded state.
+     * @return The latest state, or null before the first frame.
+     */
+    public NetState getState() {
+        return latest;
+    }
+
+    /**
+     * A getter method for the player of this client.
+     * @return The player, 1 or higher.
+     */
+    public int getPlayer() {
+        return player;
+    }
+
+    /**
+     * A getter method for the number of players.
+     * @return The number of players in the game.
+     */
+    public int getPlayerCount() {
+        return players;
+    }
+
+    /**
+     * A getter method for the width bounds of the playing field.
+     * @return The width of the playing field.
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * A getter method for the height bounds of the playing field.
+     * @return The height of the playing field.
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * A getter method for the seed of the game.
+     * @return The seed the host created the world from.
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * A getter method for the turrets of the game as created, which give
+     * the size and color of the turrets of the replicated states.
+     * @return The turrets, in player order. Must not be modified.
+     */
+    public Turret[] getTurrets() {
+        return turrets;
+    }
+
+    /**
+     * A getter method for the number of frames decoded.
+     * @return The number of states decoded.
+     */
+    public long getFramesDecoded() {
+        return framesDecoded;
+    }
+
+    /**
+     * A getter method for the number of frames skipped.
+     * @return The number of frames that were too old or whose baseline
+     *         was gone.
+     */
+    public long getFramesSkipped() {
+        return framesSkipped;
+    }
+
+    /**
+     * A getter method for the bytes of all frames received.
+     * @return The bytes of all frames, without the framing of the
+     *         transport.
+     */
+    public long getFrameBytes() {
+        return frameBytes;
+    }
+
+    /**
+     * Closes the connection to the host.
+     * @throws IOException If the connection cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        transport.close();
+    }
+}
@@ -0,0 +1,391 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The host of a networked game. The host runs the only GameWorld of the
+ * game; every other player joins through a NetClient, which sends its
+ * inputs and draws the states the host replicates to it. Player 0 plays on
+ * the host, and every client that joins gets the next turret.
+ *
+ * Each tick, the game loop of the host polls the clients, ticks the world
+ * with its own inputs and remoteInputs, and publishes the new state. The
+ * states are numbered by GameWorld.getTickCount, plus one for the tick
+ * that ends the game, which the world does not count. A
+ * state goes to each client as a NetState delta against the latest state
+ * that client confirmed, so a lost frame costs nothing but a slightly
+ * larger next one. A client that confirmed nothing recent gets the state
+ * in full.
+ *
+ * The messages, each packed with a BitWriter and led by an 8-bit type:
+ * <ul>
+ * <li>HELLO, client to host: the protocol version. Sent until the WELCOME
+ * arrives.</li>
+ * <li>WELCOME, host to client: the player of the client, the number of
+ * players, the field size, and the seed, from which the client recreates
+ * the turrets.</li>
+ * <li>INPUT, client to host, every tick: the latest tick the client
+ * decoded, the arrow keys it holds, and how many shots it has asked for
+ * since it joined. The count survives lost messages, and the host fires
+ * one missile per tick until it catches up.</li>
+ * <li>FRAME, host to client, every tick: the tick, the tick of the
+ * baseline if any, and the NetState delta.</li>
+ * </ul>
+ */
+public class NetHost implements AutoCloseable {
+
+    /** The version of the protocol, checked when a client joins. */
+    static final int VERSION = 1;
+
+    /** The number of bits of a message type. */
+    static final int TYPE_BITS = 8;
+
+    /** The type of the message a client joins with. */
+    static final int HELLO = 1;
+
+    /** The type of the message accepting a client. */
+    static final int WELCOME = 2;
+
+    /** The type of the inputs of a client. */
+    static final int INPUT = 3;
+
+    /** The type of a state frame. */
+    static final int FRAME = 4;
+
+    /**
+     * The number of past states kept on both ends. A client whose latest
+     * confirmed state is older gets the next state in full.
+     */
+    public static final int HISTORY = 32;
+
+    /**
+     * The number of bits of the keys a client holds, INPUT_LEFT and
+     * INPUT_RIGHT.
+     */
+    static final int HELD_BITS = 2;
+
+    /** A client that joined the game. */
+    private static final class Peer {
+
+        /** The connection to the client. */
+        private final Transport transport;
+
+        /** The player of the client. */
+        private final int player;
+
+        /** True once the client said HELLO, so it can decode frames. */
+        private boolean joined;
+
+        /** The latest tick the client confirmed, or -1. */
+        private int ackTick = -1;
+
+        /** The arrow keys the client holds. */
+        private int held;
+
+        /** The shots the client has asked for since it joined. */
+        private int shotsRequested;
+
+        /** The shots of the client fired so far. */
+        private int shotsFired;
+
+        /**
+         * Constructor for Peer objects.
+         * @param transport The connection to the client.
+         * @param player The player of the client.
+         */
+        Peer(Transport transport, int player) {
+            this.transport = transport;
+            this.player = player;
+        }
+    }
+
+    /** The world of the game. */
+    private final GameWorld world;
+
+    /** The seed the world was created from. */
+    private final long seed;
+
+    /** The states of the last HISTORY ticks, by tick modulo HISTORY. */
+    private final NetState[] history = new NetState[HISTORY];
+
+    /** The clients, in the order they joined. */
+    private final List<Peer> peers = new ArrayList<>();
+
+    /** The player the next client gets. */
+    private int nextPlayer = 1;
+
+    /** The channel accepting clients, or null when not listening. */
+    private ServerSocketChannel server;
+
+    /** The writer of every message sent. */
+    private final BitWriter out = new BitWriter();
+
+    /** The reader of every message received. */
+    private final BitReader in = new BitReader();
+
+    /** The number of frames sent to all clients. */
+    private long framesSent;
+
+    /** The bytes of all frames sent to all clients. */
+    private long frameBytes;
+
+    /** The number of the state published last, or -1. */
+    private int tick = -1;
+
+    /**
+     * Constructor for NetHost objects.
+     * @param world The world of the game, created with GameWorld.create
+     *        from the given seed, with a turret for every player.
+     * @param seed The seed the world was created from.
+     */
+    public NetHost(GameWorld world, long seed) {
+        this.world = world;
+        this.seed = seed;
+        for (int i = 0; i < HISTORY; i++) {
+            history[i] = new NetState();
+        }
+    }
+
+    /**
+     * Starts accepting clients over TCP. Connections are accepted in poll.
+     * @param port The port to listen on, or 0 for any free port.
+     * @return The port listened on.
+     * @throws IOException If the port cannot be bound.
+     */
+    public int listen(int port) throws IOException {
+        server = ServerSocketChannel.open();
+        server.configureBlocking(false);
+        server.bind(new InetSocketAddress(port));
+        return ((InetSocketAddress)server.getLocalAddress()).getPort();
+    }
+
+    /**
+     * Gives the next player to a client on the given connection. When
+     * every player has joined, the connection is closed instead.
+     * @param transport The connection to the client.
+     * @return True if the client joined.
+     * @throws IOException If a refused connection cannot be closed.
+     */
+    public boolean addClient(Transport transport) throws IOException {
+        if (isFull()) {
+            transport.close();
+            return false;
+        }
+        peers.add(new Peer(transport, nextPlayer++));
+        return true;
+    }
+
+    /**
+     * Determines whether every player of the world has a client.
+     * @return True once no more clients can join.
+     */
+    public boolean isFull() {
+        return nextPlayer == world.getPlayerCount();
+    }
+
+    /**
+     * Accepts waiting connections and handles every message the clients
+     * sent since the last call. A client whose connection broke is
+     * dropped; its turret stays where it is.
+     * @throws IOException If accepting a connection fails.
+     */
+    public void poll() throws IOException {
+        if (server != null) {
+            SocketChannel channel;
+            while ((channel = server.accept()) != null) {
+                addClient(new SocketTransport(channel));
+            }
+        }
+        for (int i = peers.size() - 1; i >= 0; i--) {
+            Peer peer = peers.get(i);
+            try {
+                ByteBuffer message;
+                while ((message = peer.transport.receive()) != null) {
+                    handle(peer, message);
+                }
+            } catch (IOException e) {
+                peers.remove(i);
+                closeQuietly(peer.transport);
+            }
+        }
+    }
+
+    /**
+     * Builds the inputs of the clients for the next tick: the keys each
+     * one holds, and a shot for each one that asked for more than were
+     * fired.
+     * @return The inputs of every client, each in the bits of its player.
+     */
+    public int remoteInputs() {
+        int inputs = 0;
+        for (Peer peer : peers) {
+            int own = peer.held;
+            if (peer.shotsFired < peer.shotsRequested) {
+                peer.shotsFired++;
+                own |= GameWorld.INPUT_FIRE;
+            }
+            inputs |= GameWorld.playerInputs(peer.player, own);
+        }
+        return inputs;
+    }
+
+    /**
+     * Captures the state of the world after the last tick and sends it to
+     * every client that joined. May be called again without a tick once
+     * the game is over, to repeat the final state for clients that lost it.
+     * @param status The status of the game after the tick.
+     */
+    public void publish(GameStatus status) {
+        tick = world.getTickCount() + (status == GameStatus.RUNNING ? 0 : 1);
+        NetState state = history[tick % HISTORY];
+        state.capture(tick, world, status);
+        for (int i = peers.size() - 1; i >= 0; i--) {
+            Peer peer = peers.get(i);
+            if (!peer.joined) {
+                continue;
+            }
+            NetState base = null;
+            if (peer.ackTick >= 0 && tick - peer.ackTick < HISTORY
+                    && peer.ackTick <= tick) {
+                base = history[peer.ackTick % HISTORY];
+                if (base.getTick() != peer.ackTick) {
+                    base = null;
+                }
+            }
+            out.reset();
+            out.writeBits(FRAME, TYPE_BITS);
+            out.writeUnsigned(tick);
+            out.writeBoolean(base != null);
+            if (base != null) {
+                out.writeUnsigned(tick - base.getTick());
+            }
+            state.encode(base, out);
+            ByteBuffer frame = out.toByteBuffer();
+            int bytes = frame.remaining();
+            try {
+                peer.transport.send(frame);
+            } catch (IOException e) {
+                peers.remove(i);
+                closeQuietly(peer.transport);
+                continue;
+            }
+            frameBytes += bytes;
+            framesSent++;
+        }
+    }
+
+    /**
+     * A getter method for the state published last.
+     * @return The latest state published, or null before the first.
+     */
+    public NetState getState() {
+        return tick < 0 ? null : history[tick % HISTORY];
+    }
+
+    /**
+     * A getter method for a recent state.
+     * @param tick The number of the state.
+     * @return The state, or null if it is no longer kept.
+     */
+    public NetState getState(int tick) {
+        if (tick < 0) {
+            return null;
+        }
+        NetState state = history[tick % HISTORY];
+        return state.getTick() == tick ? state : null;
+    }
+
+    /**
+     * A getter method for the number of frames sent.
+     * @return The number of frames sent to all clients.
+     */
+    public long getFramesSent() {
+        return framesSent;
+    }
+
+    /**
+     * A getter method for the bytes of all frames sent.
+     * @return The bytes of all frames sent to all clients, without the
+     *         framing of the transport.
+     */
+    public long getFrameBytes() {
+        return frameBytes;
+    }
+
+    /**
+     * A getter method for the number of clients connected.
+     * @return The number of clients.
+     */
+    public int getClientCount() {
+        return peers.size();
+    }
+
+    /**
+     * Closes the connections to every client, and stops listening.
+     * @throws IOException If the listening channel cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        for (Peer peer : peers) {
+            closeQuietly(peer.transport);
+        }
+        peers.clear();
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    /**
+     * Handles one message of a client. Malformed messages and messages of
+     * unknown types are ignored.
+     * @param peer The client.
+     * @param message The message.
+     * @throws IOException If the answer cannot be sent.
+     */
+    private void handle(Peer peer, ByteBuffer message) throws IOException {
+        in.reset(message);
+        boolean hello;
+        try {
+            int type = (int)in.readBits(TYPE_BITS);
+            hello = type == HELLO && in.readBits(TYPE_BITS) == VERSION;
+            if (type == INPUT) {
+                int ack = in.readUnsigned() - 1;
+                int held = (int)in.readBits(HELD_BITS);
+                int shots = in.readUnsigned();
+                peer.ackTick = Math.max(peer.ackTick, ack);
+                peer.held = held;
+                peer.shotsRequested = Math.max(peer.shotsRequested, shots);
+            }
+        } catch (IOException e) {
+            return; // Malformed, from a broken or foreign client.
+        }
+        if (hello) {
+            peer.joined = true;
+            out.reset();
+            out.writeBits(WELCOME, TYPE_BITS);
+            out.writeUnsigned(peer.player);
+            out.writeUnsigned(world.getPlayerCount());
+            out.writeUnsigned(world.getWidth());
+            out.writeUnsigned(world.getHeight());
+            out.writeBits(seed >>> Integer.SIZE, Integer.SIZE);
+            out.writeBits(seed, Integer.SIZE);
+            peer.transport.send(out.toByteBuffer());
+        }
+    }
+
+    /**
+     * Closes a connection, ignoring failures.
+     * @param transport The connection to close.
+     */
+    private static void closeQuietly(Transport transport) {
+        try {
+            transport.close();
+        } catch (IOException e) {
+            // Already broken.
+        }
+    }
+}
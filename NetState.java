@@ -0,0 +1,698 @@
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * The drawable state of a GameWorld after one tick, as a host replicates
+ * it to the clients of a networked game: the status, shots, scores, and
+ * turret positions, and every enemy and missile with its position, last
+ * move, size, kind, and color. Entities are kept sorted by the index of
+ * their handle, which identifies them from frame to frame.
+ *
+ * A state is sent as a delta against an older state the client already
+ * has, its baseline. Every entity of the baseline is first extrapolated
+ * by its last move over the ticks in between, which is exactly where an
+ * enemy between two bounces or a missile ends up. Only the entities that
+ * were added or removed, or differ from their extrapolation, are written,
+ * each with the fields that differ, as Exp-Golomb coded residuals. The
+ * size of a frame therefore follows the number of entities that changed
+ * course rather than the number of entities. A state without a baseline is
+ * sent in full, as a delta against an empty state.
+ *
+ * On a host the handles are those of the world's stores; on a client only
+ * their index part is known, which is all the frames carry.
+ */
+public class NetState {
+
+    /** The number of bits of the kind of an entity. */
+    private static final int KIND_BITS = 2;
+
+    /** The number of bits of a Palette index. */
+    private static final int COLOR_BITS =
+            Integer.numberOfTrailingZeros(Palette.SIZE);
+
+    /** The number of bits of the player count, less one. */
+    private static final int PLAYER_BITS = 2;
+
+    /** The number of bits of the status of the game. */
+    private static final int STATUS_BITS = 2;
+
+    /** The bit of a changed entity whose x-component differs. */
+    private static final int CHANGED_X = 1;
+
+    /** The bit of a changed entity whose move along x differs. */
+    private static final int CHANGED_DX = 1 << 1;
+
+    /** The bit of a changed entity whose y-component differs. */
+    private static final int CHANGED_Y = 1 << 2;
+
+    /** The bit of a changed entity whose move along y differs. */
+    private static final int CHANGED_DY = 1 << 3;
+
+    /** The bit of a changed entity whose width or height differs. */
+    private static final int CHANGED_SIZE = 1 << 4;
+
+    /** The number of bits of the changed fields of an entity. */
+    private static final int CHANGED_BITS = 5;
+
+    /** The highest handle index an EntityStore hands out, plus one. */
+    private static final int MAX_INDEX = EntityStore.MAX_INDEX;
+
+    /** An empty state, the baseline of every full frame. */
+    private static final NetState EMPTY = new NetState();
+
+    /**
+     * The enemies or the missiles of a state, in parallel arrays sorted
+     * by handle index.
+     */
+    private static final class Entities {
+
+        /** The number of entities. */
+        private int count;
+
+        /** The handle of each entity. */
+        private int[] handle = new int[16];
+
+        /** The x-component of each entity's position. */
+        private int[] x = new int[16];
+
+        /** The y-component of each entity's position. */
+        private int[] y = new int[16];
+
+        /** The distance each entity moved along x in the last tick. */
+        private int[] dx = new int[16];
+
+        /** The distance each entity moved along y in the last tick. */
+        private int[] dy = new int[16];
+
+        /** The width of each entity. */
+        private int[] width = new int[16];
+
+        /** The height of each entity. */
+        private int[] height = new int[16];
+
+        /** The kind of each entity, one of the EntityStore KIND values. */
+        private byte[] kind = new byte[16];
+
+        /** The Palette index of each entity's color. */
+        private byte[] color = new byte[16];
+
+        /** The handle index and slot of each live entity, for sorting. */
+        private long[] keys = new long[16];
+
+        /** The handle indices removed since the baseline being written. */
+        private int[] removed = new int[16];
+
+        /** The entities added or changed since the baseline. */
+        private int[] updates = new int[16];
+
+        /** The baseline position of each update, or -1 if it is new. */
+        private int[] updateBase = new int[16];
+
+        /**
+         * Copies the live entities of a store, sorted by handle index.
+         * @param store The store to copy.
+         */
+        void capture(EntityStore store) {
+            if (keys.length < store.size()) {
+                keys = new long[Math.max(store.size(), keys.length * 2)];
+            }
+            int live = 0;
+            for (int slot = 0; slot < store.size(); slot++) {
+                if (store.alive[slot]) {
+                    keys[live++] = (long)EntityStore.indexOf(
+                            store.handleAt(slot)) << 32 | slot;
+                }
+            }
+            Arrays.sort(keys, 0, live);
+            ensureCapacity(live);
+            count = live;
+            for (int k = 0; k < count; k++) {
+                int slot = (int)keys[k];
+                handle[k] = store.handleAt(slot);
+                x[k] = store.x[slot];
+                y[k] = store.y[slot];
+                dx[k] = store.x[slot] - store.previousX[slot];
+                dy[k] = store.y[slot] - store.previousY[slot];
+                width[k] = store.width[slot];
+                height[k] = store.height[slot];
+                kind[k] = store.kind[slot];
+                color[k] = store.colorIndex[slot];
+            }
+        }
+
+        /**
+         * Replaces the entities of a store with these ones. The previous
+         * position of each entity is set from its last move, so the store
+         * interpolates like the one of the world.
+         * @param store The store to fill.
+         */
+        void copyTo(EntityStore store) {
+            store.clear();
+            store.ensureCapacity(count);
+            for (int k = 0; k < count; k++) {
+                store.add(kind[k], x[k], y[k], width[k], height[k], 0,
+                        color[k]);
+                int slot = store.size() - 1;
+                store.previousX[slot] = x[k] - dx[k];
+                store.previousY[slot] = y[k] - dy[k];
+            }
+        }
+
+        /**
+         * Writes these entities as a delta against a baseline.
+         * @param base The entities of the baseline.
+         * @param elapsed The number of ticks since the baseline.
+         * @param out The writer receiving the delta.
+         */
+        void encode(Entities base, int elapsed, BitWriter out) {
+            if (removed.length < base.count) {
+                removed = new int[base.count];
+            }
+            if (updates.length < count) {
+                updates = new int[count];
+                updateBase = new int[count];
+            }
+            int removedCount = 0;
+            int updateCount = 0;
+            int b = 0;
+            for (int k = 0; k < count; k++) {
+                int index = EntityStore.indexOf(handle[k]);
+                while (b < base.count
+                        && EntityStore.indexOf(base.handle[b]) < index) {
+                    removed[removedCount++] =
+                            EntityStore.indexOf(base.handle[b++]);
+                }
+                if (b < base.count && base.handle[b] == handle[k]) {
+                    if (changes(k, base, b, elapsed) != 0) {
+                        updates[updateCount] = k;
+                        updateBase[updateCount++] = b;
+                    }
+                    b++;
+                    continue;
+                }
+                if (b < base.count
+                        && EntityStore.indexOf(base.handle[b]) == index) {
+                    removed[removedCount++] = index; // Index reused.
+                    b++;
+                }
+                updates[updateCount] = k;
+                updateBase[updateCount++] = -1;
+            }
+            while (b < base.count) {
+                removed[removedCount++] = EntityStore.indexOf(base.handle[b++]);
+            }
+            out.writeUnsigned(removedCount);
+            int last = -1;
+            for (int r = 0; r < removedCount; r++) {
+                out.writeUnsigned(removed[r] - last - 1);
+                last = removed[r];
+            }
+            out.writeUnsigned(updateCount);
+            last = -1;
+            for (int u = 0; u < updateCount; u++) {
+                int k = updates[u];
+                int index = EntityStore.indexOf(handle[k]);
+                out.writeUnsigned(index - last - 1);
+                last = index;
+                out.writeBoolean(updateBase[u] < 0);
+                if (updateBase[u] < 0) {
+                    writeNew(k, out);
+                } else {
+                    writeChanges(k, base, updateBase[u], elapsed, out);
+                }
+            }
+        }
+
+        /**
+         * Finds the fields of an entity that differ from its extrapolated
+         * baseline.
+         * @param k The position of the entity.
+         * @param base The entities of the baseline.
+         * @param b The position of the entity in the baseline.
+         * @param elapsed The number of ticks since the baseline.
+         * @return The CHANGED bits of the fields that differ.
+         */
+        private int changes(int k, Entities base, int b, int elapsed) {
+            int changed = 0;
+            if (x[k] != base.x[b] + base.dx[b] * elapsed) {
+                changed |= CHANGED_X;
+            }
+            if (dx[k] != base.dx[b]) {
+                changed |= CHANGED_DX;
+            }
+            if (y[k] != base.y[b] + base.dy[b] * elapsed) {
+                changed |= CHANGED_Y;
+            }
+            if (dy[k] != base.dy[b]) {
+                changed |= CHANGED_DY;
+            }
+            if (width[k] != base.width[b] || height[k] != base.height[b]) {
+                changed |= CHANGED_SIZE;
+            }
+            return changed;
+        }
+
+        /**
+         * Writes every field of an entity the baseline does not have.
+         * @param k The position of the entity.
+         * @param out The writer receiving the fields.
+         */
+        private void writeNew(int k, BitWriter out) {
+            out.writeBits(kind[k], KIND_BITS);
+            out.writeBits(color[k], COLOR_BITS);
+            out.writeUnsigned(width[k]);
+            out.writeUnsigned(height[k]);
+            out.writeSigned(x[k]);
+            out.writeSigned(y[k]);
+            out.writeSigned(dx[k]);
+            out.writeSigned(dy[k]);
+        }
+
+        /**
+         * Writes the fields of an entity that differ from its extrapolated
+         * baseline, as residuals.
+         * @param k The position of the entity.
+         * @param base The entities of the baseline.
+         * @param b The position of the entity in the baseline.
+         * @param elapsed The number of ticks since the baseline.
+         * @param out The writer receiving the fields.
+         */
+        private void writeChanges(int k, Entities base, int b, int elapsed,
+                BitWriter out) {
+            int changed = changes(k, base, b, elapsed);
+            out.writeBits(changed, CHANGED_BITS);
+            if ((changed & CHANGED_X) != 0) {
+                out.writeSigned(x[k] - base.x[b] - base.dx[b] * elapsed);
+            }
+            if ((changed & CHANGED_DX) != 0) {
+                out.writeSigned(dx[k] - base.dx[b]);
+            }
+            if ((changed & CHANGED_Y) != 0) {
+                out.writeSigned(y[k] - base.y[b] - base.dy[b] * elapsed);
+            }
+            if ((changed & CHANGED_DY) != 0) {
+                out.writeSigned(dy[k] - base.dy[b]);
+            }
+            if ((changed & CHANGED_SIZE) != 0) {
+                out.writeUnsigned(width[k]);
+                out.writeUnsigned(height[k]);
+            }
+        }
+
+        /**
+         * Replaces these entities with the ones of a delta written by
+         * encode. Baseline entities the delta does not mention are
+         * extrapolated.
+         * @param base The entities of the baseline, not these ones.
+         * @param elapsed The number of ticks since the baseline.
+         * @param in The reader positioned at the delta.
+         * @throws IOException If the delta is malformed.
+         */
+        void decode(Entities base, int elapsed, BitReader in)
+                throws IOException {
+            int removedCount = readCount(in, base.count);
+            if (removed.length < removedCount) {
+                removed = new int[removedCount];
+            }
+            int last = -1;
+            for (int r = 0; r < removedCount; r++) {
+                last = readIndex(in, last);
+                removed[r] = last;
+            }
+            int updateCount = readCount(in, Integer.MAX_VALUE);
+            ensureCapacity(base.count + updateCount);
+            count = 0;
+            int r = 0;
+            int b = 0;
+            int u = 0;
+            int next = updateCount > 0 ? readIndex(in, -1) : MAX_INDEX;
+            boolean nextNew = updateCount > 0 && in.readBoolean();
+            while (b < base.count || u < updateCount) {
+                int baseIndex = b < base.count
+                        ? EntityStore.indexOf(base.handle[b]) : MAX_INDEX;
+                while (r < removedCount && removed[r] < baseIndex) {
+                    r++;
+                }
+                boolean gone = r < removedCount && removed[r] == baseIndex;
+                if (baseIndex < next) {
+                    // Not in the delta: moved on, unless it was removed.
+                    if (!gone) {
+                        extrapolate(base, b, elapsed);
+                    }
+                    b++;
+                    continue;
+                }
+                if (nextNew) {
+                    if (baseIndex == next) {
+                        if (!gone) {
+                            throw new IOException("New entity over a live "
+                                    + "one at " + next);
+                        }
+                        b++;
+                    }
+                    readNew(next, in);
+                } else {
+                    if (baseIndex != next || gone) {
+                        throw new IOException("Unknown entity changed at "
+                                + next);
+                    }
+                    extrapolate(base, b++, elapsed);
+                    readChanges(in);
+                }
+                if (++u < updateCount) {
+                    next = readIndex(in, next);
+                    nextNew = in.readBoolean();
+                } else {
+                    next = MAX_INDEX;
+                }
+            }
+        }
+
+        /**
+         * Appends a baseline entity moved on by its last move.
+         * @param base The entities of the baseline.
+         * @param b The position of the entity in the baseline.
+         * @param elapsed The number of ticks since the baseline.
+         */
+        private void extrapolate(Entities base, int b, int elapsed) {
+            handle[count] = base.handle[b];
+            x[count] = base.x[b] + base.dx[b] * elapsed;
+            y[count] = base.y[b] + base.dy[b] * elapsed;
+            dx[count] = base.dx[b];
+            dy[count] = base.dy[b];
+            width[count] = base.width[b];
+            height[count] = base.height[b];
+            kind[count] = base.kind[b];
+            color[count] = base.color[b];
+            count++;
+        }
+
+        /**
+         * Appends an entity written by writeNew.
+         * @param index The handle index of the entity.
+         * @param in The reader positioned at its fields.
+         * @throws IOException If the fields are malformed.
+         */
+        private void readNew(int index, BitReader in) throws IOException {
+            handle[count] = index;
+            kind[count] = (byte)in.readBits(KIND_BITS);
+            color[count] = (byte)in.readBits(COLOR_BITS);
+            width[count] = in.readUnsigned();
+            height[count] = in.readUnsigned();
+            x[count] = in.readSigned();
+            y[count] = in.readSigned();
+            dx[count] = in.readSigned();
+            dy[count] = in.readSigned();
+            count++;
+        }
+
+        /**
+         * Applies the residuals written by writeChanges to the entity
+         * extrapolated last.
+         * @param in The reader positioned at the residuals.
+         * @throws IOException If the residuals are malformed.
+         */
+        private void readChanges(BitReader in) throws IOException {
+            int k = count - 1;
+            int changed = (int)in.readBits(CHANGED_BITS);
+            // Each residual is against the extrapolation, so dx is still
+            // the baseline's move while x is corrected.
+            if ((changed & CHANGED_X) != 0) {
+                x[k] += in.readSigned();
+            }
+            if ((changed & CHANGED_DX) != 0) {
+                dx[k] += in.readSigned();
+            }
+            if ((changed & CHANGED_Y) != 0) {
+                y[k] += in.readSigned();
+            }
+            if ((changed & CHANGED_DY) != 0) {
+                dy[k] += in.readSigned();
+            }
+            if ((changed & CHANGED_SIZE) != 0) {
+                width[k] = in.readUnsigned();
+                height[k] = in.readUnsigned();
+            }
+        }
+
+        /**
+         * Makes room for the given number of entities.
+         * @param capacity The number of entities to make room for.
+         */
+        private void ensureCapacity(int capacity) {
+            if (handle.length >= capacity) {
+                return;
+            }
+            capacity = Math.max(capacity, handle.length * 2);
+            handle = Arrays.copyOf(handle, capacity);
+            x = Arrays.copyOf(x, capacity);
+            y = Arrays.copyOf(y, capacity);
+            dx = Arrays.copyOf(dx, capacity);
+            dy = Arrays.copyOf(dy, capacity);
+            width = Arrays.copyOf(width, capacity);
+            height = Arrays.copyOf(height, capacity);
+            kind = Arrays.copyOf(kind, capacity);
+            color = Arrays.copyOf(color, capacity);
+        }
+    }
+
+    /** The enemies of the world. */
+    private final Entities enemies = new Entities();
+
+    /** The missiles of the world. */
+    private final Entities missiles = new Entities();
+
+    /** The number of ticks played, -1 before the state is filled. */
+    private int tick = -1;
+
+    /** The status of the game after the tick. */
+    private GameStatus status = GameStatus.RUNNING;
+
+    /** The number of shots fired. */
+    private int shotsFired;
+
+    /** The number of players. */
+    private int players;
+
+    /** The score of each player. */
+    private final int[] scores = new int[GameWorld.MAX_PLAYERS];
+
+    /** The x-component of the base of each player's turret. */
+    private final int[] turretX = new int[GameWorld.MAX_PLAYERS];
+
+    /** The distance each player's turret moved in the last tick. */
+    private final int[] turretMove = new int[GameWorld.MAX_PLAYERS];
+
+    /**
+     * Copies the state of a world after a tick.
+     * @param tick The number of the state.
+     * @param world The world to copy.
+     * @param status The status of the game after the tick.
+     */
+    public void capture(int tick, GameWorld world, GameStatus status) {
+        this.tick = tick;
+        this.status = status;
+        shotsFired = world.getShotsFired();
+        players = world.getPlayerCount();
+        for (int p = 0; p < players; p++) {
+            Turret turret = world.getTurrets()[p];
+            scores[p] = world.getScore(p);
+            turretX[p] = turret.base.x;
+            turretMove[p] = turret.getMoveDistance();
+        }
+        enemies.capture(world.getEnemies());
+        missiles.capture(world.getMissiles());
+    }
+
+    /**
+     * Writes this state as a delta against an older one. The tick of this
+     * state and of the baseline are not written; the frame carrying the
+     * delta tells them.
+     * @param base The baseline, or null to write the state in full.
+     * @param out The writer receiving the delta.
+     */
+    public void encode(NetState base, BitWriter out) {
+        if (base == null) {
+            base = EMPTY;
+        }
+        int elapsed = base == EMPTY ? 0 : tick - base.tick;
+        out.writeBits(status.ordinal(), STATUS_BITS);
+        out.writeUnsigned(shotsFired - base.shotsFired);
+        out.writeBits(players - 1, PLAYER_BITS);
+        for (int p = 0; p < players; p++) {
+            out.writeUnsigned(scores[p] - base.scores[p]);
+            out.writeSigned(turretX[p] - base.turretX[p]);
+            out.writeSigned(turretMove[p] - base.turretMove[p]);
+        }
+        enemies.encode(base.enemies, elapsed, out);
+        missiles.encode(base.missiles, elapsed, out);
+    }
+
+    /**
+     * Replaces this state with one written by encode.
+     * @param tick The tick of the written state.
+     * @param base The baseline the state was written against, or null if
+     *        it was written in full. Must not be this state.
+     * @param in The reader positioned at the delta.
+     * @throws IOException If the delta is malformed.
+     */
+    public void decode(int tick, NetState base, BitReader in)
+            throws IOException {
+        if (base == null) {
+            base = EMPTY;
+        }
+        int elapsed = base == EMPTY ? 0 : tick - base.tick;
+        int ordinal = (int)in.readBits(STATUS_BITS);
+        if (ordinal >= GameStatus.values().length) {
+            throw new IOException("Unknown game status " + ordinal);
+        }
+        status = GameStatus.values()[ordinal];
+        shotsFired = base.shotsFired + in.readUnsigned();
+        players = (int)in.readBits(PLAYER_BITS) + 1;
+        for (int p = 0; p < players; p++) {
+            scores[p] = base.scores[p] + in.readUnsigned();
+            turretX[p] = base.turretX[p] + in.readSigned();
+            turretMove[p] = base.turretMove[p] + in.readSigned();
+        }
+        enemies.decode(base.enemies, elapsed, in);
+        missiles.decode(base.missiles, elapsed, in);
+        this.tick = tick;
+    }
+
+    /**
+     * Replaces the enemies of a store with the ones of this state.
+     * @param store The store to fill.
+     */
+    public void copyEnemiesTo(EntityStore store) {
+        enemies.copyTo(store);
+    }
+
+    /**
+     * Replaces the missiles of a store with the ones of this state.
+     * @param store The store to fill.
+     */
+    public void copyMissilesTo(EntityStore store) {
+        missiles.copyTo(store);
+    }
+
+    /**
+     * A getter method for the tick of this state.
+     * @return The number of the state, or -1 if the state is empty.
+     */
+    public int getTick() {
+        return tick;
+    }
+
+    /**
+     * A getter method for the status of the game after the tick.
+     * @return The status of the game.
+     */
+    public GameStatus getStatus() {
+        return status;
+    }
+
+    /**
+     * A getter method for the number of shots fired.
+     * @return The number of shots fired by all players.
+     */
+    public int getShotsFired() {
+        return shotsFired;
+    }
+
+    /**
+     * A getter method for the number of players.
+     * @return The number of players.
+     */
+    public int getPlayerCount() {
+        return players;
+    }
+
+    /**
+     * A getter method for the score of one player.
+     * @param player The player.
+     * @return The score of the player.
+     */
+    public int getScore(int player) {
+        return scores[player];
+    }
+
+    /**
+     * A getter method for the total score of the game.
+     * @return The sum of the scores of all players.
+     */
+    public int getTotalScore() {
+        int total = 0;
+        for (int p = 0; p < players; p++) {
+            total += scores[p];
+        }
+        return total;
+    }
+
+    /**
+     * A getter method for the position of a player's turret.
+     * @param player The player.
+     * @return The x-component of the base of the turret.
+     */
+    public int getTurretX(int player) {
+        return turretX[player];
+    }
+
+    /**
+     * A getter method for the distance a player's turret moved in the
+     * last tick.
+     * @param player The player.
+     * @return The x-component of the base minus the one before the tick.
+     */
+    public int getTurretMove(int player) {
+        return turretMove[player];
+    }
+
+    /**
+     * A getter method for the number of enemies.
+     * @return The number of live enemies.
+     */
+    public int getEnemyCount() {
+        return enemies.count;
+    }
+
+    /**
+     * A getter method for the number of missiles.
+     * @return The number of live missiles.
+     */
+    public int getMissileCount() {
+        return missiles.count;
+    }
+
+    /**
+     * Reads the count of a list of a delta, rejecting counts that cannot
+     * be right before any room is made for them.
+     * @param in The reader positioned at the count.
+     * @param max The highest count that is valid.
+     * @return The count.
+     * @throws IOException If the count is malformed or out of range.
+     */
+    private static int readCount(BitReader in, int max) throws IOException {
+        int count = in.readUnsigned();
+        // Every entry takes at least one bit.
+        if (count < 0 || count > max || count > in.remainingBits()) {
+            throw new IOException("Bad entity count " + count);
+        }
+        return count;
+    }
+
+    /**
+     * Reads the handle index of the next entry of a list of a delta, as
+     * a gap after the index of the previous entry.
+     * @param in The reader positioned at the gap.
+     * @param last The index of the previous entry, or -1.
+     * @return The index.
+     * @throws IOException If the gap is malformed or out of range.
+     */
+    private static int readIndex(BitReader in, int last) throws IOException {
+        long index = (long)last + 1 + (in.readUnsigned() & 0xFFFFFFFFL);
+        if (index >= MAX_INDEX) {
+            throw new IOException("Bad handle index " + index);
+        }
+        return (int)index;
+    }
+}
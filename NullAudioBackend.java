@@ -0,0 +1,43 @@
+import javax.sound.sampled.AudioFormat;
+
+/**
+ * An AudioBackend that discards all audio. Used when the game runs headless
+ * or without a sound card; it only counts the frames it receives.
+ */
+public class NullAudioBackend implements AudioBackend {
+
+    /** The number of bytes per frame of the opened format. */
+    private int frameSize = 1;
+
+    /** The number of frames written so far. */
+    private long framesWritten;
+
+    @Override
+    public boolean open(AudioFormat format, int bufferFrames) {
+        frameSize = format.getFrameSize();
+        return true;
+    }
+
+    @Override
+    public void write(byte[] buffer, int length) {
+        framesWritten += length / frameSize;
+    }
+
+    @Override
+    public boolean isRealtime() {
+        return false;
+    }
+
+    @Override
+    public void close() {
+        // Nothing to release.
+    }
+
+    /**
+     * A getter method for the number of frames written so far.
+     * @return The number of frames written.
+     */
+    public long getFramesWritten() {
+        return framesWritten;
+    }
+}
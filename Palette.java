@@ -0,0 +1,48 @@
+import java.awt.Color;
+import java.util.Random;
+
+/**
+ * A fixed table of the colors used for enemies and missiles. Entities store
+ * an index into this table instead of their own Color object.
+ */
+public final class Palette {
+
+    /** The number of colors in the palette. */
+    public static final int SIZE = 64;
+
+    /** The palette colors, spread over hue, saturation and brightness. */
+    private static final Color[] COLORS = new Color[SIZE];
+
+    static {
+        for (int i = 0; i < SIZE; i++) {
+            float hue = (i % 16) / 16f;
+            float saturation = 0.55f + 0.15f * (i / 16 % 4);
+            float brightness = 1f - 0.15f * (i / 16 % 4);
+            COLORS[i] = Color.getHSBColor(hue, saturation, brightness);
+        }
+    }
+
+    /**
+     * Private constructor, the palette is only used statically.
+     */
+    private Palette() {
+    }
+
+    /**
+     * A getter method for the color with the given index.
+     * @param index The index of the color within the palette.
+     * @return The color with the given index.
+     */
+    public static Color getColor(int index) {
+        return COLORS[index & 0xFF];
+    }
+
+    /**
+     * Picks a random color from the palette.
+     * @param rand The source of randomness to use.
+     * @return The index of the chosen color.
+     */
+    public static int randomIndex(Random rand) {
+        return rand.nextInt(SIZE);
+    }
+}
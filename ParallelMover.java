@@ -0,0 +1,162 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Moves the enemies and missiles of a large scene on a ForkJoinPool. The
+ * slots of both stores are split into chunks that are stepped in parallel;
+ * each step only touches its own slot and writes its wall-bounce or
+ * despawn decision into a staging array. Entities already killed this tick
+ * are skipped. A sequential merge then applies the staged decisions in
+ * ascending slot order, starting descend animations and killing missiles
+ * exactly as the single-threaded loop in GameWorld.move does. The resulting
+ * stores and animations are therefore identical to the sequential path.
+ */
+public class ParallelMover {
+
+    /** The number of slots stepped by one task. */
+    private static final int CHUNK_SIZE = 4096;
+
+    /** The pool running the step tasks. */
+    private final ForkJoinPool pool;
+
+    /** Staged decisions, true where the enemy in that slot hit a wall. */
+    private boolean[] bounced = new boolean[CHUNK_SIZE];
+
+    /** Staged decisions, true where the missile in that slot went off. */
+    private boolean[] despawned = new boolean[CHUNK_SIZE];
+
+    /**
+     * The step of one range of slots. Indices below the enemy count are
+     * enemy slots, the rest are missile slots after the enemies.
+     */
+    @SuppressWarnings("serial")
+    private final class StepTask extends RecursiveAction {
+
+        private final EntityStore enemies; // The enemies being moved.
+        private final EntityStore missiles; // The missiles being moved.
+        private final EntityKernels kernels; // The kernels stepping slots.
+        private final int frameWidth; // The width bounds for movement.
+        private final int frameHeight; // The height bounds for movement.
+        private final int from; // The first index of the range.
+        private final int to; // The index after the range.
+
+        /**
+         * Constructor for StepTask objects.
+         * @param enemies The store holding all active enemies.
+         * @param missiles The store holding all active missiles.
+         * @param kernels The kernels stepping the slots.
+         * @param frameWidth The width bounds for movement.
+         * @param frameHeight The height bounds for movement.
+         * @param from The first index of the range.
+         * @param to The index after the range.
+         */
+        StepTask(EntityStore enemies, EntityStore missiles,
+                EntityKernels kernels, int frameWidth, int frameHeight,
+                int from, int to) {
+            this.enemies = enemies;
+            this.missiles = missiles;
+            this.kernels = kernels;
+            this.frameWidth = frameWidth;
+            this.frameHeight = frameHeight;
+            this.from = from;
+            this.to = to;
+        }
+
+        /**
+         * Steps the range directly if it is small enough, otherwise splits
+         * it in halves and steps both in parallel.
+         */
+        @Override
+        protected void compute() {
+            if (to - from <= CHUNK_SIZE) {
+                stepRange(enemies, missiles, kernels, frameWidth,
+                        frameHeight, from, to);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new StepTask(enemies, missiles, kernels, frameWidth,
+                    frameHeight, from, middle),
+                    new StepTask(enemies, missiles, kernels, frameWidth,
+                            frameHeight, middle, to));
+        }
+    }
+
+    /**
+     * Constructor for ParallelMover objects.
+     * @param pool The pool to run the step tasks on.
+     */
+    public ParallelMover(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * A getter method for the pool running the step tasks.
+     * @return The pool of this mover.
+     */
+    public ForkJoinPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Moves every enemy and missile one step, advancing the animations
+     * between the two, with the same result as GameWorld's sequential move.
+     * @param enemies The store holding all active enemies.
+     * @param missiles The store holding all active missiles.
+     * @param animations The scheduler running the enemy animations.
+     * @param kernels The kernels stepping the slots.
+     * @param frameWidth The width bounds for movement.
+     * @param frameHeight The height bounds for movement.
+     */
+    public void move(EntityStore enemies, EntityStore missiles,
+            AnimationScheduler animations, EntityKernels kernels,
+            int frameWidth, int frameHeight) {
+        int enemyCount = enemies.size();
+        int missileCount = missiles.size();
+        if (bounced.length < enemyCount) {
+            bounced = new boolean[Math.max(enemyCount, bounced.length * 2)];
+        }
+        if (despawned.length < missileCount) {
+            despawned = new boolean[Math.max(missileCount,
+                    despawned.length * 2)];
+        }
+        pool.invoke(new StepTask(enemies, missiles, kernels, frameWidth,
+                frameHeight, 0, enemyCount + missileCount));
+        // Merge: apply the staged decisions in the sequential order.
+        for (int slot = 0; slot < enemyCount; slot++) {
+            if (bounced[slot]) {
+                Enemy.forKind(enemies.kind[slot]).transitionY(enemies,
+                        animations, slot);
+            }
+        }
+        animations.advance();
+        for (int slot = 0; slot < missileCount; slot++) {
+            if (despawned[slot]) {
+                missiles.kill(missiles.handleAt(slot));
+            }
+        }
+    }
+
+    /**
+     * Steps one range of enemy and missile slots, staging the decisions.
+     * @param enemies The store holding all active enemies.
+     * @param missiles The store holding all active missiles.
+     * @param kernels The kernels stepping the slots.
+     * @param frameWidth The width bounds for movement.
+     * @param frameHeight The height bounds for movement.
+     * @param from The first index of the range.
+     * @param to The index after the range.
+     */
+    private void stepRange(EntityStore enemies, EntityStore missiles,
+            EntityKernels kernels, int frameWidth, int frameHeight, int from,
+            int to) {
+        int enemyCount = enemies.size();
+        if (from < enemyCount) {
+            kernels.stepEnemies(enemies, from, Math.min(to, enemyCount),
+                    frameWidth, bounced);
+        }
+        if (to > enemyCount) {
+            kernels.stepMissiles(missiles, Math.max(from, enemyCount)
+                    - enemyCount, to - enemyCount, frameHeight, despawned);
+        }
+    }
+}
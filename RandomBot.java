@@ -0,0 +1,50 @@
+import java.util.Random;
+
+/**
+ * A bot that plays at random: it holds a random direction for a random
+ * number of ticks and fires with a fixed chance every tick. A baseline for
+ * how much a balancing change depends on skill.
+ */
+public class RandomBot implements BotPolicy {
+
+    /** The chance of firing in any one tick. */
+    private static final double FIRE_CHANCE = 0.01;
+
+    /** The most ticks a direction is held. */
+    private static final int MAX_HOLD_TICKS = 30;
+
+    /** The source of every decision of this bot. */
+    private final Random rand;
+
+    /** The direction inputs currently held. */
+    private int direction;
+
+    /** The ticks left before a new direction is chosen. */
+    private int holdTicks;
+
+    /**
+     * Constructor for RandomBot objects.
+     * @param seed The seed of the bot's decisions.
+     */
+    public RandomBot(long seed) {
+        rand = new Random(seed);
+    }
+
+    /**
+     * Decides the inputs of the next tick.
+     * @param world The world being played, after the last tick.
+     * @return The held direction, and INPUT_FIRE by chance.
+     */
+    @Override
+    public int nextInputs(GameWorld world) {
+        if (holdTicks == 0) {
+            int choice = rand.nextInt(3);
+            direction = choice == 0 ? GameWorld.INPUT_LEFT
+                    : choice == 1 ? GameWorld.INPUT_RIGHT : 0;
+            holdTicks = 1 + rand.nextInt(MAX_HOLD_TICKS);
+        }
+        holdTicks--;
+        boolean fire = rand.nextDouble() < FIRE_CHANCE;
+        return direction | (fire ? GameWorld.INPUT_FIRE : 0);
+    }
+}
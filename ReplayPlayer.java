@@ -0,0 +1,265 @@
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+
+/**
+ * Plays back a replay written by ReplayRecorder, handing out the recorded
+ * inputs one tick at a time. A GameWorld created with createWorld and
+ * ticked with those inputs reproduces the recorded game exactly. The
+ * stream is closed once the replay is over.
+ *
+ * The main method fast-forwards a replay headless and prints the outcome,
+ * which makes recorded sessions usable for reproducing bugs:
+ * <pre>
+ * java -Djava.awt.headless=true ReplayPlayer game.sdr
+ * </pre>
+ * A game recorded with a wave file replays only with the same file, given
+ * again through the spacedefenders.waves property. The replay holds a hash
+ * of the waves, so other waves are refused instead of playing a different
+ * game.
+ */
+public class ReplayPlayer implements Closeable {
+
+    /** The stream the replay is read from. */
+    private final DataInputStream in;
+
+    /** The width bounds of the recorded game. */
+    private final int width;
+
+    /** The height bounds of the recorded game. */
+    private final int height;
+
+    /** The seed the recorded GameWorld was created from. */
+    private final long seed;
+
+    /** The hash of the waves of the recorded game, 0 without waves. */
+    private final long timelineHash;
+
+    /** The number of ticks handed out so far. */
+    private int tick;
+
+    /** The inputs of the current tick. */
+    private int inputs;
+
+    /** The tick at which the next record applies. */
+    private int changeTick;
+
+    /** The input byte of the next record, or END. */
+    private int changeInputs;
+
+    /** True once the END record has been reached. */
+    private boolean finished;
+
+    /**
+     * Constructor for ReplayPlayer objects, reading the header and the
+     * first record of the replay.
+     * @param in The stream to read the replay from. Closed by close.
+     * @throws IOException If the stream is not a replay or cannot be read.
+     */
+    public ReplayPlayer(InputStream in) throws IOException {
+        this.in = new DataInputStream(in);
+        if (this.in.readInt() != ReplayRecorder.MAGIC) {
+            throw new IOException("Not a replay file");
+        }
+        int version = this.in.readUnsignedByte();
+        if (version != ReplayRecorder.VERSION) {
+            throw new IOException("Unsupported replay version " + version);
+        }
+        width = readVarint(this.in);
+        height = readVarint(this.in);
+        seed = this.in.readLong();
+        timelineHash = this.in.readLong();
+        readRecord();
+    }
+
+    /**
+     * Opens a replay file.
+     * @param fileName The replay file.
+     * @return The player for the file.
+     * @throws IOException If the file is not a replay or cannot be read.
+     */
+    public static ReplayPlayer open(String fileName) throws IOException {
+        return new ReplayPlayer(new BufferedInputStream(
+                new FileInputStream(fileName)));
+    }
+
+    /**
+     * Creates the world the replay was recorded on, in its first tick.
+     * @param waves The waves the game was recorded with, or null if its
+     *        enemies spawned at random.
+     * @return A new GameWorld from the recorded seed and bounds, spawning
+     *         the given waves.
+     * @throws IOException If the game was recorded with other waves.
+     */
+    public GameWorld createWorld(WaveTimeline waves) throws IOException {
+        checkWaves(waves);
+        GameWorld world = GameWorld.create(width, height, seed);
+        world.setWaves(waves);
+        return world;
+    }
+
+    /**
+     * Checks that the given waves are those the game was recorded with.
+     * @param waves The waves to replay the game with, or null for random
+     *        spawns.
+     * @throws IOException If the game was recorded with other waves, or
+     *         with waves when none are given, or without when some are.
+     */
+    public void checkWaves(WaveTimeline waves) throws IOException {
+        if (ReplayRecorder.timelineHash(waves) != timelineHash) {
+            throw new IOException(timelineHash == 0
+                    ? "The replay was recorded without waves"
+                    : "The replay was recorded with other waves");
+        }
+    }
+
+    /**
+     * Determines whether the replay has inputs for another tick.
+     * @return True if nextInputs may be called.
+     * @throws IOException If the replay cannot be read.
+     */
+    public boolean hasNext() throws IOException {
+        applyChanges();
+        return !finished;
+    }
+
+    /**
+     * Hands out the recorded inputs of the next tick.
+     * @return The input bits to pass to GameWorld.tick.
+     * @throws IOException If the replay cannot be read.
+     */
+    public int nextInputs() throws IOException {
+        if (!hasNext()) {
+            throw new IllegalStateException("The replay is over");
+        }
+        tick++;
+        return inputs;
+    }
+
+    /**
+     * A getter method for the seed of the recorded game.
+     * @return The seed the recorded GameWorld was created from.
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * A getter method for the width bounds of the recorded game.
+     * @return The recorded width.
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * A getter method for the height bounds of the recorded game.
+     * @return The recorded height.
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * A getter method for the number of ticks played back so far.
+     * @return The number of inputs handed out.
+     */
+    public int getTick() {
+        return tick;
+    }
+
+    /**
+     * Closes the replay stream.
+     * @throws IOException If the stream cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /**
+     * Applies every record due at the current tick.
+     * @throws IOException If the replay cannot be read.
+     */
+    private void applyChanges() throws IOException {
+        while (!finished && tick == changeTick) {
+            if (changeInputs == ReplayRecorder.END) {
+                finished = true;
+                in.close(); // Nothing left to read.
+                return;
+            }
+            inputs = changeInputs;
+            readRecord();
+        }
+    }
+
+    /**
+     * Reads the next record. A replay cut off without its END record, for
+     * example by a crash, ends after the last complete record.
+     * @throws IOException If the replay cannot be read.
+     */
+    private void readRecord() throws IOException {
+        try {
+            int delta = readVarint(in);
+            changeInputs = in.readUnsignedByte();
+            changeTick += delta;
+        } catch (EOFException e) {
+            changeInputs = ReplayRecorder.END;
+            changeTick = tick;
+        }
+    }
+
+    /**
+     * Reads a varint written by ReplayRecorder.writeVarint.
+     * @param in The stream to read from.
+     * @return The decoded value.
+     * @throws IOException If the stream cannot be read or the varint is
+     *         too long.
+     */
+    static int readVarint(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    /**
+     * Fast-forwards a replay headless and prints how the game ended, how
+     * many ticks it ran, and how fast it was played back.
+     * @param args The replay file.
+     * @throws IOException If the replay cannot be read.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: java ReplayPlayer <replay-file>");
+            System.exit(2);
+        }
+        System.setProperty("java.awt.headless", "true");
+        try (ReplayPlayer replay = open(args[0])) {
+            String wavesFile = System.getProperty("spacedefenders.waves");
+            GameWorld world = replay.createWorld(wavesFile != null
+                    ? WaveTimeline.load(wavesFile) : null);
+            GameStatus status = GameStatus.RUNNING;
+            long start = System.nanoTime();
+            while (status == GameStatus.RUNNING && replay.hasNext()) {
+                status = world.tick(replay.nextInputs());
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.println(String.format(Locale.ROOT,
+                    "%s after %d ticks, score %d, shots %d, "
+                    + "%.0f ticks/s", status, replay.getTick(),
+                    world.getTotalScore(), world.getShotsFired(),
+                    replay.getTick() / Math.max(seconds, 1e-9)));
+        }
+    }
+}
@@ -0,0 +1,159 @@
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Records the inputs of every tick of a game into a compact binary replay.
+ * Together with the seed of the GameWorld, the inputs are enough for a
+ * ReplayPlayer to reproduce the game exactly.
+ *
+ * The file starts with the magic "SDRP", a version byte, the field width
+ * and height as varints, the seed as 8 bytes, and the hash of the wave
+ * timeline of the game as 8 bytes, 0 without waves. Then follows one record
+ * per change of inputs: a varint count of ticks since the previous record,
+ * and the new input bits as one byte. Inputs usually stay the same for
+ * many ticks, so most games take a few bytes per second. A last record
+ * with the input byte END marks the tick after the last recorded one.
+ */
+public class ReplayRecorder implements Closeable {
+
+    /** The first four bytes of every replay, "SDRP". */
+    static final int MAGIC = 0x53445250;
+
+    /**
+     * The version of the replay format. Version 2 added the hash of the
+     * wave timeline.
+     */
+    static final int VERSION = 2;
+
+    /** The input byte of the record ending the replay. */
+    static final int END = 0xFF;
+
+    /** The stream receiving the replay. */
+    private final DataOutputStream out;
+
+    /** The number of ticks recorded so far. */
+    private int tick;
+
+    /** The tick of the last written record. */
+    private int lastChangeTick;
+
+    /** The inputs of the last recorded tick, 0 before the first. */
+    private int lastInputs;
+
+    /** True once the END record has been written. */
+    private boolean closed;
+
+    /**
+     * Constructor for ReplayRecorder objects, writing the header of the
+     * replay.
+     * @param out The stream to write the replay to. Closed by close.
+     * @param width The width bounds of the recorded game.
+     * @param height The height bounds of the recorded game.
+     * @param seed The seed the recorded GameWorld was created from.
+     * @param waves The waves of the recorded game, or null if its enemies
+     *        spawn at random.
+     * @throws IOException If the header cannot be written.
+     */
+    public ReplayRecorder(OutputStream out, int width, int height, long seed,
+            WaveTimeline waves) throws IOException {
+        this.out = new DataOutputStream(out);
+        this.out.writeInt(MAGIC);
+        this.out.writeByte(VERSION);
+        writeVarint(this.out, width);
+        writeVarint(this.out, height);
+        this.out.writeLong(seed);
+        this.out.writeLong(timelineHash(waves));
+    }
+
+    /**
+     * Creates a recorder writing to the given file.
+     * @param fileName The file to write the replay to.
+     * @param width The width bounds of the recorded game.
+     * @param height The height bounds of the recorded game.
+     * @param seed The seed the recorded GameWorld was created from.
+     * @param waves The waves of the recorded game, or null if its enemies
+     *        spawn at random.
+     * @return The new recorder.
+     * @throws IOException If the file cannot be created.
+     */
+    public static ReplayRecorder create(String fileName, int width,
+            int height, long seed, WaveTimeline waves) throws IOException {
+        return new ReplayRecorder(new BufferedOutputStream(
+                new FileOutputStream(fileName)), width, height, seed, waves);
+    }
+
+    /**
+     * Computes the timeline hash written into the header of a replay.
+     * @param waves The waves of a game, or null if its enemies spawn at
+     *        random.
+     * @return The hash of the waves, or 0 without waves.
+     */
+    static long timelineHash(WaveTimeline waves) {
+        return waves == null ? 0 : waves.getHash();
+    }
+
+    /**
+     * Records the inputs of the next tick.
+     * @param inputs The input bits passed to GameWorld.tick.
+     * @throws IOException If the record cannot be written.
+     */
+    public synchronized void record(int inputs) throws IOException {
+        if (closed) {
+            return;
+        }
+        if (inputs != lastInputs) {
+            writeVarint(out, tick - lastChangeTick);
+            out.writeByte(inputs);
+            lastChangeTick = tick;
+            lastInputs = inputs;
+        }
+        tick++;
+    }
+
+    /**
+     * A getter method for the number of recorded ticks.
+     * @return The number of ticks recorded so far.
+     */
+    public synchronized int getTicks() {
+        return tick;
+    }
+
+    /**
+     * Writes the END record and closes the stream. Later calls do nothing.
+     * @throws IOException If the stream cannot be written or closed.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            writeVarint(out, tick - lastChangeTick);
+            out.writeByte(END);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Writes a non-negative value as an unsigned LEB128 varint: seven bits
+     * per byte, low bits first, with the top bit set on all but the last
+     * byte.
+     * @param out The stream to write to.
+     * @param value The non-negative value.
+     * @throws IOException If the stream cannot be written.
+     */
+    static void writeVarint(DataOutputStream out, int value)
+            throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+}
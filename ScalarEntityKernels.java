@@ -0,0 +1,94 @@
+/**
+ * The entity kernels as plain loops over the slots of a store, one entity
+ * at a time. These are the reference for every other implementation, and
+ * the kernels the game falls back to without the Vector API.
+ */
+public class ScalarEntityKernels implements EntityKernels {
+
+    /**
+     * Moves the enemies in a range of slots one at a time with Enemy.step.
+     * @param store The store holding all active enemies.
+     * @param from The first slot of the range.
+     * @param to The slot after the range.
+     * @param frameWidth The width bounds for movement.
+     * @param bounced Receives, per slot of the range, true if the enemy
+     *        hit a wall and should move down.
+     */
+    @Override
+    public void stepEnemies(EntityStore store, int from, int to,
+            int frameWidth, boolean[] bounced) {
+        for (int slot = from; slot < to; slot++) {
+            bounced[slot] = store.alive[slot]
+                    && Enemy.forKind(store.kind[slot]).step(store, slot,
+                            frameWidth);
+        }
+    }
+
+    /**
+     * Moves the missiles in a range of slots one at a time with
+     * Missile.step.
+     * @param store The store holding all active missiles.
+     * @param from The first slot of the range.
+     * @param to The slot after the range.
+     * @param panelHeight The height bounds for movement.
+     * @param despawned Receives, per slot of the range, true if the
+     *        missile is off panel and should be killed.
+     */
+    @Override
+    public void stepMissiles(EntityStore store, int from, int to,
+            int panelHeight, boolean[] despawned) {
+        for (int slot = from; slot < to; slot++) {
+            despawned[slot] = store.alive[slot]
+                    && Missile.step(store, slot, panelHeight);
+        }
+    }
+
+    /**
+     * Tests the swept box of every live entity against the given box.
+     * @param store The store holding the entities.
+     * @param x The x-component of the box.
+     * @param y The y-component of the box.
+     * @param width The width of the box.
+     * @param height The height of the box.
+     * @param result Receives the slots found, in ascending order. Must hold
+     *        at least store.size() entries.
+     * @return The number of slots found.
+     */
+    @Override
+    public int sweptOverlaps(EntityStore store, int x, int y, int width,
+            int height, int[] result) {
+        return sweptOverlaps(store, 0, store.size(), x, y, width, height,
+                result, 0);
+    }
+
+    /**
+     * Tests the swept box of every live entity in a range of slots against
+     * the given box, appending the slots found to a result.
+     * @param store The store holding the entities.
+     * @param from The first slot of the range.
+     * @param to The slot after the range.
+     * @param x The x-component of the box.
+     * @param y The y-component of the box.
+     * @param width The width of the box.
+     * @param height The height of the box.
+     * @param result Receives the slots found, in ascending order.
+     * @param count The number of slots already in result.
+     * @return The number of slots in result.
+     */
+    protected int sweptOverlaps(EntityStore store, int from, int to, int x,
+            int y, int width, int height, int[] result, int count) {
+        for (int slot = from; slot < to; slot++) {
+            int left = Math.min(store.previousX[slot], store.x[slot]);
+            int top = Math.min(store.previousY[slot], store.y[slot]);
+            int right = Math.max(store.previousX[slot], store.x[slot])
+                    + store.width[slot];
+            int bottom = Math.max(store.previousY[slot], store.y[slot])
+                    + store.height[slot];
+            if (store.alive[slot] && left < x + width && x < right
+                    && top < y + height && y < bottom) {
+                result[count++] = slot;
+            }
+        }
+        return count;
+    }
+}
@@ -1,56 +1,45 @@
-import java.awt.Color;
-import java.util.ArrayList;
-import java.util.Random;
-
 public class SmallEnemy extends Enemy {
     
     /**
-     * Constructor for SmallEnemy objects, initializing position,
-     * bounds, speed, and color.
-     * @param frameWidth The width bounds.
-     * @param frameHeight The height bounds.
+     * The shared SmallEnemy type.
      */
-    public SmallEnemy(int frameWidth, int frameHeight) {
-        super(new Random().nextInt(frameWidth - 30),
-                new Random().nextInt(frameHeight - 30), 30, 30, 6);
-        setColor();
-    }
+    public static final SmallEnemy INSTANCE = new SmallEnemy();
     
     /**
-     * Sets the given SmallEnemy to a random Color.
+     * Constructor for the SmallEnemy type, setting the size, speed,
+     * shrink amount, and score of every SmallEnemy.
      */
-    public void setColor() {
-        Random rand = new Random();
-        // Generate random rgb values.
-        setEnemyColor(new Color(rand.nextFloat(),
-                rand.nextFloat(), rand.nextFloat()));
+    private SmallEnemy() {
+        super(EntityStore.KIND_SMALL_ENEMY, 30, 6, 30, 150);
     }
     
     /**
      * Computes and updates the next position of the SmallEnemy. The bounds
      * of the enemy must always remain be within the specified frameWidth
      * and frameHeight, otherwise the object will turn around and move down.
+     * @param store The store holding all active enemies.
+     * @param animations The scheduler running the enemy animations.
+     * @param slot The slot of the given enemy within store.
      * @param frameWidth The width bounds for movement.
      * @param frameHeight The height bounds for movement.
      */
-    public void move(int frameWidth, int frameHeight) {
-        int updated = getX() + (int)getEnemySpeed();
-        if (updated + getWidth() > frameWidth || updated < 0) {
-            setEnemySpeed(getEnemySpeed() * -1); // Turn around enemy.
+    public void move(EntityStore store, AnimationScheduler animations,
+            int slot, int frameWidth, int frameHeight) {
+        if (step(store, slot, frameWidth)) {
             // Transition enemy down after hitting a wall.
-            transitionY();
+            transitionY(store, animations, slot);
         }
-        setBounds(updated, getY(),
-                getWidth(), getHeight());
     }
     
     /**
      * Shrinks the given SmallEnemy or removes it from the game when
      * hit by a missile.
-     * @param list An ArrayList of all current active Enemy objects.
-     * @param smallEnemy The index of the given Enemy object within list.
+     * @param store The store holding all active enemies.
+     * @param animations The scheduler running the enemy animations.
+     * @param slot The slot of the given enemy within store.
      */
-    public void processCollision(ArrayList<Enemy> list, int smallEnemy) {
-        radialShrink(list, 30, smallEnemy);
+    public void processCollision(EntityStore store,
+            AnimationScheduler animations, int slot) {
+        radialShrink(store, animations, slot);
     }
 }
@@ -0,0 +1,76 @@
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A lock-free triple buffer of WorldSnapshots between one writer, the
+ * simulation thread, and one reader, the render thread. The writer fills
+ * its back snapshot and publishes it by swapping it with the middle one;
+ * the reader takes the middle one whenever it is newer than its front
+ * snapshot. Neither side ever waits for the other: a slow paint only means
+ * some snapshots are never drawn, and a slow tick only means the same
+ * snapshot is drawn again.
+ */
+public class SnapshotBuffer {
+
+    /** Flag set in middle while it holds a snapshot the reader has not seen. */
+    private static final int FRESH = 4;
+
+    /** Mask of the snapshot index in middle. */
+    private static final int INDEX_MASK = 3;
+
+    /** The three snapshots. */
+    private final WorldSnapshot[] snapshots = new WorldSnapshot[3];
+
+    /** The index of the shared snapshot, and the FRESH flag. */
+    private final AtomicInteger middle = new AtomicInteger(1);
+
+    /** The index of the snapshot owned by the writer. */
+    private int back = 0;
+
+    /** The index of the snapshot owned by the reader. */
+    private int front = 2;
+
+    /**
+     * Constructor for SnapshotBuffer objects, starting every snapshot as a
+     * copy of the given world.
+     * @param world The world before its first tick.
+     * @param stepTime The System.nanoTime value at which the first tick is
+     *        due.
+     */
+    public SnapshotBuffer(GameWorld world, long stepTime) {
+        for (int i = 0; i < snapshots.length; i++) {
+            snapshots[i] = new WorldSnapshot();
+            snapshots[i].copyFrom(world, GameStatus.RUNNING, stepTime);
+        }
+    }
+
+    /**
+     * A getter method for the snapshot the writer fills next. Only the
+     * writer thread may call this.
+     * @return The back snapshot.
+     */
+    public WorldSnapshot getBack() {
+        return snapshots[back];
+    }
+
+    /**
+     * Publishes the back snapshot as the latest one, and takes another
+     * snapshot that no reader holds as the new back. Only the writer
+     * thread may call this.
+     */
+    public void publish() {
+        back = middle.getAndSet(back | FRESH) & INDEX_MASK;
+    }
+
+    /**
+     * A getter method for the latest published snapshot. The snapshot
+     * stays unchanged until the next call. Only the reader thread may call
+     * this.
+     * @return The latest snapshot.
+     */
+    public WorldSnapshot latest() {
+        if ((middle.get() & FRESH) != 0) {
+            front = middle.getAndSet(front) & INDEX_MASK;
+        }
+        return snapshots[front];
+    }
+}
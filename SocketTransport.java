@@ -0,0 +1,174 @@
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/**
+ * A Transport over a non-blocking TCP SocketChannel. Every message is
+ * sent with a 4-byte length in front of it. A message that does not fit
+ * into the socket behind the bytes not sent yet is dropped instead of
+ * queued, like a lost datagram, so a slow connection falls behind by whole
+ * frames rather than building up delay.
+ */
+public class SocketTransport implements Transport {
+
+    /** The largest message accepted, so a bad length fails early. */
+    public static final int MAX_MESSAGE = 1 << 24;
+
+    /** The number of bytes of the length in front of every message. */
+    private static final int LENGTH_BYTES = Integer.BYTES;
+
+    /** The connection. */
+    private final SocketChannel channel;
+
+    /**
+     * The bytes not sent yet, between position and limit. Reused for
+     * every message once it is empty.
+     */
+    private ByteBuffer outgoing = ByteBuffer.allocate(4096).flip();
+
+    /** The bytes received but not taken yet, between position and limit. */
+    private ByteBuffer incoming = ByteBuffer.allocate(4096).flip();
+
+    /** The number of messages dropped because the socket was full. */
+    private long dropped;
+
+    /**
+     * Constructor for SocketTransport objects, switching the channel to
+     * non-blocking mode.
+     * @param channel The connected channel.
+     * @throws IOException If the channel cannot be configured.
+     */
+    public SocketTransport(SocketChannel channel) throws IOException {
+        this.channel = channel;
+        channel.configureBlocking(false);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+    }
+
+    /**
+     * Connects to a host, waiting until the connection is made.
+     * @param host The name or address of the host.
+     * @param port The port the host listens on.
+     * @return The new transport.
+     * @throws IOException If the host cannot be reached.
+     */
+    public static SocketTransport connect(String host, int port)
+            throws IOException {
+        SocketChannel channel = SocketChannel.open(
+                new InetSocketAddress(host, port));
+        try {
+            return new SocketTransport(channel);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Sends one message, after the bytes not sent yet, or drops it if the
+     * socket cannot take those bytes right now.
+     * @param message The message, from its position up to its limit.
+     * @throws IOException If the connection is broken.
+     */
+    @Override
+    public void send(ByteBuffer message) throws IOException {
+        if (outgoing.hasRemaining()) {
+            channel.write(outgoing);
+            if (outgoing.hasRemaining()) {
+                dropped++;
+                message.position(message.limit());
+                return;
+            }
+        }
+        int length = message.remaining();
+        if (outgoing.capacity() < LENGTH_BYTES + length) {
+            outgoing = ByteBuffer.allocate(Math.max(LENGTH_BYTES + length,
+                    outgoing.capacity() * 2));
+        }
+        outgoing.clear();
+        outgoing.putInt(length).put(message).flip();
+        channel.write(outgoing);
+    }
+
+    /**
+     * Takes the next complete message, reading what has arrived when none
+     * is buffered.
+     * @return The message, valid until the next call, or null if no
+     *         complete message has arrived.
+     * @throws IOException If the connection is closed or broken, or a
+     *         message is longer than MAX_MESSAGE.
+     */
+    @Override
+    public ByteBuffer receive() throws IOException {
+        if (outgoing.hasRemaining()) {
+            channel.write(outgoing); // Keep the last message moving.
+        }
+        if (!hasMessage()) {
+            int needed = LENGTH_BYTES;
+            if (incoming.remaining() >= LENGTH_BYTES) {
+                needed += messageLength();
+            }
+            if (incoming.capacity() < needed) {
+                incoming = ByteBuffer.allocate(Math.max(needed,
+                        incoming.capacity() * 2)).put(incoming);
+            } else {
+                incoming.compact();
+            }
+            int read = channel.read(incoming);
+            incoming.flip();
+            if (read < 0) {
+                throw new EOFException("Connection closed by peer");
+            }
+            if (!hasMessage()) {
+                return null;
+            }
+        }
+        int length = messageLength();
+        int start = incoming.position() + LENGTH_BYTES;
+        incoming.position(start + length);
+        return incoming.slice(start, length);
+    }
+
+    /**
+     * A getter method for the number of messages dropped because the
+     * socket was full.
+     * @return The number of dropped messages.
+     */
+    public long getDropped() {
+        return dropped;
+    }
+
+    /**
+     * Closes the connection.
+     * @throws IOException If the channel cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Determines whether a complete message is buffered.
+     * @return True if the next message can be taken without reading.
+     * @throws IOException If the buffered length is out of range.
+     */
+    private boolean hasMessage() throws IOException {
+        return incoming.remaining() >= LENGTH_BYTES
+                && incoming.remaining() >= LENGTH_BYTES + messageLength();
+    }
+
+    /**
+     * Reads the length of the next buffered message.
+     * @return The length, without the length bytes.
+     * @throws IOException If the length is out of range.
+     */
+    private int messageLength() throws IOException {
+        int length = incoming.getInt(incoming.position());
+        if (length < 0 || length > MAX_MESSAGE) {
+            throw new IOException("Bad message length " + length);
+        }
+        return length;
+    }
+}
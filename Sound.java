@@ -1,41 +1,83 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CompletableFuture;
 import javax.sound.sampled.AudioInputStream;
 import javax.sound.sampled.AudioSystem;
-import javax.sound.sampled.Clip;
+import javax.sound.sampled.UnsupportedAudioFileException;
 
 public class Sound  {
     
+    /** The samples played while a sound is still being decoded. */
+    private static final short[] SILENCE = new short[0];
+    
     /**
-     * Clip interface for loading audio data.
+     * Interleaved 16-bit samples in AudioMixer.FORMAT, shared with every
+     * other Sound of the same file, once the AssetManager has decoded them.
      */
-    private Clip clip;
+    private final CompletableFuture<short[]> samples;
     
     /**
-     * Constructor for Sound objects, setting up an input stream
-     * with the given file name.
+     * Constructor for Sound objects. The file is decoded in the background
+     * by the default AssetManager, unless it already was; until then, the
+     * Sound plays silence.
      * @param fileName The name of the audio file to load.
      */
     public Sound(String fileName) {
-        try {
-            AudioInputStream audioIn = AudioSystem
-                    .getAudioInputStream(getClass().getResource(fileName));
-            clip = AudioSystem.getClip();
-            clip.open(audioIn);
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+        samples = AssetManager.getDefault().sound(fileName);
     }
     
     /**
-     * Plays the given Sound to the user.
+     * Plays the given Sound to the user through the default AudioMixer.
+     * Sounds that are already playing keep playing.
      */
     public void play() {
-        if (clip == null) {
-            return;
-        }
-        if (clip.isRunning()) {
-            clip.stop();         
+        play(AudioMixer.getDefault());
+    }
+    
+    /**
+     * Plays the given Sound through the given AudioMixer. Nothing is played
+     * if the Sound is still being decoded.
+     * @param mixer The mixer to play the Sound on.
+     */
+    public void play(AudioMixer mixer) {
+        mixer.play(samples.getNow(SILENCE));
+    }
+    
+    /**
+     * Determines whether the Sound has been decoded.
+     * @return True once play plays the Sound.
+     */
+    public boolean isLoaded() {
+        return samples.isDone();
+    }
+    
+    /**
+     * Reads an audio file and converts it to AudioMixer.FORMAT.
+     * @param in The audio file. Must support mark and reset.
+     * @return The decoded samples.
+     * @throws IOException If the file cannot be read.
+     * @throws UnsupportedAudioFileException If the file is not audio that
+     *         can be converted to AudioMixer.FORMAT.
+     */
+    static short[] decode(InputStream in)
+            throws IOException, UnsupportedAudioFileException {
+        try (AudioInputStream audioIn = AudioSystem.getAudioInputStream(in);
+                AudioInputStream converted = AudioSystem.getAudioInputStream(
+                    AudioMixer.FORMAT, audioIn)) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = converted.read(buffer)) > 0) {
+                bytes.write(buffer, 0, read);
+            }
+            byte[] data = bytes.toByteArray();
+            short[] decoded = new short[data.length / 2];
+            for (int i = 0; i < decoded.length; i++) {
+                decoded[i] = (short)((data[2 * i] & 0xFF)
+                        | (data[2 * i + 1] << 8));
+            }
+            return decoded;
         }
-        clip.setFramePosition(0);
-        clip.start();
-    }  
+    }
 }
@@ -0,0 +1,263 @@
+import java.util.Arrays;
+
+/**
+ * A uniform grid broadphase for collision detection. Item bounds are bucketed
+ * into square cells once per tick, so a query only has to test the items in
+ * the cells it overlaps instead of every item in the game. Items outside the
+ * field are clamped into the border cells, which keeps queries correct for
+ * objects that have partly left the panel.
+ */
+public class SpatialGrid {
+
+    /** The side length of a cell in pixels. */
+    private final int cellSize;
+
+    /** The number of cell columns covering the field. */
+    private final int columns;
+
+    /** The number of cell rows covering the field. */
+    private final int rows;
+
+    /**
+     * The start offset of each cell within cellItems. The items of cell c
+     * are stored in cellItems[cellStart[c]] to cellItems[cellStart[c + 1]].
+     */
+    private final int[] cellStart;
+
+    /** The number of items in the grid. */
+    private int itemCount;
+
+    /** The item indices bucketed by cell. */
+    private int[] cellItems = new int[64];
+
+    /** The x-components of the item bounds from the last build. */
+    private int[] itemX = new int[16];
+
+    /** The y-components of the item bounds from the last build. */
+    private int[] itemY = new int[16];
+
+    /** The widths of the item bounds from the last build. */
+    private int[] itemWidth = new int[16];
+
+    /** The heights of the item bounds from the last build. */
+    private int[] itemHeight = new int[16];
+
+    /**
+     * Constructor for SpatialGrid objects, covering a field of the given
+     * size with cells of the given size.
+     * @param width The width of the field.
+     * @param height The height of the field.
+     * @param cellSize The side length of a cell in pixels.
+     */
+    public SpatialGrid(int width, int height, int cellSize) {
+        this.cellSize = cellSize;
+        columns = Math.max(1, (width + cellSize - 1) / cellSize);
+        rows = Math.max(1, (height + cellSize - 1) / cellSize);
+        cellStart = new int[columns * rows + 1];
+    }
+
+    /**
+     * Prepares the grid for the given number of items. The bounds of each
+     * item must then be set with setItem before calling build.
+     * @param count The number of items to bucket.
+     */
+    public void reset(int count) {
+        if (itemX.length < count) {
+            ensureCapacity(Math.max(count, itemX.length * 2));
+        }
+        itemCount = count;
+    }
+
+    /**
+     * Makes room for the given number of items, so bucketing up to that
+     * many items does not grow the item arrays, nor the cell lists as long
+     * as each item spans at most four cells.
+     * @param capacity The number of items to make room for.
+     */
+    public void ensureCapacity(int capacity) {
+        if (cellItems.length < 4 * capacity) {
+            cellItems = new int[4 * capacity];
+        }
+        if (itemX.length >= capacity) {
+            return;
+        }
+        itemX = new int[capacity];
+        itemY = new int[capacity];
+        itemWidth = new int[capacity];
+        itemHeight = new int[capacity];
+    }
+
+    /**
+     * Records the bounds of the item with the given index.
+     * @param index The index of the item, below the count given to reset.
+     * @param x The x-component of the item's position.
+     * @param y The y-component of the item's position.
+     * @param width The width of the item.
+     * @param height The height of the item.
+     */
+    public void setItem(int index, int x, int y, int width, int height) {
+        itemX[index] = x;
+        itemY[index] = y;
+        itemWidth[index] = width;
+        itemHeight[index] = height;
+    }
+
+    /**
+     * Buckets all items into the cells they overlap. Uses a counting sort,
+     * so the grid does not allocate once its arrays have grown large enough.
+     */
+    public void build() {
+        Arrays.fill(cellStart, 0);
+        int total = 0;
+        // Count the items per cell, shifted by one for the prefix sum.
+        for (int i = 0; i < itemCount; i++) {
+            if (itemWidth[i] <= 0 || itemHeight[i] <= 0) {
+                continue;
+            }
+            int minColumn = column(itemX[i]);
+            int maxColumn = column(itemX[i] + itemWidth[i] - 1);
+            int minRow = row(itemY[i]);
+            int maxRow = row(itemY[i] + itemHeight[i] - 1);
+            for (int r = minRow; r <= maxRow; r++) {
+                for (int c = minColumn; c <= maxColumn; c++) {
+                    cellStart[r * columns + c + 1]++;
+                    total++;
+                }
+            }
+        }
+        for (int c = 1; c < cellStart.length; c++) {
+            cellStart[c] += cellStart[c - 1];
+        }
+        if (cellItems.length < total) {
+            cellItems = new int[Math.max(total, cellItems.length * 2)];
+        }
+        // Fill the cells, using cellStart as a write cursor and restoring
+        // it afterwards.
+        for (int i = 0; i < itemCount; i++) {
+            if (itemWidth[i] <= 0 || itemHeight[i] <= 0) {
+                continue;
+            }
+            int minColumn = column(itemX[i]);
+            int maxColumn = column(itemX[i] + itemWidth[i] - 1);
+            int minRow = row(itemY[i]);
+            int maxRow = row(itemY[i] + itemHeight[i] - 1);
+            for (int r = minRow; r <= maxRow; r++) {
+                for (int c = minColumn; c <= maxColumn; c++) {
+                    cellItems[cellStart[r * columns + c]++] = i;
+                }
+            }
+        }
+        for (int c = cellStart.length - 1; c > 0; c--) {
+            cellStart[c] = cellStart[c - 1];
+        }
+        cellStart[0] = 0;
+    }
+
+    /**
+     * Finds the lowest-indexed item whose bounds intersect the given
+     * rectangle, using the same rules as Rectangle.intersects.
+     * @param x The x-component of the rectangle.
+     * @param y The y-component of the rectangle.
+     * @param width The width of the rectangle.
+     * @param height The height of the rectangle.
+     * @return The index of the first intersecting item, or -1 if none.
+     */
+    public int firstOverlap(int x, int y, int width, int height) {
+        if (width <= 0 || height <= 0) {
+            return -1;
+        }
+        int first = -1;
+        int minColumn = column(x);
+        int maxColumn = column(x + width - 1);
+        int minRow = row(y);
+        int maxRow = row(y + height - 1);
+        for (int r = minRow; r <= maxRow; r++) {
+            for (int c = minColumn; c <= maxColumn; c++) {
+                int cell = r * columns + c;
+                for (int k = cellStart[cell]; k < cellStart[cell + 1]; k++) {
+                    int i = cellItems[k];
+                    if ((first < 0 || i < first)
+                            && intersects(i, x, y, width, height)) {
+                        first = i;
+                    }
+                }
+            }
+        }
+        return first;
+    }
+
+    /**
+     * Finds every item whose bounds intersect the given rectangle, using
+     * the same rules as Rectangle.intersects. Each item is reported once,
+     * from the first cell it shares with the rectangle.
+     * @param x The x-component of the rectangle.
+     * @param y The y-component of the rectangle.
+     * @param width The width of the rectangle.
+     * @param height The height of the rectangle.
+     * @param result Receives the indices of the intersecting items, as
+     *        many as fit.
+     * @return The number of intersecting items, which may be larger than
+     *         result; the query must then be repeated with a larger array.
+     */
+    public int overlaps(int x, int y, int width, int height, int[] result) {
+        if (width <= 0 || height <= 0) {
+            return 0;
+        }
+        int found = 0;
+        int minColumn = column(x);
+        int maxColumn = column(x + width - 1);
+        int minRow = row(y);
+        int maxRow = row(y + height - 1);
+        for (int r = minRow; r <= maxRow; r++) {
+            for (int c = minColumn; c <= maxColumn; c++) {
+                int cell = r * columns + c;
+                for (int k = cellStart[cell]; k < cellStart[cell + 1]; k++) {
+                    int i = cellItems[k];
+                    // Skip the item in every shared cell but the first.
+                    if (!intersects(i, x, y, width, height)
+                            || r != Math.max(minRow, row(itemY[i]))
+                            || c != Math.max(minColumn, column(itemX[i]))) {
+                        continue;
+                    }
+                    if (found < result.length) {
+                        result[found] = i;
+                    }
+                    found++;
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Tests the bounds of the given item against a rectangle.
+     * @param i The index of the item.
+     * @param x The x-component of the rectangle.
+     * @param y The y-component of the rectangle.
+     * @param width The width of the rectangle.
+     * @param height The height of the rectangle.
+     * @return True if the item and the rectangle overlap.
+     */
+    private boolean intersects(int i, int x, int y, int width, int height) {
+        return x < itemX[i] + itemWidth[i] && itemX[i] < x + width
+                && y < itemY[i] + itemHeight[i] && itemY[i] < y + height;
+    }
+
+    /**
+     * Maps an x-component to a column, clamped to the grid.
+     * @param x The x-component to map.
+     * @return The column containing x.
+     */
+    private int column(int x) {
+        return Math.min(columns - 1, Math.max(0, Math.floorDiv(x, cellSize)));
+    }
+
+    /**
+     * Maps a y-component to a row, clamped to the grid.
+     * @param y The y-component to map.
+     * @return The row containing y.
+     */
+    private int row(int y) {
+        return Math.min(rows - 1, Math.max(0, Math.floorDiv(y, cellSize)));
+    }
+}
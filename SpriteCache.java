@@ -0,0 +1,256 @@
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Rectangle;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+/**
+ * Pre-rendered images of the filled circles that enemies and missiles are
+ * drawn as. Each (size, palette color) pair is rasterized once into an
+ * image compatible with the drawing surface, so painting an entity is a
+ * single image blit instead of a color change and an oval fill.
+ *
+ * Sprites are indexed directly by size and Palette index, and at most
+ * CAPACITY of them are kept; the least recently drawn sprite is evicted
+ * first. Sizes above MAX_SIZE are not cached and are filled directly.
+ * Circles entirely outside the clip of the validated graphics are skipped.
+ * All methods must be called from the thread that renders.
+ */
+public class SpriteCache {
+
+    /** The largest cached sprite size in pixels. */
+    public static final int MAX_SIZE = 64;
+
+    /** The most sprites kept at once. */
+    public static final int CAPACITY = 256;
+
+    /** The configuration the sprites are compatible with, or null. */
+    private GraphicsConfiguration config;
+
+    /** The sprite of each size and color, or null if not cached. */
+    private final BufferedImage[] sprites =
+            new BufferedImage[(MAX_SIZE + 1) * Palette.SIZE];
+
+    /** The next more recently drawn sprite of each entry, or -1. */
+    private final int[] newer = new int[sprites.length];
+
+    /** The next less recently drawn sprite of each entry, or -1. */
+    private final int[] older = new int[sprites.length];
+
+    /** The most recently drawn sprite, or -1. */
+    private int newest = -1;
+
+    /** The least recently drawn sprite, or -1. */
+    private int oldest = -1;
+
+    /** The number of cached sprites. */
+    private int count;
+
+    /** The number of sprites rasterized since creation. */
+    private int rasterized;
+
+    /** The clip bounds of the validated graphics. */
+    private final Rectangle clip = new Rectangle();
+
+    /** The number of pixels covered by drawn circles since creation. */
+    private long drawnPixels;
+
+    /** The slots of the last grouped store, ordered by color. */
+    private int[] order = new int[16];
+
+    /** The next free position in order of each color. */
+    private final int[] colorStart = new int[Palette.SIZE + 1];
+
+    /**
+     * Prepares the cache for drawing onto the given graphics, and takes
+     * its current clip for skipping circles. If its surface has a
+     * different configuration than the cached sprites, they are all
+     * discarded, since blits between configurations are slow.
+     * @param g The graphics about to be drawn on.
+     */
+    public void validate(Graphics2D g) {
+        GraphicsConfiguration current = g.getDeviceConfiguration();
+        if (current != config) {
+            clear();
+            config = current;
+        }
+        clip.setBounds(Integer.MIN_VALUE / 2, Integer.MIN_VALUE / 2,
+                Integer.MAX_VALUE, Integer.MAX_VALUE);
+        g.getClipBounds(clip);
+    }
+
+    /**
+     * Draws a filled circle of the given palette color, through its sprite
+     * when the size is cached.
+     * @param g The graphics to draw on, validated for this cache.
+     * @param x The x-component of the circle's bounds.
+     * @param y The y-component of the circle's bounds.
+     * @param size The width and height of the circle.
+     * @param colorIndex The index of the color within the Palette.
+     */
+    public void drawOval(Graphics2D g, int x, int y, int size,
+            int colorIndex) {
+        if (size <= 0 || x >= clip.x + clip.width || x + size <= clip.x
+                || y >= clip.y + clip.height || y + size <= clip.y) {
+            return;
+        }
+        drawnPixels += (long)size * size;
+        if (size > MAX_SIZE) {
+            g.setColor(Palette.getColor(colorIndex));
+            g.fillOval(x, y, size, size);
+            return;
+        }
+        g.drawImage(sprite(size, colorIndex & 0xFF), x, y, null);
+    }
+
+    /**
+     * Orders the slots of the store by color, so that drawing them in
+     * this order draws every entity of one sprite in a row. Uses a
+     * counting sort over the palette and keeps slot order within a color.
+     * @param store The store to group.
+     * @return The slots of store by color, valid for store.size() entries
+     *         until the next call.
+     */
+    public int[] groupByColor(EntityStore store) {
+        int size = store.size();
+        if (order.length < size) {
+            order = new int[Math.max(size, order.length * 2)];
+        }
+        Arrays.fill(colorStart, 0);
+        for (int slot = 0; slot < size; slot++) {
+            colorStart[(store.colorIndex[slot] & 0xFF) + 1]++;
+        }
+        for (int c = 0; c < Palette.SIZE; c++) {
+            colorStart[c + 1] += colorStart[c];
+        }
+        for (int slot = 0; slot < size; slot++) {
+            order[colorStart[store.colorIndex[slot] & 0xFF]++] = slot;
+        }
+        return order;
+    }
+
+    /**
+     * A getter method for the number of cached sprites.
+     * @return The number of sprites held, at most CAPACITY.
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * A getter method for the number of sprites rasterized so far,
+     * including evicted ones.
+     * @return The number of rasterized sprites.
+     */
+    public int getRasterized() {
+        return rasterized;
+    }
+
+    /**
+     * A getter method for the pixels covered by drawn circles, counting
+     * the whole square of each blit.
+     * @return The number of pixels drawn since creation.
+     */
+    public long getDrawnPixels() {
+        return drawnPixels;
+    }
+
+    /**
+     * Discards every cached sprite.
+     */
+    public void clear() {
+        for (int i = oldest; i != -1; i = newer[i]) {
+            sprites[i].flush();
+            sprites[i] = null;
+        }
+        newest = -1;
+        oldest = -1;
+        count = 0;
+    }
+
+    /**
+     * Looks up the sprite of a size and color, rasterizing it if needed,
+     * and marks it as the most recently drawn.
+     * @param size The width and height of the circle, 1 to MAX_SIZE.
+     * @param colorIndex The index of the color within the Palette.
+     * @return The sprite.
+     */
+    private BufferedImage sprite(int size, int colorIndex) {
+        int entry = size * Palette.SIZE + colorIndex;
+        BufferedImage sprite = sprites[entry];
+        if (sprite == null) {
+            if (count == CAPACITY) {
+                evictOldest();
+            }
+            sprite = rasterize(size, colorIndex);
+            sprites[entry] = sprite;
+            count++;
+        } else if (entry == newest) {
+            return sprite;
+        } else {
+            unlink(entry);
+        }
+        // Link as newest.
+        older[entry] = newest;
+        newer[entry] = -1;
+        if (newest != -1) {
+            newer[newest] = entry;
+        }
+        newest = entry;
+        if (oldest == -1) {
+            oldest = entry;
+        }
+        return sprite;
+    }
+
+    /**
+     * Creates the sprite of a size and color. Ovals are filled without
+     * antialiasing, so bitmask transparency is enough and keeps the blits
+     * on the fastest path.
+     * @param size The width and height of the circle.
+     * @param colorIndex The index of the color within the Palette.
+     * @return The new sprite.
+     */
+    private BufferedImage rasterize(int size, int colorIndex) {
+        BufferedImage sprite = config != null
+                ? config.createCompatibleImage(size, size,
+                        Transparency.BITMASK)
+                : new BufferedImage(size, size,
+                        BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = sprite.createGraphics();
+        g.setColor(Palette.getColor(colorIndex));
+        g.fillOval(0, 0, size, size);
+        g.dispose();
+        rasterized++;
+        return sprite;
+    }
+
+    /**
+     * Removes the least recently drawn sprite.
+     */
+    private void evictOldest() {
+        int entry = oldest;
+        unlink(entry);
+        sprites[entry].flush();
+        sprites[entry] = null;
+        count--;
+    }
+
+    /**
+     * Takes an entry out of the recency list.
+     * @param entry The entry to unlink.
+     */
+    private void unlink(int entry) {
+        if (older[entry] != -1) {
+            newer[older[entry]] = newer[entry];
+        } else {
+            oldest = newer[entry];
+        }
+        if (newer[entry] != -1) {
+            older[newer[entry]] = older[entry];
+        } else {
+            newest = older[entry];
+        }
+    }
+}
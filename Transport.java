@@ -0,0 +1,34 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A connection carrying the messages of a networked game between a host
+ * and one client. Neither call ever blocks, so the game loop can send and
+ * poll once per tick.
+ *
+ * A transport may drop messages, like a datagram network, but delivers
+ * the ones it does not drop in order and intact. The protocol of NetHost
+ * and NetClient is built for that: clients send their whole input state
+ * every tick, and the host sends every tick's state against one the client
+ * confirmed.
+ */
+public interface Transport extends Closeable {
+
+    /**
+     * Sends one message, or drops it if the connection cannot take it
+     * right now.
+     * @param message The message, from its position up to its limit. Its
+     *        contents are copied or sent before this returns.
+     * @throws IOException If the connection is closed or broken.
+     */
+    void send(ByteBuffer message) throws IOException;
+
+    /**
+     * Takes the next message that has arrived, if any.
+     * @return The message, valid until the next call, or null if none has
+     *         arrived.
+     * @throws IOException If the connection is closed or broken.
+     */
+    ByteBuffer receive() throws IOException;
+}
@@ -8,9 +8,12 @@ public class Turret extends JComponent {
     protected Rectangle base; // The base of the turret.
     protected Rectangle turret; // The gun of the turret.
     private Color turretColor; // The color of the turret.
-    private GamePanel panel; // The current GamePanel object.
     private boolean moveLeft; // Flag to tell if the turret is moving left.
     private boolean moveRight; // Flag to tell if the turret is moving right.
+    private int previousX; // The x-component of the base before the last tick.
+    
+    /** The distance the turret moves per tick while an arrow key is held. */
+    public static final int STEP = 10;
     
     /**
      * Constructor for Turret objects, initializing the base, turret,
@@ -23,6 +26,36 @@ public class Turret extends JComponent {
         this.base = base;
         this.turret = turret;
         this.turretColor = turretColor;
+        previousX = base.x;
+    }
+    
+    /**
+     * Creates a Turret centered at the bottom of a field of the given size.
+     * @param fieldWidth The width of the field.
+     * @param fieldHeight The height of the field.
+     * @param turretColor The color of the Turret object.
+     * @return The new Turret object.
+     */
+    public static Turret create(int fieldWidth, int fieldHeight,
+            Color turretColor) {
+        return createAt(fieldWidth / 2, fieldHeight, turretColor);
+    }
+    
+    /**
+     * Creates a Turret at the bottom of a field, centered on the given
+     * x-component, for games with a turret per player.
+     * @param centerX The x-component of the center of the turret.
+     * @param fieldHeight The height of the field.
+     * @param turretColor The color of the Turret object.
+     * @return The new Turret object.
+     */
+    public static Turret createAt(int centerX, int fieldHeight,
+            Color turretColor) {
+        Rectangle base = new Rectangle(centerX - 35, fieldHeight - 45, 70,
+                30);
+        Rectangle gun = new Rectangle(centerX - 11, fieldHeight - 100, 22,
+                80);
+        return new Turret(base, gun, turretColor);
     }
     
     /**
@@ -41,47 +74,72 @@ public class Turret extends JComponent {
     /**
      * Moves the turret in the specified direction, ensuring that the object
      * remains within the bounds of the display.
+     * @param panelWidth The width bounds for movement.
      */
-    public void move() {
+    public void move(int panelWidth) {
         int direction = 0;
         if (moveLeft) {
-            direction -= 10;
+            direction -= STEP;
         }
         if (moveRight) {
-            direction += 10;
+            direction += STEP;
         }
         
-        // Move the entire turret based on the specified direction.
-        base.setBounds((int)base.getX() + direction, (int)base.getY(),
-                (int)base.getWidth(), (int)base.getHeight());
-        
-        turret.setBounds((int)turret.getX() + direction, (int)turret.getY(),
-                (int)turret.getWidth(), (int)turret.getHeight());
+        // Move the entire turret based on the specified direction. The
+        // fields are updated directly, as the getters go through doubles.
+        base.x += direction;
+        turret.x += direction;
         
         // Ensure turret does not cross left wall.
-        if (base.getX() <= 0) {
-            base.setLocation(0, (int)base.getY());
-            turret.setLocation(((int)base.getWidth() / 2)
-                    - ((int)turret.getWidth() / 2), (int)turret.getY());
+        if (base.x <= 0) {
+            base.x = 0;
+            turret.x = base.width / 2 - turret.width / 2;
         }
         
         // Ensure turret does not cross right wall.
-        if (base.getX() + base.getWidth() >= panel.getWidth()) {
-            
-            base.setLocation(panel.getWidth() - (int)base.getWidth(),
-                    (int)base.getY());
-            
-            turret.setLocation(panel.getWidth() - ((int)base.getWidth() / 2)
-                    - ((int)turret.getWidth() / 2), (int)turret.getY());
+        if (base.x + base.width >= panelWidth) {
+            base.x = panelWidth - base.width;
+            turret.x = panelWidth - base.width / 2 - turret.width / 2;
         }
     }
     
     /**
-     * Setter method for the GamePanel.
-     * @param panel The GamePanel object to set.
+     * Makes this turret a copy of another, for drawing it elsewhere.
+     * @param other The turret to copy.
+     */
+    public void copyFrom(Turret other) {
+        base.setBounds(other.base);
+        turret.setBounds(other.turret);
+        turretColor = other.turretColor;
+        previousX = other.previousX;
+    }
+    
+    /**
+     * Remembers the current position of the turret as its previous
+     * position, so rendering can interpolate between the last two ticks.
      */
-    public void setGamePanel(GamePanel panel) {
-        this.panel = panel;
+    public void savePosition() {
+        previousX = base.x;
+    }
+    
+    /**
+     * Places the turret at the given x-component of its base, for drawing
+     * a turret replicated over the network.
+     * @param x The x-component of the base.
+     * @param previousX The x-component of the base before the last tick.
+     */
+    public void setPosition(int x, int previousX) {
+        turret.x += x - base.x;
+        base.x = x;
+        this.previousX = previousX;
+    }
+    
+    /**
+     * A getter method for the distance the turret moved in the last tick.
+     * @return The x-component of the base minus the one before the tick.
+     */
+    public int getMoveDistance() {
+        return base.x - previousX;
     }
     
     /**
@@ -90,10 +148,41 @@ public class Turret extends JComponent {
      * @param g A Graphics object for drawing.
      */
     public void paintComponent(Graphics g) {
+        paint(g, 1.0);
+    }
+    
+    /**
+     * Paints the Turret object's base and barrel with the given
+     * turretColor, placed between its previous and current position.
+     * @param g A Graphics object for drawing.
+     * @param alpha 0 for the previous position up to 1 for the current one.
+     */
+    public void paint(Graphics g, double alpha) {
+        int offset = paintOffset(alpha);
         g.setColor(turretColor);
-        g.fillRect((int)base.getX(), (int)base.getY(),
+        g.fillRect((int)base.getX() + offset, (int)base.getY(),
                 (int)base.getWidth(), (int)base.getHeight());
-        g.fillRect((int)turret.getX(), (int)turret.getY(),
+        g.fillRect((int)turret.getX() + offset, (int)turret.getY(),
                 (int)turret.getWidth(), (int)turret.getHeight());
     }
+    
+    /**
+     * Stores the area that paint covers for the given interpolation.
+     * @param alpha 0 for the previous position up to 1 for the current one.
+     * @param bounds The rectangle receiving the painted area.
+     */
+    public void getPaintBounds(double alpha, Rectangle bounds) {
+        bounds.setBounds(base);
+        bounds.add(turret);
+        bounds.translate(paintOffset(alpha), 0);
+    }
+    
+    /**
+     * Computes how far the turret is painted from its current position.
+     * @param alpha 0 for the previous position up to 1 for the current one.
+     * @return The horizontal offset in pixels.
+     */
+    private int paintOffset(double alpha) {
+        return (int)Math.round((previousX - base.x) * (1 - alpha));
+    }
 }
@@ -0,0 +1,154 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Plays a WaveTimeline in one world. The waves still to come are kept in
+ * a binary min-heap keyed by spawn tick, with ties in file order, so every
+ * tick only compares the current tick with the top of the heap, and a wave
+ * is spawned by popping it. Waves may also be scheduled again at a later
+ * tick, for example to repeat a wave.
+ */
+public class WaveScheduler {
+
+    /** The waves played by this scheduler. */
+    private final WaveTimeline timeline;
+
+    /** The spawn tick of each scheduled entry, in heap order. */
+    private int[] heapTick;
+
+    /** The wave of each scheduled entry, in heap order. */
+    private int[] heapWave;
+
+    /** The number of scheduled entries. */
+    private int count;
+
+    /**
+     * Constructor for WaveScheduler objects, scheduling every wave of the
+     * timeline at its tick.
+     * @param timeline The waves to play.
+     */
+    public WaveScheduler(WaveTimeline timeline) {
+        this.timeline = timeline;
+        heapTick = new int[Math.max(1, timeline.size())];
+        heapWave = new int[heapTick.length];
+        for (int wave = 0; wave < timeline.size(); wave++) {
+            schedule(wave, timeline.getTick(wave));
+        }
+    }
+
+    /**
+     * A getter method for the timeline played by this scheduler.
+     * @return The timeline.
+     */
+    public WaveTimeline getTimeline() {
+        return timeline;
+    }
+
+    /**
+     * Schedules a wave of the timeline to spawn at the given tick.
+     * @param wave The index of the wave in the timeline.
+     * @param tick The tick to spawn it at.
+     */
+    public void schedule(int wave, int tick) {
+        if (count == heapTick.length) {
+            heapTick = Arrays.copyOf(heapTick, count * 2);
+            heapWave = Arrays.copyOf(heapWave, count * 2);
+        }
+        // Sift the new entry up from the bottom.
+        int i = count++;
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (!before(tick, wave, heapTick[parent], heapWave[parent])) {
+                break;
+            }
+            heapTick[i] = heapTick[parent];
+            heapWave[i] = heapWave[parent];
+            i = parent;
+        }
+        heapTick[i] = tick;
+        heapWave[i] = wave;
+    }
+
+    /**
+     * Determines whether a wave is due at the given tick.
+     * @param tick The current tick.
+     * @return True if spawnDue would spawn at least one wave.
+     */
+    public boolean isDue(int tick) {
+        return count > 0 && heapTick[0] <= tick;
+    }
+
+    /**
+     * A getter method for the tick the next wave spawns at.
+     * @return The tick of the next wave, or -1 if none is left.
+     */
+    public int getNextTick() {
+        return count > 0 ? heapTick[0] : -1;
+    }
+
+    /**
+     * A getter method for the number of scheduled waves.
+     * @return The number of waves still to spawn.
+     */
+    public int getPending() {
+        return count;
+    }
+
+    /**
+     * Spawns every wave scheduled at or before the given tick.
+     * @param tick The current tick.
+     * @param store The store holding all active enemies.
+     * @param rand The source of randomness of the world.
+     * @return The number of enemies added.
+     */
+    public int spawnDue(int tick, EntityStore store, Random rand) {
+        int spawned = 0;
+        while (isDue(tick)) {
+            int wave = heapWave[0];
+            removeTop();
+            spawned += timeline.spawn(wave, store, rand);
+        }
+        return spawned;
+    }
+
+    /**
+     * Removes the earliest entry by moving the last entry to the top and
+     * sifting it down.
+     */
+    private void removeTop() {
+        int tick = heapTick[--count];
+        int wave = heapWave[count];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= count) {
+                break;
+            }
+            if (child + 1 < count && before(heapTick[child + 1],
+                    heapWave[child + 1], heapTick[child], heapWave[child])) {
+                child++;
+            }
+            if (!before(heapTick[child], heapWave[child], tick, wave)) {
+                break;
+            }
+            heapTick[i] = heapTick[child];
+            heapWave[i] = heapWave[child];
+            i = child;
+        }
+        heapTick[i] = tick;
+        heapWave[i] = wave;
+    }
+
+    /**
+     * Orders two entries by tick, then by wave index.
+     * @param tick The tick of the first entry.
+     * @param wave The wave of the first entry.
+     * @param otherTick The tick of the second entry.
+     * @param otherWave The wave of the second entry.
+     * @return True if the first entry spawns before the second.
+     */
+    private static boolean before(int tick, int wave, int otherTick,
+            int otherWave) {
+        return tick < otherTick || tick == otherTick && wave < otherWave;
+    }
+}
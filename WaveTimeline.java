@@ -0,0 +1,377 @@
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * The enemy waves of a game, loaded from a text file and compiled into
+ * flat arrays once, so spawning a wave only copies precomputed positions
+ * into the EntityStore. A timeline is never changed after loading, so one
+ * timeline can be shared by any number of worlds, each playing it through
+ * its own WaveScheduler.
+ *
+ * Each line of the file defines one wave: the tick it spawns at, the enemy
+ * type, the number of enemies, and the formation with its arguments. Empty
+ * lines and text after a # are ignored.
+ * <pre>
+ * # tick  enemy  count  formation  arguments
+ * 0       big    1      random     100 100
+ * 150     small  8      row        20 10 60
+ * 400     small  4      column     600 0 40
+ * 900     small  200    grid       10 0 34 20
+ * </pre>
+ * The formations are:
+ * <ul>
+ * <li>random width height: each enemy at a random position within the
+ * width and height at the top left of the field, like the spawns of a
+ * game without waves.</li>
+ * <li>row x y spacing: left to right from x, y.</li>
+ * <li>column x y spacing: top to bottom from x, y.</li>
+ * <li>grid x y spacing columns: rows of the given number of enemies, left
+ * to right and then top to bottom from x, y.</li>
+ * </ul>
+ * The enemies of a row, column, or grid are spaced at least their own size
+ * apart, so they never overlap. Waves spawning at the same tick spawn in
+ * file order.
+ */
+public class WaveTimeline {
+
+    /** The tick each wave spawns at. */
+    private int[] tick = new int[16];
+
+    /** The EntityStore kind of the enemies of each wave. */
+    private byte[] kind = new byte[16];
+
+    /** The number of enemies of each wave. */
+    private int[] count = new int[16];
+
+    /**
+     * The index of the first position of each wave in spawnX and spawnY,
+     * or -1 for a random formation.
+     */
+    private int[] first = new int[16];
+
+    /** The width of the spawn area of each random wave. */
+    private int[] randomWidth = new int[16];
+
+    /** The height of the spawn area of each random wave. */
+    private int[] randomHeight = new int[16];
+
+    /** The number of waves. */
+    private int waves;
+
+    /** The x-component of every precomputed enemy position. */
+    private int[] spawnX = new int[64];
+
+    /** The y-component of every precomputed enemy position. */
+    private int[] spawnY = new int[64];
+
+    /** The number of precomputed positions. */
+    private int positions;
+
+    /** The number of enemies of all waves together. */
+    private int totalEnemies;
+
+    /** The right edge of the rightmost enemy any wave can spawn. */
+    private int right;
+
+    /** The bottom edge of the lowest enemy any wave can spawn. */
+    private int bottom;
+
+    /**
+     * Private constructor, timelines are created by load and parse.
+     */
+    private WaveTimeline() {
+    }
+
+    /**
+     * Loads a timeline from a file.
+     * @param fileName The wave file.
+     * @return The compiled timeline.
+     * @throws IOException If the file cannot be read or has an invalid
+     *         line.
+     */
+    public static WaveTimeline load(String fileName) throws IOException {
+        try (Reader in = new FileReader(fileName)) {
+            return parse(in, fileName);
+        }
+    }
+
+    /**
+     * Reads and compiles the wave definitions from a reader.
+     * @param in The reader of the definitions. Not closed.
+     * @param name The name of the source, for error messages.
+     * @return The compiled timeline.
+     * @throws IOException If the reader fails or a line is invalid.
+     */
+    public static WaveTimeline parse(Reader in, String name)
+            throws IOException {
+        WaveTimeline timeline = new WaveTimeline();
+        BufferedReader lines = new BufferedReader(in);
+        String line;
+        int number = 0;
+        while ((line = lines.readLine()) != null) {
+            number++;
+            int comment = line.indexOf('#');
+            if (comment >= 0) {
+                line = line.substring(0, comment);
+            }
+            line = line.trim();
+            if (line.isEmpty()) {
+                continue;
+            }
+            try {
+                timeline.addWave(line.split("\\s+"));
+            } catch (IllegalArgumentException e) {
+                throw new IOException(name + ":" + number + ": "
+                        + e.getMessage(), e);
+            }
+        }
+        return timeline;
+    }
+
+    /**
+     * A getter method for the number of waves.
+     * @return The number of waves.
+     */
+    public int size() {
+        return waves;
+    }
+
+    /**
+     * A getter method for the number of enemies of all waves together.
+     * @return The number of enemies spawned by the whole timeline.
+     */
+    public int getTotalEnemies() {
+        return totalEnemies;
+    }
+
+    /**
+     * Computes a 64-bit FNV-1a hash of the compiled waves: the tick, enemy
+     * type, and count of every wave, and its random area or precomputed
+     * positions. Wave files that differ only in comments and spacing hash
+     * the same, since they play the same game.
+     * @return The hash of the timeline.
+     */
+    public long getHash() {
+        long hash = 0xcbf29ce484222325L;
+        for (int wave = 0; wave < waves; wave++) {
+            hash = mix(hash, tick[wave]);
+            hash = mix(hash, kind[wave]);
+            hash = mix(hash, count[wave]);
+            if (first[wave] < 0) {
+                hash = mix(hash, randomWidth[wave]);
+                hash = mix(hash, randomHeight[wave]);
+            } else {
+                for (int i = 0; i < count[wave]; i++) {
+                    hash = mix(hash, spawnX[first[wave] + i]);
+                    hash = mix(hash, spawnY[first[wave] + i]);
+                }
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Checks that every enemy of the timeline spawns within a field.
+     * @param width The width of the field.
+     * @param height The height of the field.
+     * @throws IllegalArgumentException If a wave spawns enemies outside
+     *         the field.
+     */
+    public void checkBounds(int width, int height) {
+        if (right > width || bottom > height) {
+            throw new IllegalArgumentException("waves spawn enemies up to "
+                    + right + ", " + bottom + ", outside the " + width
+                    + "x" + height + " field");
+        }
+    }
+
+    /**
+     * A getter method for the tick a wave spawns at.
+     * @param wave The index of the wave, in file order.
+     * @return The spawn tick of the wave.
+     */
+    public int getTick(int wave) {
+        return tick[wave];
+    }
+
+    /**
+     * Adds the enemies of a wave to the store.
+     * @param wave The index of the wave, in file order.
+     * @param store The store holding all active enemies.
+     * @param rand The source of randomness for colors and random
+     *        positions.
+     * @return The number of enemies added.
+     */
+    public int spawn(int wave, EntityStore store, Random rand) {
+        Enemy enemy = Enemy.forKind(kind[wave]);
+        int start = first[wave];
+        for (int i = 0; i < count[wave]; i++) {
+            if (start < 0) {
+                enemy.spawn(store, rand, randomWidth[wave],
+                        randomHeight[wave]);
+            } else {
+                enemy.spawnAt(store, rand, spawnX[start + i],
+                        spawnY[start + i]);
+            }
+        }
+        return count[wave];
+    }
+
+    /**
+     * Compiles one wave definition.
+     * @param fields The fields of the line.
+     * @throws IllegalArgumentException If the definition is invalid.
+     */
+    private void addWave(String[] fields) {
+        if (fields.length < 4) {
+            throw new IllegalArgumentException(
+                    "expected: tick enemy count formation arguments");
+        }
+        int waveTick = number(fields[0], "tick");
+        byte waveKind;
+        if (fields[1].equals("small")) {
+            waveKind = EntityStore.KIND_SMALL_ENEMY;
+        } else if (fields[1].equals("big")) {
+            waveKind = EntityStore.KIND_BIG_ENEMY;
+        } else {
+            throw new IllegalArgumentException("unknown enemy " + fields[1]
+                    + ", expected small or big");
+        }
+        int waveCount = number(fields[2], "count");
+        String formation = fields[3];
+        if (waves == tick.length) {
+            int capacity = waves * 2;
+            tick = Arrays.copyOf(tick, capacity);
+            kind = Arrays.copyOf(kind, capacity);
+            count = Arrays.copyOf(count, capacity);
+            first = Arrays.copyOf(first, capacity);
+            randomWidth = Arrays.copyOf(randomWidth, capacity);
+            randomHeight = Arrays.copyOf(randomHeight, capacity);
+        }
+        if (formation.equals("random")) {
+            arguments(fields, 2);
+            int size = Enemy.forKind(waveKind).getSize();
+            randomWidth[waves] = number(fields[4], "width");
+            randomHeight[waves] = number(fields[5], "height");
+            if (randomWidth[waves] <= size || randomHeight[waves] <= size) {
+                throw new IllegalArgumentException(
+                        "random area must be larger than the enemy");
+            }
+            first[waves] = -1;
+            right = Math.max(right, randomWidth[waves]);
+            bottom = Math.max(bottom, randomHeight[waves]);
+        } else {
+            first[waves] = positions;
+            compileFormation(formation, fields, waveCount,
+                    Enemy.forKind(waveKind).getSize());
+        }
+        tick[waves] = waveTick;
+        kind[waves] = waveKind;
+        count[waves] = waveCount;
+        waves++;
+        totalEnemies += waveCount;
+    }
+
+    /**
+     * Precomputes the positions of the enemies of a fixed formation.
+     * @param formation The name of the formation.
+     * @param fields The fields of the line.
+     * @param enemies The number of enemies of the wave.
+     * @param size The size of the enemies of the wave.
+     * @throws IllegalArgumentException If the formation is invalid, or
+     *         its enemies would overlap.
+     */
+    private void compileFormation(String formation, String[] fields,
+            int enemies, int size) {
+        int columns;
+        if (formation.equals("row")) {
+            arguments(fields, 3);
+            columns = enemies;
+        } else if (formation.equals("column")) {
+            arguments(fields, 3);
+            columns = 1;
+        } else if (formation.equals("grid")) {
+            arguments(fields, 4);
+            columns = number(fields[7], "columns");
+            if (columns == 0) {
+                throw new IllegalArgumentException("a grid needs columns");
+            }
+        } else {
+            throw new IllegalArgumentException("unknown formation "
+                    + formation + ", expected random, row, column, or grid");
+        }
+        int x = number(fields[4], "x");
+        int y = number(fields[5], "y");
+        int spacing = number(fields[6], "spacing");
+        if (enemies > 1 && spacing < size) {
+            throw new IllegalArgumentException("spacing " + spacing
+                    + " is below the enemy size " + size);
+        }
+        if (positions + enemies > spawnX.length) {
+            int capacity = Math.max(positions + enemies, spawnX.length * 2);
+            spawnX = Arrays.copyOf(spawnX, capacity);
+            spawnY = Arrays.copyOf(spawnY, capacity);
+        }
+        for (int i = 0; i < enemies; i++) {
+            spawnX[positions] = x + i % columns * spacing;
+            spawnY[positions] = y + i / columns * spacing;
+            right = Math.max(right, spawnX[positions] + size);
+            bottom = Math.max(bottom, spawnY[positions] + size);
+            positions++;
+        }
+    }
+
+    /**
+     * Mixes the four bytes of a value into an FNV-1a hash.
+     * @param hash The hash so far.
+     * @param value The value to mix in.
+     * @return The new hash.
+     */
+    private static long mix(long hash, int value) {
+        for (int shift = 0; shift < 32; shift += 8) {
+            hash ^= (value >>> shift) & 0xFF;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * Checks the number of formation arguments of a line.
+     * @param fields The fields of the line.
+     * @param expected The number of arguments the formation takes.
+     * @throws IllegalArgumentException If the number differs.
+     */
+    private static void arguments(String[] fields, int expected) {
+        if (fields.length != 4 + expected) {
+            throw new IllegalArgumentException("formation " + fields[3]
+                    + " takes " + expected + " arguments");
+        }
+    }
+
+    /**
+     * Parses a non-negative number field.
+     * @param field The text of the field.
+     * @param what The meaning of the field, for the error message.
+     * @return The value of the field.
+     * @throws IllegalArgumentException If the field is not a non-negative
+     *         number.
+     */
+    private static int number(String field, String what) {
+        int value;
+        try {
+            value = Integer.parseInt(field);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(what + " is not a number: "
+                    + field);
+        }
+        if (value < 0) {
+            throw new IllegalArgumentException(what + " is negative: "
+                    + field);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,168 @@
+import java.awt.Rectangle;
+
+/**
+ * A copy of the drawable state of a GameWorld after one tick. The
+ * simulation thread fills a snapshot and publishes it through a
+ * SnapshotBuffer; once published it is never changed while a reader may
+ * hold it, so the render thread can draw it without locks.
+ */
+public class WorldSnapshot implements WorldView {
+
+    /** The enemies of the world. */
+    private final EntityStore enemies = new EntityStore(16);
+
+    /** The missiles of the world. */
+    private final EntityStore missiles =
+            new EntityStore(GameWorld.MAX_MISSILES);
+
+    /** The turrets of the world, one per player. */
+    private Turret[] turrets = new Turret[0];
+
+    /** The profiler of the world, shared with it. */
+    private FrameProfiler profiler;
+
+    /** The score of the world. */
+    private int totalScore;
+
+    /** The status of the game after the tick. */
+    private GameStatus status = GameStatus.RUNNING;
+
+    /** The System.nanoTime value at which the tick was due. */
+    private long stepTime;
+
+    /** The number of ticks played before the snapshot. */
+    private int tick;
+
+    /**
+     * Copies the drawable state of a world. Must only be called on a
+     * snapshot that is not published.
+     * @param world The world to copy.
+     * @param status The status of the game after the last tick.
+     * @param stepTime The System.nanoTime value at which the last tick
+     *        was due.
+     */
+    public void copyFrom(GameWorld world, GameStatus status, long stepTime) {
+        enemies.copyFrom(world.getEnemies());
+        missiles.copyFrom(world.getMissiles());
+        Turret[] others = world.getTurrets();
+        ensureTurrets(others.length);
+        for (int i = 0; i < turrets.length; i++) {
+            turrets[i].copyFrom(others[i]);
+        }
+        profiler = world.getProfiler();
+        totalScore = world.getTotalScore();
+        tick = world.getTickCount();
+        this.status = status;
+        this.stepTime = stepTime;
+    }
+
+    /**
+     * Copies the drawable state of a world replicated over the network.
+     * Must only be called on a snapshot that is not published.
+     * @param state The state of the world after the last tick.
+     * @param templates The turrets of the game as created, which give the
+     *        size and color of the turrets of the state.
+     * @param profiler The profiler to draw with the snapshot.
+     * @param stepTime The System.nanoTime value at which the state arrived.
+     */
+    public void copyFrom(NetState state, Turret[] templates,
+            FrameProfiler profiler, long stepTime) {
+        state.copyEnemiesTo(enemies);
+        state.copyMissilesTo(missiles);
+        ensureTurrets(state.getPlayerCount());
+        for (int i = 0; i < turrets.length; i++) {
+            int x = state.getTurretX(i);
+            turrets[i].copyFrom(templates[i]);
+            turrets[i].setPosition(x, x - state.getTurretMove(i));
+        }
+        this.profiler = profiler;
+        totalScore = state.getTotalScore();
+        tick = state.getTick();
+        status = state.getStatus();
+        this.stepTime = stepTime;
+    }
+
+    /**
+     * Makes sure the snapshot has the given number of turrets, creating
+     * them the first time.
+     * @param count The number of turrets.
+     */
+    private void ensureTurrets(int count) {
+        if (turrets.length != count) {
+            turrets = new Turret[count];
+            for (int i = 0; i < count; i++) {
+                turrets[i] = new Turret(new Rectangle(), new Rectangle(),
+                        null);
+            }
+        }
+    }
+
+    /**
+     * Computes how far the given time is between this tick and the next,
+     * for interpolating the drawn positions.
+     * @param now The current System.nanoTime value.
+     * @param stepNanos The time between two ticks.
+     * @return 0 at the tick, up to 1 when the next tick is due.
+     */
+    public double alphaAt(long now, long stepNanos) {
+        double alpha = (now - stepTime) / (double)stepNanos;
+        return Math.max(0, Math.min(1, alpha));
+    }
+
+    /**
+     * A getter method for the enemies of the snapshot.
+     * @return The store holding all active enemies.
+     */
+    public EntityStore getEnemies() {
+        return enemies;
+    }
+
+    /**
+     * A getter method for the missiles of the snapshot.
+     * @return The store holding all active missiles.
+     */
+    public EntityStore getMissiles() {
+        return missiles;
+    }
+
+    /**
+     * A getter method for the turrets of the snapshot.
+     * @return The Turret objects, one per player.
+     */
+    public Turret[] getTurrets() {
+        return turrets;
+    }
+
+    /**
+     * A getter method for the profiler of the world.
+     * @return The FrameProfiler of the world.
+     */
+    public FrameProfiler getProfiler() {
+        return profiler;
+    }
+
+    /**
+     * A getter method for the score after the tick.
+     * @return The total score.
+     */
+    public int getTotalScore() {
+        return totalScore;
+    }
+
+    /**
+     * A getter method for the number of ticks played before the snapshot.
+     * @return The tick count of the world, or the number of a replicated
+     *         state.
+     */
+    public int getTick() {
+        return tick;
+    }
+
+    /**
+     * A getter method for the status of the game after the tick.
+     * @return The status of the game.
+     */
+    public GameStatus getStatus() {
+        return status;
+    }
+}
@@ -0,0 +1,30 @@
+/**
+ * The state of a game that the renderers draw: the live GameWorld, or a
+ * WorldSnapshot of it published by the simulation thread.
+ */
+public interface WorldView {
+
+    /**
+     * A getter method for the enemies to draw.
+     * @return The store holding all active enemies.
+     */
+    EntityStore getEnemies();
+
+    /**
+     * A getter method for the missiles to draw.
+     * @return The store holding all active missiles.
+     */
+    EntityStore getMissiles();
+
+    /**
+     * A getter method for the turrets to draw.
+     * @return The turrets of all players, in player order.
+     */
+    Turret[] getTurrets();
+
+    /**
+     * A getter method for the profiler recording the paint time.
+     * @return The FrameProfiler of the game.
+     */
+    FrameProfiler getProfiler();
+}
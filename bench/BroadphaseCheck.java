@@ -0,0 +1,110 @@
+import java.awt.Color;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Checks that the spatial grid broadphase of GameWorld.findHits finds the
+ * same hit for every missile as the nested loop of findHitsReference. The
+ * scenes are random but seeded, so a failure can be reproduced. Enemies
+ * and missiles are placed all over and beyond the playing field, moved by
+ * a random step from their previous position, and given zero widths or
+ * heights now and then, the cases a grid is most likely to get wrong.
+ *
+ * Compile and run from the repository root, headless:
+ * <pre>
+ * javac -d out *.java bench/*.java &amp;&amp; cp *.wav out
+ * java -cp out BroadphaseCheck [seed]
+ * </pre>
+ * The exit status is 1 on the first scene whose hits differ.
+ */
+public class BroadphaseCheck {
+
+    /** The number of scenes compared. */
+    private static final int SCENES = 5_000;
+
+    /** The most enemies in a scene. */
+    private static final int MAX_ENEMIES = 80;
+
+    /** The most missiles in a scene. */
+    private static final int MAX_MISSILES = 100;
+
+    /** The width of the playing field, matching the game window. */
+    private static final int WIDTH = 700;
+
+    /** The height of the playing field, matching the game window. */
+    private static final int HEIGHT = 500;
+
+    /** How far entities may be placed beyond each edge of the field. */
+    private static final int MARGIN = 150;
+
+    /** The most pixels an entity moves from its previous position. */
+    private static final int MAX_STEP = 40;
+
+    /**
+     * Compares findHits with findHitsReference on every scene.
+     * @param args An optional seed, 1 by default.
+     */
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        long seed = args.length > 0 ? Long.parseLong(args[0]) : 1;
+        Random rand = new Random(seed);
+        int[] hits = new int[MAX_MISSILES];
+        int[] expected = new int[MAX_MISSILES];
+        long compared = 0;
+        long hitCount = 0;
+        for (int scene = 0; scene < SCENES; scene++) {
+            GameWorld world = new GameWorld(WIDTH, HEIGHT, 0, false,
+                    Turret.create(WIDTH, HEIGHT, Color.RED));
+            world.getEnemies().clear();
+            fill(world.getEnemies(), rand, EntityStore.KIND_SMALL_ENEMY,
+                    rand.nextInt(MAX_ENEMIES + 1), 60);
+            fill(world.getMissiles(), rand, EntityStore.KIND_MISSILE,
+                    rand.nextInt(MAX_MISSILES + 1), 12);
+            world.findHits(hits);
+            world.findHitsReference(expected);
+            int missiles = world.getMissiles().size();
+            for (int j = 0; j < missiles; j++) {
+                if (hits[j] != expected[j]) {
+                    System.out.println(String.format(Locale.ROOT,
+                            "scene %d of seed %d: missile %d hit %d, "
+                            + "expected %d", scene, seed, j, hits[j],
+                            expected[j]));
+                    System.exit(1);
+                }
+                if (expected[j] >= 0) {
+                    hitCount++;
+                }
+            }
+            compared += missiles;
+        }
+        System.out.println(String.format(Locale.ROOT,
+                "%d scenes, %d missiles, %d hits: all match", SCENES,
+                compared, hitCount));
+    }
+
+    /**
+     * Adds entities at random positions in and around the field, each
+     * moved by a random step since its previous position.
+     * @param store The store to add to.
+     * @param rand The source of the positions.
+     * @param kind The kind of the entities.
+     * @param count The number of entities to add.
+     * @param maxSide The largest width and height of an entity.
+     */
+    private static void fill(EntityStore store, Random rand, byte kind,
+            int count, int maxSide) {
+        for (int i = 0; i < count; i++) {
+            // One side in eight is zero.
+            int width = rand.nextInt(8) == 0 ? 0 : 1 + rand.nextInt(maxSide);
+            int height = rand.nextInt(8) == 0 ? 0 : 1 + rand.nextInt(maxSide);
+            int x = rand.nextInt(WIDTH + 2 * MARGIN) - MARGIN;
+            int y = rand.nextInt(HEIGHT + 2 * MARGIN) - MARGIN;
+            int slot = store.slotOf(store.add(kind, x, y, width, height, 1,
+                    0));
+            store.previousX[slot] = x + rand.nextInt(2 * MAX_STEP + 1)
+                    - MAX_STEP;
+            store.previousY[slot] = y + rand.nextInt(2 * MAX_STEP + 1)
+                    - MAX_STEP;
+        }
+    }
+}
@@ -0,0 +1,168 @@
+import java.awt.Color;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Checks that the event-driven collision mode gives exactly the results of
+ * the scan of every missile and enemy each tick. Scenes of 100, 1,000, and
+ * 10,000 enemies are played in both modes, once with a volley of missiles
+ * in flight and once quiet, and then whole games with the AimingBot; after
+ * each, the scores and entities of both worlds are compared.
+ *
+ * Compile and run from the repository root, headless:
+ * <pre>
+ * javac -d out *.java bench/*.java &amp;&amp; cp *.wav out
+ * java -cp out CollisionPredictionCheck
+ * </pre>
+ * The exit status is 1 if the modes differ on any scene or game.
+ */
+public class CollisionPredictionCheck {
+
+    /** The enemy counts every scene is checked at. */
+    private static final int[] SIZES = {100, 1_000, 10_000};
+
+    /** The number of missiles in flight at the start of a busy scene. */
+    private static final int MISSILES = 64;
+
+    /** The number of seeds every scene is checked with. */
+    private static final int SEEDS = 4;
+
+    /**
+     * The number of ticks per scene. Long enough for most enemies to
+     * bounce, short enough that few reach the turret.
+     */
+    private static final int TICKS = 150;
+
+    /** The number of whole games checked. */
+    private static final int GAMES = 200;
+
+    /** The most ticks played per game. */
+    private static final int MAX_TICKS = 20_000;
+
+    /** The width of the playing field, matching the game window. */
+    private static final int WIDTH = 700;
+
+    /** The height of the playing field, matching the game window. */
+    private static final int HEIGHT = 500;
+
+    /**
+     * Checks every scene, then the whole games.
+     * @param args Unused.
+     */
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        boolean passed = true;
+        for (int size : SIZES) {
+            for (boolean busy : new boolean[] {true, false}) {
+                boolean same = true;
+                for (int seed = 0; seed < SEEDS && same; seed++) {
+                    GameWorld scan = scene(size, busy, seed);
+                    GameWorld events = scene(size, busy, seed);
+                    events.setEventDriven(true);
+                    for (int i = 0; i < TICKS; i++) {
+                        scan.tick(0);
+                        events.tick(0);
+                    }
+                    same = sameState(scan, events);
+                }
+                System.out.println((same ? "ok     " : "FAILED ")
+                        + (busy ? "busy " : "quiet ") + size + " enemies");
+                passed &= same;
+            }
+        }
+        boolean same = true;
+        for (int game = 0; game < GAMES && same; game++) {
+            GameWorld scan = game(game, false);
+            GameWorld events = game(game, true);
+            same = sameState(scan, events);
+        }
+        System.out.println((same ? "ok     " : "FAILED ") + GAMES
+                + " whole games");
+        passed &= same;
+        System.exit(passed ? 0 : 1);
+    }
+
+    /**
+     * Builds a world with the given number of enemies spread over the
+     * upper part of the field, and optionally a volley of missiles below
+     * them. The world plays silently.
+     * @param size The number of enemies.
+     * @param busy True to add the missiles.
+     * @param seed The seed of the placement and of the world.
+     * @return The new world.
+     */
+    private static GameWorld scene(int size, boolean busy, long seed) {
+        Random rand = new Random(seed);
+        GameWorld world = new GameWorld(WIDTH, HEIGHT, 0, false,
+                Turret.create(WIDTH, HEIGHT, Color.RED), new Random(seed));
+        world.setAudio(new AudioMixer(new NullAudioBackend(), 1));
+        EntityStore enemies = world.getEnemies();
+        enemies.clear();
+        for (int i = 0; i < size; i++) {
+            boolean big = rand.nextBoolean();
+            int side = big ? 56 : 30;
+            enemies.add(big ? EntityStore.KIND_BIG_ENEMY
+                    : EntityStore.KIND_SMALL_ENEMY,
+                    rand.nextInt(WIDTH - side), rand.nextInt(200), side,
+                    side, (rand.nextBoolean() ? 1 : -1) * (big ? 4 : 6),
+                    Palette.randomIndex(rand));
+        }
+        if (busy) {
+            EntityStore missiles = world.getMissiles();
+            for (int i = 0; i < MISSILES; i++) {
+                missiles.add(EntityStore.KIND_MISSILE,
+                        rand.nextInt(WIDTH - Missile.SIZE),
+                        250 + rand.nextInt(150), Missile.SIZE,
+                        Missile.SIZE, Missile.SPEED, Palette.randomIndex(rand));
+            }
+        }
+        return world;
+    }
+
+    /**
+     * Plays a whole game with the AimingBot, silently.
+     * @param seed The seed of the game.
+     * @param eventDriven True to predict collisions, false to scan.
+     * @return The world at the end of the game.
+     */
+    private static GameWorld game(long seed, boolean eventDriven) {
+        GameWorld world = GameWorld.create(WIDTH, HEIGHT, seed);
+        world.setAudio(new AudioMixer(new NullAudioBackend(), 1));
+        world.setEventDriven(eventDriven);
+        BotPolicy bot = new AimingBot();
+        GameStatus status = GameStatus.RUNNING;
+        for (int tick = 0; status == GameStatus.RUNNING && tick < MAX_TICKS;
+                tick++) {
+            status = world.tick(bot.nextInputs(world));
+        }
+        return world;
+    }
+
+    /**
+     * Compares the score and entities of two worlds slot by slot.
+     * @param a The first world.
+     * @param b The second world.
+     * @return True if both worlds are in the same state.
+     */
+    private static boolean sameState(GameWorld a, GameWorld b) {
+        return a.getTotalScore() == b.getTotalScore()
+                && sameStore(a.getEnemies(), b.getEnemies())
+                && sameStore(a.getMissiles(), b.getMissiles());
+    }
+
+    /**
+     * Compares the live slots of two stores.
+     * @param a The first store.
+     * @param b The second store.
+     * @return True if both hold the same entities in the same slots.
+     */
+    private static boolean sameStore(EntityStore a, EntityStore b) {
+        int n = a.size();
+        return n == b.size()
+                && Arrays.equals(a.x, 0, n, b.x, 0, n)
+                && Arrays.equals(a.y, 0, n, b.y, 0, n)
+                && Arrays.equals(a.width, 0, n, b.width, 0, n)
+                && Arrays.equals(a.height, 0, n, b.height, 0, n)
+                && Arrays.equals(a.speed, 0, n, b.speed, 0, n);
+    }
+}
@@ -0,0 +1,270 @@
+import java.awt.Color;
+import java.awt.Rectangle;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Checks that the entity kernels give exactly the results of moving every
+ * entity through its own move method, the way GameWorld.move worked before
+ * the kernels. Scenes of 10,000, 100,000, and 1,000,000 entities, half
+ * enemies and half missiles, are moved and their enemies tested against
+ * the gun by the scalar kernels and by the kernels the game selected at
+ * startup, which are the Vector API kernels when they were compiled and
+ * the incubator module is present, and compared with the per-entity path.
+ *
+ * Compile and run from the repository root, headless, with the Vector API
+ * kernels:
+ * <pre>
+ * javac -d out *.java bench/*.java &amp;&amp; cp *.wav out
+ * javac --add-modules jdk.incubator.vector -cp out -d out simd/*.java
+ * java --add-modules jdk.incubator.vector -cp out EntityKernelCheck
+ * </pre>
+ * The exit status is 1 if any kernels differ from the per-entity path.
+ */
+public class EntityKernelCheck {
+
+    /** The entity counts every path is checked at. */
+    private static final int[] SIZES = {10_000, 100_000, 1_000_000};
+
+    /** The number of moves and gun tests per scene. */
+    private static final int STEPS = 20;
+
+    /** The width of the playing field, matching the game window. */
+    private static final int WIDTH = 700;
+
+    /** The height of the playing field, matching the game window. */
+    private static final int HEIGHT = 500;
+
+    /** The gun the enemies are tested against. */
+    private static final Rectangle GUN =
+            Turret.create(WIDTH, HEIGHT, Color.RED).turret;
+
+    /**
+     * Checks the scalar and the selected kernels on every scene.
+     * @param args Unused.
+     */
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        EntityKernels selected = EntityKernels.DEFAULT;
+        boolean passed = true;
+        for (int size : SIZES) {
+            for (EntityKernels kernels : new EntityKernels[] {
+                    new ScalarEntityKernels(), selected}) {
+                boolean same = check(kernels, size);
+                System.out.println((same ? "ok     " : "FAILED ")
+                        + kernels.getClass().getName() + ", " + size
+                        + " entities");
+                passed &= same;
+            }
+        }
+        System.exit(passed ? 0 : 1);
+    }
+
+    /**
+     * Moves and tests a scene with the given kernels and with the
+     * per-entity path, and compares the results.
+     * @param kernels The kernels to check.
+     * @param size The number of entities.
+     * @return True if both paths found the same contacts and left the
+     *         same entities.
+     */
+    private static boolean check(EntityKernels kernels, int size) {
+        EntityStore enemies = enemies(size / 2);
+        EntityStore missiles = missiles(size - size / 2);
+        EntityStore referenceEnemies = enemies(size / 2);
+        EntityStore referenceMissiles = missiles(size - size / 2);
+        AnimationScheduler animations = animations(enemies);
+        AnimationScheduler referenceAnimations =
+                animations(referenceEnemies);
+        boolean[] bounced = new boolean[size];
+        boolean[] despawned = new boolean[size];
+        int[] slots = new int[size];
+        for (int i = 0; i < STEPS; i++) {
+            enemies.savePositions();
+            move(kernels, enemies, missiles, animations, bounced,
+                    despawned);
+            int contacts = sweepOverlapping(kernels, enemies, slots);
+            enemies.compact();
+            missiles.compact();
+            referenceEnemies.savePositions();
+            moveEachEntity(referenceEnemies, referenceMissiles,
+                    referenceAnimations);
+            int referenceContacts = sweepEachEnemy(referenceEnemies);
+            referenceEnemies.compact();
+            referenceMissiles.compact();
+            if (contacts != referenceContacts
+                    || !sameStore(enemies, referenceEnemies)
+                    || !sameStore(missiles, referenceMissiles)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Moves every entity through its own move method, as GameWorld.move
+     * did before the kernels.
+     * @param enemies The enemies to move.
+     * @param missiles The missiles to move.
+     * @param animations The animations of the enemies.
+     */
+    private static void moveEachEntity(EntityStore enemies,
+            EntityStore missiles, AnimationScheduler animations) {
+        for (int slot = 0; slot < enemies.size(); slot++) {
+            if (enemies.alive[slot]) {
+                Enemy.forKind(enemies.kind[slot]).move(enemies, animations,
+                        slot, WIDTH, HEIGHT);
+            }
+        }
+        animations.advance();
+        for (int slot = 0; slot < missiles.size(); slot++) {
+            if (missiles.alive[slot]) {
+                Missile.move(missiles, slot, WIDTH, HEIGHT);
+            }
+        }
+    }
+
+    /**
+     * Moves every entity with the given kernels, as GameWorld.move does.
+     * @param kernels The kernels to use.
+     * @param enemies The enemies to move.
+     * @param missiles The missiles to move.
+     * @param animations The animations of the enemies.
+     * @param bounced Receives the enemies that hit a wall.
+     * @param despawned Receives the missiles that went off panel.
+     */
+    private static void move(EntityKernels kernels, EntityStore enemies,
+            EntityStore missiles, AnimationScheduler animations,
+            boolean[] bounced, boolean[] despawned) {
+        kernels.stepEnemies(enemies, 0, enemies.size(), WIDTH, bounced);
+        for (int slot = 0; slot < enemies.size(); slot++) {
+            if (bounced[slot]) {
+                Enemy.forKind(enemies.kind[slot]).transitionY(enemies,
+                        animations, slot);
+            }
+        }
+        animations.advance();
+        kernels.stepMissiles(missiles, 0, missiles.size(), HEIGHT,
+                despawned);
+        for (int slot = 0; slot < missiles.size(); slot++) {
+            if (despawned[slot]) {
+                missiles.kill(missiles.handleAt(slot));
+            }
+        }
+    }
+
+    /**
+     * Sweeps every enemy against the gun.
+     * @param enemies The enemies to test.
+     * @return The number of enemies that reached the gun.
+     */
+    private static int sweepEachEnemy(EntityStore enemies) {
+        int contacts = 0;
+        for (int slot = 0; slot < enemies.size(); slot++) {
+            if (reachesGun(enemies, slot)) {
+                contacts++;
+            }
+        }
+        return contacts;
+    }
+
+    /**
+     * Sweeps the enemies whose swept box overlaps the gun against it.
+     * @param kernels The kernels finding the enemies.
+     * @param enemies The enemies to test.
+     * @param slots Receives the slots found.
+     * @return The number of enemies that reached the gun.
+     */
+    private static int sweepOverlapping(EntityKernels kernels,
+            EntityStore enemies, int[] slots) {
+        int count = kernels.sweptOverlaps(enemies, GUN.x, GUN.y, GUN.width,
+                GUN.height, slots);
+        int contacts = 0;
+        for (int k = 0; k < count; k++) {
+            if (reachesGun(enemies, slots[k])) {
+                contacts++;
+            }
+        }
+        return contacts;
+    }
+
+    /**
+     * Sweeps one enemy against the gun, which stands still.
+     * @param enemies The enemies.
+     * @param slot The slot of the enemy.
+     * @return True if the enemy reached the gun during the last move.
+     */
+    private static boolean reachesGun(EntityStore enemies, int slot) {
+        return Sweep.timeOfImpact(enemies.previousX[slot],
+                enemies.previousY[slot], enemies.width[slot],
+                enemies.height[slot],
+                enemies.x[slot] - enemies.previousX[slot],
+                enemies.y[slot] - enemies.previousY[slot], GUN.x, GUN.y,
+                GUN.width, GUN.height, 0, 0) >= 0;
+    }
+
+    /**
+     * Builds a store of enemies spread over the whole field.
+     * @param count The number of enemies.
+     * @return The new store.
+     */
+    private static EntityStore enemies(int count) {
+        Random rand = new Random(42);
+        EntityStore enemies = new EntityStore(count);
+        for (int i = 0; i < count; i++) {
+            boolean big = rand.nextBoolean();
+            int side = big ? 56 : 30;
+            enemies.add(big ? EntityStore.KIND_BIG_ENEMY
+                    : EntityStore.KIND_SMALL_ENEMY,
+                    rand.nextInt(WIDTH - side), rand.nextInt(HEIGHT - side),
+                    side, side, (rand.nextBoolean() ? 1 : -1)
+                    * (big ? 4 : 6) + 0.3 * rand.nextInt(4),
+                    Palette.randomIndex(rand));
+        }
+        return enemies;
+    }
+
+    /**
+     * Builds a store of missiles spread over the whole field.
+     * @param count The number of missiles.
+     * @return The new store.
+     */
+    private static EntityStore missiles(int count) {
+        Random rand = new Random(43);
+        EntityStore missiles = new EntityStore(count);
+        for (int i = 0; i < count; i++) {
+            missiles.add(EntityStore.KIND_MISSILE,
+                    rand.nextInt(WIDTH - Missile.SIZE),
+                    1 + rand.nextInt(HEIGHT - 1), Missile.SIZE,
+                    Missile.SIZE, Missile.SPEED, Palette.randomIndex(rand));
+        }
+        return missiles;
+    }
+
+    /**
+     * Creates a silent animation scheduler for a store of enemies.
+     * @param enemies The enemies to animate.
+     * @return The new scheduler.
+     */
+    private static AnimationScheduler animations(EntityStore enemies) {
+        AnimationScheduler animations = new AnimationScheduler(enemies);
+        animations.setAudio(new AudioMixer(new NullAudioBackend(), 1));
+        return animations;
+    }
+
+    /**
+     * Compares the live slots of two stores.
+     * @param a The first store.
+     * @param b The second store.
+     * @return True if both hold the same entities in the same slots.
+     */
+    private static boolean sameStore(EntityStore a, EntityStore b) {
+        int n = a.size();
+        return n == b.size()
+                && Arrays.equals(a.x, 0, n, b.x, 0, n)
+                && Arrays.equals(a.y, 0, n, b.y, 0, n)
+                && Arrays.equals(a.width, 0, n, b.width, 0, n)
+                && Arrays.equals(a.height, 0, n, b.height, 0, n)
+                && Arrays.equals(a.speed, 0, n, b.speed, 0, n);
+    }
+}
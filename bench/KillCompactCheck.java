@@ -0,0 +1,242 @@
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks that entities killed during a tick are removed correctly by the
+ * compaction at its end:
+ * <ul>
+ * <li>Five missiles hit two enemies in the same collision pass. The small
+ * enemy is destroyed by the first missile, and the two after it fly on;
+ * the big enemy survives both of its hits, which both count.</li>
+ * <li>Missiles leave the field in the same move as missiles beside them
+ * that stay, at the start, middle, and end of the store.</li>
+ * <li>Random rounds of adds and kills, each followed by a compact, keep an
+ * EntityStore the same as a plain list of its live entities.</li>
+ * </ul>
+ * After every compact, every live handle must lead to its own entity and
+ * every killed handle must be invalid.
+ *
+ * Compile and run from the repository root, headless:
+ * <pre>
+ * javac -d out *.java bench/*.java &amp;&amp; cp *.wav out
+ * java -cp out KillCompactCheck
+ * </pre>
+ * The exit status is 1 if any check failed.
+ */
+public class KillCompactCheck {
+
+    /** The width of the playing field, matching the game window. */
+    private static final int WIDTH = 700;
+
+    /** The height of the playing field, matching the game window. */
+    private static final int HEIGHT = 500;
+
+    /** The number of random kill and compact rounds. */
+    private static final int ROUNDS = 20_000;
+
+    /** The most entities added or killed per round. */
+    private static final int MAX_CHANGES = 12;
+
+    /**
+     * Runs every check.
+     * @param args Unused.
+     */
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        boolean passed = checkMultiHit();
+        passed &= checkLeaving(new boolean[] {true, false});
+        passed &= checkLeaving(new boolean[] {false, true});
+        passed &= checkLeaving(new boolean[] {true, true, false, true,
+                false, false, true});
+        passed &= checkRounds(1);
+        System.exit(passed ? 0 : 1);
+    }
+
+    /**
+     * Fires five missiles at a small and a big enemy in one collision
+     * pass, alternating between them, and checks which entities are left.
+     * @return True if the check passed.
+     */
+    private static boolean checkMultiHit() {
+        GameWorld world = createWorld();
+        EntityStore enemies = world.getEnemies();
+        EntityStore missiles = world.getMissiles();
+        int small = enemies.add(EntityStore.KIND_SMALL_ENEMY, 100, 100, 30,
+                30, 0, 0);
+        int big = enemies.add(EntityStore.KIND_BIG_ENEMY, 400, 100, 56, 56,
+                0, 0);
+        int[] fired = new int[5];
+        for (int k = 0; k < fired.length; k++) {
+            int x = k % 2 == 0 ? 110 : 420;
+            fired[k] = missiles.add(EntityStore.KIND_MISSILE, x, 110,
+                    Missile.SIZE, Missile.SIZE, Missile.SPEED, 0);
+        }
+        world.detectCollision();
+        world.compact();
+        // Missile 0 destroys the small enemy, 2 and 4 arrive after it.
+        boolean passed = expect("multi-hit", !enemies.isValid(small)
+                && enemies.isValid(big) && enemies.size() == 1
+                && !missiles.isValid(fired[0]) && !missiles.isValid(fired[1])
+                && missiles.isValid(fired[2]) && !missiles.isValid(fired[3])
+                && missiles.isValid(fired[4]) && missiles.size() == 2
+                && world.getTotalScore() == 150 + 2 * 100);
+        return passed & checkHandles("multi-hit enemies", enemies,
+                new int[] {big}, new int[] {400})
+                & checkHandles("multi-hit missiles", missiles,
+                        new int[] {fired[2], fired[4]}, new int[] {110, 110});
+    }
+
+    /**
+     * Moves missiles of which some leave the field and the others stay,
+     * and checks that only the staying ones are left.
+     * @param leaving For each missile in slot order, true if it leaves the
+     *        field in the move.
+     * @return True if the check passed.
+     */
+    private static boolean checkLeaving(boolean[] leaving) {
+        GameWorld world = createWorld();
+        EntityStore missiles = world.getMissiles();
+        int[] handles = new int[leaving.length];
+        int staying = 0;
+        for (int k = 0; k < leaving.length; k++) {
+            // A missile at the top edge leaves in the next move.
+            handles[k] = missiles.add(EntityStore.KIND_MISSILE, 20 + 40 * k,
+                    leaving[k] ? 0 : 300, Missile.SIZE, Missile.SIZE,
+                    Missile.SPEED, 0);
+            if (!leaving[k]) {
+                staying++;
+            }
+        }
+        world.move();
+        world.compact();
+        int[] kept = new int[staying];
+        int[] keptX = new int[staying];
+        int n = 0;
+        boolean passed = missiles.size() == staying;
+        for (int k = 0; k < leaving.length; k++) {
+            if (leaving[k]) {
+                passed &= !missiles.isValid(handles[k]);
+            } else {
+                int slot = missiles.slotOf(handles[k]);
+                passed &= slot >= 0
+                        && missiles.y[slot] == 300 - Missile.SPEED;
+                kept[n] = handles[k];
+                keptX[n++] = 20 + 40 * k;
+            }
+        }
+        String name = "leaving " + Arrays.toString(leaving);
+        return expect(name, passed)
+                & checkHandles(name, missiles, kept, keptX);
+    }
+
+    /**
+     * Runs random rounds of adds and kills on a store, each followed by a
+     * compact, and compares the store with a list of its live entities.
+     * @param seed The seed of the rounds.
+     * @return True if the check passed.
+     */
+    private static boolean checkRounds(long seed) {
+        Random rand = new Random(seed);
+        EntityStore store = new EntityStore(4);
+        List<int[]> live = new ArrayList<>();
+        List<Integer> killed = new ArrayList<>();
+        for (int round = 0; round < ROUNDS; round++) {
+            int adds = rand.nextInt(MAX_CHANGES + 1);
+            for (int k = 0; k < adds; k++) {
+                int x = rand.nextInt(1_000_000);
+                live.add(new int[] {store.add(EntityStore.KIND_MISSILE, x,
+                        0, 1, 1, 0, 0), x});
+            }
+            killed.clear();
+            int kills = Math.min(live.size(), rand.nextInt(MAX_CHANGES + 1));
+            for (int k = 0; k < kills; k++) {
+                int handle = live.remove(rand.nextInt(live.size()))[0];
+                int slot = store.slotOf(handle);
+                store.kill(handle);
+                if (store.alive[slot] || store.isValid(handle)) {
+                    return expect("round " + round + " kill", false);
+                }
+                killed.add(handle);
+            }
+            // Killed slots keep their place until the compact.
+            for (int[] entity : live) {
+                int slot = store.slotOf(entity[0]);
+                if (slot < 0 || !store.alive[slot]
+                        || store.x[slot] != entity[1]) {
+                    return expect("round " + round + " before compact",
+                            false);
+                }
+            }
+            store.compact();
+            int[] handles = new int[live.size()];
+            int[] xs = new int[live.size()];
+            for (int k = 0; k < handles.length; k++) {
+                handles[k] = live.get(k)[0];
+                xs[k] = live.get(k)[1];
+            }
+            if (!checkHandles("round " + round, store, handles, xs)) {
+                return false;
+            }
+            for (int handle : killed) {
+                if (store.isValid(handle)) {
+                    return expect("round " + round + " killed handle",
+                            false);
+                }
+            }
+        }
+        return expect(ROUNDS + " kill and compact rounds", true);
+    }
+
+    /**
+     * Checks a compacted store: it holds exactly the given entities, all
+     * alive, each found by its handle at a slot with its x-component.
+     * @param name The name of the check, printed on failure.
+     * @param store The store.
+     * @param handles The handles of the live entities.
+     * @param xs The x-component of each live entity.
+     * @return True if the check passed.
+     */
+    private static boolean checkHandles(String name, EntityStore store,
+            int[] handles, int[] xs) {
+        if (store.size() != handles.length || store.getDeadCount() != 0) {
+            return expect(name + " size", false);
+        }
+        boolean[] seen = new boolean[store.size()];
+        for (int k = 0; k < handles.length; k++) {
+            int slot = store.slotOf(handles[k]);
+            if (slot < 0 || slot >= store.size() || seen[slot]
+                    || !store.alive[slot] || store.x[slot] != xs[k]
+                    || store.handleAt(slot) != handles[k]) {
+                return expect(name + " handle " + handles[k], false);
+            }
+            seen[slot] = true;
+        }
+        return true;
+    }
+
+    /**
+     * Creates a world without enemies whose collisions are scanned.
+     * @return The world.
+     */
+    private static GameWorld createWorld() {
+        GameWorld world = new GameWorld(WIDTH, HEIGHT, 0, false,
+                Turret.create(WIDTH, HEIGHT, Color.RED));
+        world.setAudio(new AudioMixer(new NullAudioBackend(), 1));
+        world.getEnemies().clear();
+        return world;
+    }
+
+    /**
+     * Prints the result of a check.
+     * @param name The name of the check.
+     * @param passed True if the check passed.
+     * @return passed.
+     */
+    private static boolean expect(String name, boolean passed) {
+        System.out.println((passed ? "ok     " : "FAILED ") + name);
+        return passed;
+    }
+}
@@ -0,0 +1,350 @@
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Checks the networked game: a NetHost plays games with the AimingBot
+ * while NetClients driven by random inputs follow it, over
+ * LoopbackTransports with and without latency and loss, and over TCP. The
+ * loopback connections are timed by the tick counter of the check, so the
+ * results do not depend on the speed of the machine.
+ *
+ * Every state a client decodes must be the state the host had at the same
+ * tick, compared by encoding both in full, and every client must end with
+ * the final state of the host. The turret of every client must have moved,
+ * to show the inputs of the clients arrive. The check also prints the
+ * average size of the frames the host sends, against the size of the same
+ * states sent in full, for waves of more and more enemies.
+ *
+ * Compile and run from the repository root, headless:
+ * <pre>
+ * javac -d out *.java bench/*.java &amp;&amp; cp *.wav out
+ * java -cp out NetplayCheck
+ * </pre>
+ * The exit status is 1 if any check failed.
+ */
+public class NetplayCheck {
+
+    /** The width of the playing field, matching the game window. */
+    private static final int WIDTH = 700;
+
+    /** The height of the playing field, matching the game window. */
+    private static final int HEIGHT = 500;
+
+    /** The most ticks played per game. */
+    private static final int MAX_TICKS = 5_000;
+
+    /** The ticks the host repeats the final state after the game ended. */
+    private static final int FINAL_FRAMES = 33;
+
+    /** The ticks played when measuring the frame size. */
+    private static final int SIZE_TICKS = 300;
+
+    /** The waves of the games checked, from the example wave file. */
+    private static final String WAVES = "0 big 1 random 100 100\n"
+            + "150 small 6 row 20 0 110\n"
+            + "300 big 3 row 60 0 200\n"
+            + "700 small 100 grid 10 0 34 20\n";
+
+    /** The tick counter timing the loopback connections. */
+    private static long clock;
+
+    /**
+     * Runs every check.
+     * @param args Unused.
+     * @throws IOException If a connection fails.
+     */
+    public static void main(String[] args) throws IOException {
+        System.setProperty("java.awt.headless", "true");
+        boolean passed = true;
+        for (int seed = 1; seed <= 3; seed++) {
+            passed &= checkLoopback(seed, 2, 0, 0);
+            passed &= checkLoopback(seed, 3, 3, 0.1);
+            passed &= checkLoopback(seed, 4, 5, 0.3);
+        }
+        passed &= checkSocket(7);
+        for (int enemies : new int[] {0, 100, 500, 2000}) {
+            measureFrames(enemies);
+        }
+        System.exit(passed ? 0 : 1);
+    }
+
+    /**
+     * Plays one game with a client for every player but the host's, over
+     * loopback connections, and prints the result.
+     * @param seed The seed of the game and the connections.
+     * @param players The number of players.
+     * @param latency The ticks every message takes.
+     * @param lossRate The chance of any one message being dropped.
+     * @return True if every check passed.
+     * @throws IOException If a connection fails.
+     */
+    private static boolean checkLoopback(long seed, int players,
+            long latency, double lossRate) throws IOException {
+        GameWorld world = createWorld(seed, players, WAVES);
+        NetHost host = new NetHost(world, seed);
+        NetClient[] clients = new NetClient[players - 1];
+        for (int i = 0; i < clients.length; i++) {
+            LoopbackTransport[] pair = LoopbackTransport.pair(latency,
+                    lossRate, seed * 31 + i, () -> clock);
+            host.addClient(pair[0]);
+            clients[i] = new NetClient(pair[1]);
+        }
+        String name = String.format(Locale.ROOT,
+                "loopback seed %d, %d players, latency %d, loss %.0f%%",
+                seed, players, latency, lossRate * 100);
+        return play(name, seed, world, host, clients, false);
+    }
+
+    /**
+     * Plays one two-player game with a client connected over TCP on the
+     * local machine, and prints the result.
+     * @param seed The seed of the game.
+     * @return True if every check passed.
+     * @throws IOException If the connection fails.
+     */
+    private static boolean checkSocket(long seed) throws IOException {
+        GameWorld world = createWorld(seed, 2, WAVES);
+        try (NetHost host = new NetHost(world, seed)) {
+            int port = host.listen(0);
+            NetClient client = new NetClient(
+                    SocketTransport.connect("localhost", port));
+            return play("socket seed " + seed + ", 2 players", seed, world,
+                    host, new NetClient[] {client}, true);
+        }
+    }
+
+    /**
+     * Plays a game on a host until it ends, with clients following it,
+     * checking every state the clients decode.
+     * @param name The name of the game, for the result.
+     * @param seed The seed of the inputs of the clients.
+     * @param world The world of the host.
+     * @param host The host.
+     * @param clients The clients, not joined yet.
+     * @param realTime True to give every message time to arrive over a
+     *        real connection before the next tick.
+     * @return True if every check passed.
+     * @throws IOException If a connection fails.
+     */
+    private static boolean play(String name, long seed, GameWorld world,
+            NetHost host, NetClient[] clients, boolean realTime)
+            throws IOException {
+        AimingBot bot = new AimingBot();
+        Random rand = new Random(seed);
+        boolean[] moved = new boolean[clients.length];
+        long compared = 0;
+        long mismatches = 0;
+        BitWriter expected = new BitWriter();
+        BitWriter actual = new BitWriter();
+        // Join every client before the game starts, as the game does.
+        while (!allJoined(clients)) {
+            for (NetClient client : clients) {
+                if (!client.hasJoined()) {
+                    client.hello();
+                }
+            }
+            host.poll();
+            step(realTime);
+        }
+        GameStatus status = GameStatus.RUNNING;
+        int finalFrames = FINAL_FRAMES;
+        while (finalFrames > 0 && world.getTickCount() < MAX_TICKS) {
+            host.poll();
+            if (status == GameStatus.RUNNING) {
+                int inputs = bot.nextInputs(world) | host.remoteInputs();
+                status = world.tick(inputs);
+            } else {
+                finalFrames--;
+            }
+            host.publish(status);
+            for (int i = 0; i < clients.length; i++) {
+                NetClient client = clients[i];
+                if (!client.poll()) {
+                    continue;
+                }
+                NetState state = client.getState();
+                NetState original = host.getState(state.getTick());
+                int player = client.getPlayer();
+                if (state.getTurretX(player)
+                        != client.getTurrets()[player].base.x) {
+                    moved[i] = true;
+                }
+                if (original != null) {
+                    compared++;
+                    if (!sameState(original, state, expected, actual)) {
+                        mismatches++;
+                    }
+                }
+            }
+            for (NetClient client : clients) {
+                client.sendInputs(randomInputs(rand));
+            }
+            step(realTime);
+        }
+        NetState last = host.getState();
+        boolean passed = mismatches == 0 && compared > 0;
+        StringBuilder failures = new StringBuilder();
+        for (int i = 0; i < clients.length; i++) {
+            NetState state = clients[i].getState();
+            if (state == null || state.getTick() != last.getTick()
+                    || !sameState(last, state, expected, actual)) {
+                failures.append(" client ").append(i + 1)
+                        .append(" missed the end");
+                passed = false;
+            }
+            if (!moved[i]) {
+                failures.append(" client ").append(i + 1)
+                        .append(" never moved");
+                passed = false;
+            }
+            clients[i].close();
+        }
+        System.out.println(String.format(Locale.ROOT,
+                "%-46s %-7s %5d ticks %6d states compared %3d mismatches %s%s",
+                name, last.getStatus(), last.getTick(), compared, mismatches,
+                passed ? "ok" : "FAILED", failures));
+        return passed;
+    }
+
+    /**
+     * Advances the clock of the loopback connections by a tick, or waits
+     * for the messages of a real connection to arrive.
+     * @param realTime True for a real connection.
+     */
+    private static void step(boolean realTime) {
+        clock++;
+        if (realTime) {
+            try {
+                Thread.sleep(2);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Determines whether every client has joined, polling the ones that
+     * did not.
+     * @param clients The clients.
+     * @return True if every client has joined.
+     * @throws IOException If a connection fails.
+     */
+    private static boolean allJoined(NetClient[] clients)
+            throws IOException {
+        boolean joined = true;
+        for (NetClient client : clients) {
+            if (!client.hasJoined()) {
+                client.poll();
+                joined &= client.hasJoined();
+            }
+        }
+        return joined;
+    }
+
+    /**
+     * Determines whether two states are the same, apart from their tick,
+     * by encoding both in full.
+     * @param expected The state of the host.
+     * @param actual The state decoded by a client.
+     * @param expectedOut A writer for the expected state.
+     * @param actualOut A writer for the actual state.
+     * @return True if the states are the same.
+     */
+    private static boolean sameState(NetState expected, NetState actual,
+            BitWriter expectedOut, BitWriter actualOut) {
+        expectedOut.reset();
+        expected.encode(null, expectedOut);
+        actualOut.reset();
+        actual.encode(null, actualOut);
+        return expectedOut.toByteBuffer().equals(actualOut.toByteBuffer());
+    }
+
+    /**
+     * Picks the inputs of a client for one tick.
+     * @param rand The source of the inputs.
+     * @return A held arrow key most of the time, and a shot now and then.
+     */
+    private static int randomInputs(Random rand) {
+        int inputs = rand.nextInt(3) == 0 ? 0
+                : rand.nextBoolean() ? GameWorld.INPUT_LEFT
+                        : GameWorld.INPUT_RIGHT;
+        if (rand.nextInt(20) == 0) {
+            inputs |= GameWorld.INPUT_FIRE;
+        }
+        return inputs;
+    }
+
+    /**
+     * Plays the start of a two-player game with a wave of the given number
+     * of enemies, up to SIZE_TICKS ticks or the end of the game, and prints
+     * the average size of the frames sent against the size of the same
+     * states in full.
+     * @param enemies The number of enemies of the wave.
+     * @throws IOException If a connection fails.
+     */
+    private static void measureFrames(int enemies) throws IOException {
+        String waves = enemies == 0 ? ""
+                : "0 small " + enemies + " random 700 240\n";
+        GameWorld world = createWorld(1, 2, waves);
+        NetHost host = new NetHost(world, 1);
+        LoopbackTransport[] pair = LoopbackTransport.pair(1, 0, 1,
+                () -> clock);
+        host.addClient(pair[0]);
+        NetClient client = new NetClient(pair[1]);
+        while (!client.hasJoined()) {
+            client.hello();
+            host.poll();
+            clock++;
+            client.poll();
+        }
+        AimingBot bot = new AimingBot();
+        Random rand = new Random(1);
+        BitWriter full = new BitWriter();
+        long fullBytes = 0;
+        long frames = 0;
+        while (frames < SIZE_TICKS) {
+            host.poll();
+            GameStatus status = world.tick(bot.nextInputs(world)
+                    | host.remoteInputs());
+            if (status != GameStatus.RUNNING) {
+                break;
+            }
+            host.publish(status);
+            full.reset();
+            host.getState().encode(null, full);
+            fullBytes += full.finish();
+            frames++;
+            clock++;
+            client.poll();
+            client.sendInputs(randomInputs(rand));
+        }
+        long sent = host.getFrameBytes();
+        System.out.println(String.format(Locale.ROOT,
+                "%5d enemies %8.1f bytes/frame in full %8.1f bytes/frame "
+                + "sent (%4.1f%%) over %d ticks", enemies,
+                fullBytes / (double)frames, sent / (double)frames,
+                100.0 * sent / fullBytes, frames));
+        client.close();
+        host.close();
+    }
+
+    /**
+     * Creates the world of a networked game with the given waves.
+     * @param seed The seed of the world.
+     * @param players The number of players.
+     * @param waves The wave file, or an empty one for random enemies.
+     * @return The new world.
+     * @throws IOException If the waves are malformed.
+     */
+    private static GameWorld createWorld(long seed, int players,
+            String waves) throws IOException {
+        GameWorld world = GameWorld.create(WIDTH, HEIGHT, seed, players);
+        if (!waves.isEmpty()) {
+            world.setWaves(WaveTimeline.parse(new StringReader(waves),
+                    "waves"));
+        }
+        return world;
+    }
+}
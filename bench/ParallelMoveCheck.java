@@ -0,0 +1,118 @@
+import java.awt.Color;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Checks that moving a swarm on a ForkJoinPool of 1, 2, 4, or 8 threads
+ * gives exactly the entities of moving it on the tick thread. The swarm
+ * fills the whole field, so both walls bounce enemies and missiles keep
+ * leaving the top of the field.
+ *
+ * Compile and run from the repository root, headless:
+ * <pre>
+ * javac -d out *.java bench/*.java &amp;&amp; cp *.wav out
+ * java -cp out ParallelMoveCheck [entities]
+ * </pre>
+ * The exit status is 1 if any pool size moved the swarm differently.
+ */
+public class ParallelMoveCheck {
+
+    /** The thread counts the parallel move is checked at. */
+    private static final int[] THREADS = {1, 2, 4, 8};
+
+    /** The default number of entities in the swarm. */
+    private static final int DEFAULT_SIZE = 200_000;
+
+    /**
+     * The number of moves compared. Enough for every missile to leave the
+     * field and many enemies to bounce.
+     */
+    private static final int MOVES = 120;
+
+    /** The width of the playing field, matching the game window. */
+    private static final int WIDTH = 700;
+
+    /** The height of the playing field, matching the game window. */
+    private static final int HEIGHT = 500;
+
+    /**
+     * Compares every pool size with the tick thread.
+     * @param args An optional number of entities.
+     */
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        int size = args.length > 0 ? Integer.parseInt(args[0])
+                : DEFAULT_SIZE;
+        boolean passed = true;
+        for (int threads : THREADS) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            GameWorld world = swarm(size);
+            world.setMovePool(pool);
+            GameWorld reference = swarm(size);
+            boolean same = true;
+            for (int i = 0; i < MOVES && same; i++) {
+                world.move();
+                world.compact();
+                reference.move();
+                reference.compact();
+                same = sameStore(world.getEnemies(), reference.getEnemies())
+                        && sameStore(world.getMissiles(),
+                                reference.getMissiles());
+            }
+            pool.shutdown();
+            System.out.println((same ? "ok     " : "FAILED ") + threads
+                    + " threads, " + size + " entities");
+            passed &= same;
+        }
+        System.exit(passed ? 0 : 1);
+    }
+
+    /**
+     * Builds a world with size / 2 enemies and size / 2 missiles spread
+     * over the whole field.
+     * @param size The number of entities.
+     * @return The new world.
+     */
+    private static GameWorld swarm(int size) {
+        Random rand = new Random(42);
+        GameWorld world = new GameWorld(WIDTH, HEIGHT, 0, false,
+                Turret.create(WIDTH, HEIGHT, Color.RED));
+        world.setAudio(new AudioMixer(new NullAudioBackend(), 1));
+        EntityStore enemies = world.getEnemies();
+        enemies.clear();
+        for (int i = 0; i < size / 2; i++) {
+            boolean big = rand.nextBoolean();
+            int side = big ? 56 : 30;
+            enemies.add(big ? EntityStore.KIND_BIG_ENEMY
+                    : EntityStore.KIND_SMALL_ENEMY,
+                    rand.nextInt(WIDTH - side), rand.nextInt(HEIGHT - side),
+                    side, side, big ? 4 : 6, Palette.randomIndex(rand));
+        }
+        EntityStore missiles = world.getMissiles();
+        for (int i = 0; i < size - size / 2; i++) {
+            missiles.add(EntityStore.KIND_MISSILE,
+                    rand.nextInt(WIDTH - Missile.SIZE),
+                    1 + rand.nextInt(HEIGHT - 1), Missile.SIZE,
+                    Missile.SIZE, Missile.SPEED, Palette.randomIndex(rand));
+        }
+        return world;
+    }
+
+    /**
+     * Compares the live slots of two stores.
+     * @param a The first store.
+     * @param b The second store.
+     * @return True if both hold the same entities in the same slots.
+     */
+    private static boolean sameStore(EntityStore a, EntityStore b) {
+        int n = a.size();
+        return n == b.size()
+                && Arrays.equals(a.x, 0, n, b.x, 0, n)
+                && Arrays.equals(a.y, 0, n, b.y, 0, n)
+                && Arrays.equals(a.width, 0, n, b.width, 0, n)
+                && Arrays.equals(a.height, 0, n, b.height, 0, n)
+                && Arrays.equals(a.speed, 0, n, b.speed, 0, n)
+                && Arrays.equals(a.colorIndex, 0, n, b.colorIndex, 0, n);
+    }
+}
@@ -0,0 +1,119 @@
+import java.awt.Color;
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+
+/**
+ * Checks that firing a missile allocates nothing once the missile pool is
+ * warm, so the garbage collector has no reason to pause a game however
+ * fast the player fires. Each step fires several missiles and then moves
+ * every entity, as a tick does. Bursts of steps fire faster than missiles
+ * leave the field, so the pool fills up and the later shots of a burst
+ * recycle the missile furthest up the field; the field empties between
+ * bursts, so the first shots take a free slot. The steps leave out the
+ * spawning and the shot limit of a tick, so a game never ends. Only the
+ * addMissile calls are counted, with the ThreadMXBean of the JVM, in both
+ * collision modes.
+ *
+ * Compile and run from the repository root, headless:
+ * <pre>
+ * javac -d out *.java bench/*.java &amp;&amp; cp *.wav out
+ * java -cp out ShotAllocationCheck
+ * </pre>
+ * The exit status is 1 if a counted shot allocated, or if the counted
+ * shots did not both take free slots and recycle missiles.
+ */
+public class ShotAllocationCheck {
+
+    /** The number of steps that only warm up the pool and the JIT. */
+    private static final int WARMUP_STEPS = 20_000;
+
+    /** The number of counted steps. */
+    private static final int MEASURED_STEPS = 25_000;
+
+    /** The number of missiles fired per step of a burst. */
+    private static final int SHOTS_PER_STEP = 4;
+
+    /** The number of steps from the start of one burst to the next. */
+    private static final int BURST_PERIOD = 200;
+
+    /**
+     * The number of steps of a burst that fire. The rest of the period is
+     * long enough for every missile to leave the field.
+     */
+    private static final int BURST_STEPS = 100;
+
+    /** The width of the playing field, matching the game window. */
+    private static final int WIDTH = 700;
+
+    /** The height of the playing field, matching the game window. */
+    private static final int HEIGHT = 500;
+
+    /** Counts the bytes allocated by a thread. */
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean)ManagementFactory
+                    .getThreadMXBean();
+
+    /**
+     * Checks both collision modes.
+     * @param args Unused.
+     */
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        if (!THREADS.isThreadAllocatedMemorySupported()) {
+            System.out.println("allocation counting is not supported");
+            System.exit(1);
+        }
+        THREADS.setThreadAllocatedMemoryEnabled(true);
+        boolean clean = check("scan", false) & check("events", true);
+        System.exit(clean ? 0 : 1);
+    }
+
+    /**
+     * Fires the warm-up and counted shots of one mode and prints the
+     * result.
+     * @param mode The name of the mode.
+     * @param eventDriven True to use the event-driven collision mode.
+     * @return True if no counted shot allocated, and some shots took a
+     *         free slot and some recycled a missile.
+     */
+    private static boolean check(String mode, boolean eventDriven) {
+        GameWorld world = new GameWorld(WIDTH, HEIGHT, 0, false,
+                Turret.create(WIDTH, HEIGHT, Color.RED));
+        world.setAudio(new AudioMixer(new NullAudioBackend(), 1));
+        world.setEventDriven(eventDriven);
+        EntityStore missiles = world.getMissiles();
+        long thread = Thread.currentThread().getId();
+        long shots = 0;
+        long recycled = 0;
+        long bytes = 0;
+        for (int step = 0; step < WARMUP_STEPS + MEASURED_STEPS; step++) {
+            boolean counted = step >= WARMUP_STEPS;
+            int burstShots = step % BURST_PERIOD < BURST_STEPS
+                    ? SHOTS_PER_STEP : 0;
+            for (int i = 0; i < burstShots; i++) {
+                boolean full = missiles.size() == GameWorld.MAX_MISSILES;
+                long before = THREADS.getThreadAllocatedBytes(thread);
+                world.addMissile();
+                long allocated = THREADS.getThreadAllocatedBytes(thread)
+                        - before;
+                if (counted) {
+                    shots++;
+                    bytes += allocated;
+                    if (full) {
+                        recycled++;
+                    }
+                }
+            }
+            world.detectCollision();
+            world.getEnemies().savePositions();
+            missiles.savePositions();
+            world.move();
+            world.compact();
+            world.getAudio().flush();
+        }
+        System.out.println(String.format(Locale.ROOT,
+                "%-6s %8d shots %8d recycled %8d bytes %6.2f bytes/shot",
+                mode, shots, recycled, bytes, bytes / (double)shots));
+        return bytes == 0 && recycled > 0 && recycled < shots;
+    }
+}
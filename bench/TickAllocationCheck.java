@@ -0,0 +1,122 @@
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+
+/**
+ * Checks that a tick allocates nothing once a game has warmed up, so the
+ * garbage collector has no reason to pause the game while it is played.
+ * Games are played by the AimingBot in both collision modes, each tick
+ * followed by a snapshot for the painting thread as in the game. The
+ * bytes the thread allocates during every tick after the first ticks of
+ * a game are counted with the ThreadMXBean of the JVM. The first games
+ * only warm up the JIT and are not counted.
+ *
+ * Compile and run from the repository root, headless:
+ * <pre>
+ * javac -d out *.java bench/*.java &amp;&amp; cp *.wav out
+ * java -cp out TickAllocationCheck
+ * </pre>
+ * The exit status is 1 if any counted tick allocated.
+ */
+public class TickAllocationCheck {
+
+    /** The number of games per mode that only warm up the JIT. */
+    private static final int WARMUP_GAMES = 20;
+
+    /** The number of counted games per mode. */
+    private static final int MEASURED_GAMES = 20;
+
+    /**
+     * The number of ticks at the start of every game that are not counted,
+     * while the arrays of the world grow to the size of the game.
+     */
+    private static final int WARMUP_TICKS = 100;
+
+    /** The most ticks played per game. */
+    private static final int MAX_TICKS = 5_000;
+
+    /** The width of the playing field, matching the game window. */
+    private static final int WIDTH = 700;
+
+    /** The height of the playing field, matching the game window. */
+    private static final int HEIGHT = 500;
+
+    /** Counts the bytes allocated by a thread. */
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean)ManagementFactory
+                    .getThreadMXBean();
+
+    /**
+     * Checks both collision modes.
+     * @param args Unused.
+     */
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        if (!THREADS.isThreadAllocatedMemorySupported()) {
+            System.out.println("allocation counting is not supported");
+            System.exit(1);
+        }
+        THREADS.setThreadAllocatedMemoryEnabled(true);
+        boolean clean = check("scan", false) & check("events", true);
+        System.exit(clean ? 0 : 1);
+    }
+
+    /**
+     * Plays the warm-up and counted games of one mode and prints the
+     * result.
+     * @param mode The name of the mode.
+     * @param eventDriven True to use the event-driven collision mode.
+     * @return True if no counted tick allocated.
+     */
+    private static boolean check(String mode, boolean eventDriven) {
+        for (int game = 0; game < WARMUP_GAMES; game++) {
+            play(game, eventDriven, new long[2]);
+        }
+        long[] counts = new long[3];
+        for (int game = 0; game < MEASURED_GAMES; game++) {
+            counts[2] += play(WARMUP_GAMES + game, eventDriven, counts);
+        }
+        System.out.println(String.format(Locale.ROOT,
+                "%-6s %8d ticks %8d bytes %6.2f bytes/tick %6d ticks "
+                + "allocated", mode, counts[2], counts[0],
+                counts[0] / (double)Math.max(1, counts[2]), counts[1]));
+        return counts[0] == 0;
+    }
+
+    /**
+     * Plays one game with the AimingBot and counts the bytes allocated by
+     * the ticks after the first WARMUP_TICKS.
+     * @param seed The seed of the game.
+     * @param eventDriven True to use the event-driven collision mode.
+     * @param counts Receives the allocated bytes at index 0 and the number
+     *        of ticks that allocated at index 1.
+     * @return The number of counted ticks.
+     */
+    private static int play(long seed, boolean eventDriven, long[] counts) {
+        GameWorld world = GameWorld.create(WIDTH, HEIGHT, seed);
+        world.setAudio(new AudioMixer(new NullAudioBackend(), 1));
+        world.setEventDriven(eventDriven);
+        world.getProfiler().setEnabled(true);
+        SnapshotBuffer snapshots = new SnapshotBuffer(world, 0);
+        BotPolicy bot = new AimingBot();
+        long thread = Thread.currentThread().getId();
+        GameStatus status = GameStatus.RUNNING;
+        int counted = 0;
+        for (int tick = 0; status == GameStatus.RUNNING && tick < MAX_TICKS;
+                tick++) {
+            int inputs = bot.nextInputs(world);
+            long before = THREADS.getThreadAllocatedBytes(thread);
+            status = world.tick(inputs);
+            snapshots.getBack().copyFrom(world, status, tick);
+            snapshots.publish();
+            long allocated = THREADS.getThreadAllocatedBytes(thread) - before;
+            if (tick >= WARMUP_TICKS) {
+                counted++;
+                counts[0] += allocated;
+                if (allocated > 0) {
+                    counts[1]++;
+                }
+            }
+        }
+        return counted;
+    }
+}
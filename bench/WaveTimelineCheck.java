@@ -0,0 +1,198 @@
+import java.awt.Color;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+
+/**
+ * Checks that wave files are compiled or rejected as documented in
+ * WaveTimeline: the example wave file and formations that just fit the
+ * field load, lines that are malformed or whose enemies would overlap are
+ * rejected while parsing, and formations reaching outside the field are
+ * rejected by GameWorld.setWaves. A game recorded with waves must replay
+ * with the same waves, whatever the comments and spacing of their file,
+ * and a ReplayPlayer must refuse other waves or none.
+ *
+ * Compile and run from the repository root, headless:
+ * <pre>
+ * javac -d out *.java bench/*.java &amp;&amp; cp *.wav out
+ * java -cp out WaveTimelineCheck
+ * </pre>
+ * The exit status is 1 if any wave file was handled otherwise.
+ */
+public class WaveTimelineCheck {
+
+    /** The width of the playing field, matching the game window. */
+    private static final int WIDTH = 700;
+
+    /** The height of the playing field, matching the game window. */
+    private static final int HEIGHT = 500;
+
+    /** The waves of the recorded game. */
+    private static final String RECORDED = "0 small 6 row 20 0 110\n"
+            + "50 big 3 row 60 0 200\n";
+
+    /** The same waves, written differently. */
+    private static final String REFORMATTED = "# the recorded waves\n"
+            + "0   small  6  row  20  0  110\n\n"
+            + "50  big    3  row  60  0  200  # big ones\n";
+
+    /** Other waves, which the recorded game must not replay with. */
+    private static final String OTHER = "0 small 6 row 20 0 110\n"
+            + "50 big 3 row 60 0 190\n";
+
+    /** Wave files that load into a world. */
+    private static final String[] ACCEPTED = {
+        "0 big 1 random 100 100",
+        "0 big 1 random 700 500",
+        // A single enemy needs no spacing.
+        "0 small 1 row 0 0 0",
+        // Spaced exactly the enemy size apart.
+        "0 small 20 grid 0 0 30 10",
+        // Reaching exactly the right and the bottom edge of the field.
+        "0 small 10 row 346 0 36",
+        "0 big 4 column 0 260 60",
+    };
+
+    /** Wave files that parse rejects. */
+    private static final String[] UNPARSABLE = {
+        "0 small 3 row 0 0",
+        "0 small 3 circle 0 0 40",
+        "0 medium 3 row 0 0 40",
+        "0 small -3 row 0 0 40",
+        "0 small 4 grid 0 0 40 0",
+        "0 big 1 random 56 100",
+        // Enemies closer than their size would overlap.
+        "0 small 3 row 0 0 29",
+        "0 big 3 column 0 0 30",
+        "0 small 8 grid 0 0 20 4",
+    };
+
+    /** Wave files that parse but do not fit the field. */
+    private static final String[] OUTSIDE = {
+        "0 small 30 row 0 0 30",
+        "0 small 10 row 347 0 36",
+        "0 big 5 column 0 260 60",
+        "0 small 1 row 671 0 0",
+        "0 big 1 random 701 100",
+        "0 small 1 random 100 501",
+    };
+
+    /**
+     * Loads and parses every wave file.
+     * @param args Unused.
+     */
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        boolean passed = true;
+        try {
+            passed &= report("accepted", "waves.txt",
+                    fits(WaveTimeline.load("waves.txt")));
+        } catch (IOException e) {
+            passed &= report("accepted", "waves.txt", false);
+        }
+        for (String waves : ACCEPTED) {
+            WaveTimeline timeline = parse(waves);
+            passed &= report("accepted", waves,
+                    timeline != null && fits(timeline));
+        }
+        for (String waves : UNPARSABLE) {
+            passed &= report("rejected", waves, parse(waves) == null);
+        }
+        for (String waves : OUTSIDE) {
+            WaveTimeline timeline = parse(waves);
+            passed &= report("outside", waves,
+                    timeline != null && !fits(timeline));
+        }
+        byte[] replay = record(parse(RECORDED));
+        passed &= report("replayed", "the recorded waves",
+                replays(replay, parse(RECORDED)));
+        passed &= report("replayed", "the recorded waves, reformatted",
+                replays(replay, parse(REFORMATTED)));
+        passed &= report("refused", "other waves",
+                !replays(replay, parse(OTHER)));
+        passed &= report("refused", "no waves", !replays(replay, null));
+        passed &= report("refused", "waves for a game without",
+                !replays(record(null), parse(RECORDED)));
+        System.exit(passed ? 0 : 1);
+    }
+
+    /**
+     * Records a game of a few ticks, firing every other tick.
+     * @param waves The waves of the game, or null for random spawns.
+     * @return The replay.
+     */
+    private static byte[] record(WaveTimeline waves) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ReplayRecorder recorder = new ReplayRecorder(out, WIDTH,
+                HEIGHT, 1, waves)) {
+            for (int tick = 0; tick < 100; tick++) {
+                recorder.record(tick % 2 == 0 ? GameWorld.INPUT_FIRE : 0);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Determines whether a replay plays back with the given waves.
+     * @param replay The replay.
+     * @param waves The waves to play it with, or null for random spawns.
+     * @return True if the ReplayPlayer created a world with the waves.
+     */
+    private static boolean replays(byte[] replay, WaveTimeline waves) {
+        try (ReplayPlayer player = new ReplayPlayer(
+                new ByteArrayInputStream(replay))) {
+            player.createWorld(waves);
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Parses a wave file.
+     * @param waves The text of the wave file.
+     * @return The timeline, or null if parse rejected the file.
+     */
+    private static WaveTimeline parse(String waves) {
+        try {
+            return WaveTimeline.parse(new StringReader(waves), "check");
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Determines whether a world of the size of the game window accepts
+     * a timeline.
+     * @param timeline The timeline.
+     * @return True if setWaves accepted the timeline.
+     */
+    private static boolean fits(WaveTimeline timeline) {
+        GameWorld world = new GameWorld(WIDTH, HEIGHT, 0, false,
+                Turret.create(WIDTH, HEIGHT, Color.RED));
+        world.setAudio(new AudioMixer(new NullAudioBackend(), 1));
+        try {
+            world.setWaves(timeline);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Prints the outcome for one wave file.
+     * @param expected How the file should have been handled.
+     * @param waves The wave file.
+     * @param ok True if it was handled that way.
+     * @return ok.
+     */
+    private static boolean report(String expected, String waves,
+            boolean ok) {
+        System.out.println((ok ? "ok     " : "FAILED ") + expected + ": "
+                + waves);
+        return ok;
+    }
+}
@@ -0,0 +1,68 @@
+package spacedefenders.game;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the spatial grid of findHits with the nested loop of
+ * findHitsReference, on the scenes of GameLoopBenchmark. The nested loop
+ * is quadratic, too slow to measure at 100,000 entities.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BroadphaseBenchmark {
+
+    /** The number of entities in the scene. */
+    @Param({"10", "1000"})
+    public int size;
+
+    /** The world being benchmarked. */
+    private GameWorld world;
+
+    /** The hit buffer. */
+    private int[] hits;
+
+    /**
+     * Builds the scene.
+     */
+    @Setup
+    public void setUp() {
+        System.setProperty("java.awt.headless", "true");
+        world = GameLoopBenchmark.build(size, 0);
+        hits = new int[Math.max(1, size)];
+    }
+
+    /**
+     * Finds the hits of every missile with the spatial grid.
+     * @return The hits.
+     */
+    @Benchmark
+    public int[] grid() {
+        world.findHits(hits);
+        return hits;
+    }
+
+    /**
+     * Finds the hits of every missile with the nested loop.
+     * @return The hits.
+     */
+    @Benchmark
+    public int[] nestedLoop() {
+        world.findHitsReference(hits);
+        return hits;
+    }
+}
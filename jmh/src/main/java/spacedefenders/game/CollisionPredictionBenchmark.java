@@ -0,0 +1,240 @@
+package spacedefenders.game;
+
+import java.awt.Color;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the event-driven collision mode with the scan of every missile
+ * and enemy each tick. The tick benchmark plays scenes of 100, 1,000, and
+ * 10,000 enemies, once with a volley of missiles in flight and once quiet,
+ * with no missile left. The game benchmark plays whole games with the
+ * AimingBot, the few enemies and steady fire of a regular game; its ticks
+ * counter gives the ticks played, so the time per tick is the score times
+ * the games over the ticks. The cold games benchmark plays the first games
+ * of fresh JVMs, as a player does, before the JIT has warmed up. JMH forks
+ * a JVM for every mode, as BotRunner and the game do, since code compiled
+ * for one mode skews the timing of the other.
+ *
+ * bench/CollisionPredictionCheck checks that both modes give the same
+ * results on these scenes and games.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class CollisionPredictionBenchmark {
+
+    /**
+     * The number of ticks per invocation, on a fresh scene. Long enough
+     * for most enemies to bounce, short enough that few reach the turret.
+     */
+    static final int TICKS = 150;
+
+    /** The number of missiles in flight at the start of a busy scene. */
+    static final int MISSILES = 64;
+
+    /** The number of game seeds the game benchmark cycles through. */
+    static final int GAMES = 1_000;
+
+    /** The number of games played by coldGames in a fresh JVM. */
+    static final int COLD_GAMES = 10;
+
+    /** The most ticks played per game. */
+    static final int MAX_TICKS = 20_000;
+
+    /** The width of the benchmark field, matching the game window. */
+    static final int WIDTH = 700;
+
+    /** The height of the benchmark field, matching the game window. */
+    static final int HEIGHT = 500;
+
+    /**
+     * A scene of enemies, built afresh before every invocation.
+     */
+    @State(Scope.Thread)
+    public static class Scene {
+
+        /** The collision mode, scan or events. */
+        @Param({"scan", "events"})
+        public String mode;
+
+        /** The number of enemies. */
+        @Param({"100", "1000", "10000"})
+        public int enemies;
+
+        /** The scene, busy with missiles in flight or quiet. */
+        @Param({"busy", "quiet"})
+        public String scene;
+
+        /** The world being played. */
+        GameWorld world;
+
+        /** The seed of the next scene. */
+        private long seed;
+
+        /**
+         * Builds the next scene with build.
+         */
+        @Setup(Level.Invocation)
+        public void setUp() {
+            System.setProperty("java.awt.headless", "true");
+            world = build(enemies, scene.equals("busy"), seed++ % 8);
+            world.setEventDriven(mode.equals("events"));
+        }
+    }
+
+    /**
+     * The whole games played, in one collision mode.
+     */
+    @State(Scope.Thread)
+    public static class Games {
+
+        /** The collision mode, scan or events. */
+        @Param({"scan", "events"})
+        public String mode;
+
+        /** The seed of the next game. */
+        long seed;
+    }
+
+    /**
+     * The ticks played by the game benchmark in an iteration, reported by
+     * JMH next to the time.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Ticks {
+
+        /** The ticks played. */
+        public long ticks;
+
+        /**
+         * Zeroes the counter before each iteration.
+         */
+        @Setup(Level.Iteration)
+        public void clear() {
+            ticks = 0;
+        }
+    }
+
+    /**
+     * Builds a world with the given number of enemies spread over the
+     * upper part of the field, and optionally a volley of missiles below
+     * them. The world plays silently.
+     * @param size The number of enemies.
+     * @param busy True to add the missiles.
+     * @param seed The seed of the placement and of the world.
+     * @return The new world.
+     */
+    static GameWorld build(int size, boolean busy, long seed) {
+        Random rand = new Random(seed);
+        GameWorld world = new GameWorld(WIDTH, HEIGHT, 0, false,
+                Turret.create(WIDTH, HEIGHT, Color.RED), new Random(seed));
+        world.setAudio(new AudioMixer(new NullAudioBackend(), 1));
+        EntityStore enemies = world.getEnemies();
+        enemies.clear();
+        for (int i = 0; i < size; i++) {
+            boolean big = rand.nextBoolean();
+            int side = big ? 56 : 30;
+            enemies.add(big ? EntityStore.KIND_BIG_ENEMY
+                    : EntityStore.KIND_SMALL_ENEMY,
+                    rand.nextInt(WIDTH - side), rand.nextInt(200), side,
+                    side, (rand.nextBoolean() ? 1 : -1) * (big ? 4 : 6),
+                    Palette.randomIndex(rand));
+        }
+        if (busy) {
+            EntityStore missiles = world.getMissiles();
+            for (int i = 0; i < MISSILES; i++) {
+                missiles.add(EntityStore.KIND_MISSILE,
+                        rand.nextInt(WIDTH - Missile.SIZE),
+                        250 + rand.nextInt(150), Missile.SIZE,
+                        Missile.SIZE, Missile.SPEED, Palette.randomIndex(rand));
+            }
+        }
+        return world;
+    }
+
+    /**
+     * Plays a whole game with the AimingBot.
+     * @param world The world, silent, in the mode to play.
+     * @return The number of ticks played.
+     */
+    static int play(GameWorld world) {
+        BotPolicy bot = new AimingBot();
+        GameStatus status = GameStatus.RUNNING;
+        int tick = 0;
+        for (; status == GameStatus.RUNNING && tick < MAX_TICKS; tick++) {
+            status = world.tick(bot.nextInputs(world));
+        }
+        return tick;
+    }
+
+    /**
+     * Plays ticks without firing on a fresh scene.
+     * @param scene The scene.
+     * @return The status after the last tick.
+     */
+    @Benchmark
+    @OperationsPerInvocation(TICKS)
+    public GameStatus tick(Scene scene) {
+        GameStatus status = GameStatus.RUNNING;
+        for (int i = 0; i < TICKS; i++) {
+            status = scene.world.tick(0);
+        }
+        return status;
+    }
+
+    /**
+     * Plays the next whole game. Setting up the world is timed too, as in
+     * BotRunner.
+     * @param games The games.
+     * @param ticks The tick counter.
+     * @return The score of the game.
+     */
+    @Benchmark
+    public int game(Games games, Ticks ticks) {
+        GameWorld world = GameWorld.create(WIDTH, HEIGHT,
+                games.seed++ % GAMES);
+        world.setAudio(new AudioMixer(new NullAudioBackend(), 1));
+        world.setEventDriven(games.mode.equals("events"));
+        ticks.ticks += play(world);
+        return world.getTotalScore();
+    }
+
+    /**
+     * Plays the first COLD_GAMES games of a fresh JVM once, as a player
+     * does, before the JIT has compiled the tick for either mode.
+     * @param games The games.
+     * @param ticks The tick counter.
+     * @return The total score of the games.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    @Fork(20)
+    public int coldGames(Games games, Ticks ticks) {
+        int score = 0;
+        for (int i = 0; i < COLD_GAMES; i++) {
+            score += game(games, ticks);
+        }
+        return score;
+    }
+}
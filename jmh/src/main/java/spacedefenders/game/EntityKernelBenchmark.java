@@ -0,0 +1,279 @@
+package spacedefenders.game;
+
+import java.awt.Color;
+import java.awt.Rectangle;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares the entity kernels with moving every entity through its own
+ * move method, the way GameWorld.move worked before the kernels. Scenes of
+ * 10,000, 100,000, and 1,000,000 entities, half enemies and half missiles,
+ * take one step per operation: every entity is moved, and every enemy is
+ * tested against the gun, either sweeping each one or sweeping only the
+ * enemies found by sweptOverlaps. The step runs on the per-entity path,
+ * on the scalar kernels, and on the Vector API kernels, which the forked
+ * JVM loads with the incubator module.
+ *
+ * bench/EntityKernelCheck checks that every path gives the same results.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class EntityKernelBenchmark {
+
+    /** The width of the benchmark field, matching the game window. */
+    static final int WIDTH = 700;
+
+    /** The height of the benchmark field, matching the game window. */
+    static final int HEIGHT = 500;
+
+    /** The gun the enemies are tested against. */
+    static final Rectangle GUN =
+            Turret.create(WIDTH, HEIGHT, Color.RED).turret;
+
+    /**
+     * Stores of enemies and missiles, reset before every step, and the
+     * buffers the kernels need.
+     */
+    @State(Scope.Thread)
+    public static class Scene {
+
+        /** The number of entities, half enemies and half missiles. */
+        @Param({"10000", "100000", "1000000"})
+        public int size;
+
+        /** The enemies being moved. */
+        EntityStore enemies;
+
+        /** The missiles being moved. */
+        EntityStore missiles;
+
+        /** The animations of the enemies. */
+        AnimationScheduler animations;
+
+        /** Receives the enemies that hit a wall. */
+        boolean[] bounced;
+
+        /** Receives the missiles that went off panel. */
+        boolean[] despawned;
+
+        /** Receives the enemies whose swept box overlaps the gun. */
+        int[] slots;
+
+        /** The enemies of the scene as built, restored before every step. */
+        private EntityStore builtEnemies;
+
+        /** The missiles of the scene as built, restored before every step. */
+        private EntityStore builtMissiles;
+
+        /**
+         * Builds the scene.
+         */
+        @Setup(Level.Trial)
+        public void setUp() {
+            System.setProperty("java.awt.headless", "true");
+            builtEnemies = enemies(size / 2);
+            builtMissiles = missiles(size - size / 2);
+            enemies = new EntityStore(size / 2);
+            missiles = new EntityStore(size - size / 2);
+            bounced = new boolean[size];
+            despawned = new boolean[size];
+            slots = new int[size];
+        }
+
+        /**
+         * Puts every entity back where it was when the scene was built,
+         * with no animation running, and saves the positions the gun test
+         * sweeps from.
+         */
+        @Setup(Level.Invocation)
+        public void reset() {
+            enemies.copyFrom(builtEnemies);
+            missiles.copyFrom(builtMissiles);
+            enemies.savePositions();
+            animations = new AnimationScheduler(enemies);
+            animations.setAudio(new AudioMixer(new NullAudioBackend(), 1));
+        }
+    }
+
+    /**
+     * The scalar kernels.
+     */
+    @State(Scope.Benchmark)
+    public static class Scalar {
+
+        /** The kernels. */
+        final EntityKernels kernels = new ScalarEntityKernels();
+    }
+
+    /**
+     * The Vector API kernels.
+     */
+    @State(Scope.Benchmark)
+    public static class Vector {
+
+        /** The kernels. */
+        final EntityKernels kernels = new VectorEntityKernels();
+    }
+
+    /**
+     * Moves every entity through its own move method and sweeps every
+     * enemy against the gun.
+     * @param scene The scene.
+     * @param blackhole Receives the number of enemies that reached the gun.
+     */
+    @Benchmark
+    public void perEntity(Scene scene, Blackhole blackhole) {
+        EntityStore enemies = scene.enemies;
+        EntityStore missiles = scene.missiles;
+        for (int slot = 0; slot < enemies.size(); slot++) {
+            if (enemies.alive[slot]) {
+                Enemy.forKind(enemies.kind[slot]).move(enemies,
+                        scene.animations, slot, WIDTH, HEIGHT);
+            }
+        }
+        scene.animations.advance();
+        for (int slot = 0; slot < missiles.size(); slot++) {
+            if (missiles.alive[slot]) {
+                Missile.move(missiles, slot, WIDTH, HEIGHT);
+            }
+        }
+        int contacts = 0;
+        for (int slot = 0; slot < enemies.size(); slot++) {
+            if (reachesGun(enemies, slot)) {
+                contacts++;
+            }
+        }
+        blackhole.consume(contacts);
+    }
+
+    /**
+     * Moves every entity with the scalar kernels and sweeps the enemies
+     * they find overlapping the gun.
+     * @param scene The scene.
+     * @param scalar The scalar kernels.
+     * @param blackhole Receives the number of enemies that reached the gun.
+     */
+    @Benchmark
+    public void scalar(Scene scene, Scalar scalar, Blackhole blackhole) {
+        blackhole.consume(step(scalar.kernels, scene));
+    }
+
+    /**
+     * Moves every entity with the Vector API kernels and sweeps the
+     * enemies they find overlapping the gun.
+     * @param scene The scene.
+     * @param vector The Vector API kernels.
+     * @param blackhole Receives the number of enemies that reached the gun.
+     */
+    @Benchmark
+    public void vector(Scene scene, Vector vector, Blackhole blackhole) {
+        blackhole.consume(step(vector.kernels, scene));
+    }
+
+    /**
+     * Moves every entity with the given kernels, as GameWorld.move does,
+     * and sweeps the enemies they find overlapping the gun.
+     * @param kernels The kernels to use.
+     * @param scene The scene.
+     * @return The number of enemies that reached the gun.
+     */
+    private static int step(EntityKernels kernels, Scene scene) {
+        EntityStore enemies = scene.enemies;
+        EntityStore missiles = scene.missiles;
+        kernels.stepEnemies(enemies, 0, enemies.size(), WIDTH,
+                scene.bounced);
+        for (int slot = 0; slot < enemies.size(); slot++) {
+            if (scene.bounced[slot]) {
+                Enemy.forKind(enemies.kind[slot]).transitionY(enemies,
+                        scene.animations, slot);
+            }
+        }
+        scene.animations.advance();
+        kernels.stepMissiles(missiles, 0, missiles.size(), HEIGHT,
+                scene.despawned);
+        for (int slot = 0; slot < missiles.size(); slot++) {
+            if (scene.despawned[slot]) {
+                missiles.kill(missiles.handleAt(slot));
+            }
+        }
+        int count = kernels.sweptOverlaps(enemies, GUN.x, GUN.y, GUN.width,
+                GUN.height, scene.slots);
+        int contacts = 0;
+        for (int k = 0; k < count; k++) {
+            if (reachesGun(enemies, scene.slots[k])) {
+                contacts++;
+            }
+        }
+        return contacts;
+    }
+
+    /**
+     * Sweeps one enemy against the gun, which stands still.
+     * @param enemies The enemies.
+     * @param slot The slot of the enemy.
+     * @return True if the enemy reached the gun during the last move.
+     */
+    private static boolean reachesGun(EntityStore enemies, int slot) {
+        return Sweep.timeOfImpact(enemies.previousX[slot],
+                enemies.previousY[slot], enemies.width[slot],
+                enemies.height[slot],
+                enemies.x[slot] - enemies.previousX[slot],
+                enemies.y[slot] - enemies.previousY[slot], GUN.x, GUN.y,
+                GUN.width, GUN.height, 0, 0) >= 0;
+    }
+
+    /**
+     * Builds a store of enemies spread over the whole field.
+     * @param count The number of enemies.
+     * @return The new store.
+     */
+    static EntityStore enemies(int count) {
+        Random rand = new Random(42);
+        EntityStore enemies = new EntityStore(count);
+        for (int i = 0; i < count; i++) {
+            boolean big = rand.nextBoolean();
+            int side = big ? 56 : 30;
+            enemies.add(big ? EntityStore.KIND_BIG_ENEMY
+                    : EntityStore.KIND_SMALL_ENEMY,
+                    rand.nextInt(WIDTH - side), rand.nextInt(HEIGHT - side),
+                    side, side, (rand.nextBoolean() ? 1 : -1)
+                    * (big ? 4 : 6) + 0.3 * rand.nextInt(4),
+                    Palette.randomIndex(rand));
+        }
+        return enemies;
+    }
+
+    /**
+     * Builds a store of missiles spread over the whole field.
+     * @param count The number of missiles.
+     * @return The new store.
+     */
+    static EntityStore missiles(int count) {
+        Random rand = new Random(43);
+        EntityStore missiles = new EntityStore(count);
+        for (int i = 0; i < count; i++) {
+            missiles.add(EntityStore.KIND_MISSILE,
+                    rand.nextInt(WIDTH - Missile.SIZE),
+                    1 + rand.nextInt(HEIGHT - 1), Missile.SIZE,
+                    Missile.SIZE, Missile.SPEED, Palette.randomIndex(rand));
+        }
+        return missiles;
+    }
+}
@@ -0,0 +1,231 @@
+package spacedefenders.game;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmarks for the hot paths of the game loop: collision detection,
+ * movement, the paint pass, and spawning, on scenes of 10, 1,000, and
+ * 100,000 entities. Run with -prof gc to report the bytes allocated per
+ * operation next to the time.
+ *
+ * The operations that change the scene (move, addEnemy, and addMissile)
+ * run BATCH times on a scene reset to how it was built, so they are always
+ * measured on a scene of the requested size. The reset copies the entities
+ * back into the stores without allocating, so the bytes per operation
+ * reported by -prof gc are those of the operation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class GameLoopBenchmark {
+
+    /** The number of operations run on each reset scene. */
+    static final int BATCH = 50;
+
+    /** The width of the benchmark field, matching the game window. */
+    static final int WIDTH = 700;
+
+    /** The height of the benchmark field, matching the game window. */
+    static final int HEIGHT = 500;
+
+    /**
+     * A world filled with entities, and the buffers the operations need.
+     */
+    @State(Scope.Thread)
+    public static class Scene {
+
+        /** The number of entities in the scene. */
+        @Param({"10", "1000", "100000"})
+        public int size;
+
+        /** The world being benchmarked. */
+        GameWorld world;
+
+        /** The graphics of the offscreen image the paint pass draws on. */
+        Graphics2D graphics;
+
+        /** The sprites used by the paint pass. */
+        SpriteCache sprites;
+
+        /** The hit buffer for the collision operations. */
+        int[] hits;
+
+        /** The enemies of the scene as built, restored by reset. */
+        private final EntityStore builtEnemies = new EntityStore(16);
+
+        /** The missiles of the scene as built, restored by reset. */
+        private final EntityStore builtMissiles = new EntityStore(16);
+
+        /**
+         * Builds the scene with build.
+         */
+        @Setup(Level.Trial)
+        public void setUp() {
+            System.setProperty("java.awt.headless", "true");
+            world = build(size, 0);
+            builtEnemies.copyFrom(world.getEnemies());
+            builtMissiles.copyFrom(world.getMissiles());
+            graphics = new BufferedImage(WIDTH, HEIGHT,
+                    BufferedImage.TYPE_INT_RGB).createGraphics();
+            sprites = new SpriteCache();
+            hits = new int[Math.max(1, size)];
+        }
+
+        /**
+         * Puts every entity back where it was when the scene was built.
+         * Once the stores have grown to what the operations need, this
+         * allocates nothing.
+         */
+        public void reset() {
+            world.getEnemies().copyFrom(builtEnemies);
+            world.getMissiles().copyFrom(builtMissiles);
+        }
+
+        /**
+         * Releases the offscreen image.
+         */
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            graphics.dispose();
+        }
+    }
+
+    /**
+     * A scene reset before every invocation.
+     */
+    @State(Scope.Thread)
+    public static class ResetScene extends Scene {
+
+        /**
+         * Resets the scene.
+         */
+        @Setup(Level.Invocation)
+        public void resetScene() {
+            reset();
+        }
+    }
+
+    /**
+     * Builds a world with size / 2 enemies spread over the upper part of
+     * the field and size / 2 missiles spread below them, above the turret.
+     * Missiles and enemies do not touch, so repeated collision passes all
+     * see the same scene, and BATCH moves keep every missile on the field.
+     * @param size The number of entities.
+     * @param seed The seed for entity placement.
+     * @return The world.
+     */
+    static GameWorld build(int size, long seed) {
+        Random rand = new Random(seed);
+        GameWorld world = new GameWorld(WIDTH, HEIGHT, 0, false,
+                Turret.create(WIDTH, HEIGHT, Color.RED));
+        world.setAudio(new AudioMixer(new NullAudioBackend(), 1));
+        EntityStore enemies = world.getEnemies();
+        enemies.clear();
+        for (int i = 0; i < size / 2; i++) {
+            boolean big = rand.nextBoolean();
+            int side = big ? 56 : 30;
+            enemies.add(big ? EntityStore.KIND_BIG_ENEMY
+                    : EntityStore.KIND_SMALL_ENEMY,
+                    rand.nextInt(WIDTH - side), rand.nextInt(240), side,
+                    side, big ? 4 : 6, Palette.randomIndex(rand));
+        }
+        EntityStore missiles = world.getMissiles();
+        for (int i = 0; i < size - size / 2; i++) {
+            missiles.add(EntityStore.KIND_MISSILE,
+                    rand.nextInt(WIDTH - Missile.SIZE),
+                    300 + rand.nextInt(80), Missile.SIZE,
+                    Missile.SIZE, Missile.SPEED, Palette.randomIndex(rand));
+        }
+        return world;
+    }
+
+    /**
+     * Runs a collision pass and the compact after it.
+     * @param scene The scene.
+     * @return Whether the pass ended the game.
+     */
+    @Benchmark
+    public boolean detectCollision(Scene scene) {
+        boolean over = scene.world.detectCollision();
+        scene.world.compact();
+        return over;
+    }
+
+    /**
+     * Finds the hits of every missile with the spatial grid.
+     * @param scene The scene.
+     * @return The hits.
+     */
+    @Benchmark
+    public int[] findHits(Scene scene) {
+        scene.world.findHits(scene.hits);
+        return scene.hits;
+    }
+
+    /**
+     * Draws the world onto the offscreen image.
+     * @param scene The scene.
+     */
+    @Benchmark
+    public void paint(Scene scene) {
+        GameRenderer.render(scene.graphics, scene.world, scene.sprites,
+                WIDTH, HEIGHT, 1.0);
+    }
+
+    /**
+     * Moves every entity and compacts the stores.
+     * @param scene The scene.
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void move(ResetScene scene) {
+        for (int i = 0; i < BATCH; i++) {
+            scene.world.move();
+            scene.world.compact();
+        }
+    }
+
+    /**
+     * Spawns an enemy.
+     * @param scene The scene.
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void addEnemy(ResetScene scene) {
+        for (int i = 0; i < BATCH; i++) {
+            scene.world.addEnemy();
+        }
+    }
+
+    /**
+     * Fires a missile.
+     * @param scene The scene.
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void addMissile(ResetScene scene) {
+        for (int i = 0; i < BATCH; i++) {
+            scene.world.addMissile();
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package spacedefenders.game;
+
+import java.awt.Color;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how the move stage scales across threads on a swarm scene:
+ * GameWorld.move on the tick thread, and on a ForkJoinPool of 1, 2, 4,
+ * and 8 threads. bench/ParallelMoveCheck checks that every pool size moves
+ * the swarm exactly as the tick thread does.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ParallelMoveBenchmark {
+
+    /**
+     * The number of moves per invocation, on a reset swarm. Low enough
+     * that most missiles are still in flight at the end.
+     */
+    static final int MOVES = 40;
+
+    /** The width of the benchmark field, matching the game window. */
+    private static final int WIDTH = 700;
+
+    /** The height of the benchmark field, matching the game window. */
+    private static final int HEIGHT = 500;
+
+    /** The number of entities in the swarm. */
+    @Param({"200000"})
+    public int size;
+
+    /** The number of threads of the pool, or 0 to move on one thread. */
+    @Param({"0", "1", "2", "4", "8"})
+    public int threads;
+
+    /** The world being benchmarked. */
+    private GameWorld world;
+
+    /** The pool the world moves on, or null. */
+    private ForkJoinPool pool;
+
+    /** The enemies of the swarm as built, restored before every run. */
+    private final EntityStore builtEnemies = new EntityStore(16);
+
+    /** The missiles of the swarm as built, restored before every run. */
+    private final EntityStore builtMissiles = new EntityStore(16);
+
+    /**
+     * Builds a world with size / 2 enemies and size / 2 missiles spread
+     * over the whole field, so both walls bounce enemies and missiles keep
+     * leaving the top of the field.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        System.setProperty("java.awt.headless", "true");
+        Random rand = new Random(42);
+        world = new GameWorld(WIDTH, HEIGHT, 0, false,
+                Turret.create(WIDTH, HEIGHT, Color.RED));
+        world.setAudio(new AudioMixer(new NullAudioBackend(), 1));
+        EntityStore enemies = world.getEnemies();
+        enemies.clear();
+        for (int i = 0; i < size / 2; i++) {
+            boolean big = rand.nextBoolean();
+            int side = big ? 56 : 30;
+            enemies.add(big ? EntityStore.KIND_BIG_ENEMY
+                    : EntityStore.KIND_SMALL_ENEMY,
+                    rand.nextInt(WIDTH - side), rand.nextInt(HEIGHT - side),
+                    side, side, big ? 4 : 6, Palette.randomIndex(rand));
+        }
+        EntityStore missiles = world.getMissiles();
+        for (int i = 0; i < size - size / 2; i++) {
+            missiles.add(EntityStore.KIND_MISSILE,
+                    rand.nextInt(WIDTH - Missile.SIZE),
+                    1 + rand.nextInt(HEIGHT - 1), Missile.SIZE,
+                    Missile.SIZE, Missile.SPEED, Palette.randomIndex(rand));
+        }
+        builtEnemies.copyFrom(enemies);
+        builtMissiles.copyFrom(missiles);
+        pool = threads > 0 ? new ForkJoinPool(threads) : null;
+        world.setMovePool(pool);
+    }
+
+    /**
+     * Puts every entity back where it was when the swarm was built.
+     */
+    @Setup(Level.Invocation)
+    public void reset() {
+        world.getEnemies().copyFrom(builtEnemies);
+        world.getMissiles().copyFrom(builtMissiles);
+    }
+
+    /**
+     * Shuts the pool down.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Moves every entity and compacts the stores.
+     */
+    @Benchmark
+    @OperationsPerInvocation(MOVES)
+    public void move() {
+        for (int i = 0; i < MOVES; i++) {
+            world.move();
+            world.compact();
+        }
+    }
+}
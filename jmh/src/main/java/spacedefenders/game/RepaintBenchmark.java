@@ -0,0 +1,168 @@
+package spacedefenders.game;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares redrawing every frame in full with the incremental repaint of
+ * IncrementalRenderer, on a sparse scene with a few entities, as in normal
+ * play, and on denser scenes. Every frame moves the scene one tick and
+ * draws it, so the time per operation is the time per frame.
+ *
+ * Next to the time, the Fill counters report the fill work of each
+ * iteration: the frames drawn, the pixels cleared or covered by sprites,
+ * and the frames drawn in full. Divide pixels by frames for the pixels per
+ * frame.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RepaintBenchmark {
+
+    /**
+     * The number of frames per invocation, on a reset scene. Low enough
+     * that every missile is still on the field at the end.
+     */
+    static final int FRAMES = 40;
+
+    /** The number of entities in the scene. */
+    @Param({"4", "10", "50", "1000"})
+    public int size;
+
+    /** The world being drawn. */
+    private GameWorld world;
+
+    /** The graphics of the offscreen image full frames are drawn on. */
+    private Graphics2D graphics;
+
+    /** The sprites used by full frames. */
+    private SpriteCache sprites;
+
+    /** The incremental renderer, with its own buffer and sprites. */
+    private IncrementalRenderer renderer;
+
+    /** The enemies of the scene as built, restored before every run. */
+    private final EntityStore builtEnemies = new EntityStore(16);
+
+    /** The missiles of the scene as built, restored before every run. */
+    private final EntityStore builtMissiles = new EntityStore(16);
+
+    /**
+     * The fill work of an iteration, reported by JMH next to the time.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Fill {
+
+        /** The frames drawn. */
+        public long frames;
+
+        /** The pixels cleared or covered by sprites. */
+        public long pixels;
+
+        /** The frames drawn in full. */
+        public long fullFrames;
+
+        /**
+         * Zeroes the counters before each iteration.
+         */
+        @Setup(Level.Iteration)
+        public void clear() {
+            frames = 0;
+            pixels = 0;
+            fullFrames = 0;
+        }
+    }
+
+    /**
+     * Builds the scene with GameLoopBenchmark.build and both renderers.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        System.setProperty("java.awt.headless", "true");
+        world = GameLoopBenchmark.build(size, 0);
+        builtEnemies.copyFrom(world.getEnemies());
+        builtMissiles.copyFrom(world.getMissiles());
+        graphics = new BufferedImage(GameLoopBenchmark.WIDTH,
+                GameLoopBenchmark.HEIGHT, BufferedImage.TYPE_INT_RGB)
+                .createGraphics();
+        sprites = new SpriteCache();
+        renderer = new IncrementalRenderer();
+    }
+
+    /**
+     * Puts every entity back where it was when the scene was built.
+     */
+    @Setup(Level.Invocation)
+    public void reset() {
+        world.getEnemies().copyFrom(builtEnemies);
+        world.getMissiles().copyFrom(builtMissiles);
+    }
+
+    /**
+     * Releases the offscreen image.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        graphics.dispose();
+    }
+
+    /**
+     * Moves the scene and redraws the whole field every frame.
+     * @param fill The fill counters.
+     */
+    @Benchmark
+    @OperationsPerInvocation(FRAMES)
+    public void full(Fill fill) {
+        for (int i = 0; i < FRAMES; i++) {
+            world.move();
+            world.compact();
+            long drawnBefore = sprites.getDrawnPixels();
+            GameRenderer.render(graphics, world, sprites,
+                    GameLoopBenchmark.WIDTH, GameLoopBenchmark.HEIGHT, 1.0);
+            fill.pixels += (long)GameLoopBenchmark.WIDTH
+                    * GameLoopBenchmark.HEIGHT
+                    + sprites.getDrawnPixels() - drawnBefore;
+        }
+        fill.frames += FRAMES;
+        fill.fullFrames += FRAMES;
+    }
+
+    /**
+     * Moves the scene and repaints only what changed every frame.
+     * @param fill The fill counters.
+     */
+    @Benchmark
+    @OperationsPerInvocation(FRAMES)
+    public void incremental(Fill fill) {
+        for (int i = 0; i < FRAMES; i++) {
+            world.move();
+            world.compact();
+            renderer.update(world, null, Color.LIGHT_GRAY,
+                    GameLoopBenchmark.WIDTH, GameLoopBenchmark.HEIGHT, 1.0);
+            fill.pixels += renderer.getFilledPixels();
+            fill.fullFrames += renderer.wasFullRedraw() ? 1 : 0;
+        }
+        fill.frames += FRAMES;
+    }
+}
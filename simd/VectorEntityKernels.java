@@ -0,0 +1,242 @@
+import java.util.Arrays;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The entity kernels on the incubating Vector API, stepping and testing
+ * as many slots per instruction as the CPU allows. Lanes of slots that are
+ * not alive are masked off. Short ranges, and the slots left over after
+ * the last full vector, are handled by the scalar kernels.
+ *
+ * Only operations the JIT of JDK 17 compiles to vector instructions are
+ * used, since any other one turns every vector into an object.
+ * Until the JIT has compiled the kernels every vector is an object too,
+ * so warmUp runs them on scenes of their own first.
+ *
+ * Compiled separately from the game, and only loaded when the incubator
+ * module is present:
+ * <pre>
+ * javac --add-modules jdk.incubator.vector -cp out -d out simd/*.java
+ * java --add-modules jdk.incubator.vector -cp out GameFrame
+ * </pre>
+ */
+public class VectorEntityKernels extends ScalarEntityKernels {
+
+    /** The species of the speeds, the widest the CPU runs well. */
+    private static final VectorSpecies<Double> DOUBLES =
+            DoubleVector.SPECIES_PREFERRED;
+
+    /** The species of the positions, one lane per lane of DOUBLES. */
+    private static final VectorSpecies<Integer> INTS = VectorSpecies.of(
+            int.class, VectorShape.forBitSize(DOUBLES.length()
+                    * Integer.SIZE));
+
+    /**
+     * Added to a double of magnitude below 2^51, rounds it to an integer
+     * held in the low bits of the sum.
+     */
+    private static final double ROUNDING_BIAS = 0x1.8p52;
+
+    /** A vector of ones. */
+    private static final DoubleVector ONE = DoubleVector.broadcast(DOUBLES,
+            1);
+
+    /** The species of the overlap test, which reads no speeds. */
+    private static final VectorSpecies<Integer> WIDE_INTS =
+            IntVector.SPECIES_PREFERRED;
+
+    /**
+     * The fewest slots a range must have to be stepped with vectors.
+     * Shorter ranges go to the scalar kernels: they gain little, and in a
+     * game with few entities the vector loops would never run often
+     * enough for the JIT to compile them.
+     */
+    private static final int MIN_VECTOR_SLOTS = 64;
+
+    /**
+     * The number of entities of the scenes the kernels warm up on, one
+     * short of a multiple of every vector length, so the scalar tail runs.
+     */
+    private static final int WARMUP_ENTITIES = 255;
+
+    /** The number of passes over the scenes the kernels warm up with. */
+    private static final int WARMUP_PASSES = 20_000;
+
+    @Override
+    public void warmUp() {
+        EntityStore enemies = new EntityStore(WARMUP_ENTITIES);
+        EntityStore missiles = new EntityStore(WARMUP_ENTITIES);
+        for (int i = 0; i < WARMUP_ENTITIES; i++) {
+            enemies.add(EntityStore.KIND_SMALL_ENEMY, 37 * i % 670,
+                    2 * i, 30, 30, i % 2 == 0 ? 6.3 : -6.3, 0);
+            missiles.add(EntityStore.KIND_MISSILE, 3 * i, 2 * i, 15, 15,
+                    Missile.SPEED, 0);
+        }
+        boolean[] flags = new boolean[WARMUP_ENTITIES];
+        int[] slots = new int[WARMUP_ENTITIES];
+        for (int pass = 0; pass < WARMUP_PASSES; pass++) {
+            enemies.savePositions();
+            stepEnemies(enemies, 0, WARMUP_ENTITIES, 700, flags);
+            sweptOverlaps(enemies, pass % 700, 0, 20, 500, slots);
+            // Missiles leave the top and start again from the bottom.
+            stepMissiles(missiles, 0, WARMUP_ENTITIES, 500, flags);
+            for (int i = 0; i < WARMUP_ENTITIES; i++) {
+                if (flags[i]) {
+                    missiles.y[i] = 499;
+                }
+            }
+        }
+    }
+
+    /**
+     * Moves the enemies in a range of slots, a vector of slots at a time.
+     * The enemies of a vector that hit a wall are rare, and handled one
+     * at a time.
+     * @param store The store holding all active enemies.
+     * @param from The first slot of the range.
+     * @param to The slot after the range.
+     * @param frameWidth The width bounds for movement.
+     * @param bounced Receives, per slot of the range, true if the enemy
+     *        hit a wall and should move down.
+     */
+    @Override
+    public void stepEnemies(EntityStore store, int from, int to,
+            int frameWidth, boolean[] bounced) {
+        int end = to - from < MIN_VECTOR_SLOTS ? from
+                : from + INTS.loopBound(to - from);
+        int slot = from;
+        for (; slot < end; slot += INTS.length()) {
+            VectorMask<Integer> live = VectorMask.fromArray(INTS,
+                    store.alive, slot);
+            IntVector x = IntVector.fromArray(INTS, store.x, slot);
+            IntVector moved = x.add(truncate(DoubleVector.fromArray(DOUBLES,
+                    store.speed, slot)));
+            VectorMask<Integer> bounce = moved
+                    .add(IntVector.fromArray(INTS, store.width, slot))
+                    .compare(VectorOperators.GT, frameWidth)
+                    .or(moved.compare(VectorOperators.LT, 0)).and(live);
+            x.blend(moved, live).intoArray(store.x, slot);
+            Arrays.fill(bounced, slot, slot + INTS.length(), false);
+            if (bounce.anyTrue()) {
+                for (int i = slot; i < slot + INTS.length(); i++) {
+                    if (store.alive[i] && (store.x[i] < 0
+                            || store.x[i] + store.width[i] > frameWidth)) {
+                        store.speed[i] *= -1; // Turn around enemy.
+                        bounced[i] = true;
+                    }
+                }
+            }
+        }
+        super.stepEnemies(store, slot, to, frameWidth, bounced);
+    }
+
+    /**
+     * Moves the missiles in a range of slots, a vector of slots at a time.
+     * @param store The store holding all active missiles.
+     * @param from The first slot of the range.
+     * @param to The slot after the range.
+     * @param panelHeight The height bounds for movement.
+     * @param despawned Receives, per slot of the range, true if the
+     *        missile is off panel and should be killed.
+     */
+    @Override
+    public void stepMissiles(EntityStore store, int from, int to,
+            int panelHeight, boolean[] despawned) {
+        int end = to - from < MIN_VECTOR_SLOTS ? from
+                : from + INTS.loopBound(to - from);
+        int slot = from;
+        for (; slot < end; slot += INTS.length()) {
+            VectorMask<Integer> live = VectorMask.fromArray(INTS,
+                    store.alive, slot);
+            IntVector y = IntVector.fromArray(INTS, store.y, slot);
+            VectorMask<Integer> off = y
+                    .compare(VectorOperators.GE, panelHeight)
+                    .or(y.compare(VectorOperators.LE, 0)).and(live);
+            Arrays.fill(despawned, slot, slot + INTS.length(), false);
+            if (off.anyTrue()) {
+                for (int i = slot; i < slot + INTS.length(); i++) {
+                    despawned[i] = store.alive[i]
+                            && (store.y[i] >= panelHeight || store.y[i] <= 0);
+                }
+            }
+            y.blend(y.sub(truncate(DoubleVector.fromArray(DOUBLES,
+                    store.speed, slot))), live.andNot(off))
+                    .intoArray(store.y, slot);
+        }
+        super.stepMissiles(store, slot, to, panelHeight, despawned);
+    }
+
+    /**
+     * Tests the swept boxes of a vector of slots at a time against the
+     * given box. The slots of a vector with an overlap are rare, and
+     * collected one at a time.
+     * @param store The store holding the entities.
+     * @param x The x-component of the box.
+     * @param y The y-component of the box.
+     * @param width The width of the box.
+     * @param height The height of the box.
+     * @param result Receives the slots found, in ascending order. Must hold
+     *        at least store.size() entries.
+     * @return The number of slots found.
+     */
+    @Override
+    public int sweptOverlaps(EntityStore store, int x, int y, int width,
+            int height, int[] result) {
+        int end = store.size() < MIN_VECTOR_SLOTS ? 0
+                : WIDE_INTS.loopBound(store.size());
+        int count = 0;
+        for (int slot = 0; slot < end; slot += WIDE_INTS.length()) {
+            IntVector previousX = IntVector.fromArray(WIDE_INTS,
+                    store.previousX, slot);
+            IntVector currentX = IntVector.fromArray(WIDE_INTS, store.x,
+                    slot);
+            IntVector previousY = IntVector.fromArray(WIDE_INTS,
+                    store.previousY, slot);
+            IntVector currentY = IntVector.fromArray(WIDE_INTS, store.y,
+                    slot);
+            IntVector right = previousX.max(currentX)
+                    .add(IntVector.fromArray(WIDE_INTS, store.width, slot));
+            IntVector bottom = previousY.max(currentY)
+                    .add(IntVector.fromArray(WIDE_INTS, store.height, slot));
+            VectorMask<Integer> hit = previousX.min(currentX)
+                    .compare(VectorOperators.LT, x + width)
+                    .and(right.compare(VectorOperators.GT, x))
+                    .and(previousY.min(currentY)
+                            .compare(VectorOperators.LT, y + height))
+                    .and(bottom.compare(VectorOperators.GT, y))
+                    .and(VectorMask.fromArray(WIDE_INTS, store.alive, slot));
+            if (hit.anyTrue()) {
+                count = sweptOverlaps(store, slot, slot + WIDE_INTS.length(),
+                        x, y, width, height, result, count);
+            }
+        }
+        return sweptOverlaps(store, end, store.size(), x, y, width, height,
+                result, count);
+    }
+
+    /**
+     * Truncates a vector of speeds towards zero, as an (int) cast does, for
+     * speeds below 2^31 in magnitude. The conversion from double to int is
+     * not compiled to vector instructions by every JDK, so the speeds are
+     * rounded by adding ROUNDING_BIAS, which leaves the rounded value in
+     * the low 32 bits, and then moved towards zero where rounding moved
+     * them away from it.
+     * @param speeds The speeds, one per lane of INTS.
+     * @return The truncated speeds.
+     */
+    private static IntVector truncate(DoubleVector speeds) {
+        DoubleVector rounded = speeds.add(ROUNDING_BIAS).sub(ROUNDING_BIAS);
+        DoubleVector truncated = rounded
+                .sub(ONE, rounded.compare(VectorOperators.GT, speeds)
+                        .and(speeds.compare(VectorOperators.GT, 0)))
+                .add(ONE, rounded.compare(VectorOperators.LT, speeds)
+                        .and(speeds.compare(VectorOperators.LT, 0)));
+        return (IntVector)truncated.add(ROUNDING_BIAS).reinterpretAsLongs()
+                .convertShape(VectorOperators.L2I, INTS, 0);
+    }
+}